@@ -0,0 +1,27 @@
+package com.vu.utms.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. Accepts the usual JMH command line and always
+ * adds the GC profiler, so every benchmark reports its allocation rate
+ * (gc.alloc.rate.norm is bytes per operation) next to throughput and latency.
+ */
+public class BenchmarkMain {
+
+    /**
+     * Main method to run the benchmarks
+     * @param args JMH command line arguments, e.g. a benchmark name pattern
+     * @throws Exception if the options are invalid or a benchmark fails
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
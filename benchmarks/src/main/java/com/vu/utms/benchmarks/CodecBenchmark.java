@@ -0,0 +1,119 @@
+package com.vu.utms.benchmarks;
+
+import com.vu.utms.codec.BinaryReader;
+import com.vu.utms.codec.BinaryWriter;
+import com.vu.utms.codec.Codec;
+import com.vu.utms.models.Bus;
+import com.vu.utms.models.Lecturer;
+import com.vu.utms.models.ModelCodecs;
+import com.vu.utms.models.Student;
+import com.vu.utms.models.TransportOfficer;
+import com.vu.utms.models.TransportRequest;
+import com.vu.utms.models.Van;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of encoding and decoding one model object, as the data layer does for
+ * every log record and user record, with Java serialization (the format files
+ * were written in before) and with the hand-written codecs in ModelCodecs.
+ * The encoded sizes of both are printed when a trial starts.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+    @Param({"student", "lecturer", "officer", "bus", "van", "request"})
+    String model;
+
+    Object value;
+    Codec<Object> codec;
+    byte[] serialized;
+    byte[] encoded;
+    final BinaryWriter buffer = new BinaryWriter();
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void create() throws IOException {
+        Codec<?> typed;
+        switch (model) {
+            case "student":
+                Student student = Fixtures.student(7);
+                for (int i = 0; i < 10; i++) {
+                    student.requestTransport("Destination " + i % 3, "2026-08-" + (10 + i) + " 08:30");
+                }
+                value = student;
+                typed = ModelCodecs.USER;
+                break;
+            case "lecturer":
+                value = new Lecturer("l7", "Lecturer 7", "l7@vu.ac.ug", "07007", "secret",
+                                     "L7", "Computing", "Senior Lecturer", true);
+                typed = ModelCodecs.USER;
+                break;
+            case "officer":
+                value = new TransportOfficer("o7", "Officer 7", "o7@vu.ac.ug", "07007", "secret",
+                                             "O7", "Dispatcher", "Transport", 5);
+                typed = ModelCodecs.USER;
+                break;
+            case "bus":
+                Bus bus = new Bus("b7", "UAX 123B", "Isuzu NQR", 33, "R7", true, false, 20);
+                bus.updateLocation(0.3476, 32.5825, 1_750_000_000_000L);
+                bus.book("2026-08-17 07:00", 90, "Morning shuttle");
+                bus.book("2026-08-17 17:00", 90, "Evening shuttle");
+                value = bus;
+                typed = ModelCodecs.VEHICLE;
+                break;
+            case "van":
+                value = new Van("v7", "UAX 456C", "Toyota Hiace", 14, true, 2.5, "Staff Transport", true);
+                typed = ModelCodecs.VEHICLE;
+                break;
+            case "request":
+                value = Fixtures.student(7).getTransportRequests()
+                        .add("Main Library", "2026-08-17 08:30", TransportRequest.Priority.STANDARD);
+                typed = ModelCodecs.TRANSPORT_REQUEST;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown model " + model);
+        }
+        codec = (Codec<Object>) typed;
+        serialized = serialize();
+        encoded = encode();
+        System.out.printf("%n%s: %d bytes serialized, %d bytes encoded%n", model, serialized.length, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return ois.readObject();
+        }
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        buffer.reset();
+        codec.write(buffer, value);
+        return buffer.toByteArray();
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return codec.read(new BinaryReader(encoded));
+    }
+}
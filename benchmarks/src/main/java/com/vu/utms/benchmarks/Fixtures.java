@@ -0,0 +1,69 @@
+package com.vu.utms.benchmarks;
+
+import com.vu.utms.data.DataManager;
+import com.vu.utms.data.Durability;
+import com.vu.utms.models.Student;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Data shared by the benchmarks: populated data directories and sample users.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * Create a data directory holding a number of students, compacted into the
+     * snapshot so opening it does not replay a log
+     * @param population Number of students
+     * @return The directory
+     */
+    static Path populatedDirectory(int population) {
+        Path dir = tempDirectory();
+        DataManager dataManager = DataManager.open(dir, Durability.ASYNC);
+        dataManager.addStudents(students(0, population));
+        dataManager.compact();
+        dataManager.close();
+        return dir;
+    }
+
+    /**
+     * @return Students with user IDs "u{from}" .. "u{to - 1}"
+     */
+    static List<Student> students(int from, int to) {
+        List<Student> students = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            students.add(student(i));
+        }
+        return students;
+    }
+
+    static Student student(int i) {
+        return new Student("u" + i, "Student " + i, "s" + i + "@vu.ac.ug", "0700" + i,
+                           "secret", "S" + i, "Computer Science", 1 + i % 4);
+    }
+
+    static Path tempDirectory() {
+        try {
+            return Files.createTempDirectory("utms-bench");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void delete(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("Error deleting " + dir + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.vu.utms.benchmarks;
+
+import com.vu.utms.data.DataManager;
+import com.vu.utms.data.Durability;
+import com.vu.utms.data.HistoryPage;
+import com.vu.utms.data.HistoryQuery;
+import com.vu.utms.models.BookingCalendar;
+import com.vu.utms.models.Lecturer;
+import com.vu.utms.models.TransportRequest;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of transport requests for a user with a long history: recording one in
+ * memory and through the request log, rendering the full history, and reading
+ * the newest page through the request index.
+ *
+ * The history is rebuilt before each iteration so it does not grow without bound
+ * while requestTransport runs.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryBenchmark {
+    private static final long START_MINUTE = BookingCalendar.parseMinute("2025-01-06 08:00");
+    private static final String[] DESTINATIONS = {"Main Gate", "Library", "Kampala Campus", "Airport"};
+
+    @Param({"10", "1000", "100000"})
+    int historyLength;
+
+    Path dir;
+    DataManager dataManager;
+    Lecturer lecturer;
+    int next;
+
+    @Setup(Level.Iteration)
+    public void open() {
+        dir = Fixtures.tempDirectory();
+        lecturer = new Lecturer("L1", "Lecturer", "l1@vu.ac.ug", "0700", "secret", "ST1",
+                                "Computing", "Senior Lecturer", true);
+        for (next = 0; next < historyLength; next++) {
+            lecturer.requestTransport(destination(next), dateTime(next));
+        }
+        dataManager = DataManager.open(dir, Durability.ASYNC);
+        dataManager.addLecturer(lecturer);
+        lecturer = (Lecturer) dataManager.findUser("L1");
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        dataManager.close();
+        Fixtures.delete(dir);
+    }
+
+    private static String destination(int i) {
+        return DESTINATIONS[i % DESTINATIONS.length];
+    }
+
+    private static String dateTime(int i) {
+        return BookingCalendar.formatMinute(START_MINUTE + i * 30L);
+    }
+
+    @Benchmark
+    public String requestTransport() {
+        int i = next++;
+        return lecturer.requestTransport(destination(i), dateTime(i));
+    }
+
+    @Benchmark
+    public TransportRequest requestTransportLogged() {
+        int i = next++;
+        return dataManager.requestTransport("L1", destination(i), dateTime(i));
+    }
+
+    @Benchmark
+    public String viewTransportHistory() {
+        return lecturer.viewTransportHistory();
+    }
+
+    @Benchmark
+    public HistoryPage newestPage() {
+        return dataManager.queryTransportHistory(HistoryQuery.all().forUser("L1").newestFirst(), null);
+    }
+}
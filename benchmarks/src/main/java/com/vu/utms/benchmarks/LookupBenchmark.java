@@ -0,0 +1,62 @@
+package com.vu.utms.benchmarks;
+
+import com.vu.utms.data.DataManager;
+import com.vu.utms.data.Durability;
+import com.vu.utms.models.User;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of finding a user by ID at different population sizes through
+ * DataManager.findUser: through the paged B+tree store that decodes a single
+ * record while the user lists are not loaded, and through the in-memory
+ * directory once they are.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LookupBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int population;
+
+    // Whether the user lists are loaded before the lookups start
+    @Param({"false", "true"})
+    boolean loaded;
+
+    Path dir;
+    DataManager dataManager;
+
+    @Setup(Level.Trial)
+    public void open() {
+        dir = Fixtures.populatedDirectory(population);
+        dataManager = DataManager.open(dir, Durability.ASYNC);
+        if (loaded) {
+            dataManager.getStudents();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        dataManager.close();
+        Fixtures.delete(dir);
+    }
+
+    private String randomId() {
+        return "u" + ThreadLocalRandom.current().nextInt(population);
+    }
+
+    @Benchmark
+    public User findUser() {
+        return dataManager.findUser(randomId());
+    }
+
+    @Benchmark
+    public User findMissingUser() {
+        return dataManager.findUser("missing" + ThreadLocalRandom.current().nextInt(population));
+    }
+}
@@ -0,0 +1,116 @@
+package com.vu.utms.benchmarks;
+
+import com.vu.utms.data.DataManager;
+import com.vu.utms.data.Durability;
+import com.vu.utms.data.Snapshot;
+import com.vu.utms.models.Student;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of saving and loading users at different population sizes.
+ *
+ * addStudent appends one student with the given durability; open opens a data
+ * directory and closes it again without reading any list, as a tool that only
+ * adds records does; openAndLoad also loads the user lists and builds the
+ * indexes; getStudents reads the loaded list as UTMS does when listing users.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Saving {
+        @Param({"1000", "10000", "100000"})
+        int population;
+
+        @Param({"ASYNC", "FLUSH", "FSYNC"})
+        Durability durability;
+
+        Path dir;
+        DataManager dataManager;
+        final AtomicInteger next = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void open() {
+            dir = Fixtures.populatedDirectory(population);
+            dataManager = DataManager.open(dir, durability);
+            next.set(population);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            dataManager.close();
+            Fixtures.delete(dir);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Loading {
+        @Param({"1000", "10000", "100000"})
+        int population;
+
+        Path dir;
+
+        @Setup(Level.Trial)
+        public void create() {
+            dir = Fixtures.populatedDirectory(population);
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() {
+            Fixtures.delete(dir);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Reading {
+        @Param({"1000", "10000", "100000"})
+        int population;
+
+        Path dir;
+        DataManager dataManager;
+
+        @Setup(Level.Trial)
+        public void open() {
+            dir = Fixtures.populatedDirectory(population);
+            dataManager = DataManager.open(dir, Durability.ASYNC);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            dataManager.close();
+            Fixtures.delete(dir);
+        }
+    }
+
+    @Benchmark
+    public void addStudent(Saving state) {
+        state.dataManager.addStudent(Fixtures.student(state.next.getAndIncrement()));
+    }
+
+    @Benchmark
+    public DataManager open(Loading state) {
+        DataManager dataManager = DataManager.open(state.dir, Durability.ASYNC);
+        dataManager.close();
+        return dataManager;
+    }
+
+    @Benchmark
+    public Snapshot<Student> openAndLoad(Loading state) {
+        DataManager dataManager = DataManager.open(state.dir, Durability.ASYNC);
+        Snapshot<Student> students = dataManager.getStudents();
+        dataManager.close();
+        return students;
+    }
+
+    @Benchmark
+    public Snapshot<Student> getStudents(Reading state) {
+        return state.dataManager.getStudents();
+    }
+}
@@ -0,0 +1,70 @@
+package com.vu.utms.benchmarks;
+
+import com.vu.utms.data.DataManager;
+import com.vu.utms.data.Durability;
+import com.vu.utms.data.EntityQuery;
+import com.vu.utms.data.IndexedField;
+import com.vu.utms.models.Student;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of finding the students of one course and year, a few percent of the
+ * population, through the secondary indexes and by filtering the whole list.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+    private static final String[] COURSES = {
+        "Computer Science", "Information Technology", "Software Engineering", "Business Administration",
+        "Accounting", "Law", "Nursing", "Journalism", "Architecture", "Education"
+    };
+
+    @Param({"10000", "100000"})
+    int population;
+
+    Path dir;
+    DataManager dataManager;
+    final EntityQuery<Student> query =
+            EntityQuery.where(IndexedField.STUDENT_COURSE, "Law").and(IndexedField.STUDENT_YEAR, 3);
+
+    @Setup(Level.Trial)
+    public void open() {
+        dir = Fixtures.tempDirectory();
+        dataManager = DataManager.open(dir, Durability.ASYNC);
+        List<Student> students = new ArrayList<>(population);
+        for (int i = 0; i < population; i++) {
+            students.add(new Student("u" + i, "Student " + i, "s" + i + "@vu.ac.ug", "0700" + i, "secret",
+                                     "S" + i, COURSES[i % COURSES.length], 1 + i / COURSES.length % 4));
+        }
+        dataManager.addStudents(students);
+        // Build the index before measuring
+        dataManager.findStudents(query);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        dataManager.close();
+        Fixtures.delete(dir);
+    }
+
+    @Benchmark
+    public List<Student> indexed() {
+        return dataManager.findStudents(query);
+    }
+
+    @Benchmark
+    public List<Student> scan() {
+        return dataManager.streamStudents()
+                .filter(student -> student.getCourse().equals("Law") && student.getYear() == 3)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,44 @@
+package com.vu.utms.benchmarks;
+
+import com.vu.utms.models.Bus;
+import com.vu.utms.models.Vehicle;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of the per-vehicle hot paths: a position report, and rendering the
+ * vehicle summary shown by "View All Vehicles".
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VehicleBenchmark {
+    Vehicle vehicle;
+    long timestamp;
+
+    @Setup(Level.Trial)
+    public void create() {
+        vehicle = new Bus("b1", "UAX 123B", "Isuzu NQR", 33, "R7", true, false, 20);
+        vehicle.updateLocation(0.3476, 32.5825, 1);
+        timestamp = 1;
+    }
+
+    @Benchmark
+    public boolean updateLocation() {
+        timestamp++;
+        return vehicle.updateLocation(0.3476 + (timestamp & 1023) * 1e-5, 32.5825, timestamp);
+    }
+
+    @Benchmark
+    public String getVehicleInfo() {
+        return vehicle.getVehicleInfo();
+    }
+
+    @Benchmark
+    public String getCurrentLocation() {
+        return vehicle.getCurrentLocation();
+    }
+}
@@ -0,0 +1,195 @@
+package com.vu.utms.loadgen;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * CampusDay is the timetable of every operation of one simulated day, from 06:00
+ * to 22:00, generated from a {@link Workload} and its seed so every run replays
+ * exactly the same day.
+ *
+ * Registrations and transport requests arrive at random within each hour, with
+ * the number per hour following a time-of-day curve: registrations peak in the
+ * morning, requests before the first lectures, at lunch and at the end of the
+ * day. Vehicles report their position at a steady interval, slightly jittered.
+ * No request is made by a user before they have registered.
+ *
+ * Operations are held in parallel arrays sorted by time, a few bytes each, so a
+ * day of millions of operations costs little memory next to the system under test.
+ */
+final class CampusDay {
+    static final int FIRST_HOUR = 6;
+    static final int HOURS = 16;
+    static final long HOUR_MILLIS = 3_600_000;
+    static final long LENGTH_MILLIS = HOURS * HOUR_MILLIS;
+
+    static final String[] DESTINATIONS = {
+            "Main Campus", "Kampala CBD", "Kyambogo Hostels", "Ntinda Annex", "Mulago Hospital",
+            "Entebbe Airport", "Nakawa Library", "Sports Grounds", "Wandegeya", "Makerere Research Farm"
+    };
+
+    // Relative number of operations starting in each hour from 06:00
+    private static final double[] REGISTRATION_CURVE = {
+            0.2, 1.0, 3.0, 3.0, 2.5, 1.5, 1.5, 1.5, 1.0, 1.0, 0.8, 0.5, 0.3, 0.2, 0.1, 0.1
+    };
+    private static final double[] REQUEST_CURVE = {
+            0.5, 2.5, 3.0, 1.5, 1.0, 1.0, 2.0, 2.0, 1.0, 1.0, 2.5, 3.0, 1.5, 1.0, 0.6, 0.4
+    };
+    // Earliest a new user requests transport after registering
+    private static final long REQUEST_LEAD_MILLIS = 60_000;
+
+    private final long[] times;
+    private final Operation[] operations;
+    private final int[] subjects;
+    private final int[] arguments;
+
+    /**
+     * Build the timetable of a workload
+     * @param workload The workload
+     */
+    CampusDay(Workload workload) {
+        SplittableRandom random = new SplittableRandom(workload.seed);
+        int users = workload.users();
+        int newcomers = users - (int) Math.round(users * workload.returning);
+        long requests = Math.round(users * workload.requestsPerUser);
+        long pingsPerVehicle = LENGTH_MILLIS / (workload.pingSeconds * 1000L);
+        long total = newcomers + requests + workload.vehicles * pingsPerVehicle;
+        if (total >= Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Workload has too many operations for one day: " + total);
+        }
+        int size = (int) total;
+
+        long[] unsortedTimes = new long[size];
+        Operation[] unsortedOperations = new Operation[size];
+        int[] unsortedSubjects = new int[size];
+        int[] unsortedArguments = new int[size];
+        int n = 0;
+
+        // The last users are the newcomers; returning users are registered before the day
+        long[] registeredAt = new long[users];
+        long[] registrationTimes = arrivals(newcomers, REGISTRATION_CURVE, random);
+        for (int i = 0; i < newcomers; i++) {
+            int user = users - newcomers + i;
+            registeredAt[user] = registrationTimes[i];
+            unsortedTimes[n] = registrationTimes[i];
+            unsortedOperations[n] = Operation.REGISTER;
+            unsortedSubjects[n++] = user;
+        }
+
+        for (long requestTime : arrivals(requests, REQUEST_CURVE, random)) {
+            int user = random.nextInt(users);
+            long time = requestTime;
+            if (time < registeredAt[user] + REQUEST_LEAD_MILLIS) {
+                // Too early for this newcomer; they ask a little after registering instead
+                time = Math.min(registeredAt[user] + REQUEST_LEAD_MILLIS + random.nextLong(HOUR_MILLIS),
+                                LENGTH_MILLIS - 1);
+            }
+            unsortedTimes[n] = time;
+            unsortedOperations[n] = Operation.REQUEST;
+            unsortedSubjects[n] = user;
+            // Destination in the low byte, minutes until the trip above it
+            unsortedArguments[n++] = random.nextInt(DESTINATIONS.length) | (30 + random.nextInt(120)) << 8;
+        }
+
+        long interval = workload.pingSeconds * 1000L;
+        for (int vehicle = 0; vehicle < workload.vehicles; vehicle++) {
+            long phase = random.nextLong(interval);
+            for (long p = 0; p < pingsPerVehicle; p++) {
+                long jitter = random.nextLong(interval / 5 + 1) - interval / 10;
+                unsortedTimes[n] = Math.min(Math.max(phase + p * interval + jitter, 0), LENGTH_MILLIS - 1);
+                unsortedOperations[n] = Operation.PING;
+                unsortedSubjects[n++] = vehicle;
+            }
+        }
+
+        // Sort by time, keeping the generation order among equal times
+        long[] order = new long[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = unsortedTimes[i] << 31 | i;
+        }
+        Arrays.sort(order);
+        times = new long[size];
+        operations = new Operation[size];
+        subjects = new int[size];
+        arguments = new int[size];
+        for (int i = 0; i < size; i++) {
+            int from = (int) (order[i] & Integer.MAX_VALUE);
+            times[i] = unsortedTimes[from];
+            operations[i] = unsortedOperations[from];
+            subjects[i] = unsortedSubjects[from];
+            arguments[i] = unsortedArguments[from];
+        }
+    }
+
+    /**
+     * Spread arrivals over the day following a curve: each hour gets its share of
+     * the total, placed uniformly at random within the hour
+     */
+    private static long[] arrivals(long count, double[] curve, SplittableRandom random) {
+        double weight = 0;
+        for (double w : curve) {
+            weight += w;
+        }
+        long[] result = new long[(int) count];
+        int n = 0;
+        double cumulative = 0;
+        for (int hour = 0; hour < HOURS; hour++) {
+            cumulative += curve[hour];
+            // Rounding the running total keeps the hourly counts summing to the total
+            int end = hour == HOURS - 1 ? result.length : (int) Math.round(count * cumulative / weight);
+            while (n < end) {
+                result[n++] = hour * HOUR_MILLIS + random.nextLong(HOUR_MILLIS);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Number of operations in the day
+     */
+    int size() {
+        return times.length;
+    }
+
+    /**
+     * @return Simulated time of an operation, in milliseconds since 06:00
+     */
+    long timeOf(int i) {
+        return times[i];
+    }
+
+    Operation operationOf(int i) {
+        return operations[i];
+    }
+
+    /**
+     * @return The user index of a registration or request, or the vehicle index of a ping
+     */
+    int subjectOf(int i) {
+        return subjects[i];
+    }
+
+    String destinationOf(int i) {
+        return DESTINATIONS[arguments[i] & 0xFF];
+    }
+
+    /**
+     * @return Minutes between making a request and the trip it asks for
+     */
+    int leadMinutesOf(int i) {
+        return arguments[i] >>> 8;
+    }
+
+    /**
+     * @return Number of operations of a kind
+     */
+    int count(Operation operation) {
+        int count = 0;
+        for (Operation o : operations) {
+            if (o == operation) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
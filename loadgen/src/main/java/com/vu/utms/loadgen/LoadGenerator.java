@@ -0,0 +1,334 @@
+package com.vu.utms.loadgen;
+
+import com.vu.utms.data.DataManager;
+import com.vu.utms.dispatch.DispatchEngine;
+import com.vu.utms.dispatch.RequestDispatcher;
+import com.vu.utms.models.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * LoadGenerator replays a simulated campus day against the real UTMS classes in
+ * this process, with no network in between, and reports throughput, tail
+ * latency and heap usage.
+ *
+ * Returning users and the fleet are added before the day starts. Worker threads
+ * then take the operations of the {@link CampusDay} in time order: newcomers
+ * register through {@link DataManager}, users request transport through
+ * {@link DataManager#requestTransport}, which calls
+ * {@link User#requestTransport}, and vehicles report positions through
+ * {@link Vehicle#updateLocation(double, double, long)}. With a speedup, each
+ * operation waits for its simulated time, so the load is offered at the rate of
+ * the day no matter how fast UTMS answers; with --speedup 0 operations run back
+ * to back to find the highest throughput.
+ *
+ * The day is generated from a seed and each run starts from an empty data
+ * directory, so repeated runs are comparable. Use --runs to repeat the day in one
+ * JVM and discard the first, JIT warm-up, run.
+ *
+ * Usage: LoadGenerator [options]; see {@link Workload#USAGE}
+ */
+public class LoadGenerator {
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final int BATCH_SIZE = 10_000;
+    private static final long HEAP_SAMPLE_MILLIS = 20;
+    // Vehicles drive loops of about 2 km around the campus
+    private static final double CAMPUS_LATITUDE = 0.3476;
+    private static final double CAMPUS_LONGITUDE = 32.5825;
+    private static final double LOOP_DEGREES = 0.01;
+    private static final long LOOP_MILLIS = 30 * 60_000;
+
+    private final Workload workload;
+    private final CampusDay day;
+    private final LocalDateTime dayStart;
+    private final long dayStartEpochMillis;
+
+    private DataManager dataManager;
+    private Vehicle[] fleet;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final AtomicBoolean errorReported = new AtomicBoolean();
+
+    /**
+     * Main method to run the simulation
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length == 1 && (args[0].equals("--help") || args[0].equals("-h"))) {
+            System.out.println(Workload.USAGE);
+            return;
+        }
+        Workload workload;
+        try {
+            workload = Workload.parse(args);
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException | DateTimeParseException e) {
+            System.out.println("Invalid arguments: " + e.getMessage());
+            System.out.println(Workload.USAGE);
+            return;
+        }
+
+        System.out.println("Workload: " + workload);
+        long started = System.nanoTime();
+        CampusDay day = new CampusDay(workload);
+        System.out.printf("Generated %,d operations in %d ms: %,d registrations, %,d requests, %,d pings%n",
+                          day.size(), (System.nanoTime() - started) / 1_000_000, day.count(Operation.REGISTER),
+                          day.count(Operation.REQUEST), day.count(Operation.PING));
+
+        LoadGenerator generator = new LoadGenerator(workload, day);
+        for (int run = 1; run <= workload.runs; run++) {
+            System.out.println();
+            System.out.println("Run " + run + " of " + workload.runs);
+            generator.run(run).print(System.out, workload);
+        }
+    }
+
+    LoadGenerator(Workload workload, CampusDay day) {
+        this.workload = workload;
+        this.day = day;
+        this.dayStart = workload.date.atTime(CampusDay.FIRST_HOUR, 0);
+        this.dayStartEpochMillis = dayStart.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Replay the day once against a fresh data directory
+     * @param run Run number, naming the data directory when one is given
+     * @return What the run measured
+     */
+    LoadReport run(int run) {
+        Path dir = workload.dir != null ? workload.dir.resolve("run-" + run) : temporaryDirectory();
+        dataManager = DataManager.open(dir, workload.durability);
+        cursor.set(0);
+        long started = System.nanoTime();
+        populate();
+        System.out.printf("Added %,d returning users and %,d vehicles in %d ms%n",
+                          workload.users() - day.count(Operation.REGISTER), fleet.length,
+                          (System.nanoTime() - started) / 1_000_000);
+
+        RequestDispatcher dispatcher = null;
+        if (workload.dispatch) {
+            dispatcher = new RequestDispatcher(dataManager.getRequestScheduler(),
+                    new DispatchEngine(dataManager::getVehicles), dataManager::updateRequestStatus);
+            dispatcher.start();
+        }
+
+        LoadReport report = new LoadReport();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        AtomicLong heapPeak = new AtomicLong(heapBefore);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread sampler = new Thread(() -> {
+            while (running.get()) {
+                heapPeak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                LockSupport.parkNanos(HEAP_SAMPLE_MILLIS * 1_000_000);
+            }
+        }, "utms-loadgen-heap");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long start = System.nanoTime();
+        Thread[] workers = new Thread[workload.threads];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(() -> work(start, report), "utms-loadgen-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        report.setElapsedNanos(System.nanoTime() - start);
+        running.set(false);
+
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+        System.gc();
+        report.setHeap(heapBefore, heapPeak.get(), memory.getHeapMemoryUsage().getUsed());
+        report.setGc(gcCount() - gcCount, gcMillis() - gcMillis);
+
+        dataManager.close();
+        dataManager = null;
+        if (workload.dir == null) {
+            delete(dir);
+        }
+        return report;
+    }
+
+    /**
+     * Add the returning users and the fleet, in batches
+     */
+    private void populate() {
+        int newcomers = day.count(Operation.REGISTER);
+        List<Student> students = new ArrayList<>();
+        List<Lecturer> lecturers = new ArrayList<>();
+        for (int user = 0; user < workload.users() - newcomers; user++) {
+            User created = newUser(user);
+            if (created instanceof Lecturer) {
+                lecturers.add((Lecturer) created);
+            } else {
+                students.add((Student) created);
+            }
+            if (students.size() == BATCH_SIZE) {
+                dataManager.addStudents(students);
+                students = new ArrayList<>();
+            }
+            if (lecturers.size() == BATCH_SIZE) {
+                dataManager.addLecturers(lecturers);
+                lecturers = new ArrayList<>();
+            }
+        }
+        dataManager.addStudents(students);
+        dataManager.addLecturers(lecturers);
+
+        fleet = new Vehicle[workload.vehicles];
+        for (int v = 0; v < fleet.length; v++) {
+            String id = "V" + v;
+            String registration = String.format("UBF %03d%c", v % 1000, (char) ('A' + v / 1000 % 26));
+            // One van for every three buses
+            fleet[v] = v % 4 == 3
+                    ? new Van(id, registration, "Toyota Hiace", 14, true, 500, "Staff", true)
+                    : new Bus(id, registration, "Toyota Coaster", 30, "R" + (v % 12), v % 2 == 0, false, 10);
+        }
+        dataManager.addVehicles(List.of(fleet));
+    }
+
+    private User newUser(int user) {
+        String id = "u" + user;
+        if (workload.isLecturer(user)) {
+            return new Lecturer(id, "Lecturer " + user, "l" + user + "@vu.ac.ug", "0770" + user, "secret",
+                                "L" + user, "Computing", "Lecturer", user % 3 != 0);
+        }
+        return new Student(id, "Student " + user, "s" + user + "@vu.ac.ug", "0700" + user, "secret",
+                           "S" + user, "Computer Science", 1 + user % 4);
+    }
+
+    /**
+     * Take operations in time order until the day is over
+     */
+    private void work(long start, LoadReport report) {
+        long allocatedBefore = allocatedBytes();
+        int i;
+        while ((i = cursor.getAndIncrement()) < day.size()) {
+            long due;
+            if (workload.isPaced()) {
+                due = start + (long) (day.timeOf(i) * 1e6 / workload.speedup);
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            } else {
+                due = System.nanoTime();
+            }
+            long begin = System.nanoTime();
+            boolean succeeded = execute(i);
+            long finished = System.nanoTime();
+            report.record(day.operationOf(i), (int) (day.timeOf(i) / CampusDay.HOUR_MILLIS),
+                          finished - due, finished - begin, succeeded);
+        }
+        long allocatedAfter = allocatedBytes();
+        if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+            report.addAllocatedBytes(allocatedAfter - allocatedBefore);
+        }
+    }
+
+    /**
+     * Perform one operation of the day
+     * @return boolean indicating if UTMS accepted it
+     */
+    private boolean execute(int i) {
+        Operation operation = day.operationOf(i);
+        int subject = day.subjectOf(i);
+        try {
+            switch (operation) {
+                case REGISTER:
+                    User user = newUser(subject);
+                    if (user instanceof Lecturer) {
+                        dataManager.addLecturer((Lecturer) user);
+                    } else {
+                        dataManager.addStudent((Student) user);
+                    }
+                    return true;
+                case REQUEST:
+                    String dateTime = dayStart.plusMinutes(day.timeOf(i) / 60_000 + day.leadMinutesOf(i))
+                            .format(DATE_TIME);
+                    return dataManager.requestTransport("u" + subject, day.destinationOf(i), dateTime) != null;
+                case PING:
+                    long time = day.timeOf(i);
+                    // Each vehicle drives the same loop, starting at its own point of it
+                    double angle = 2 * Math.PI * ((double) (time % LOOP_MILLIS) / LOOP_MILLIS + subject * 0.618);
+                    return fleet[subject].updateLocation(CAMPUS_LATITUDE + LOOP_DEGREES * Math.sin(angle),
+                                                         CAMPUS_LONGITUDE + LOOP_DEGREES * Math.cos(angle),
+                                                         dayStartEpochMillis + time);
+                default:
+                    throw new IllegalStateException("Unknown operation " + operation);
+            }
+        } catch (RuntimeException e) {
+            if (errorReported.compareAndSet(false, true)) {
+                System.err.println("Error in " + operation.getLabel() + " (further errors are only counted): " + e);
+            }
+            return false;
+        }
+    }
+
+    private static long allocatedBytes() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.isThreadAllocatedMemoryEnabled() ? threads.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gc.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(gc.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+
+    private static Path temporaryDirectory() {
+        try {
+            return Files.createTempDirectory("utms-loadgen");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void delete(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("Error deleting " + dir + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.vu.utms.loadgen;
+
+import com.vu.utms.metrics.Histogram;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LoadReport collects what one run of a campus day measured and prints it.
+ *
+ * Latency is measured from the moment an operation was due to the moment it
+ * finished, so time spent waiting for a free thread while the system falls
+ * behind counts against it, as it would for a real user. Service time is the
+ * part spent inside UTMS. Both are kept per operation kind, and latency also
+ * per simulated hour so the morning and evening bursts can be compared.
+ * Operations UTMS turned down, such as requests from unknown users or pings
+ * older than the vehicle's last position, are counted as rejected.
+ */
+final class LoadReport {
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Histogram[] latency = new Histogram[OPERATIONS.length];
+    private final Histogram[] service = new Histogram[OPERATIONS.length];
+    private final LongAdder[] rejected = new LongAdder[OPERATIONS.length];
+    private final Histogram[] hourly = new Histogram[CampusDay.HOURS];
+    private final AtomicLongArray[] hourlyCounts = new AtomicLongArray[OPERATIONS.length];
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    private long elapsedNanos;
+    private long heapBeforeBytes;
+    private long heapPeakBytes;
+    private long heapAfterBytes;
+    private long gcCount;
+    private long gcMillis;
+
+    LoadReport() {
+        for (int o = 0; o < OPERATIONS.length; o++) {
+            latency[o] = new Histogram();
+            service[o] = new Histogram();
+            rejected[o] = new LongAdder();
+            hourlyCounts[o] = new AtomicLongArray(CampusDay.HOURS);
+        }
+        for (int h = 0; h < hourly.length; h++) {
+            hourly[h] = new Histogram();
+        }
+    }
+
+    /**
+     * Record one finished operation
+     * @param operation What it was
+     * @param hour Simulated hour it was due in, counted from 06:00
+     * @param latencyNanos Time from due to finished
+     * @param serviceNanos Time from started to finished
+     * @param accepted Whether UTMS accepted it
+     */
+    void record(Operation operation, int hour, long latencyNanos, long serviceNanos, boolean accepted) {
+        latency[operation.ordinal()].record(latencyNanos);
+        service[operation.ordinal()].record(serviceNanos);
+        hourly[hour].record(latencyNanos);
+        hourlyCounts[operation.ordinal()].incrementAndGet(hour);
+        if (!accepted) {
+            rejected[operation.ordinal()].increment();
+        }
+    }
+
+    void addAllocatedBytes(long bytes) {
+        allocatedBytes.add(bytes);
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @param before Heap in use after a full GC before the day started
+     * @param peak Most heap in use seen during the day
+     * @param after Heap in use after a full GC once the day ended
+     */
+    void setHeap(long before, long peak, long after) {
+        this.heapBeforeBytes = before;
+        this.heapPeakBytes = peak;
+        this.heapAfterBytes = after;
+    }
+
+    void setGc(long count, long millis) {
+        this.gcCount = count;
+        this.gcMillis = millis;
+    }
+
+    /**
+     * @return Number of operations recorded
+     */
+    long getOperations() {
+        long total = 0;
+        for (Histogram h : latency) {
+            total += h.getCount();
+        }
+        return total;
+    }
+
+    /**
+     * Print the report
+     * @param out Where to print
+     * @param workload The workload that was run
+     */
+    void print(PrintStream out, Workload workload) {
+        double seconds = elapsedNanos / 1e9;
+        long operations = getOperations();
+        out.printf("Finished %,d operations in %.2f s: %,.0f ops/s", operations, seconds, operations / seconds);
+        if (workload.isPaced()) {
+            double offered = operations / (CampusDay.LENGTH_MILLIS / 1000.0 / workload.speedup);
+            out.printf(" (offered %,.0f ops/s)", offered);
+        }
+        out.println();
+
+        out.printf("%-9s %10s %9s %10s %10s %10s %10s %10s %12s%n", "", "count", "rejected",
+                   "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "service p99");
+        for (Operation operation : OPERATIONS) {
+            Histogram h = latency[operation.ordinal()];
+            if (h.getCount() == 0) {
+                continue;
+            }
+            out.printf("%-9s %,10d %,9d", operation.getLabel(), h.getCount(), rejected[operation.ordinal()].sum());
+            for (double percentile : PERCENTILES) {
+                out.printf(" %10.3f", h.getValueAtPercentile(percentile) / 1e6);
+            }
+            out.printf(" %10.3f %12.3f%n", h.getMax() / 1e6,
+                       service[operation.ordinal()].getValueAtPercentile(99) / 1e6);
+        }
+
+        if (workload.isPaced()) {
+            out.printf("%-9s %10s", "By hour", "ops/s");
+            for (Operation operation : OPERATIONS) {
+                out.printf(" %10s", operation.getLabel() + "/s");
+            }
+            out.printf(" %10s %10s %10s%n", "p50 ms", "p99 ms", "max ms");
+            double hourSeconds = CampusDay.HOUR_MILLIS / 1000.0 / workload.speedup;
+            for (int hour = 0; hour < hourly.length; hour++) {
+                Histogram h = hourly[hour];
+                out.printf("  %02d:00   %,10.0f", CampusDay.FIRST_HOUR + hour, h.getCount() / hourSeconds);
+                for (Operation operation : OPERATIONS) {
+                    out.printf(" %,10.0f", hourlyCounts[operation.ordinal()].get(hour) / hourSeconds);
+                }
+                out.printf(" %10.3f %10.3f %10.3f%n", h.getValueAtPercentile(50) / 1e6,
+                           h.getValueAtPercentile(99) / 1e6, h.getMax() / 1e6);
+            }
+        }
+
+        out.printf("Heap: %s live before, %s peak, %s live after; %d GCs taking %d ms; %s allocated (%,d bytes/op)%n",
+                   megabytes(heapBeforeBytes), megabytes(heapPeakBytes), megabytes(heapAfterBytes),
+                   gcCount, gcMillis, megabytes(allocatedBytes.sum()),
+                   operations == 0 ? 0 : allocatedBytes.sum() / operations);
+    }
+
+    private static String megabytes(long bytes) {
+        return bytes < 0 ? "n/a" : String.format("%,.1f MB", bytes / 1048576.0);
+    }
+}
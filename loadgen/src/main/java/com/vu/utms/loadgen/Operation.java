@@ -0,0 +1,23 @@
+package com.vu.utms.loadgen;
+
+/**
+ * The kinds of operation a simulated campus day is made of.
+ */
+enum Operation {
+    /** A new student or lecturer registers */
+    REGISTER("register"),
+    /** A user requests transport */
+    REQUEST("request"),
+    /** A vehicle reports its GPS position */
+    PING("ping");
+
+    private final String label;
+
+    Operation(String label) {
+        this.label = label;
+    }
+
+    String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,148 @@
+package com.vu.utms.loadgen;
+
+import com.vu.utms.data.Durability;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+
+/**
+ * Workload describes one simulated campus day: who uses the system, how much,
+ * and how fast the day is replayed.
+ *
+ * The defaults model the first day of term at a mid-sized campus: 20,000
+ * students and 800 lecturers, a quarter of whom register that morning, each
+ * making one or two transport requests, while 80 vehicles report their position
+ * every 15 seconds. The 16 hour day is replayed 1200 times faster than real time.
+ */
+final class Workload {
+    static final String USAGE = "Usage: LoadGenerator [--students N] [--lecturers N] [--vehicles N]\n"
+            + "         [--returning FRACTION] [--requests-per-user R] [--ping-seconds S]\n"
+            + "         [--speedup X | --speedup 0 for as fast as possible] [--threads N]\n"
+            + "         [--seed N] [--date yyyy-MM-dd] [--durability async|flush|fsync]\n"
+            + "         [--dispatch] [--runs N] [--dir PATH]";
+
+    int students = 20_000;
+    int lecturers = 800;
+    int vehicles = 80;
+    // Share of users registered before the day starts; the rest register during it
+    double returning = 0.75;
+    double requestsPerUser = 1.5;
+    int pingSeconds = 15;
+    // Simulated seconds per real second; 0 runs every operation as soon as a thread is free
+    double speedup = 1200;
+    int threads = 32;
+    long seed = 42;
+    LocalDate date = LocalDate.of(2026, 8, 17);
+    Durability durability = Durability.FLUSH;
+    boolean dispatch;
+    int runs = 1;
+    // Where to keep the data; null for a temporary directory deleted after each run
+    Path dir;
+
+    /**
+     * Read a workload from command line options
+     * @param args Command line arguments
+     * @return The workload
+     * @throws IllegalArgumentException if an option is unknown or out of range
+     * @throws ArrayIndexOutOfBoundsException if an option lacks its value
+     */
+    static Workload parse(String[] args) {
+        Workload workload = new Workload();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--students":
+                    workload.students = Integer.parseInt(args[++i]);
+                    break;
+                case "--lecturers":
+                    workload.lecturers = Integer.parseInt(args[++i]);
+                    break;
+                case "--vehicles":
+                    workload.vehicles = Integer.parseInt(args[++i]);
+                    break;
+                case "--returning":
+                    workload.returning = Double.parseDouble(args[++i]);
+                    break;
+                case "--requests-per-user":
+                    workload.requestsPerUser = Double.parseDouble(args[++i]);
+                    break;
+                case "--ping-seconds":
+                    workload.pingSeconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--speedup":
+                    workload.speedup = Double.parseDouble(args[++i]);
+                    break;
+                case "--threads":
+                    workload.threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    workload.seed = Long.parseLong(args[++i]);
+                    break;
+                case "--date":
+                    workload.date = LocalDate.parse(args[++i]);
+                    break;
+                case "--durability":
+                    workload.durability = Durability.valueOf(args[++i].toUpperCase());
+                    break;
+                case "--dispatch":
+                    workload.dispatch = true;
+                    break;
+                case "--runs":
+                    workload.runs = Integer.parseInt(args[++i]);
+                    break;
+                case "--dir":
+                    workload.dir = Paths.get(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        workload.check();
+        return workload;
+    }
+
+    private void check() {
+        if (students < 0 || lecturers < 0 || students + lecturers == 0) {
+            throw new IllegalArgumentException("Need at least one student or lecturer");
+        }
+        if (vehicles < 0 || pingSeconds <= 0 || threads <= 0 || runs <= 0) {
+            throw new IllegalArgumentException("Vehicles, ping interval, threads and runs must be positive");
+        }
+        if (returning < 0 || returning > 1 || requestsPerUser < 0 || speedup < 0) {
+            throw new IllegalArgumentException("Returning must be within 0..1; rates must not be negative");
+        }
+    }
+
+    /**
+     * @return Number of students and lecturers
+     */
+    int users() {
+        return students + lecturers;
+    }
+
+    /**
+     * Tell lecturers from students. Lecturers are spread evenly over the user
+     * indices, so returning users and newcomers hold the same mix.
+     * @param user User index, from 0 to {@link #users()} - 1
+     * @return boolean indicating if the user is a lecturer
+     */
+    boolean isLecturer(int user) {
+        long users = users();
+        return (user + 1L) * lecturers / users != user * (long) lecturers / users;
+    }
+
+    /**
+     * @return Whether operations are held back until their simulated time
+     */
+    boolean isPaced() {
+        return speedup > 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d students, %d lecturers (%.0f%% returning), %d vehicles; "
+                             + "%.1f requests per user, a ping every %d s; %s, %d threads, %s durability, seed %d",
+                             students, lecturers, returning * 100, vehicles, requestsPerUser, pingSeconds,
+                             isPaced() ? String.format("%.0fx real time", speedup) : "as fast as possible",
+                             threads, durability.name().toLowerCase(), seed);
+    }
+}
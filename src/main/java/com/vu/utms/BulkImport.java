@@ -0,0 +1,73 @@
+package com.vu.utms;
+
+import com.vu.utms.data.BulkImporter;
+import com.vu.utms.data.DataManager;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * BulkImport is a command line tool that loads students, lecturers, transport
+ * officers, buses and vans from CSV or TSV files in one go, for onboarding a new
+ * intake without going through the registration prompts.
+ *
+ * Usage: BulkImport [--batch N] [--workers N] file...
+ */
+public class BulkImport {
+    private static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    /**
+     * Main method to import the given files
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        int batchSize = DEFAULT_BATCH_SIZE;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int first = 0;
+
+        try {
+            while (first < args.length && args[first].startsWith("--")) {
+                switch (args[first]) {
+                    case "--batch":
+                        batchSize = Integer.parseInt(args[++first]);
+                        break;
+                    case "--workers":
+                        workers = Integer.parseInt(args[++first]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[first]);
+                }
+                first++;
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.out.println("Invalid arguments: " + e.getMessage());
+            first = args.length;
+        }
+
+        if (first >= args.length) {
+            System.out.println("Usage: BulkImport [--batch N] [--workers N] file...");
+            return;
+        }
+
+        DataManager dataManager = DataManager.getInstance();
+        BulkImporter importer = new BulkImporter(dataManager, batchSize, workers);
+        for (int i = first; i < args.length; i++) {
+            Path file = Paths.get(args[i]);
+            if (!Files.isReadable(file)) {
+                System.out.println("Cannot read " + file);
+                continue;
+            }
+            try {
+                System.out.println("Importing " + file);
+                System.out.println(importer.importFile(file));
+            } catch (IOException e) {
+                System.out.println("Error importing " + file + ": " + e.getMessage());
+            }
+        }
+        
+        // Fold the imported records into the snapshot files so the next start
+        // does not have to replay them from the logs
+        dataManager.compact();
+    }
+}
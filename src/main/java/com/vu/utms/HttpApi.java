@@ -0,0 +1,75 @@
+package com.vu.utms;
+
+import com.vu.utms.api.ApiServer;
+import com.vu.utms.data.DataManager;
+import com.vu.utms.dispatch.DispatchEngine;
+import com.vu.utms.dispatch.RequestDispatcher;
+import java.io.IOException;
+
+/**
+ * HttpApi is a command line tool that serves UTMS over HTTP so many operators and
+ * clients can use the system at once. With --dispatch, transport requests are also
+ * assigned vehicles in the background as they arrive, most urgent first.
+ *
+ * Usage: HttpApi [--port N] [--dispatch]
+ */
+public class HttpApi {
+    private static final int DEFAULT_PORT = 8080;
+
+    /**
+     * Main method to run the server
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT;
+        boolean dispatch = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--dispatch":
+                        dispatch = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.out.println("Invalid arguments: " + e.getMessage());
+            System.out.println("Usage: HttpApi [--port N] [--dispatch]");
+            return;
+        }
+
+        DataManager dataManager = DataManager.getInstance();
+        dataManager.warmUp();
+        ApiServer server;
+        try {
+            server = new ApiServer(dataManager, port);
+        } catch (IOException e) {
+            System.out.println("Error starting server: " + e.getMessage());
+            return;
+        }
+
+        RequestDispatcher dispatcher = null;
+        if (dispatch) {
+            dispatcher = new RequestDispatcher(dataManager.getRequestScheduler(),
+                    new DispatchEngine(dataManager::getVehicles, dataManager.getSpatialIndex()),
+                    dataManager::updateRequestStatus);
+            dispatcher.start();
+        }
+        RequestDispatcher running = dispatcher;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            if (running != null) {
+                running.close();
+            }
+        }));
+
+        server.start();
+        System.out.println("Serving UTMS on http://localhost:" + server.getPort() + "/"
+                           + (dispatch ? " with background dispatch" : ""));
+    }
+}
@@ -0,0 +1,95 @@
+package com.vu.utms;
+
+import com.vu.utms.data.DataManager;
+import com.vu.utms.models.Vehicle;
+import com.vu.utms.tracking.FleetTracker;
+import com.vu.utms.tracking.TelemetryReplay;
+import com.vu.utms.tracking.UdpTelemetryReceiver;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * TelemetryIngest is a command line tool that feeds GPS position reports into the
+ * registered fleet, either live from vehicle trackers over UDP or from a recorded
+ * CSV file. The last position each batch accepted for a vehicle is saved, so
+ * the fleet keeps it after a restart.
+ *
+ * Usage: TelemetryIngest [--batch N] (--udp PORT | --replay FILE)
+ */
+public class TelemetryIngest {
+    private static final int DEFAULT_BATCH_SIZE = 4096;
+
+    /**
+     * Main method to run the ingest
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        int batchSize = DEFAULT_BATCH_SIZE;
+        Integer port = null;
+        String replayFile = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--batch":
+                        batchSize = Integer.parseInt(args[++i]);
+                        break;
+                    case "--udp":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--replay":
+                        replayFile = args[++i];
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.out.println("Invalid arguments: " + e.getMessage());
+            return;
+        }
+
+        if ((port == null) == (replayFile == null)) {
+            System.out.println("Usage: TelemetryIngest [--batch N] (--udp PORT | --replay FILE)");
+            return;
+        }
+
+        DataManager dataManager = DataManager.getInstance();
+        FleetTracker tracker = new FleetTracker(dataManager.getVehicles());
+        System.out.println("Tracking " + tracker.size() + " vehicles");
+        Consumer<List<Vehicle>> save = moved -> {
+            if (!dataManager.saveVehicleLocations(moved)) {
+                System.err.println("Error saving the positions of " + moved.size() + " vehicles");
+            }
+        };
+
+        try {
+            if (replayFile != null) {
+                TelemetryReplay replay = new TelemetryReplay(tracker, batchSize, save);
+                long start = System.nanoTime();
+                long applied = replay.replay(Paths.get(replayFile));
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                System.out.println("Applied " + applied + " of " + replay.getLineCount() + " lines in " + millis + " ms ("
+                        + replay.getRejectedCount() + " rejected, " + tracker.getOutOfOrderCount() + " out of order)");
+            } else {
+                UdpTelemetryReceiver receiver = new UdpTelemetryReceiver(port, tracker, batchSize, save);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        receiver.close();
+                    } catch (IOException e) {
+                        System.err.println("Error closing receiver: " + e.getMessage());
+                    }
+                    System.out.println("Applied " + tracker.getAppliedCount() + " reports ("
+                            + tracker.getOutOfOrderCount() + " out of order, "
+                            + tracker.getUnknownCount() + " unknown vehicles)");
+                }));
+                System.out.println("Listening for telemetry on UDP port " + port);
+                receiver.run();
+            }
+        } catch (IOException e) {
+            System.out.println("Error ingesting telemetry: " + e.getMessage());
+        }
+    }
+}
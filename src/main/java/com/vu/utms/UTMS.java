@@ -2,14 +2,22 @@ package com.vu.utms;
 
 import com.vu.utms.models.*;
 import com.vu.utms.data.DataManager;
+import com.vu.utms.data.HistoryPage;
+import com.vu.utms.data.HistoryQuery;
+import com.vu.utms.dispatch.DispatchEngine;
+import com.vu.utms.dispatch.RequestDispatcher;
+import com.vu.utms.dispatch.RequestScheduler;
 import java.util.Scanner;
 import java.util.List;
 
 public class UTMS {
     private static Scanner scanner = new Scanner(System.in);
     private static DataManager dataManager = DataManager.getInstance();
+    private static final int REQUESTS_PAGE_SIZE = 20;
 
     public static void main(String[] args) {
+        // Load the data while the menu waits for input
+        dataManager.warmUp();
         
         while (true) {
             System.out.println("\nUniversity Transport Management System");
@@ -137,6 +145,7 @@ public class UTMS {
         System.out.println("\nVehicle Management");
         System.out.println("1. Add New Vehicle");
         System.out.println("2. View All Vehicles");
+        System.out.println("3. Dispatch Transport Requests");
         System.out.print("Enter choice: ");
         
         int choice = scanner.nextInt();
@@ -149,6 +158,9 @@ public class UTMS {
             case 2:
                 viewAllVehicles();
                 break;
+            case 3:
+                dispatchTransportRequests();
+                break;
             default:
                 System.out.println("Invalid choice!");
         }
@@ -218,6 +230,21 @@ public class UTMS {
         }
     }
 
+    private static void dispatchTransportRequests() {
+        RequestScheduler scheduler = dataManager.getRequestScheduler();
+        System.out.println("\nDispatching " + scheduler.size() + " waiting requests, most urgent first...");
+        RequestDispatcher dispatcher = new RequestDispatcher(scheduler,
+                new DispatchEngine(dataManager::getVehicles, dataManager.getSpatialIndex()),
+                dataManager::updateRequestStatus);
+        int assigned = dispatcher.dispatchAll();
+        System.out.println(assigned + " requests were assigned a vehicle; " + scheduler.size() + " are still waiting.");
+        
+        System.out.println("\nWait times by priority:");
+        for (RequestScheduler.ClassMetrics metrics : scheduler.getMetrics()) {
+            System.out.println(metrics);
+        }
+    }
+
     private static void requestTransport() {
         System.out.println("\nTransport Request");
         System.out.print("Enter your ID: ");
@@ -229,44 +256,45 @@ public class UTMS {
         System.out.print("Enter time (HH:MM): ");
         String time = scanner.nextLine();
         
-        // Find user and process request
-        List<Student> students = DataManager.loadStudents();
-        for (Student student : students) {
-            if (student.getStudentId().equals(userId)) {
-                student.requestTransport(destination, date + " " + time);
-                System.out.println("Transport request submitted successfully!");
-                return;
-            }
-        }
-        
-        List<Lecturer> lecturers = DataManager.loadLecturers();
-        for (Lecturer lecturer : lecturers) {
-            if (lecturer.getStaffId().equals(userId)) {
-                lecturer.requestTransport(destination, date + " " + time);
-                System.out.println("Transport request submitted successfully!");
-                return;
-            }
+        // Find user, record the request and log it
+        TransportRequest request = dataManager.requestTransport(userId, destination, date + " " + time);
+        if (request == null) {
+            System.out.println("User not found!");
+            return;
         }
-        
-        System.out.println("User not found!");
+        System.out.println("Transport request " + request.requestId() + " submitted successfully!");
     }
 
     private static void viewTransportRequests() {
         System.out.println("\nTransport Requests:");
-        // Load all users and their transport requests
-        List<Student> students = DataManager.loadStudents();
-        List<Lecturer> lecturers = DataManager.loadLecturers();
+        System.out.print("Filter by user ID (leave blank for all users): ");
+        String userId = scanner.nextLine().trim();
         
-        System.out.println("\nStudent Requests:");
-        for (Student student : students) {
-            System.out.println("Student: " + student.getName() + " (" + student.getStudentId() + ")");
-            System.out.println("History: " + student.viewTransportHistory());
+        // Page through the request index, newest first, instead of loading every history
+        HistoryQuery query = HistoryQuery.all().newestFirst().limit(REQUESTS_PAGE_SIZE);
+        if (!userId.isEmpty()) {
+            query = query.forUser(userId);
         }
-        
-        System.out.println("\nLecturer Requests:");
-        for (Lecturer lecturer : lecturers) {
-            System.out.println("Lecturer: " + lecturer.getName() + " (" + lecturer.getStaffId() + ")");
-            System.out.println(" Transport History: " + lecturer.viewTransportHistory());
+        String cursor = null;
+        while (true) {
+            HistoryPage page = dataManager.queryTransportHistory(query, cursor);
+            if (cursor == null && page.getRequests().isEmpty()) {
+                System.out.println("No transport requests found.");
+                return;
+            }
+            for (TransportRequest request : page.getRequests()) {
+                System.out.printf("%-14s %-16s %-20s %-24s %s%n",
+                                  request.requestId(), request.dateTime(), request.destination(),
+                                  request.priority().getLabel(), request.status().getLabel());
+            }
+            if (!page.hasMore()) {
+                return;
+            }
+            System.out.print("Press Enter for more, or q to return: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                return;
+            }
+            cursor = page.getNextCursor();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,701 @@
+package com.vu.utms.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.vu.utms.data.DataManager;
+import com.vu.utms.data.HistoryPage;
+import com.vu.utms.data.HistoryQuery;
+import com.vu.utms.data.Snapshot;
+import com.vu.utms.metrics.Counter;
+import com.vu.utms.metrics.Metrics;
+import com.vu.utms.metrics.MetricsRegistry;
+import com.vu.utms.metrics.Timer;
+import com.vu.utms.models.*;
+import com.vu.utms.tracking.FleetTracker;
+import com.vu.utms.tracking.SpatialIndex;
+import com.vu.utms.tracking.VehicleFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ApiServer exposes registration, vehicle management, transport requests and
+ * location updates over HTTP with JSON bodies.
+ *
+ * Each exchange runs on its own virtual thread, so a client blocked on a slow
+ * network or a durable log write holds no platform thread and thousands of
+ * clients can be served at once. All state lives in {@link DataManager}; the
+ * server only adds a {@link FleetTracker} so location updates find their vehicle
+ * by hash lookup and vehicles are listed by status from its per-status bitsets.
+ * The tracker is synced with the vehicle list whenever the list changes, e.g.
+ * because another process added vehicles, and reported positions are saved.
+ *
+ * <pre>
+ * POST /users                      register a student, lecturer or officer
+ * GET  /users/{id}                 look a user up by any of their IDs
+ * GET  /vehicles                   list vehicles, optionally ?status=Available
+ * GET  /vehicles?near=lat,lon      vehicles nearest a point, nearest first; ?radius
+ *                                  in meters or limit, type, capacity, available=true
+ * POST /vehicles                   add a bus or van
+ * GET  /vehicles/{id}              look a vehicle up
+ * PUT  /vehicles/{id}/location     report a position
+ * POST /requests                   request transport
+ * GET  /requests                   page through requests; ?user, from, to,
+ *                                  destination, status, limit, order=newest, cursor
+ * GET  /requests/{id}              look a request up
+ * PUT  /requests/{id}/status       move a request to a new status
+ * GET  /metrics                    every metric in the Prometheus text format
+ * </pre>
+ *
+ * Each route is timed and its responses counted by status class as
+ * utms_http_request_seconds and utms_http_responses_total.
+ */
+public class ApiServer {
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int DEFAULT_BACKLOG = 4096;
+    // Marks vehicle IDs in the registering map, apart from user IDs
+    private static final String VEHICLE_ID_PREFIX = "vehicle:";
+    // Vehicles listed near a point when no radius or limit is given
+    private static final int DEFAULT_NEARBY = 10;
+
+    private final DataManager dataManager;
+    private final FleetTracker tracker;
+    // Version of the vehicle list the tracker was last synced with
+    private volatile long trackedVersion;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // User, role and vehicle IDs being registered right now, so two clients cannot register the same ID
+    private final Map<String, Boolean> registering = new ConcurrentHashMap<>();
+
+    /**
+     * Failure reported to the client with an HTTP status
+     */
+    private static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Constructor for creating a server bound to a port
+     * @param dataManager The data the server exposes
+     * @param port Port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public ApiServer(DataManager dataManager, int port) throws IOException {
+        this.dataManager = dataManager;
+        Snapshot<Vehicle> fleet = dataManager.getVehicles();
+        this.tracker = new FleetTracker(fleet);
+        this.trackedVersion = fleet.getVersion();
+        this.server = HttpServer.create(new InetSocketAddress(port), DEFAULT_BACKLOG);
+        server.setExecutor(executor);
+        route("users", this::users);
+        route("vehicles", this::vehicles);
+        route("requests", this::requests);
+        server.createContext("/metrics", this::metrics);
+    }
+
+    private void route(String name, Route route) {
+        MetricsRegistry metrics = Metrics.registry();
+        Timer timer = metrics.timer("utms_http_request_seconds", "Time taken to answer API requests",
+                                    "route", name);
+        Counter[] responses = new Counter[5];
+        for (int c = 0; c < responses.length; c++) {
+            responses[c] = metrics.counter("utms_http_responses_total", "API responses by status class",
+                                           "route", name, "status", (c + 1) + "xx");
+        }
+        server.createContext("/" + name, exchange -> {
+            long start = timer.start();
+            int status = handle(exchange, route);
+            timer.stop(start);
+            responses[Math.min(Math.max(status / 100, 1), 5) - 1].increment();
+        });
+    }
+
+    /**
+     * Start accepting requests
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stop accepting requests and wait up to a delay for those in progress
+     * @param delaySeconds Longest time to wait
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * @return The port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * One parsed exchange
+     */
+    private static final class Call {
+        final String method;
+        final List<String> path = new ArrayList<>();
+        final Map<String, String> query = new HashMap<>();
+        final HttpExchange exchange;
+
+        Call(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.method = exchange.getRequestMethod();
+            for (String segment : exchange.getRequestURI().getRawPath().split("/")) {
+                if (!segment.isEmpty()) {
+                    path.add(URLDecoder.decode(segment, StandardCharsets.UTF_8));
+                }
+            }
+            String raw = exchange.getRequestURI().getRawQuery();
+            if (raw != null) {
+                for (String pair : raw.split("&")) {
+                    int eq = pair.indexOf('=');
+                    if (eq > 0) {
+                        query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                                  URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                    }
+                }
+            }
+        }
+
+        boolean is(String method, int segments) {
+            return this.method.equals(method) && path.size() == segments;
+        }
+
+        Map<String, Object> body() throws IOException {
+            byte[] bytes;
+            try (InputStream in = exchange.getRequestBody()) {
+                bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            }
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new ApiException(413, "Request body exceeds " + MAX_BODY_BYTES + " bytes");
+            }
+            Object parsed = Json.parse(new String(bytes, StandardCharsets.UTF_8));
+            if (!(parsed instanceof Map)) {
+                throw new ApiException(400, "Request body must be a JSON object");
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> fields = (Map<String, Object>) parsed;
+            return fields;
+        }
+    }
+
+    /**
+     * Computes the response to one call
+     */
+    private interface Route {
+        Response apply(Call call) throws IOException;
+    }
+
+    private static final class Response {
+        final int status;
+        final Object body;
+
+        Response(int status, Object body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Answer one exchange
+     * @return The HTTP status sent
+     */
+    private int handle(HttpExchange exchange, Route route) {
+        Response response;
+        try {
+            response = route.apply(new Call(exchange));
+        } catch (ApiException e) {
+            response = error(e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            response = error(400, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error handling " + exchange.getRequestMethod() + " "
+                               + exchange.getRequestURI() + ": " + e);
+            response = error(500, "Internal error");
+        }
+        try (OutputStream out = exchange.getResponseBody()) {
+            byte[] bytes = Json.write(response.body).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(response.status, bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            // The client went away; nothing left to tell it
+        } finally {
+            exchange.close();
+        }
+        return response.status;
+    }
+
+    private void metrics(HttpExchange exchange) {
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] bytes = Metrics.registry().toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length == 0 ? -1 : bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            // The client went away; nothing left to tell it
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Response error(int status, String message) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", message);
+        return new Response(status, body);
+    }
+
+    private static ApiException notFound() {
+        return new ApiException(404, "Not found");
+    }
+
+    // Users
+
+    private Response users(Call call) throws IOException {
+        if (call.is("POST", 1)) {
+            return register(call.body());
+        }
+        if (call.is("GET", 2)) {
+            User user = dataManager.findUser(call.path.get(1));
+            if (user == null) {
+                throw new ApiException(404, "No user " + call.path.get(1));
+            }
+            return new Response(200, toJson(user));
+        }
+        throw notFound();
+    }
+
+    private Response register(Map<String, Object> body) {
+        String type = text(body, "type", null);
+        String userId = text(body, "userId", null);
+        String name = text(body, "name", null);
+        String email = text(body, "email", null);
+        String phone = text(body, "phoneNumber", "");
+        String password = text(body, "password", null);
+        String roleField;
+        switch (type) {
+            case "student":
+                roleField = "studentId";
+                break;
+            case "lecturer":
+                roleField = "staffId";
+                break;
+            case "officer":
+                roleField = "officerId";
+                break;
+            default:
+                throw new ApiException(400, "type must be student, lecturer or officer");
+        }
+        // User IDs and role IDs share one namespace in the directory, so both must be free
+        String roleId = text(body, roleField, userId);
+        List<String> ids = roleId.equals(userId) ? List.of(userId) : List.of(userId, roleId);
+
+        List<String> reserved = new ArrayList<>();
+        try {
+            for (String id : ids) {
+                if (registering.putIfAbsent(id, Boolean.TRUE) != null) {
+                    throw new ApiException(409, "ID " + id + " is already being registered");
+                }
+                reserved.add(id);
+                if (dataManager.findUser(id) != null) {
+                    throw new ApiException(409, id.equals(userId) ? "User " + id + " already exists"
+                                                                  : "ID " + id + " is already registered");
+                }
+            }
+            User user;
+            boolean saved;
+            switch (type) {
+                case "student":
+                    Student student = new Student(userId, name, email, phone, password,
+                            roleId, text(body, "course", ""), number(body, "year", 1).intValue());
+                    saved = dataManager.addStudent(student);
+                    user = student;
+                    break;
+                case "lecturer":
+                    Lecturer lecturer = new Lecturer(userId, name, email, phone, password,
+                            roleId, text(body, "department", ""),
+                            text(body, "designation", ""), flag(body, "permanent", true));
+                    saved = dataManager.addLecturer(lecturer);
+                    user = lecturer;
+                    break;
+                default:
+                    TransportOfficer officer = new TransportOfficer(userId, name, email, phone, password,
+                            roleId, text(body, "role", ""), text(body, "department", ""),
+                            number(body, "yearsOfExperience", 0).intValue());
+                    saved = dataManager.addOfficer(officer);
+                    user = officer;
+                    break;
+            }
+            if (!saved) {
+                throw new ApiException(500, "Could not save user " + userId);
+            }
+            return new Response(201, toJson(user));
+        } finally {
+            reserved.forEach(registering::remove);
+        }
+    }
+
+    private static Map<String, Object> toJson(User user) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("userId", user.getUserId());
+        json.put("name", user.getName());
+        json.put("email", user.getEmail());
+        json.put("phoneNumber", user.getPhoneNumber());
+        if (user instanceof Student) {
+            Student student = (Student) user;
+            json.put("type", "student");
+            json.put("studentId", student.getStudentId());
+            json.put("course", student.getCourse());
+            json.put("year", student.getYear());
+        } else if (user instanceof Lecturer) {
+            Lecturer lecturer = (Lecturer) user;
+            json.put("type", "lecturer");
+            json.put("staffId", lecturer.getStaffId());
+            json.put("department", lecturer.getDepartment());
+            json.put("designation", lecturer.getDesignation());
+            json.put("permanent", lecturer.isPermanent());
+        } else if (user instanceof TransportOfficer) {
+            TransportOfficer officer = (TransportOfficer) user;
+            json.put("type", "officer");
+            json.put("officerId", officer.getOfficerId());
+            json.put("role", officer.getRole());
+            json.put("department", officer.getDepartment());
+            json.put("yearsOfExperience", officer.getYearsOfExperience());
+        }
+        return json;
+    }
+
+    // Vehicles
+
+    private Response vehicles(Call call) throws IOException {
+        if (call.is("GET", 1)) {
+            String status = call.query.get("status");
+            List<Object> list = new ArrayList<>();
+            if (call.query.containsKey("near")) {
+                for (Vehicle vehicle : nearby(call)) {
+                    list.add(toJson(vehicle));
+                }
+            } else if (status == null) {
+                for (Vehicle vehicle : dataManager.getVehicles()) {
+                    list.add(toJson(vehicle));
+                }
+            } else {
+                VehicleStatus state = VehicleStatus.fromLabel(status);
+                if (state == null) {
+                    throw new ApiException(400, "Unknown status " + status);
+                }
+                for (Vehicle vehicle : tracker().vehiclesIn(state)) {
+                    list.add(toJson(vehicle));
+                }
+            }
+            return new Response(200, list);
+        }
+        if (call.is("POST", 1)) {
+            return addVehicle(call.body());
+        }
+        if (call.path.size() < 2) {
+            throw notFound();
+        }
+        FleetTracker fleet = tracker();
+        Vehicle vehicle = fleet.vehicleAt(fleet.slotOf(call.path.get(1)));
+        if (vehicle == null) {
+            throw new ApiException(404, "No vehicle " + call.path.get(1));
+        }
+        if (call.is("GET", 2)) {
+            return new Response(200, toJson(vehicle));
+        }
+        if (call.is("PUT", 3) && call.path.get(2).equals("location")) {
+            Map<String, Object> body = call.body();
+            double latitude = number(body, "latitude", null).doubleValue();
+            double longitude = number(body, "longitude", null).doubleValue();
+            if (Math.abs(latitude) > 90 || Math.abs(longitude) > 180) {
+                throw new ApiException(400, "Position out of range");
+            }
+            long timestamp = number(body, "timestamp", System.currentTimeMillis()).longValue();
+            if (!vehicle.updateLocation(latitude, longitude, timestamp)) {
+                throw new ApiException(409, "A newer position is already recorded");
+            }
+            if (!dataManager.saveVehicleLocation(vehicle)) {
+                throw new ApiException(500, "Could not save the position of " + vehicle.getVehicleId());
+            }
+            return new Response(200, toJson(vehicle));
+        }
+        throw notFound();
+    }
+
+    /**
+     * @return The tracker, synced with the vehicle list as it now stands
+     */
+    private FleetTracker tracker() {
+        Snapshot<Vehicle> fleet = dataManager.getVehicles();
+        if (fleet.getVersion() != trackedVersion) {
+            tracker.sync(fleet);
+            trackedVersion = fleet.getVersion();
+        }
+        return tracker;
+    }
+
+    /**
+     * Look up the vehicles near a point in the spatial index
+     */
+    private List<Vehicle> nearby(Call call) {
+        String[] point = call.query.get("near").split(",");
+        if (point.length != 2) {
+            throw new ApiException(400, "near must be latitude,longitude");
+        }
+        double latitude = Double.parseDouble(point[0].trim());
+        double longitude = Double.parseDouble(point[1].trim());
+        if (Math.abs(latitude) > 90 || Math.abs(longitude) > 180) {
+            throw new ApiException(400, "Position out of range");
+        }
+        VehicleFilter filter = VehicleFilter.any();
+        if ("true".equals(call.query.get("available"))) {
+            filter = filter.available();
+        }
+        if (call.query.containsKey("type")) {
+            filter = filter.ofType(call.query.get("type"));
+        }
+        if (call.query.containsKey("capacity")) {
+            filter = filter.withCapacity(Integer.parseInt(call.query.get("capacity")));
+        }
+        SpatialIndex index = dataManager.getSpatialIndex();
+        if (call.query.containsKey("radius")) {
+            double radius = Double.parseDouble(call.query.get("radius"));
+            if (!(radius >= 0)) {
+                throw new ApiException(400, "radius must not be negative");
+            }
+            return index.withinRadius(latitude, longitude, radius, filter);
+        }
+        int limit = call.query.containsKey("limit") ? Integer.parseInt(call.query.get("limit")) : DEFAULT_NEARBY;
+        return index.nearest(latitude, longitude, limit, filter);
+    }
+
+    private Response addVehicle(Map<String, Object> body) {
+        String type = text(body, "type", null);
+        String vehicleId = text(body, "vehicleId", null);
+        String registration = text(body, "registrationNumber", null);
+        String model = text(body, "model", "");
+        int capacity = number(body, "capacity", null).intValue();
+        Vehicle vehicle;
+        switch (type) {
+            case "bus":
+                vehicle = new Bus(vehicleId, registration, model, capacity, text(body, "routeNumber", ""),
+                                  flag(body, "accessible", false), flag(body, "wifi", false),
+                                  number(body, "standingCapacity", 0).intValue());
+                break;
+            case "van":
+                vehicle = new Van(vehicleId, registration, model, capacity, flag(body, "cargoSpace", false),
+                                  number(body, "cargoCapacity", 0).doubleValue(),
+                                  text(body, "purposeType", "Passenger"), flag(body, "firstAidKit", true));
+                break;
+            default:
+                throw new ApiException(400, "type must be bus or van");
+        }
+        // Reserving the ID is atomic, so only one of two clients adding the same ID gets to save its vehicle
+        if (registering.putIfAbsent(VEHICLE_ID_PREFIX + vehicleId, Boolean.TRUE) != null) {
+            throw new ApiException(409, "Vehicle " + vehicleId + " is already being added");
+        }
+        try {
+            if (tracker().slotOf(vehicleId) >= 0) {
+                throw new ApiException(409, "Vehicle " + vehicleId + " already exists");
+            }
+            if (!dataManager.addVehicle(vehicle)) {
+                throw new ApiException(500, "Could not save vehicle " + vehicleId);
+            }
+            // Track only saved vehicles
+            tracker.register(vehicle);
+        } finally {
+            registering.remove(VEHICLE_ID_PREFIX + vehicleId);
+        }
+        return new Response(201, toJson(vehicle));
+    }
+
+    private static Map<String, Object> toJson(Vehicle vehicle) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("vehicleId", vehicle.getVehicleId());
+        json.put("type", vehicle.getVehicleType());
+        json.put("registrationNumber", vehicle.getRegistrationNumber());
+        json.put("model", vehicle.getModel());
+        json.put("capacity", vehicle.getCapacity());
+        json.put("status", vehicle.getCurrentStatus());
+        if (vehicle instanceof Bus) {
+            Bus bus = (Bus) vehicle;
+            json.put("routeNumber", bus.getRouteNumber());
+            json.put("accessible", bus.isAccessible());
+            json.put("wifi", bus.hasWifi());
+            json.put("standingCapacity", bus.getStandingCapacity());
+        } else if (vehicle instanceof Van) {
+            Van van = (Van) vehicle;
+            json.put("cargoSpace", van.hasCargoSpace());
+            json.put("cargoCapacity", van.getCargoCapacity());
+            json.put("purposeType", van.getPurposeType());
+            json.put("firstAidKit", van.hasFirstAidKit());
+        }
+        synchronized (vehicle) {
+            if (vehicle.hasPositionFix()) {
+                json.put("latitude", vehicle.getLatitude());
+                json.put("longitude", vehicle.getLongitude());
+                json.put("locationTimestamp", vehicle.getLocationTimestamp());
+            }
+        }
+        return json;
+    }
+
+    // Transport requests
+
+    private Response requests(Call call) throws IOException {
+        if (call.is("POST", 1)) {
+            Map<String, Object> body = call.body();
+            String dateTime = text(body, "dateTime", null);
+            if (BookingCalendar.parseMinute(dateTime) < 0) {
+                throw new ApiException(400, "dateTime must be \"yyyy-MM-dd HH:mm\"");
+            }
+            TransportRequest request = dataManager.requestTransport(text(body, "userId", null),
+                                                                    text(body, "destination", null), dateTime);
+            if (request == null) {
+                throw new ApiException(404, "No user " + body.get("userId"));
+            }
+            return new Response(201, toJson(request));
+        }
+        if (call.is("GET", 1)) {
+            return new Response(200, page(call));
+        }
+        if (call.path.size() < 2) {
+            throw notFound();
+        }
+        String requestId = call.path.get(1);
+        if (call.is("GET", 2)) {
+            return new Response(200, toJson(findRequest(requestId)));
+        }
+        if (call.is("PUT", 3) && call.path.get(2).equals("status")) {
+            String status = text(call.body(), "status", null);
+            TransportRequest.Status next;
+            try {
+                next = TransportRequest.Status.valueOf(status.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ApiException(400, "Unknown status " + status);
+            }
+            if (!dataManager.updateRequestStatus(requestId, next)) {
+                throw new ApiException(404, "No request " + requestId);
+            }
+            return new Response(200, toJson(findRequest(requestId)));
+        }
+        throw notFound();
+    }
+
+    private TransportRequest findRequest(String requestId) {
+        String requesterId = TransportRequest.requesterOf(requestId);
+        User user = requesterId == null ? null : dataManager.findUser(requesterId);
+        TransportRequest request = user == null ? null : user.getTransportRequests().find(requestId);
+        if (request == null) {
+            throw new ApiException(404, "No request " + requestId);
+        }
+        return request;
+    }
+
+    private Map<String, Object> page(Call call) {
+        HistoryQuery query = HistoryQuery.all().between(call.query.get("from"), call.query.get("to"));
+        if (call.query.containsKey("user")) {
+            query = query.forUser(call.query.get("user"));
+        }
+        if (call.query.containsKey("destination")) {
+            query = query.toDestination(call.query.get("destination"));
+        }
+        if (call.query.containsKey("status")) {
+            query = query.withStatus(TransportRequest.Status.valueOf(call.query.get("status").toUpperCase()));
+        }
+        if (call.query.containsKey("limit")) {
+            query = query.limit(Integer.parseInt(call.query.get("limit")));
+        }
+        if ("newest".equals(call.query.get("order"))) {
+            query = query.newestFirst();
+        }
+        HistoryPage page = dataManager.queryTransportHistory(query, call.query.get("cursor"));
+        List<Object> requests = new ArrayList<>();
+        for (TransportRequest request : page.getRequests()) {
+            requests.add(toJson(request));
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("requests", requests);
+        json.put("nextCursor", page.getNextCursor());
+        return json;
+    }
+
+    private static Map<String, Object> toJson(TransportRequest request) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("requestId", request.requestId());
+        json.put("requesterId", request.requesterId());
+        json.put("destination", request.destination());
+        json.put("dateTime", request.dateTime());
+        json.put("status", request.status().name());
+        json.put("priority", request.priority().name());
+        return json;
+    }
+
+    // Body fields
+
+    private static String text(Map<String, Object> body, String field, String fallback) {
+        Object value = body.get(field);
+        if (value == null) {
+            if (fallback == null) {
+                throw new ApiException(400, "Missing field " + field);
+            }
+            return fallback;
+        }
+        if (!(value instanceof String)) {
+            throw new ApiException(400, field + " must be a string");
+        }
+        return (String) value;
+    }
+
+    private static Number number(Map<String, Object> body, String field, Number fallback) {
+        Object value = body.get(field);
+        if (value == null) {
+            if (fallback == null) {
+                throw new ApiException(400, "Missing field " + field);
+            }
+            return fallback;
+        }
+        if (!(value instanceof Number)) {
+            throw new ApiException(400, field + " must be a number");
+        }
+        return (Number) value;
+    }
+
+    private static boolean flag(Map<String, Object> body, String field, boolean fallback) {
+        Object value = body.get(field);
+        if (value == null) {
+            return fallback;
+        }
+        if (!(value instanceof Boolean)) {
+            throw new ApiException(400, field + " must be true or false");
+        }
+        return (Boolean) value;
+    }
+}
@@ -0,0 +1,195 @@
+package com.vu.utms.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * BinaryReader reads values written by a {@link BinaryWriter} from a byte array.
+ *
+ * Reads never run past the end of the current block: a block is entered with
+ * {@link #openBlock}, and {@link #closeBlock} skips whatever of it was not read,
+ * such as fields a newer writer added.
+ */
+public final class BinaryReader {
+    private byte[] bytes;
+    private int position;
+    private int limit;
+    private int[] outerLimits = new int[4];
+    private int depth;
+    // Symbol codes by dictionary index; null if no dictionary
+    private int[] dictionary;
+    private int dictionarySize;
+
+    /**
+     * Constructor for reading a whole array
+     * @param bytes The bytes to read
+     */
+    public BinaryReader(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Constructor for reading part of an array
+     * @param bytes The bytes to read
+     * @param offset Index of the first byte
+     * @param length Number of bytes
+     */
+    public BinaryReader(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * Move on to another array, e.g. the next object of a stream, keeping the
+     * symbol dictionary
+     * @param bytes The bytes to read
+     * @param offset Index of the first byte
+     * @param length Number of bytes
+     */
+    public void reset(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.position = offset;
+        this.limit = offset + length;
+        this.depth = 0;
+    }
+
+    /**
+     * Start a symbol dictionary, at the point the writer started its own
+     * ({@link BinaryWriter#startSymbolDictionary})
+     */
+    public void startSymbolDictionary() {
+        dictionary = new int[64];
+        dictionarySize = 0;
+    }
+
+    /**
+     * @return Number of bytes left to read in the current block
+     */
+    public int remaining() {
+        return limit - position;
+    }
+
+    public int readByte() throws IOException {
+        require(1);
+        return bytes[position++];
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    public int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint at " + position);
+    }
+
+    public long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint at " + position);
+    }
+
+    public long readSignedVarLong() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public double readDouble() throws IOException {
+        require(8);
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = (bits << 8) | (bytes[position++] & 0xFF);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * @return The string, or null if null was written
+     */
+    public String readString() throws IOException {
+        int length = readVarInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+        require(length);
+        String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    /**
+     * Read a symbol written by {@link BinaryWriter#writeSymbol}
+     * @return The symbol's {@link SymbolTable} code
+     */
+    public int readSymbol() throws IOException {
+        if (dictionary == null) {
+            return SymbolTable.intern(readString());
+        }
+        int index = readVarInt();
+        if (index == 0) {
+            return SymbolTable.NULL;
+        }
+        if (index == 1) {
+            int code = SymbolTable.intern(readString());
+            if (dictionarySize == dictionary.length) {
+                dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+            }
+            dictionary[dictionarySize++] = code;
+            return code;
+        }
+        if (index - 2 >= dictionarySize) {
+            throw new StreamCorruptedException("Unknown symbol " + (index - 2));
+        }
+        return dictionary[index - 2];
+    }
+
+    /**
+     * Enter a block written by {@link BinaryWriter#startBlock}
+     * @return Version of the block's field layout
+     * @throws IOException if the block runs past the end of the enclosing one
+     */
+    public int openBlock() throws IOException {
+        int length = readVarInt();
+        if (length < 1) {
+            throw new StreamCorruptedException("Malformed block length " + length);
+        }
+        require(length);
+        if (depth == outerLimits.length) {
+            outerLimits = Arrays.copyOf(outerLimits, depth * 2);
+        }
+        outerLimits[depth++] = limit;
+        limit = position + length;
+        return readVarInt();
+    }
+
+    /**
+     * Leave the current block, skipping any fields left unread
+     */
+    public void closeBlock() {
+        position = limit;
+        limit = outerLimits[--depth];
+    }
+
+    private void require(int count) throws IOException {
+        if (count > limit - position) {
+            throw new EOFException("Need " + count + " bytes, " + (limit - position) + " left");
+        }
+    }
+}
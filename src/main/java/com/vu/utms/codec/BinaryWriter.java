@@ -0,0 +1,256 @@
+package com.vu.utms.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * BinaryWriter appends compactly encoded values to a growable byte array.
+ *
+ * Integers are written as varints, seven bits per byte with the high bit set on
+ * every byte but the last, so small values take one byte; signed values that
+ * may be negative are zigzag encoded first. Strings are written as their UTF-8
+ * length plus one followed by the bytes, with a length of 0 standing for null.
+ *
+ * Related fields are grouped into versioned blocks ({@link #startBlock},
+ * {@link #endBlock}) that carry their own length, so a reader can skip fields
+ * added by a newer version of a codec that it does not know about.
+ *
+ * Symbols ({@link SymbolTable} codes) are written as their text, unless a
+ * symbol dictionary has been started for a stream of objects that is always read
+ * back from its beginning, such as a snapshot; then each symbol is written in
+ * full once and as a small back reference after that.
+ *
+ * A writer is not thread safe; {@link #reset} lets one be reused.
+ */
+public final class BinaryWriter {
+    private byte[] buffer;
+    private int size;
+    // Dictionary index plus one of each symbol already written, by symbol code; null if no dictionary
+    private int[] dictionary;
+    private int dictionarySize;
+
+    /**
+     * Constructor for creating a writer with a default initial capacity
+     */
+    public BinaryWriter() {
+        this(256);
+    }
+
+    /**
+     * Constructor for creating a writer
+     * @param capacity Initial capacity in bytes
+     */
+    public BinaryWriter(int capacity) {
+        this.buffer = new byte[Math.max(capacity, 16)];
+    }
+
+    /**
+     * Discard everything written so far, keeping the buffer and symbol dictionary
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    /**
+     * @return Number of bytes written
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The internal buffer; only the first {@link #size()} bytes are valid,
+     *         and only until the next write
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return A copy of the bytes written
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Copy the bytes written to a stream
+     * @param out The stream to write to
+     * @throws IOException if the stream fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+    }
+
+    public void writeByte(int value) {
+        ensure(1);
+        buffer[size++] = (byte) value;
+    }
+
+    public void writeBoolean(boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    public void writeBytes(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    /**
+     * Write an int as an unsigned varint: 1 byte below 128, 2 below 16384, and
+     * 5 for negative values, which should be written with {@link #writeSignedVarLong}
+     * @param value The value to write
+     */
+    public void writeVarInt(int value) {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    /**
+     * Write a long as an unsigned varint
+     * @param value The value to write
+     */
+    public void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    /**
+     * Write a long that may be negative as a zigzag varint, so values near zero
+     * take few bytes whatever their sign
+     * @param value The value to write
+     */
+    public void writeSignedVarLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Write a double as its 8 IEEE 754 bytes, most significant first
+     * @param value The value to write
+     */
+    public void writeDouble(double value) {
+        long bits = Double.doubleToLongBits(value);
+        ensure(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (bits >>> shift);
+        }
+    }
+
+    /**
+     * Write a string as its UTF-8 length plus one and its UTF-8 bytes
+     * @param value The string to write, or null
+     */
+    public void writeString(String value) {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) >= 0x80) {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(utf8.length + 1);
+                writeBytes(utf8);
+                return;
+            }
+        }
+        // ASCII, which is most text here, is its own UTF-8
+        writeVarInt(length + 1);
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            buffer[size++] = (byte) value.charAt(i);
+        }
+    }
+
+    /**
+     * Start a symbol dictionary: from now on each symbol is written in full
+     * the first time and as a back reference after that, until the writer is
+     * discarded. The bytes must be read by a single {@link BinaryReader} with a
+     * dictionary started at the same point, in order.
+     */
+    public void startSymbolDictionary() {
+        dictionary = new int[64];
+        dictionarySize = 0;
+    }
+
+    /**
+     * Write a symbol: as a string without a dictionary, otherwise as 0 for null,
+     * 1 followed by the string for a symbol written for the first time, or its
+     * dictionary index plus 2
+     * @param code The symbol's {@link SymbolTable} code
+     */
+    public void writeSymbol(int code) {
+        if (dictionary == null) {
+            writeString(SymbolTable.name(code));
+            return;
+        }
+        if (code == SymbolTable.NULL) {
+            writeVarInt(0);
+            return;
+        }
+        if (code >= dictionary.length) {
+            dictionary = Arrays.copyOf(dictionary, Math.max(code + 1, dictionary.length * 2));
+        }
+        int index = dictionary[code] - 1;
+        if (index >= 0) {
+            writeVarInt(index + 2);
+            return;
+        }
+        dictionary[code] = ++dictionarySize;
+        writeVarInt(1);
+        writeString(SymbolTable.name(code));
+    }
+
+    /**
+     * Start a block of fields; everything written until the matching
+     * {@link #endBlock} call belongs to it
+     * @param version Version of the block's field layout
+     * @return Mark to pass to endBlock
+     */
+    public int startBlock(int version) {
+        int mark = size;
+        writeVarInt(version);
+        return mark;
+    }
+
+    /**
+     * End a block, prefixing it with its length
+     * @param mark The value startBlock returned
+     */
+    public void endBlock(int mark) {
+        int length = size - mark;
+        int prefix = varIntSize(length);
+        ensure(prefix);
+        System.arraycopy(buffer, mark, buffer, mark + prefix, length);
+        int end = size + prefix;
+        size = mark;
+        writeVarInt(length);
+        size = end;
+    }
+
+    private static int varIntSize(int value) {
+        int bytes = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(size + extra, buffer.length * 2));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.vu.utms.codec;
+
+import java.io.IOException;
+
+/**
+ * A hand-written binary encoding of one type of object.
+ *
+ * @param <T> The type encoded
+ */
+public interface Codec<T> {
+
+    /**
+     * Append an object to a buffer
+     * @param out The buffer to write to
+     * @param value The object to write
+     * @throws IllegalArgumentException if the object is of a type this codec cannot write
+     */
+    void write(BinaryWriter out, T value);
+
+    /**
+     * Read an object written by {@link #write}, possibly by an older or newer
+     * version of the codec
+     * @param in The buffer to read from
+     * @return The object read
+     * @throws IOException if the bytes are truncated or not an object of this type
+     */
+    T read(BinaryReader in) throws IOException;
+}
@@ -0,0 +1,77 @@
+package com.vu.utms.codec;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SymbolTable assigns small integer codes to the values of categorical fields,
+ * such as a student's course or a vehicle's status, that take a handful of
+ * distinct values across every object in the system.
+ *
+ * Models keep the code instead of a String of their own, so each distinct value
+ * is held once however many objects share it, and only turn it back into text
+ * in their getters. Codes are shared by all fields and live as long as the
+ * process; they are never written to disk as they are (see
+ * {@link BinaryWriter#writeSymbol}). Symbols are never removed, so the table is
+ * only for fields whose values repeat, not free text.
+ *
+ * Code 0 stands for null, so a field left at its default holds no value.
+ */
+public final class SymbolTable {
+    /** Code of the null value */
+    public static final int NULL = 0;
+
+    private static final ConcurrentHashMap<String, Integer> CODES = new ConcurrentHashMap<>();
+    // Values by code; a slot is filled before its code is handed out
+    private static volatile String[] names = new String[64];
+    private static int size = 1;
+
+    private SymbolTable() {
+    }
+
+    /**
+     * Get the code of a value, adding it to the table if it is new
+     * @param name The value, or null
+     * @return Its code, or {@link #NULL} for null
+     */
+    public static int intern(String name) {
+        if (name == null) {
+            return NULL;
+        }
+        Integer code = CODES.get(name);
+        return code != null ? code : add(name);
+    }
+
+    /**
+     * Get the value a code stands for
+     * @param code A code returned by {@link #intern}
+     * @return The value, or null for {@link #NULL}
+     */
+    public static String name(int code) {
+        return names[code];
+    }
+
+    /**
+     * @return Number of distinct values in the table
+     */
+    public static synchronized int size() {
+        return size - 1;
+    }
+
+    private static synchronized int add(String name) {
+        Integer existing = CODES.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        int code = size++;
+        String[] current = names;
+        if (code == current.length) {
+            current = Arrays.copyOf(current, code * 2);
+        }
+        current[code] = name;
+        // Publish the array before the code, so whoever reads the code can find the name
+        names = current;
+        CODES.put(name, code);
+        return code;
+    }
+}
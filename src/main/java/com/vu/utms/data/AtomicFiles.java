@@ -0,0 +1,80 @@
+package com.vu.utms.data;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Helpers for replacing files so that a crash leaves either the old or the new
+ * contents on disk, never a truncated mix of both.
+ */
+final class AtomicFiles {
+
+    /**
+     * Writes the body of a file
+     */
+    interface Body {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private AtomicFiles() {
+    }
+
+    /**
+     * Write a new version of a file to a temporary sibling, sync it, then rename it
+     * over the target in one atomic step
+     * @param target The file to replace
+     * @param body Writes the new contents
+     * @throws IOException if writing or renaming fails; the target is left untouched
+     */
+    static void replace(Path target, Body body) throws IOException {
+        Path temp = temporaryFor(target);
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            BufferedOutputStream out = new BufferedOutputStream(file, 64 * 1024);
+            body.writeTo(out);
+            out.flush();
+            file.getFD().sync();
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(target.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Delete the temporary file a replacement interrupted by a crash left behind
+     * @param target The file that was being replaced
+     */
+    static void discardTemporary(Path target) {
+        try {
+            Files.deleteIfExists(temporaryFor(target));
+        } catch (IOException e) {
+            System.err.println("Error deleting " + temporaryFor(target) + ": " + e.getMessage());
+        }
+    }
+
+    private static Path temporaryFor(Path target) {
+        return target.resolveSibling(target.getFileName() + ".tmp");
+    }
+
+    /**
+     * Sync a directory so that renames and deletions inside it are durable.
+     * Not every platform allows opening a directory, in which case this is a no-op.
+     * @param directory The directory to sync
+     */
+    static void syncDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directory sync is not supported here; the rename is still atomic
+        }
+    }
+}
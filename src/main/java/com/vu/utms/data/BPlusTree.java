@@ -0,0 +1,472 @@
+package com.vu.utms.data;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * BPlusTree is a paged, memory-mapped B+tree mapping UTF-8 string keys to long values.
+ *
+ * The file is a sequence of fixed size pages. Page 0 is the header, every other page
+ * is either a leaf (sorted keys with values, linked to the next leaf) or an internal
+ * node (sorted separator keys with child page numbers). Lookups binary search the
+ * mapped pages in place, so they only touch the pages on the root-to-leaf path.
+ *
+ * Lookups share a read lock and run concurrently; inserts take the write lock.
+ *
+ * The file is mapped writable, so only one process may have it open: the tree
+ * holds an exclusive lock on the file until it is closed, and opening a tree
+ * another process holds fails with {@link InUseException}.
+ */
+class BPlusTree implements AutoCloseable {
+    static final int PAGE_SIZE = 4096;
+    static final int MAX_KEY_BYTES = 62;
+
+    private static final int MAGIC = 0x55544D42; // "UTMB"
+    private static final int INITIAL_PAGES = 64;
+
+    // Header page layout
+    private static final int H_MAGIC = 0;
+    private static final int H_PAGE_COUNT = 4;
+    private static final int H_ROOT = 8;
+    private static final int H_SIZE = 12;
+    private static final int H_DIRTY = 16;
+    private static final int H_STAMP = 24;
+
+    // Node page layout
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final int N_TYPE = 0;
+    private static final int N_COUNT = 2;
+    private static final int N_LINK = 4; // next leaf, or leftmost child of an internal node
+    private static final int N_ENTRIES = 8;
+    private static final int KEY_SLOT = 2 + MAX_KEY_BYTES;
+    private static final int LEAF_ENTRY = KEY_SLOT + 8;
+    private static final int INTERNAL_ENTRY = KEY_SLOT + 4;
+    private static final int LEAF_MAX = (PAGE_SIZE - N_ENTRIES) / LEAF_ENTRY;
+    private static final int INTERNAL_MAX = (PAGE_SIZE - N_ENTRIES) / INTERNAL_ENTRY;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private final boolean recovered;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Thrown when the tree file is already open in another process
+     */
+    static final class InUseException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        InUseException(String path) {
+            super(path + " is open in another process");
+        }
+    }
+
+    /**
+     * Open (or create) a tree file
+     * @param path Path of the index file
+     * @throws InUseException if another process has the file open
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    BPlusTree(String path) throws IOException {
+        file = new RandomAccessFile(path, "rw");
+        channel = file.getChannel();
+        FileLock owner;
+        try {
+            owner = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            owner = null; // Open elsewhere in this JVM
+        }
+        if (owner == null) {
+            file.close();
+            throw new InUseException(path);
+        }
+        long length = channel.size();
+        boolean fresh = length < PAGE_SIZE;
+        map(Math.max(length, (long) INITIAL_PAGES * PAGE_SIZE));
+        if (fresh || buffer.getInt(H_MAGIC) != MAGIC) {
+            buffer.putInt(H_MAGIC, MAGIC);
+            buffer.putInt(H_PAGE_COUNT, 2);
+            buffer.putInt(H_ROOT, 1);
+            buffer.putInt(H_SIZE, 0);
+            buffer.putLong(H_STAMP, 0);
+            initNode(1, LEAF);
+            buffer.putInt(1 * PAGE_SIZE + N_LINK, -1);
+            recovered = false;
+        } else {
+            // A file cut short, e.g. by a full disk, lost pages the header still counts
+            recovered = buffer.get(H_DIRTY) != 0 || (long) buffer.getInt(H_PAGE_COUNT) * PAGE_SIZE > length;
+        }
+        buffer.put(H_DIRTY, (byte) 1);
+    }
+
+    /**
+     * Whether the file was not closed cleanly last time, or was truncated since,
+     * and may be missing updates
+     * @return boolean indicating the tree should be rebuilt from the primary data
+     */
+    boolean needsRebuild() {
+        return recovered;
+    }
+
+    /**
+     * @return The value last stored with {@link #setStamp}, 0 for a new tree
+     */
+    long getStamp() {
+        lock.readLock().lock();
+        try {
+            return buffer.getLong(H_STAMP);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Store a value in the header for the owner to tell which state of its
+     * other files the tree matches
+     * @param stamp The value
+     */
+    void setStamp(long stamp) {
+        lock.writeLock().lock();
+        try {
+            buffer.putLong(H_STAMP, stamp);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of keys stored in the tree
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return buffer.getInt(H_SIZE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Look up the value stored for a key
+     * @param key The key to search for
+     * @return The stored value, or -1 if the key is absent
+     */
+    long get(String key) {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        if (k.length > MAX_KEY_BYTES) {
+            return -1;
+        }
+        lock.readLock().lock();
+        try {
+            int page = buffer.getInt(H_ROOT);
+            while (type(page) == INTERNAL) {
+                page = childFor(page, k);
+            }
+            int index = search(page, k, LEAF_ENTRY);
+            if (index < 0) {
+                return -1;
+            }
+            return buffer.getLong(entryOffset(page, index, LEAF_ENTRY) + KEY_SLOT);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Insert a key or overwrite the value of an existing key
+     * @param key The key to store
+     * @param value The value to associate with the key
+     */
+    void put(String key, long value) throws IOException {
+        byte[] k = encodeKey(key);
+        lock.writeLock().lock();
+        try {
+            int root = buffer.getInt(H_ROOT);
+            Split split = insert(root, k, value);
+            if (split != null) {
+                int newRoot = allocatePage(INTERNAL);
+                buffer.putInt(newRoot * PAGE_SIZE + N_LINK, root);
+                writeInternalEntry(newRoot, 0, split.key, split.page);
+                buffer.putShort(newRoot * PAGE_SIZE + N_COUNT, (short) 1);
+                buffer.putInt(H_ROOT, newRoot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove every key, leaving an empty tree
+     */
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            buffer.putInt(H_PAGE_COUNT, 2);
+            buffer.putInt(H_ROOT, 1);
+            buffer.putInt(H_SIZE, 0);
+            initNode(1, LEAF);
+            buffer.putInt(1 * PAGE_SIZE + N_LINK, -1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flush the mapped pages to disk and mark the file as cleanly closed
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            buffer.put(H_DIRTY, (byte) 0);
+            buffer.force();
+            channel.close();
+            file.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static final class Split {
+        final byte[] key;
+        final int page;
+
+        Split(byte[] key, int page) {
+            this.key = key;
+            this.page = page;
+        }
+    }
+
+    private Split insert(int page, byte[] key, long value) throws IOException {
+        if (type(page) == LEAF) {
+            return insertIntoLeaf(page, key, value);
+        }
+
+        int slot = childSlot(page, key);
+        int child = slot < 0 ? buffer.getInt(page * PAGE_SIZE + N_LINK)
+                : buffer.getInt(entryOffset(page, slot, INTERNAL_ENTRY) + KEY_SLOT);
+        Split split = insert(child, key, value);
+        if (split == null) {
+            return null;
+        }
+        return insertIntoInternal(page, slot + 1, split.key, split.page);
+    }
+
+    private Split insertIntoLeaf(int page, byte[] key, long value) throws IOException {
+        int index = search(page, key, LEAF_ENTRY);
+        if (index >= 0) {
+            buffer.putLong(entryOffset(page, index, LEAF_ENTRY) + KEY_SLOT, value);
+            return null;
+        }
+        int position = -index - 1;
+        int count = count(page);
+        buffer.putInt(H_SIZE, buffer.getInt(H_SIZE) + 1);
+
+        if (count < LEAF_MAX) {
+            shiftRight(page, position, count, LEAF_ENTRY);
+            writeLeafEntry(page, position, key, value);
+            setCount(page, count + 1);
+            return null;
+        }
+
+        // Split: keep the lower half here, move the upper half to a new leaf
+        int sibling = allocatePage(LEAF);
+        int half = (count + 1) / 2;
+        byte[][] keys = new byte[count + 1][];
+        long[] values = new long[count + 1];
+        for (int i = 0, j = 0; i <= count; i++) {
+            if (i == position) {
+                keys[i] = key;
+                values[i] = value;
+            } else {
+                keys[i] = readKey(entryOffset(page, j, LEAF_ENTRY));
+                values[i] = buffer.getLong(entryOffset(page, j, LEAF_ENTRY) + KEY_SLOT);
+                j++;
+            }
+        }
+        for (int i = 0; i < half; i++) {
+            writeLeafEntry(page, i, keys[i], values[i]);
+        }
+        for (int i = half; i <= count; i++) {
+            writeLeafEntry(sibling, i - half, keys[i], values[i]);
+        }
+        setCount(page, half);
+        setCount(sibling, count + 1 - half);
+        buffer.putInt(sibling * PAGE_SIZE + N_LINK, buffer.getInt(page * PAGE_SIZE + N_LINK));
+        buffer.putInt(page * PAGE_SIZE + N_LINK, sibling);
+        return new Split(keys[half], sibling);
+    }
+
+    private Split insertIntoInternal(int page, int position, byte[] key, int child) throws IOException {
+        int count = count(page);
+        if (count < INTERNAL_MAX) {
+            shiftRight(page, position, count, INTERNAL_ENTRY);
+            writeInternalEntry(page, position, key, child);
+            setCount(page, count + 1);
+            return null;
+        }
+
+        byte[][] keys = new byte[count + 1][];
+        int[] children = new int[count + 1];
+        for (int i = 0, j = 0; i <= count; i++) {
+            if (i == position) {
+                keys[i] = key;
+                children[i] = child;
+            } else {
+                int offset = entryOffset(page, j, INTERNAL_ENTRY);
+                keys[i] = readKey(offset);
+                children[i] = buffer.getInt(offset + KEY_SLOT);
+                j++;
+            }
+        }
+        // The middle key moves up; its child becomes the leftmost child of the sibling
+        int middle = (count + 1) / 2;
+        int sibling = allocatePage(INTERNAL);
+        for (int i = 0; i < middle; i++) {
+            writeInternalEntry(page, i, keys[i], children[i]);
+        }
+        buffer.putInt(sibling * PAGE_SIZE + N_LINK, children[middle]);
+        for (int i = middle + 1; i <= count; i++) {
+            writeInternalEntry(sibling, i - middle - 1, keys[i], children[i]);
+        }
+        setCount(page, middle);
+        setCount(sibling, count - middle);
+        return new Split(keys[middle], sibling);
+    }
+
+    private int childFor(int page, byte[] key) {
+        int slot = childSlot(page, key);
+        if (slot < 0) {
+            return buffer.getInt(page * PAGE_SIZE + N_LINK);
+        }
+        return buffer.getInt(entryOffset(page, slot, INTERNAL_ENTRY) + KEY_SLOT);
+    }
+
+    /**
+     * Find the last separator that is less than or equal to the key
+     * @return Entry index, or -1 when the key belongs to the leftmost child
+     */
+    private int childSlot(int page, byte[] key) {
+        int index = search(page, key, INTERNAL_ENTRY);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Binary search the entries of a page
+     * @return Entry index if found, otherwise (-(insertion point) - 1)
+     */
+    private int search(int page, byte[] key, int entrySize) {
+        int low = 0;
+        int high = count(page) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareKey(entryOffset(page, mid, entrySize), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private int compareKey(int offset, byte[] key) {
+        int length = buffer.getShort(offset);
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Integer.compare(buffer.get(offset + 2 + i) & 0xFF, key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private byte[] readKey(int offset) {
+        byte[] key = new byte[buffer.getShort(offset)];
+        buffer.get(offset + 2, key);
+        return key;
+    }
+
+    private void writeKey(int offset, byte[] key) {
+        buffer.putShort(offset, (short) key.length);
+        buffer.put(offset + 2, key);
+    }
+
+    private void writeLeafEntry(int page, int index, byte[] key, long value) {
+        int offset = entryOffset(page, index, LEAF_ENTRY);
+        writeKey(offset, key);
+        buffer.putLong(offset + KEY_SLOT, value);
+    }
+
+    private void writeInternalEntry(int page, int index, byte[] key, int child) {
+        int offset = entryOffset(page, index, INTERNAL_ENTRY);
+        writeKey(offset, key);
+        buffer.putInt(offset + KEY_SLOT, child);
+    }
+
+    private void shiftRight(int page, int from, int count, int entrySize) {
+        if (from >= count) {
+            return;
+        }
+        int start = entryOffset(page, from, entrySize);
+        byte[] moved = new byte[(count - from) * entrySize];
+        buffer.get(start, moved);
+        buffer.put(start + entrySize, moved);
+    }
+
+    private static int entryOffset(int page, int index, int entrySize) {
+        return page * PAGE_SIZE + N_ENTRIES + index * entrySize;
+    }
+
+    private byte type(int page) {
+        return buffer.get(page * PAGE_SIZE + N_TYPE);
+    }
+
+    private int count(int page) {
+        return buffer.getShort(page * PAGE_SIZE + N_COUNT);
+    }
+
+    private void setCount(int page, int count) {
+        buffer.putShort(page * PAGE_SIZE + N_COUNT, (short) count);
+    }
+
+    private void initNode(int page, byte type) {
+        buffer.put(page * PAGE_SIZE + N_TYPE, type);
+        setCount(page, 0);
+    }
+
+    private int allocatePage(byte type) throws IOException {
+        int page = buffer.getInt(H_PAGE_COUNT);
+        if ((long) (page + 1) * PAGE_SIZE > buffer.capacity()) {
+            map((long) buffer.capacity() * 2);
+        }
+        buffer.putInt(H_PAGE_COUNT, page + 1);
+        initNode(page, type);
+        return page;
+    }
+
+    private void map(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Index file exceeds the maximum mappable size");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private static byte[] encodeKey(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_KEY_BYTES) {
+            throw new IllegalArgumentException("Key longer than " + MAX_KEY_BYTES + " bytes: " + key);
+        }
+        return bytes;
+    }
+}
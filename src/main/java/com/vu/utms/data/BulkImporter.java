@@ -0,0 +1,401 @@
+package com.vu.utms.data;
+
+import com.vu.utms.models.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * BulkImporter streams delimited text (CSV or TSV) into DataManager.
+ *
+ * Every line describes one entity and starts with its type:
+ * <pre>
+ * student,userId,name,email,phone,password,studentId,course,year
+ * lecturer,userId,name,email,phone,password,staffId,department,designation,isPermanent
+ * officer,userId,name,email,phone,password,officerId,role,department,yearsOfExperience
+ * bus,vehicleId,registrationNumber,model,capacity,routeNumber,isAccessible,hasWifi,standingCapacity
+ * van,vehicleId,registrationNumber,model,capacity,hasCargoSpace,cargoCapacity,purposeType,hasFirstAidKit
+ * </pre>
+ * Blank lines, lines starting with '#' and a header line starting with "type" are skipped.
+ * CSV fields may be quoted with double quotes.
+ *
+ * Lines are read in chunks, each chunk is parsed and validated on a worker thread,
+ * and chunks are committed in file order with one persistence write per entity type.
+ */
+public class BulkImporter {
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final DataManager dataManager;
+    private final int batchSize;
+    private final int workers;
+
+    /**
+     * Summary of an import run
+     */
+    public static class Result {
+        private final Map<String, Integer> imported = new LinkedHashMap<>();
+        private final List<String> errors = new ArrayList<>();
+        private int rejected;
+        private long elapsedMillis;
+
+        public int getImported(String type) { return imported.getOrDefault(type, 0); }
+        public int getTotalImported() {
+            return imported.values().stream().mapToInt(Integer::intValue).sum();
+        }
+        public int getRejected() { return rejected; }
+        public List<String> getErrors() { return Collections.unmodifiableList(errors); }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        private void count(String type, int n) {
+            if (n > 0) {
+                imported.merge(type, n, Integer::sum);
+            }
+        }
+
+        private void reject(String error) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("Imported %d records in %d ms", getTotalImported(), elapsedMillis));
+            imported.forEach((type, n) -> sb.append(String.format("%n  %s: %d", type, n)));
+            sb.append(String.format("%nRejected: %d", rejected));
+            for (String error : errors) {
+                sb.append(String.format("%n  %s", error));
+            }
+            if (rejected > errors.size()) {
+                sb.append(String.format("%n  ... %d more", rejected - errors.size()));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Parsed and validated contents of one chunk of lines
+     */
+    private static class Chunk {
+        final List<Student> students = new ArrayList<>();
+        final List<Lecturer> lecturers = new ArrayList<>();
+        final List<TransportOfficer> officers = new ArrayList<>();
+        final List<Vehicle> vehicles = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+    }
+
+    /**
+     * Constructor for creating an importer
+     * @param dataManager Data manager receiving the imported entities
+     * @param batchSize Number of lines parsed and committed together
+     * @param workers Number of parser threads
+     */
+    public BulkImporter(DataManager dataManager, int batchSize, int workers) {
+        if (batchSize < 1 || workers < 1) {
+            throw new IllegalArgumentException("Batch size and worker count must be positive");
+        }
+        this.dataManager = dataManager;
+        this.batchSize = batchSize;
+        this.workers = workers;
+    }
+
+    /**
+     * Import a file, using tabs as delimiter for .tsv files and commas otherwise
+     * @param file The file to import
+     * @return Summary of the import
+     * @throws IOException if the file cannot be read
+     */
+    public Result importFile(Path file) throws IOException {
+        char delimiter = file.getFileName().toString().toLowerCase().endsWith(".tsv") ? '\t' : ',';
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(reader, delimiter);
+        }
+    }
+
+    /**
+     * Import delimited text from a reader
+     * @param input The text to import
+     * @param delimiter Field delimiter, ',' or '\t'
+     * @return Summary of the import
+     * @throws IOException if the input cannot be read
+     */
+    public Result importFrom(Reader input, char delimiter) throws IOException {
+        long start = System.nanoTime();
+        BufferedReader reader = input instanceof BufferedReader
+                ? (BufferedReader) input : new BufferedReader(input);
+        Result result = new Result();
+        dataManager.refreshUsers();
+        // User IDs and role specific IDs share one namespace, as in the directory
+        Set<String> userIds = new HashSet<>();
+        Set<String> vehicleIds = new HashSet<>();
+        for (Vehicle vehicle : dataManager.getVehicles()) {
+            vehicleIds.add(vehicle.getVehicleId());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            // Keep a bounded number of chunks in flight so memory stays flat for any file size
+            Deque<Future<Chunk>> pending = new ArrayDeque<>();
+            int lineNumber = 0;
+            List<String> lines = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                lines.add(line);
+                if (lines.size() == batchSize) {
+                    pending.add(submit(pool, lines, lineNumber - lines.size() + 1, delimiter));
+                    lines = new ArrayList<>(batchSize);
+                    if (pending.size() > workers * 2) {
+                        commit(await(pending.poll()), result, userIds, vehicleIds);
+                    }
+                }
+            }
+            if (!lines.isEmpty()) {
+                pending.add(submit(pool, lines, lineNumber - lines.size() + 1, delimiter));
+            }
+            while (!pending.isEmpty()) {
+                commit(await(pending.poll()), result, userIds, vehicleIds);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        result.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        return result;
+    }
+
+    private static Future<Chunk> submit(ExecutorService pool, List<String> lines,
+                                        int firstLine, char delimiter) {
+        return pool.submit(() -> parse(lines, firstLine, delimiter));
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Import failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Drop entities whose ID is already taken, then persist each entity type of the
+     * chunk with one batch write. Only batches that were saved count as imported;
+     * the rows of a failed batch are rejected and their IDs freed again.
+     */
+    private void commit(Chunk chunk, Result result, Set<String> userIds, Set<String> vehicleIds) {
+        chunk.errors.forEach(result::reject);
+        List<Student> students = uniqueUsers(chunk.students, userIds, result);
+        List<Lecturer> lecturers = uniqueUsers(chunk.lecturers, userIds, result);
+        List<TransportOfficer> officers = uniqueUsers(chunk.officers, userIds, result);
+        List<Vehicle> vehicles = new ArrayList<>(chunk.vehicles.size());
+        for (Vehicle vehicle : chunk.vehicles) {
+            if (vehicleIds.add(vehicle.getVehicleId())) {
+                vehicles.add(vehicle);
+            } else {
+                result.reject("Duplicate vehicle ID: " + vehicle.getVehicleId());
+            }
+        }
+
+        if (!students.isEmpty() && !dataManager.addStudents(students)) {
+            failed("student", students, userIds, result);
+            students.clear();
+        }
+        if (!lecturers.isEmpty() && !dataManager.addLecturers(lecturers)) {
+            failed("lecturer", lecturers, userIds, result);
+            lecturers.clear();
+        }
+        if (!officers.isEmpty() && !dataManager.addOfficers(officers)) {
+            failed("officer", officers, userIds, result);
+            officers.clear();
+        }
+        if (!vehicles.isEmpty() && !dataManager.addVehicles(vehicles)) {
+            for (Vehicle vehicle : vehicles) {
+                vehicleIds.remove(vehicle.getVehicleId());
+                result.reject("Could not save vehicle " + vehicle.getVehicleId());
+            }
+            vehicles.clear();
+        }
+        result.count("students", students.size());
+        result.count("lecturers", lecturers.size());
+        result.count("officers", officers.size());
+        result.count("vehicles", vehicles.size());
+    }
+
+    private static void failed(String type, List<? extends User> batch, Set<String> userIds, Result result) {
+        for (User user : batch) {
+            userIds.removeAll(idsOf(user));
+            result.reject("Could not save " + type + " " + user.getUserId());
+        }
+    }
+
+    /**
+     * Keep the users none of whose IDs is registered or taken by an earlier row;
+     * a user's student, staff or officer ID would otherwise shadow, or be
+     * shadowed by, another user's in the directory
+     */
+    private <T extends User> List<T> uniqueUsers(List<T> users, Set<String> userIds, Result result) {
+        List<T> unique = new ArrayList<>(users.size());
+        for (T user : users) {
+            String taken = null;
+            for (String id : idsOf(user)) {
+                if (userIds.contains(id) || dataManager.isRegistered(id)) {
+                    taken = id;
+                    break;
+                }
+            }
+            if (taken == null) {
+                userIds.addAll(idsOf(user));
+                unique.add(user);
+            } else if (taken.equals(user.getUserId())) {
+                result.reject("Duplicate user ID: " + taken);
+            } else {
+                result.reject("Duplicate ID " + taken + " of user " + user.getUserId());
+            }
+        }
+        return unique;
+    }
+
+    private static Set<String> idsOf(User user) {
+        String roleId = UserDirectory.roleId(user);
+        if (roleId == null || roleId.equals(user.getUserId())) {
+            return Set.of(user.getUserId());
+        }
+        return Set.of(user.getUserId(), roleId);
+    }
+
+    private static Chunk parse(List<String> lines, int firstLine, char delimiter) {
+        Chunk chunk = new Chunk();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            List<String> fields = split(line, delimiter);
+            String type = fields.get(0).trim().toLowerCase();
+            if (type.equals("type")) {
+                continue;
+            }
+            try {
+                switch (type) {
+                    case "student":
+                        expect(fields, 9);
+                        chunk.students.add(new Student(id(fields, 1), fields.get(2), fields.get(3),
+                                fields.get(4), fields.get(5), id(fields, 6), fields.get(7),
+                                integer(fields, 8)));
+                        break;
+                    case "lecturer":
+                        expect(fields, 10);
+                        chunk.lecturers.add(new Lecturer(id(fields, 1), fields.get(2), fields.get(3),
+                                fields.get(4), fields.get(5), id(fields, 6), fields.get(7),
+                                fields.get(8), bool(fields, 9)));
+                        break;
+                    case "officer":
+                        expect(fields, 10);
+                        chunk.officers.add(new TransportOfficer(id(fields, 1), fields.get(2), fields.get(3),
+                                fields.get(4), fields.get(5), id(fields, 6), fields.get(7),
+                                fields.get(8), integer(fields, 9)));
+                        break;
+                    case "bus":
+                        expect(fields, 9);
+                        chunk.vehicles.add(new Bus(id(fields, 1), fields.get(2), fields.get(3),
+                                integer(fields, 4), fields.get(5), bool(fields, 6), bool(fields, 7),
+                                integer(fields, 8)));
+                        break;
+                    case "van":
+                        expect(fields, 9);
+                        chunk.vehicles.add(new Van(id(fields, 1), fields.get(2), fields.get(3),
+                                integer(fields, 4), bool(fields, 5), decimal(fields, 6), fields.get(7),
+                                bool(fields, 8)));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown record type '" + type + "'");
+                }
+            } catch (IllegalArgumentException e) {
+                chunk.errors.add("Line " + (firstLine + i) + ": " + e.getMessage());
+            }
+        }
+        return chunk;
+    }
+
+    private static void expect(List<String> fields, int count) {
+        if (fields.size() != count) {
+            throw new IllegalArgumentException("expected " + count + " fields but found " + fields.size());
+        }
+    }
+
+    private static String id(List<String> fields, int index) {
+        String value = fields.get(index).trim();
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("empty ID in field " + (index + 1));
+        }
+        return value;
+    }
+
+    private static int integer(List<String> fields, int index) {
+        try {
+            int value = Integer.parseInt(fields.get(index).trim());
+            if (value < 0) {
+                throw new IllegalArgumentException("negative number in field " + (index + 1));
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid number '" + fields.get(index) + "' in field " + (index + 1));
+        }
+    }
+
+    private static double decimal(List<String> fields, int index) {
+        try {
+            return Double.parseDouble(fields.get(index).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid number '" + fields.get(index) + "' in field " + (index + 1));
+        }
+    }
+
+    private static boolean bool(List<String> fields, int index) {
+        String value = fields.get(index).trim().toLowerCase();
+        if (value.equals("true") || value.equals("false")) {
+            return Boolean.parseBoolean(value);
+        }
+        throw new IllegalArgumentException("expected true or false in field " + (index + 1));
+    }
+
+    /**
+     * Split a line on the delimiter, honouring double quoted fields with "" escapes
+     */
+    static List<String> split(String line, char delimiter) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,120 @@
+package com.vu.utms.data;
+
+import com.vu.utms.metrics.Counter;
+import com.vu.utms.metrics.Metrics;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Checkpointer compacts entity stores in the background, so the logs replayed
+ * at startup stay short however long the system runs.
+ *
+ * A store is checkpointed once its log has grown past a size limit, or once an
+ * interval has passed since its last checkpoint and its log holds anything.
+ * Restart time is then bounded by reading one snapshot plus at most an interval's
+ * or a size limit's worth of log, rather than by the whole history.
+ *
+ * Checkpoints run one at a time on a daemon thread, through a callback that may
+ * compact a store together with the stores it depends on. Each writes its snapshot
+ * outside the store's writer lock ({@link EntityStore#compact}), so writers are
+ * only held up while the log switches to a new epoch. Stores not loaded yet are
+ * left alone until their log passes the size limit, so a short-lived tool that
+ * only appends never loads a list just to checkpoint it.
+ */
+class Checkpointer {
+    private static final long POLL_MILLIS = 1000;
+
+    private final List<EntityStore<?>> stores;
+    private final Consumer<EntityStore<?>> checkpoint;
+    private final long intervalNanos;
+    private final long logLimitBytes;
+    private final long[] lastCheckpoint;
+    private final Counter byInterval;
+    private final Counter bySize;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * Constructor for creating a checkpointer; call {@link #start} to run it
+     * @param stores The stores to checkpoint
+     * @param checkpoint Compacts one of the stores, e.g. {@link EntityStore#compact()}
+     * @param intervalSeconds Longest time between checkpoints of a store with a
+     *                        non-empty log, or 0 for no time limit
+     * @param logLimitBytes Log size that triggers a checkpoint, or 0 for no size limit
+     */
+    Checkpointer(List<EntityStore<?>> stores, Consumer<EntityStore<?>> checkpoint,
+                 long intervalSeconds, long logLimitBytes) {
+        this.stores = List.copyOf(stores);
+        this.checkpoint = checkpoint;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(intervalSeconds);
+        this.logLimitBytes = logLimitBytes;
+        this.lastCheckpoint = new long[stores.size()];
+        byInterval = Metrics.registry().counter("utms_checkpoints_total",
+                "Background checkpoints of entity stores", "trigger", "interval");
+        bySize = Metrics.registry().counter("utms_checkpoints_total",
+                "Background checkpoints of entity stores", "trigger", "size");
+        thread = new Thread(this::run, "utms-checkpointer");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Start checkpointing, unless both limits are off
+     */
+    void start() {
+        if (intervalNanos == 0 && logLimitBytes == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < lastCheckpoint.length; i++) {
+            lastCheckpoint[i] = now;
+        }
+        thread.start();
+    }
+
+    /**
+     * Stop checkpointing, waiting for a checkpoint in progress to finish
+     */
+    void close() {
+        closed = true;
+        if (!thread.isAlive()) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS));
+            for (int i = 0; i < stores.size() && !closed; i++) {
+                checkpointIfDue(i);
+            }
+        }
+    }
+
+    private void checkpointIfDue(int i) {
+        EntityStore<?> store = stores.get(i);
+        long logBytes = store.getLogBytes();
+        long now = System.nanoTime();
+        if (logLimitBytes > 0 && logBytes >= logLimitBytes) {
+            bySize.increment();
+        } else if (intervalNanos > 0 && logBytes > 0 && store.isLoaded()
+                && now - lastCheckpoint[i] >= intervalNanos) {
+            byInterval.increment();
+        } else {
+            return;
+        }
+        try {
+            checkpoint.accept(store);
+        } catch (RuntimeException e) {
+            System.err.println("Error checkpointing " + store.getName() + ": " + e.getMessage());
+        }
+        lastCheckpoint[i] = System.nanoTime();
+    }
+}
@@ -1,36 +1,179 @@
 package com.vu.utms.data;
 
+import com.vu.utms.codec.Codec;
+import com.vu.utms.dispatch.RequestScheduler;
+import com.vu.utms.interfaces.Trackable;
+import com.vu.utms.interfaces.TrackingListener;
+import com.vu.utms.metrics.Counter;
+import com.vu.utms.metrics.Metrics;
+import com.vu.utms.metrics.Timer;
 import com.vu.utms.models.*;
+import com.vu.utms.tracking.SpatialIndex;
 import java.io.*;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class DataManager {
-    private static final String DATA_DIR = "utms_data";
-    private static final String STUDENTS_FILE = DATA_DIR + File.separator + "students.dat";
-    private static final String LECTURERS_FILE = DATA_DIR + File.separator + "lecturers.dat";
-    private static final String OFFICERS_FILE = DATA_DIR + File.separator + "officers.dat";
-    private static final String VEHICLES_FILE = DATA_DIR + File.separator + "vehicles.dat";
-    
-    private static DataManager instance;
-    private List<Student> students;
-    private List<Lecturer> lecturers;
-    private List<TransportOfficer> officers;
-    private List<Vehicle> vehicles;
-    
-    private DataManager() {
-        students = new ArrayList<>();
-        lecturers = new ArrayList<>();
-        officers = new ArrayList<>();
-        vehicles = new ArrayList<>();
+    private static final String DEFAULT_DATA_DIR = "utms_data";
+    private static final String STUDENTS_FILE = "students.dat";
+    private static final String LECTURERS_FILE = "lecturers.dat";
+    private static final String OFFICERS_FILE = "officers.dat";
+    private static final String VEHICLES_FILE = "vehicles.dat";
+    private static final String STUDENTS_LOG = "students.log";
+    private static final String LECTURERS_LOG = "lecturers.log";
+    private static final String OFFICERS_LOG = "officers.log";
+    private static final String VEHICLES_LOG = "vehicles.log";
+    private static final String REQUESTS_FILE = "requests.dat";
+    private static final String REQUESTS_LOG = "requests.log";
+    private static final String VEHICLE_EVENTS_FILE = "vehicle_events.dat";
+    private static final String VEHICLE_EVENTS_LOG = "vehicle_events.log";
+    private static final String USERS_INDEX = "users.idx";
+    private static final String USERS_RECORDS = "users.rec";
+    private static final long DEFAULT_CHECKPOINT_SECONDS = 300;
+    private static final long DEFAULT_CHECKPOINT_LOG_MB = 64;
+    
+    private final File dataDir;
+    private final Durability durability;
+    private final GroupCommitWriter writer = new GroupCommitWriter("utms-log-writer");
+    private final EntityStore<Student> studentStore;
+    private final EntityStore<Lecturer> lecturerStore;
+    private final EntityStore<TransportOfficer> officerStore;
+    private final EntityStore<Vehicle> vehicleStore;
+    // Every request made and every status change, replayed onto user histories at load
+    private final EntityStore<TransportRequest> requestStore;
+    // Every booking made, joined or cancelled and every position saved, replayed onto the vehicles at load
+    private final EntityStore<VehicleEvent> eventStore;
+    // Logs the bookings of every vehicle handed out; see syncVehicles()
+    private final TrackingListener bookingLog = new BookingLog();
+    // Where the vehicles handed out are, kept in step with the list in syncVehicles()
+    private final SpatialIndex spatialIndex = new SpatialIndex();
+    private final Object vehiclesSyncLock = new Object();
+    // The vehicles the listener is on and the events replayed onto them; only replaced under vehiclesSyncLock
+    private volatile Snapshot<Vehicle> syncedVehicles = new Snapshot<>(new Object[0], 0, -1);
+    private volatile Snapshot<VehicleEvent> syncedEvents = new Snapshot<>(new Object[0], 0, -1);
+    private final Checkpointer checkpointer;
+    private final UserDirectory directory = new UserDirectory();
+    // The user lists and request log load together on first use, see loadUsers()
+    private final Object usersLoadLock = new Object();
+    private volatile boolean usersLoaded;
+    private volatile PagedUserStore userStore;
+    // The files users.rec is kept in step with; see pagedLookups()
+    private final List<EntityStore<?>> userFiles;
+    // Whether users.rec holds every user and history as the files stand
+    private volatile boolean userStoreCurrent;
+    private volatile RequestIndex requestIndex = new RequestIndex();
+    // Secondary indexes over the entity lists, brought up to date by each query and update
+    private final SecondaryIndex<Student> studentIndex =
+            new SecondaryIndex<>(List.of(IndexedField.STUDENT_COURSE, IndexedField.STUDENT_YEAR));
+    private final SecondaryIndex<Lecturer> lecturerIndex =
+            new SecondaryIndex<>(List.of(IndexedField.LECTURER_DEPARTMENT));
+    private final SecondaryIndex<TransportOfficer> officerIndex =
+            new SecondaryIndex<>(List.of(IndexedField.OFFICER_DEPARTMENT));
+    private final SecondaryIndex<Vehicle> vehicleIndex = new SecondaryIndex<>(List.of(
+            IndexedField.BUS_ROUTE, IndexedField.BUS_ACCESSIBLE, IndexedField.BUS_WIFI, IndexedField.VAN_PURPOSE));
+    // Requests of this process waiting for a vehicle, by priority class
+    private final RequestScheduler scheduler = new RequestScheduler();
+    private final Thread shutdownHook = new Thread(this::closeStores);
+    private final Timer lookupTimer = Metrics.registry().timer("utms_user_lookup_seconds",
+            "Time to find a user by any of their IDs");
+    private final Timer historyQueryTimer = Metrics.registry().timer("utms_history_query_seconds",
+            "Time to read one page of transport requests");
+    private final Timer entityQueryTimer = Metrics.registry().timer("utms_entity_query_seconds",
+            "Time to find users or vehicles by indexed fields");
+    private final Counter[] requestsByPriority = new Counter[TransportRequest.Priority.values().length];
+    private final Counter[] statusChanges = new Counter[TransportRequest.Status.values().length];
+    
+    private DataManager(File dataDir, Durability durability) {
+        this.dataDir = dataDir;
+        this.durability = durability;
+        studentStore = store("students", ModelCodecs.STUDENT, STUDENTS_FILE, STUDENTS_LOG);
+        lecturerStore = store("lecturers", ModelCodecs.LECTURER, LECTURERS_FILE, LECTURERS_LOG);
+        officerStore = store("officers", ModelCodecs.TRANSPORT_OFFICER, OFFICERS_FILE, OFFICERS_LOG);
+        vehicleStore = store("vehicles", ModelCodecs.VEHICLE, VEHICLES_FILE, VEHICLES_LOG);
+        requestStore = store("requests", ModelCodecs.TRANSPORT_REQUEST, REQUESTS_FILE, REQUESTS_LOG);
+        eventStore = store("vehicle_events", ModelCodecs.VEHICLE_EVENT, VEHICLE_EVENTS_FILE, VEHICLE_EVENTS_LOG);
+        userFiles = List.of(studentStore, lecturerStore, officerStore, requestStore);
+        checkpointer = new Checkpointer(List.of(studentStore, lecturerStore, officerStore, vehicleStore, requestStore,
+                                                eventStore),
+                store -> {
+                    if (store == requestStore) {
+                        compactRequests();
+                    } else if (store == eventStore) {
+                        compactVehicleEvents();
+                    } else {
+                        store.compact();
+                    }
+                },
+                Long.getLong("utms.checkpoint.seconds", DEFAULT_CHECKPOINT_SECONDS),
+                Long.getLong("utms.checkpoint.log.mb", DEFAULT_CHECKPOINT_LOG_MB) * 1024 * 1024);
+        for (TransportRequest.Priority priority : TransportRequest.Priority.values()) {
+            requestsByPriority[priority.ordinal()] = Metrics.registry().counter("utms_transport_requests_total",
+                    "Transport requests made", "priority", priority.name());
+        }
+        for (TransportRequest.Status status : TransportRequest.Status.values()) {
+            statusChanges[status.ordinal()] = Metrics.registry().counter("utms_request_status_changes_total",
+                    "Transport requests moved to a status", "status", status.name());
+        }
         initializeDataDirectory();
-        loadAllData();
+        openUserStore();
+        checkpointer.start();
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+    
+    /**
+     * Lazily created singleton, safely published by class initialization
+     */
+    private static class Holder {
+        static final DataManager INSTANCE = new DataManager(
+                new File(System.getProperty("utms.data.dir", DEFAULT_DATA_DIR)),
+                Durability.parse(System.getProperty("utms.durability"), Durability.FLUSH));
     }
     
+    /**
+     * @return The shared instance over the directory named by -Dutms.data.dir
+     *         (default "utms_data"), with the durability named by -Dutms.durability.
+     *         Every instance checkpoints a store in the background once its log
+     *         passes -Dutms.checkpoint.log.mb (default 64) or, if it is loaded,
+     *         every -Dutms.checkpoint.seconds (default 300); 0 turns a trigger off.
+     */
     public static DataManager getInstance() {
-        if (instance == null) {
-            instance = new DataManager();
+        return Holder.INSTANCE;
+    }
+    
+    /**
+     * Open a separate instance over another data directory, e.g. for benchmarks or
+     * tools working on a copy of the data. Close it when done.
+     * @param dataDir Directory holding the data files; created if missing
+     * @param durability Durability level for add* calls
+     * @return The opened instance
+     */
+    public static DataManager open(Path dataDir, Durability durability) {
+        return new DataManager(dataDir.toFile(), durability);
+    }
+    
+    /**
+     * Write everything still queued, close the data files and stop the log writer.
+     * Only for instances from {@link #open}; the shared instance closes on JVM exit.
+     */
+    public void close() {
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down; the hook closes the stores
+            return;
         }
-        return instance;
+        scheduler.close();
+        closeStores();
+        writer.close();
+    }
+    
+    /**
+     * @return The directory holding the data files
+     */
+    public File getDataDirectory() {
+        return dataDir;
     }
 
     
@@ -38,169 +181,953 @@ public class DataManager {
      * Initialize the data directory
      */
     private void initializeDataDirectory() {
-        File directory = new File(DATA_DIR);
-        if (!directory.exists()) {
-            directory.mkdirs();
+        if (!dataDir.exists()) {
+            dataDir.mkdirs();
         }
     }
     
-    private void loadAllData() {
-        students = loadData(STUDENTS_FILE, new ArrayList<>());
-        lecturers = loadData(LECTURERS_FILE, new ArrayList<>());
-        officers = loadData(OFFICERS_FILE, new ArrayList<>());
-        vehicles = loadData(VEHICLES_FILE, new ArrayList<>());
+    /**
+     * Load every list in the background, so the first call that needs them does
+     * not wait. Optional: lists not loaded yet are loaded on first use anyway, and
+     * tools that only add records never load them at all.
+     */
+    public void warmUp() {
+        Thread warmUp = new Thread(() -> {
+            loadUsers();
+            getVehicles();
+        }, "utms-warm-up");
+        warmUp.setDaemon(true);
+        warmUp.start();
     }
     
-    private <T> List<T> loadData(String filename, List<T> defaultValue) {
-        File file = new File(filename);
-        if (!file.exists()) {
-            return defaultValue;
+    /**
+     * Load the user lists and the request log the first time anything needs them,
+     * replay the requests onto the users' histories, index the users and queue
+     * the requests still pending. The four load together since the directory and
+     * the request log span every kind of user. Vehicles load on their own.
+     */
+    private void loadUsers() {
+        if (usersLoaded) {
+            return;
         }
-        
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            return (List<T>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Error loading data from " + filename + ": " + e.getMessage());
-            return defaultValue;
+        synchronized (usersLoadLock) {
+            if (usersLoaded) {
+                return;
+            }
+            studentStore.load();
+            lecturerStore.load();
+            officerStore.load();
+            requestStore.load();
+            indexUsers();
+            schedulePending();
+            usersLoaded = true;
+        }
+    }
+    
+    private void indexUsers() {
+        studentStore.snapshot().forEach(directory::index);
+        lecturerStore.snapshot().forEach(directory::index);
+        officerStore.snapshot().forEach(directory::index);
+        indexRequests();
+    }
+    
+    /**
+     * Bring every loaded user's history up to date with the request log and
+     * rebuild the request index over them
+     */
+    private void indexRequests() {
+        for (TransportRequest request : requestStore.snapshot()) {
+            applyLoggedRequest(request);
         }
+        RequestIndex index = new RequestIndex();
+        studentStore.snapshot().forEach(index::addAll);
+        lecturerStore.snapshot().forEach(index::addAll);
+        officerStore.snapshot().forEach(index::addAll);
+        requestIndex = index;
     }
     
-    private void saveData(String filename, List<?> data) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
-            oos.writeObject(data);
+    /**
+     * Apply a logged request to its requester's history. Request IDs are positional,
+     * so a request already in the history only has its status applied, which makes
+     * replaying the log more than once harmless.
+     */
+    private void applyLoggedRequest(TransportRequest request) {
+        User user = directory.findUser(request.requesterId());
+        if (user == null) {
+            return;
+        }
+        TransportHistory history = user.getTransportRequests();
+        synchronized (history) {
+            int sequence = request.sequence();
+            if (sequence == history.size() + 1) {
+                history.add(request.destination(), request.dateTime(), request.priority());
+            }
+            if (sequence <= history.size()) {
+                history.updateStatus(request.requestId(), request.status());
+            } else {
+                System.err.println("Skipping request " + request.requestId() + ": earlier requests are missing");
+            }
+        }
+    }
+    
+    /**
+     * Queue every request still waiting for a vehicle, oldest first. Their wait
+     * is measured from when they are loaded.
+     */
+    private void schedulePending() {
+        HistoryQuery pending = HistoryQuery.all().withStatus(TransportRequest.Status.PENDING)
+                                           .limit(1000);
+        String cursor = null;
+        do {
+            HistoryPage page = requestIndex.query(pending, cursor);
+            page.getRequests().forEach(scheduler::submit);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+    }
+    
+    /**
+     * Reload any user list another process has written to since it was loaded.
+     * The loaded lists act as a read cache over the data files, so repeated reads
+     * cost no deserialization. Loads the lists on first use.
+     */
+    void refreshUsers() {
+        if (!usersLoaded) {
+            loadUsers();
+            return;
+        }
+        boolean reloaded = studentStore.refresh();
+        reloaded |= lecturerStore.refresh();
+        reloaded |= officerStore.refresh();
+        reloaded |= requestStore.refresh();
+        if (reloaded) {
+            // Another process wrote users or requests that users.rec does not hold
+            userStoreCurrent = false;
+            indexUsers();
+        }
+    }
+    
+    /**
+     * Open the paged user store, rebuilding it from the user lists when it is new,
+     * was not closed cleanly or does not match the data files, which other
+     * processes may have written to since it was closed. Only then are the lists
+     * loaded here. Only one process at a time has the store; the others find
+     * users in memory.
+     */
+    private void openUserStore() {
+        try {
+            userStore = new PagedUserStore(new File(dataDir, USERS_INDEX).getPath(),
+                                           new File(dataDir, USERS_RECORDS).getPath());
+            if (!userStore.needsRebuild() && userStore.size() > 0 && userStore.getStamp() == filesStamp()) {
+                userStoreCurrent = true;
+                return;
+            }
+            loadUsers();
+            int userCount = studentStore.size() + lecturerStore.size() + officerStore.size();
+            if (userStore.needsRebuild() || userCount > 0 || userStore.size() > 0) {
+                List<User> users = new ArrayList<>(userCount);
+                users.addAll(studentStore.snapshot());
+                users.addAll(lecturerStore.snapshot());
+                users.addAll(officerStore.snapshot());
+                userStore.rebuild(users);
+            }
+            userStoreCurrent = true;
+        } catch (BPlusTree.InUseException e) {
+            System.err.println("Finding users in memory: " + e.getMessage());
+            userStore = null;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error opening user store: " + e.getMessage());
+            userStore = null;
+        }
+    }
+    
+    /**
+     * @return A value that changes whenever any process writes users or requests
+     */
+    private long filesStamp() {
+        long stamp = 0;
+        for (EntityStore<?> store : userFiles) {
+            stamp = 31 * stamp + store.fileStamp();
+        }
+        return stamp;
+    }
+    
+    /**
+     * Whether users can be found and their histories changed through the paged
+     * user store rather than by loading the user lists. That holds until the
+     * lists are loaded, and only while users.rec matches the data files: once
+     * another process writes users or requests, the lists are loaded instead.
+     * Hold usersLoadLock to act on the answer, so the lists cannot load meanwhile.
+     * @return boolean indicating users.rec is the place to find users
+     */
+    private boolean pagedLookups() {
+        if (usersLoaded || !userStoreCurrent || userStore == null) {
+            return false;
+        }
+        for (EntityStore<?> store : userFiles) {
+            if (store.changedElsewhere()) {
+                userStoreCurrent = false;
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Find a user in the paged user store by any of their IDs
+     * @param id Any of the user's IDs
+     * @return A copy of the user decoded from users.rec, or null if not found
+     */
+    private User findPaged(String id) {
+        PagedUserStore store = userStore;
+        if (store == null || id == null) {
+            return null;
+        }
+        try {
+            return store.find(id);
         } catch (IOException e) {
-            System.err.println("Error saving data to " + filename + ": " + e.getMessage());
+            System.err.println("Error looking up user " + id + ": " + e.getMessage());
+            return null;
         }
     }
     
     /**
-     * Save a student to the data file
+     * Store a user again after their history changed. Call while holding the
+     * history's monitor, so records of the same user are written in order.
+     * @param user The user
+     */
+    private void storeUser(User user) {
+        PagedUserStore store = userStore;
+        if (store == null) {
+            return;
+        }
+        try {
+            store.put(user);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error storing user " + user.getUserId() + ": " + e.getMessage());
+        }
+    }
+    
+    private void closeUserStore() {
+        PagedUserStore store = userStore;
+        if (store == null) {
+            return;
+        }
+        try {
+            userStore = null;
+            if (userStoreCurrent) {
+                store.setStamp(filesStamp());
+            }
+            store.close();
+        } catch (IOException e) {
+            System.err.println("Error closing user store: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Index an added user in the paged user store and, if their list is loaded,
+     * in memory. Users added before loading are indexed in memory by the load.
+     * @param user The user
+     * @param saved Whether the user was added to a loaded list or only logged
+     * @return boolean indicating the user was saved
+     */
+    private boolean indexUser(User user, EntityStore.Saved saved) {
+        if (saved == EntityStore.Saved.FAILED) {
+            return false;
+        }
+        if (saved == EntityStore.Saved.LISTED) {
+            directory.index(user);
+            requestIndex.addAll(user);
+        }
+        PagedUserStore store = userStore;
+        if (store == null) {
+            return true;
+        }
+        try {
+            store.put(user);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error indexing user " + user.getUserId() + ": " + e.getMessage());
+        }
+        return true;
+    }
+    
+    private <T extends Serializable> EntityStore<T> store(String name, Codec<T> codec,
+                                                          String snapshotFile, String logFile) {
+        return new EntityStore<>(name, codec, new File(dataDir, snapshotFile).getPath(),
+                                 new File(dataDir, logFile).getPath(), writer, durability);
+    }
+    
+    /**
+     * Stop checkpointing, write any records still queued (with ASYNC durability)
+     * and close the data files
+     */
+    private void closeStores() {
+        checkpointer.close();
+        studentStore.close();
+        lecturerStore.close();
+        officerStore.close();
+        vehicleStore.close();
+        requestStore.close();
+        eventStore.close();
+        closeUserStore();
+    }
+    
+    /**
+     * @return The durability level used for add* calls, set with -Dutms.durability
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+    
+    /**
+     * Fold each entity log into a freshly written snapshot file now, rather than
+     * waiting for the background checkpoints. Snapshots are written to a temporary
+     * file and renamed into place, so a crash never leaves a partially written data
+     * file behind, and writers carry on while they are written.
+     */
+    public void compact() {
+        compactRequests();
+        compactVehicleEvents();
+    }
+    
+    /**
+     * Compact the request log together with the user lists. Snapshots of users
+     * carry their histories, so the requests they hold need not be kept again:
+     * appends switch to a new request log first, then the user lists are
+     * compacted, taking in every request logged before the switch, and the
+     * request snapshot keeps only the rest, one record per request. Replaying
+     * requests at load is then bounded by what was logged since the last
+     * checkpoint rather than by the whole history.
+     */
+    private void compactRequests() {
+        // The user lists only carry the requests once they are replayed onto them
+        loadUsers();
+        requestStore.compact(logged -> {
+            boolean usersWritten = studentStore.compact();
+            usersWritten &= lecturerStore.compact();
+            usersWritten &= officerStore.compact();
+            Map<String, TransportRequest> latest = new LinkedHashMap<>();
+            for (TransportRequest request : logged) {
+                if (usersWritten && isHeld(request)) {
+                    continue;
+                }
+                // Keep the first record's place, since replay adds requests in order
+                latest.put(request.requestId(), request);
+            }
+            return new ArrayList<>(latest.values());
+        });
+        compactUserStore();
+    }
+    
+    /**
+     * Compact the vehicle event log together with the vehicle list. Appends
+     * switch to a new event log first; the events logged before the switch are
+     * then replayed onto the vehicles the vehicle snapshot is written from, so
+     * once it is written none of them need be kept.
+     */
+    private void compactVehicleEvents() {
+        eventStore.compact(logged -> {
+            boolean vehiclesWritten = vehicleStore.compact(vehicles -> {
+                replayEvents(vehicles, logged);
+                return vehicles;
+            });
+            return vehiclesWritten ? new ArrayList<>() : logged;
+        });
+    }
+    
+    /**
+     * Rebuild the paged user store from the loaded lists once most of users.rec
+     * is records left behind each time a user was stored again
+     */
+    private void compactUserStore() {
+        PagedUserStore store = userStore;
+        if (store == null || !usersLoaded || !userStoreCurrent) {
+            return;
+        }
+        try {
+            if (!store.isMostlyGarbage()) {
+                return;
+            }
+            // Under the store's monitor, so users added meanwhile are stored after the rebuild
+            synchronized (store) {
+                List<User> users = new ArrayList<>();
+                users.addAll(studentStore.snapshot());
+                users.addAll(lecturerStore.snapshot());
+                users.addAll(officerStore.snapshot());
+                store.rebuild(users);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error compacting user store: " + e.getMessage());
+            userStoreCurrent = false;
+        }
+    }
+    
+    /**
+     * @return boolean indicating the loaded history of the request's requester holds it
+     */
+    private boolean isHeld(TransportRequest request) {
+        User user = directory.findUser(request.requesterId());
+        return user != null && user.getUserId().equals(request.requesterId())
+                && user.getTransportRequests().size() >= request.sequence();
+    }
+    
+    /**
+     * Save a student by appending it to the students log
      * @param student Student object to save
+     * @return boolean indicating the student was saved; with ASYNC durability
+     *         the write itself may still fail
      */
-    public void addStudent(Student student) {
-        students.add(student);
-        saveData(STUDENTS_FILE, students);
+    public boolean addStudent(Student student) {
+        return indexUser(student, studentStore.add(student));
     }
 
-    public void addLecturer(Lecturer lecturer) {
-        lecturers.add(lecturer);
-        saveData(LECTURERS_FILE, lecturers);
+    public boolean addLecturer(Lecturer lecturer) {
+        return indexUser(lecturer, lecturerStore.add(lecturer));
     }
 
-    public void addOfficer(TransportOfficer officer) {
-        officers.add(officer);
-        saveData(OFFICERS_FILE, officers);
+    public boolean addOfficer(TransportOfficer officer) {
+        return indexUser(officer, officerStore.add(officer));
     }
     
-    public void addVehicle(Vehicle vehicle) {
-        vehicles.add(vehicle);
-        saveData(VEHICLES_FILE, vehicles);
+    public boolean addVehicle(Vehicle vehicle) {
+        vehicle.addTrackingListener(bookingLog);
+        return vehicleStore.add(vehicle) != EntityStore.Saved.FAILED;
+    }
+    
+    /**
+     * Save a batch of students with a single write to the students log
+     * @param batch Student objects to save
+     * @return boolean indicating the batch was saved, as for {@link #addStudent}
+     */
+    public boolean addStudents(List<Student> batch) {
+        return indexUsers(batch, studentStore.addAll(batch));
     }
     
-    public List<Student> getStudents() {
-        return new ArrayList<>(students);
+    public boolean addLecturers(List<Lecturer> batch) {
+        return indexUsers(batch, lecturerStore.addAll(batch));
     }
     
-    public List<Lecturer> getLecturers() {
-        return new ArrayList<>(lecturers);
+    public boolean addOfficers(List<TransportOfficer> batch) {
+        return indexUsers(batch, officerStore.addAll(batch));
     }
     
-    public List<TransportOfficer> getOfficers() {
-        return new ArrayList<>(officers);
+    public boolean addVehicles(List<Vehicle> batch) {
+        batch.forEach(vehicle -> vehicle.addTrackingListener(bookingLog));
+        return vehicleStore.addAll(batch) != EntityStore.Saved.FAILED;
     }
     
-    public List<Vehicle> getVehicles() {
-        return new ArrayList<>(vehicles);
+    private boolean indexUsers(List<? extends User> batch, EntityStore.Saved saved) {
+        if (saved == EntityStore.Saved.FAILED) {
+            return false;
+        }
+        PagedUserStore store = userStore;
+        if (store != null) {
+            try {
+                store.putAll(batch);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Error indexing user batch: " + e.getMessage());
+            }
+        }
+        if (saved == EntityStore.Saved.LISTED) {
+            batch.forEach(directory::index);
+            batch.forEach(requestIndex::addAll);
+        }
+        return true;
     }
     
+    /**
+     * Find a registered user by user ID, student ID, staff ID or officer ID.
+     * Until the user lists are loaded the user is decoded from the paged user
+     * store, so the lists are not loaded for a lookup.
+     * @param id Any of the user's IDs
+     * @return The user, or null if not found
+     */
+    public User findUser(String id) {
+        long started = lookupTimer.start();
+        User user = pagedLookups() ? findPaged(id) : findLoadedUser(id);
+        lookupTimer.stop(started);
+        return user;
+    }
+    
+    private User findLoadedUser(String id) {
+        refreshUsers();
+        return directory.findUser(id);
+    }
+    
+    /**
+     * Record a transport request for a user and log it. Until the user lists are
+     * loaded the user is read from and written back to the paged user store, and
+     * the request is queued for dispatch when the lists load.
+     * @param id Any of the user's IDs
+     * @param destination The destination location
+     * @param dateTime The requested date and time as "yyyy-MM-dd HH:mm"
+     * @return The recorded request, or null if no user has the ID
+     */
+    public TransportRequest requestTransport(String id, String destination, String dateTime) {
+        synchronized (usersLoadLock) {
+            if (pagedLookups()) {
+                User user = findPaged(id);
+                return user == null ? null : recordRequest(user, destination, dateTime, false);
+            }
+        }
+        User user = findLoadedUser(id);
+        return user == null ? null : recordRequest(user, destination, dateTime, true);
+    }
+    
+    private TransportRequest recordRequest(User user, String destination, String dateTime, boolean listed) {
+        TransportHistory history = user.getTransportRequests();
+        TransportRequest request;
+        synchronized (history) {
+            user.requestTransport(destination, dateTime);
+            request = history.get(history.size() - 1);
+            if (listed) {
+                // Under the monitor, so a status change cannot be indexed before the request
+                requestIndex.add(history, request);
+            }
+            storeUser(user);
+        }
+        requestStore.add(request);
+        if (listed) {
+            scheduler.submit(request);
+        }
+        requestsByPriority[request.priority().ordinal()].increment();
+        return request;
+    }
+    
+    /**
+     * Move a transport request to a new status and log the change
+     * @param requestId The request ID
+     * @param status The new status
+     * @return boolean indicating if the request was found
+     */
+    public boolean updateRequestStatus(String requestId, TransportRequest.Status status) {
+        String requesterId = TransportRequest.requesterOf(requestId);
+        if (requesterId == null) {
+            return false;
+        }
+        synchronized (usersLoadLock) {
+            if (pagedLookups()) {
+                User user = findPaged(requesterId);
+                return user != null && changeStatus(user, requestId, status, false);
+            }
+        }
+        User user = findLoadedUser(requesterId);
+        return user != null && changeStatus(user, requestId, status, true);
+    }
+    
+    private boolean changeStatus(User user, String requestId, TransportRequest.Status status, boolean listed) {
+        TransportHistory history = user.getTransportRequests();
+        TransportRequest updated;
+        synchronized (history) {
+            TransportRequest previous = history.find(requestId);
+            if (previous == null || !history.updateStatus(requestId, status)) {
+                return false;
+            }
+            updated = history.find(requestId);
+            if (listed) {
+                requestIndex.statusChanged(history, previous.status(), updated);
+            }
+            storeUser(user);
+        }
+        requestStore.add(updated);
+        statusChanges[status.ordinal()].increment();
+        if (listed && status == TransportRequest.Status.CANCELLED) {
+            scheduler.remove(requestId);
+        }
+        return true;
+    }
+    
+    /**
+     * @return The scheduler holding the requests that still wait for a vehicle,
+     *         loaded ones included; requests made by other processes are scheduled there
+     */
+    public RequestScheduler getRequestScheduler() {
+        loadUsers();
+        return scheduler;
+    }
+    
+    /**
+     * Read one page of transport requests, using the time-ordered request index
+     * @param query Which requests to list; the user may be given by any of their IDs
+     * @param cursor Cursor of the previous page, or null for the first page
+     * @return The page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public HistoryPage queryTransportHistory(HistoryQuery query, String cursor) {
+        long started = historyQueryTimer.start();
+        refreshUsers();
+        if (query.userId != null) {
+            User user = directory.findUser(query.userId);
+            if (user != null) {
+                query = query.forUser(user.getUserId());
+            }
+        }
+        try {
+            return requestIndex.query(query, cursor);
+        } finally {
+            historyQueryTimer.stop(started);
+        }
+    }
+    
+    /**
+     * Check the directory for an ID without reloading changed user lists first
+     * @param id Any user ID
+     * @return boolean indicating a user is registered under the ID
+     */
+    boolean isRegistered(String id) {
+        loadUsers();
+        return directory.findUser(id) != null;
+    }
+    
+    /*
+     * The getters return immutable snapshot views that share storage with the
+     * store, so polling them allocates nothing proportional to the list size.
+     * Compare Snapshot.getVersion() values to tell whether anything changed.
+     */
+    
+    public Snapshot<Student> getStudents() {
+        refreshUsers();
+        return studentStore.snapshot();
+    }
+    
+    public Snapshot<Lecturer> getLecturers() {
+        refreshUsers();
+        return lecturerStore.snapshot();
+    }
+    
+    public Snapshot<TransportOfficer> getOfficers() {
+        refreshUsers();
+        return officerStore.snapshot();
+    }
+    
+    public Snapshot<Vehicle> getVehicles() {
+        vehicleStore.refresh();
+        eventStore.refresh();
+        Snapshot<Vehicle> vehicles = vehicleStore.snapshot();
+        Snapshot<VehicleEvent> events = eventStore.snapshot();
+        if (vehicles.getVersion() != syncedVehicles.getVersion() || events.getVersion() != syncedEvents.getVersion()) {
+            syncVehicles();
+        }
+        return vehicles;
+    }
+    
+    /**
+     * @return Index of where the vehicles in {@link #getVehicles} are, following
+     *         their positions and status as they change
+     */
+    public SpatialIndex getSpatialIndex() {
+        getVehicles();
+        return spatialIndex;
+    }
+    
+    /**
+     * Bring the loaded vehicles up to date with the event log and put the booking
+     * log and the spatial index on each, so bookings made through them are saved
+     * and their positions followed. Every event is
+     * replayed whenever either list was reloaded from the files, since another
+     * process may have written them; events this process logged since the last
+     * sync were made through the vehicles, so need no replay.
+     */
+    private void syncVehicles() {
+        synchronized (vehiclesSyncLock) {
+            Snapshot<Vehicle> vehicles = vehicleStore.snapshot();
+            Snapshot<VehicleEvent> events = eventStore.snapshot();
+            boolean vehiclesAppended = isAppended(syncedVehicles, vehicles);
+            boolean eventsAppended = isAppended(syncedEvents, events);
+            if (!vehiclesAppended) {
+                // The list was reloaded; the index only follows the vehicles handed out now
+                for (Vehicle vehicle : syncedVehicles) {
+                    spatialIndex.remove(vehicle);
+                }
+            }
+            for (int i = vehiclesAppended ? syncedVehicles.size() : 0; i < vehicles.size(); i++) {
+                vehicles.get(i).addTrackingListener(bookingLog);
+            }
+            if (!vehiclesAppended || !eventsAppended) {
+                replayEvents(vehicles, events);
+            }
+            for (int i = vehiclesAppended ? syncedVehicles.size() : 0; i < vehicles.size(); i++) {
+                spatialIndex.add(vehicles.get(i));
+            }
+            syncedVehicles = vehicles;
+            syncedEvents = events;
+        }
+    }
+    
+    /**
+     * @return boolean indicating a snapshot only adds entities to an earlier one
+     *         rather than holding a list reloaded since
+     */
+    private static <T> boolean isAppended(Snapshot<T> earlier, Snapshot<T> later) {
+        int size = earlier.size();
+        return size > 0 && size <= later.size() && later.get(size - 1) == earlier.get(size - 1);
+    }
+    
+    /**
+     * Apply logged events to the vehicles they were logged for
+     */
+    private static void replayEvents(List<Vehicle> vehicles, List<VehicleEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        Map<String, Vehicle> byId = new HashMap<>();
+        for (Vehicle vehicle : vehicles) {
+            byId.put(vehicle.getVehicleId(), vehicle);
+        }
+        for (VehicleEvent event : events) {
+            Vehicle vehicle = byId.get(event.vehicleId());
+            if (vehicle != null) {
+                event.applyTo(vehicle);
+            }
+        }
+    }
+    
+    /**
+     * Logs the bookings made, joined and cancelled through the vehicles it is on
+     */
+    private final class BookingLog implements TrackingListener {
+        @Override
+        public void locationChanged(Trackable source, double latitude, double longitude) {
+        }
+        
+        @Override
+        public void statusChanged(Trackable source, VehicleStatus previous, VehicleStatus status) {
+        }
+        
+        @Override
+        public void bookingAdded(Trackable source, BookingCalendar.Booking booking) {
+            logBooking(VehicleEvent.booked(((Vehicle) source).getVehicleId(), booking));
+        }
+        
+        @Override
+        public void bookingJoined(Trackable source, BookingCalendar.Booking booking) {
+            logBooking(VehicleEvent.joined(((Vehicle) source).getVehicleId(), booking));
+        }
+        
+        @Override
+        public void bookingCancelled(Trackable source, BookingCalendar.Booking booking) {
+            logBooking(VehicleEvent.cancelled(((Vehicle) source).getVehicleId(), booking));
+        }
+        
+        private void logBooking(VehicleEvent event) {
+            if (eventStore.add(event) == EntityStore.Saved.FAILED) {
+                System.err.println("Error saving booking " + event.bookingId() + " of vehicle "
+                                   + event.vehicleId() + ": it is held in memory only");
+            }
+        }
+    }
+    
+    /**
+     * Save a vehicle's current position, so it survives a restart and other
+     * processes see it. Positions only change in memory otherwise, until the
+     * next checkpoint writes the vehicle list.
+     * @param vehicle The vehicle
+     * @return boolean indicating the position was saved; with ASYNC durability
+     *         the write itself may still fail
+     */
+    public boolean saveVehicleLocation(Vehicle vehicle) {
+        VehicleEvent event = positionOf(vehicle);
+        return event == null || eventStore.add(event) != EntityStore.Saved.FAILED;
+    }
+    
+    /**
+     * Save the current positions of several vehicles with a single write to the
+     * event log, e.g. the vehicles one telemetry batch moved
+     * @param vehicles The vehicles
+     * @return boolean indicating the positions were saved, as for {@link #saveVehicleLocation}
+     */
+    public boolean saveVehicleLocations(List<Vehicle> vehicles) {
+        List<VehicleEvent> events = new ArrayList<>(vehicles.size());
+        for (Vehicle vehicle : vehicles) {
+            VehicleEvent event = positionOf(vehicle);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        return events.isEmpty() || eventStore.addAll(events) != EntityStore.Saved.FAILED;
+    }
+    
+    /**
+     * @return The event recording a vehicle's current position, or null if it has none
+     */
+    private static VehicleEvent positionOf(Vehicle vehicle) {
+        synchronized (vehicle) {
+            if (!vehicle.hasPositionFix()) {
+                return null;
+            }
+            return VehicleEvent.moved(vehicle.getVehicleId(), vehicle.getLatitude(), vehicle.getLongitude(),
+                                      vehicle.getLocationTimestamp());
+        }
+    }
+    
+    /**
+     * Stream the students of the current snapshot without copying them
+     * @return Stream of Student objects
+     */
+    public Stream<Student> streamStudents() {
+        return getStudents().stream();
+    }
+    
+    public Stream<Lecturer> streamLecturers() {
+        return getLecturers().stream();
+    }
+    
+    public Stream<TransportOfficer> streamOfficers() {
+        return getOfficers().stream();
+    }
+    
+    public Stream<Vehicle> streamVehicles() {
+        return getVehicles().stream();
+    }
+
+    /**
+     * Find the students whose indexed fields have the given values, e.g. every
+     * year 2 student of a course, by intersecting the index's sorted lists of
+     * students holding each value instead of scanning the list
+     * @param query The values to match
+     * @return Matching students, in the order they were added
+     */
+    public List<Student> findStudents(EntityQuery<Student> query) {
+        return find(studentIndex, getStudents(), query);
+    }
+    
+    public List<Lecturer> findLecturers(EntityQuery<Lecturer> query) {
+        return find(lecturerIndex, getLecturers(), query);
+    }
+    
+    public List<TransportOfficer> findOfficers(EntityQuery<TransportOfficer> query) {
+        return find(officerIndex, getOfficers(), query);
+    }
+    
+    /**
+     * Find the vehicles whose indexed fields have the given values, e.g. the
+     * accessible buses with WiFi on a route
+     * @param query The values to match
+     * @return Matching vehicles, in the order they were added
+     */
+    public List<Vehicle> findVehicles(EntityQuery<Vehicle> query) {
+        return find(vehicleIndex, getVehicles(), query);
+    }
+    
+    private <T> List<T> find(SecondaryIndex<T> index, Snapshot<T> snapshot, EntityQuery<T> query) {
+        long started = entityQueryTimer.start();
+        try {
+            return index.find(snapshot, query);
+        } finally {
+            entityQueryTimer.stop(started);
+        }
+    }
+    
+    /**
+     * Change a student's fields, e.g. their course or year, move them in the
+     * secondary index so queries find them under their new values, and log the
+     * change so it is replayed at load
+     * @param student The student, as held in the student list
+     * @param change Applies the change, e.g. {@code s -> s.setYear(3)}
+     * @return boolean indicating the student is in the list and the change was
+     *         saved; with ASYNC durability the write itself may still fail
+     */
+    public boolean updateStudent(Student student, Consumer<? super Student> change) {
+        return update(studentStore, studentIndex, getStudents(), student, change);
+    }
+    
+    public boolean updateLecturer(Lecturer lecturer, Consumer<? super Lecturer> change) {
+        return update(lecturerStore, lecturerIndex, getLecturers(), lecturer, change);
+    }
+    
+    public boolean updateOfficer(TransportOfficer officer, Consumer<? super TransportOfficer> change) {
+        return update(officerStore, officerIndex, getOfficers(), officer, change);
+    }
+    
+    public boolean updateVehicle(Vehicle vehicle, Consumer<? super Vehicle> change) {
+        return update(vehicleStore, vehicleIndex, getVehicles(), vehicle, change);
+    }
+    
+    /**
+     * Apply a change to an entity, re-index it and log it. Holds the entity's
+     * monitor throughout, so the records of two changes to one entity are
+     * written in the order the changes were made. A change whose record fails
+     * stays in memory until the store reloads its list from the files.
+     */
+    private <T extends Serializable> boolean update(EntityStore<T> store, SecondaryIndex<T> index,
+                                                    Snapshot<T> snapshot, T entity, Consumer<? super T> change) {
+        synchronized (entity) {
+            int position = index.update(snapshot, entity, change);
+            if (position < 0) {
+                return false;
+            }
+            if (store.update(position, entity) == EntityStore.Saved.FAILED) {
+                System.err.println("Error saving the change to " + store.getName() + " " + position);
+                return false;
+            }
+            if (entity instanceof User) {
+                User user = (User) entity;
+                synchronized (user.getTransportRequests()) {
+                    storeUser(user);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Find the vehicles with no bookings between two times. Each vehicle is
+     * checked with one O(log n) calendar lookup.
+     * @param from Start of the period as "yyyy-MM-dd HH:mm"
+     * @param to End of the period as "yyyy-MM-dd HH:mm", exclusive
+     * @return List of free vehicles, empty if the period is invalid
+     */
+    public List<Vehicle> findFreeVehicles(String from, String to) {
+        long start = BookingCalendar.parseMinute(from);
+        long end = BookingCalendar.parseMinute(to);
+        List<Vehicle> free = new ArrayList<>();
+        if (start < 0 || end <= start) {
+            return free;
+        }
+        for (Vehicle vehicle : getVehicles()) {
+            if (vehicle.isFree(start, end)) {
+                free.add(vehicle);
+            }
+        }
+        return free;
+    }
+
     /**
      * Save a vehicle to the data file
      * @param vehicle Vehicle object to save
      */
     public static void saveVehicle(Vehicle vehicle) {
-        List<Vehicle> vehicles = loadVehicles();
-        vehicles.add(vehicle);
-        try (ObjectOutputStream oos = new ObjectOutputStream(
-                new FileOutputStream(VEHICLES_FILE))) {
-            oos.writeObject(vehicles);
-        } catch (IOException e) {
-            System.out.println("Error saving vehicle: " + e.getMessage());
-        }
+        getInstance().addVehicle(vehicle);
     }
     
     /**
-     * Load all students from the data file
+     * Load all students, served from the in-memory snapshot unless the data files changed
      * @return List of Student objects
      */
-    @SuppressWarnings("unchecked")
     public static List<Student> loadStudents() {
-        List<Student> students = new ArrayList<>();
-        File file = new File(STUDENTS_FILE);
-        if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(
-                    new FileInputStream(file))) {
-                students = (List<Student>) ois.readObject();
-            } catch (IOException | ClassNotFoundException e) {
-                System.out.println("Error loading students: " + e.getMessage());
-            }
-        }
-        return students;
+        return getInstance().getStudents();
     }
     
     /**
-     * Load all lecturers from the data file
+     * Load all lecturers, served from the in-memory snapshot unless the data files changed
      * @return List of Lecturer objects
      */
-    @SuppressWarnings("unchecked")
     public static List<Lecturer> loadLecturers() {
-        List<Lecturer> lecturers = new ArrayList<>();
-        File file = new File(LECTURERS_FILE);
-        if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(
-                    new FileInputStream(file))) {
-                lecturers = (List<Lecturer>) ois.readObject();
-            } catch (IOException | ClassNotFoundException e) {
-                System.out.println("Error loading lecturers: " + e.getMessage());
-            }
-        }
-        return lecturers;
+        return getInstance().getLecturers();
     }
     
     /**
-     * Load all transport officers from the data file
+     * Load all transport officers, served from the in-memory snapshot unless the data files changed
      * @return List of TransportOfficer objects
      */
-    @SuppressWarnings("unchecked")
     public static List<TransportOfficer> loadTransportOfficers() {
-        List<TransportOfficer> officers = new ArrayList<>();
-        File file = new File(OFFICERS_FILE);
-        if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(
-                    new FileInputStream(file))) {
-                officers = (List<TransportOfficer>) ois.readObject();
-            } catch (IOException | ClassNotFoundException e) {
-                System.out.println("Error loading officers: " + e.getMessage());
-            }
-        }
-        return officers;
+        return getInstance().getOfficers();
     }
     
     /**
-     * Load all vehicles from the data file
+     * Load all vehicles, served from the in-memory snapshot unless the data files changed
      * @return List of Vehicle objects
      */
-    @SuppressWarnings("unchecked")
     public static List<Vehicle> loadVehicles() {
-        List<Vehicle> vehicles = new ArrayList<>();
-        File file = new File(VEHICLES_FILE);
-        if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(
-                    new FileInputStream(file))) {
-                vehicles = (List<Vehicle>) ois.readObject();
-            } catch (IOException | ClassNotFoundException e) {
-                System.out.println("Error loading vehicles: " + e.getMessage());
-            }
-        }
-        return vehicles;
+        return getInstance().getVehicles();
     }
-}
\ No newline at end of file
+}
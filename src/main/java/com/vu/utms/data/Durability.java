@@ -0,0 +1,32 @@
+package com.vu.utms.data;
+
+/**
+ * Durability levels for persisting mutations. The level decides how long an
+ * add* call waits for its log record before returning.
+ */
+public enum Durability {
+    /** Return as soon as the record is queued; it is written and synced in the background */
+    ASYNC,
+    /** Wait until the record is written to the operating system (survives a process crash) */
+    FLUSH,
+    /** Wait until the record is synced to disk (survives a power failure) */
+    FSYNC;
+
+    /**
+     * Parse a durability level name, ignoring case
+     * @param value The level name, or null
+     * @param defaultValue Level to use when the value is missing or unknown
+     * @return The matching level
+     */
+    public static Durability parse(String value, Durability defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown durability level '" + value + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.vu.utms.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * EntityQuery selects the entities of one list whose indexed fields have given
+ * values. Queries are immutable; each method returns a narrowed copy, e.g.
+ * {@code EntityQuery.where(IndexedField.STUDENT_COURSE, "Computer Science").and(IndexedField.STUDENT_YEAR, 2)}.
+ *
+ * Values are matched exactly and must have the type the field's getter returns,
+ * boxed: a String course, an Integer year, a Boolean for the bus flags.
+ *
+ * @param <T> Type of the entities queried
+ */
+public final class EntityQuery<T> {
+    final List<IndexedField<T>> fields;
+    final List<Object> values;
+
+    private EntityQuery(List<IndexedField<T>> fields, List<Object> values) {
+        this.fields = fields;
+        this.values = values;
+    }
+
+    /**
+     * @param field The field to match
+     * @param value The value it must have
+     * @return A query for the entities with that value
+     * @throws IllegalArgumentException if the value is null
+     */
+    public static <T> EntityQuery<T> where(IndexedField<T> field, Object value) {
+        return new EntityQuery<T>(Collections.emptyList(), Collections.emptyList()).and(field, value);
+    }
+
+    /**
+     * @param field The field to match
+     * @param value The value it must have
+     * @return A copy of this query also limited to entities with that value
+     * @throws IllegalArgumentException if the value is null
+     */
+    public EntityQuery<T> and(IndexedField<T> field, Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("No value given for " + field);
+        }
+        List<IndexedField<T>> moreFields = new ArrayList<>(fields);
+        List<Object> moreValues = new ArrayList<>(values);
+        moreFields.add(field);
+        moreValues.add(value);
+        return new EntityQuery<>(Collections.unmodifiableList(moreFields), Collections.unmodifiableList(moreValues));
+    }
+
+    /**
+     * Check an entity against every condition of the query
+     * @param entity The entity
+     * @return boolean indicating if it matches
+     */
+    boolean matches(T entity) {
+        for (int i = 0; i < fields.size(); i++) {
+            if (!values.get(i).equals(fields.get(i).valueOf(entity))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < fields.size(); i++) {
+            text.append(i == 0 ? "" : " and ").append(fields.get(i)).append('=').append(values.get(i));
+        }
+        return text.toString();
+    }
+}
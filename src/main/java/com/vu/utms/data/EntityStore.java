@@ -0,0 +1,803 @@
+package com.vu.utms.data;
+
+import com.vu.utms.codec.BinaryReader;
+import com.vu.utms.codec.BinaryWriter;
+import com.vu.utms.codec.Codec;
+import com.vu.utms.metrics.Counter;
+import com.vu.utms.metrics.Metrics;
+import com.vu.utms.metrics.MetricsRegistry;
+import com.vu.utms.metrics.Timer;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+
+/**
+ * EntityStore holds the in-memory list of one entity type (students, lecturers,
+ * officers or vehicles) and persists it as a snapshot file holding the full list
+ * plus an append-only log holding one record per mutation made since the snapshot
+ * was written.
+ *
+ * Each log record is framed as [length][crc32][encoded entity] so that a record
+ * torn by a crash can be detected and dropped during replay. Entities are encoded
+ * with the store's {@link Codec}; a record may also replace an entity already in
+ * the list ({@link #update}). Files written with Java serialization before
+ * codecs existed are still read (see {@link RecordFormat}) and are rewritten in
+ * the new format by the next compaction.
+ *
+ * Logs are numbered by epoch. The snapshot records the epoch it was taken at and
+ * covers every log of an earlier epoch: epoch 0 logs to students.log, epoch n to
+ * students.n.log. Compaction switches appends to a new epoch and takes the list
+ * as it stood at the switch; writers then carry on in the new log while the
+ * snapshot is written to a temporary file outside the lock and renamed into
+ * place, and the covered logs are deleted. A crash at any point leaves a snapshot
+ * and a set of logs that replay correctly, and loading replays only the logs
+ * written since the last snapshot.
+ *
+ * Nothing is read until the list is first needed: {@link #snapshot()} loads it
+ * on first use. Until then adds only append to the log, after finding the current
+ * epoch and cutting off a torn tail by checking record checksums, which costs a
+ * fraction of decoding the list; the next load replays them with the rest.
+ *
+ * The store remembers the snapshot's modification time and the log length it last
+ * saw, so it can cheaply tell whether another process has written to the files
+ * since and the list has to be reloaded. The length only grows by records that
+ * were written; a failed write is cut off the log again and its entities are
+ * taken back out of the list, or, with ASYNC durability or once more entities
+ * followed them, dropped by reloading the list on the next refresh.
+ *
+ * Readers never lock: they get the current {@link Snapshot}, an immutable view
+ * that writers replace with a new version after each change. Every store has its
+ * own writer lock, so writers of different entity types never contend. A writer
+ * encodes its record before taking the lock, only holds it to publish the entity
+ * and queue the record, and then waits for the {@link GroupCommitWriter} as long as
+ * the configured {@link Durability} requires.
+ */
+class EntityStore<T extends Serializable> {
+    private final String name;
+    private final Codec<T> codec;
+    private final Path snapshotFile;
+    private final Path directory;
+    private final String logPrefix;
+    private final GroupCommitWriter writer;
+    private final Durability durability;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Held for a whole compaction, so only one snapshot of the store is written at a time
+    private final ReentrantLock compactLock = new ReentrantLock();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile Snapshot<T> current = new Snapshot<>(new Object[0], 0, 0);
+    private volatile boolean loaded;
+    // Set while a snapshot is written outside the lock and the files are in flux
+    private volatile boolean compacting;
+    // Set when a log write failed after its entities were published; cleared by a reload
+    private volatile boolean diverged;
+    // Whether the log tail was found and repaired for appends made before loading
+    private boolean tailFound;
+    private FileChannel log;
+    private volatile long epoch;
+    private volatile long snapshotStamp;
+    private volatile long logLength;
+    private final Timer appendTimer;
+    private final Timer loadTimer;
+    private final Timer compactTimer;
+    private final Counter appendedRecords;
+    private final Counter appendedBytes;
+
+    /**
+     * Constructor for creating a store over a snapshot file and its logs
+     * @param name Human readable entity name used in error messages
+     * @param codec Encodes the entities for the snapshot and log
+     * @param snapshotFile Path of the snapshot (.dat) file
+     * @param logFile Path of the epoch 0 (.log) file; later epochs are numbered siblings
+     * @param writer Background writer that appends the log records
+     * @param durability How long add calls wait for their records
+     */
+    EntityStore(String name, Codec<T> codec, String snapshotFile, String logFile,
+                GroupCommitWriter writer, Durability durability) {
+        this.name = name;
+        this.codec = codec;
+        this.snapshotFile = Paths.get(snapshotFile);
+        Path log = Paths.get(logFile).toAbsolutePath();
+        this.directory = log.getParent();
+        this.logPrefix = log.getFileName().toString().replaceFirst("\\.log$", "");
+        this.writer = writer;
+        this.durability = durability;
+
+        MetricsRegistry metrics = Metrics.registry();
+        appendTimer = metrics.timer("utms_store_append_seconds",
+                "Time add calls take to publish and persist their records", "store", name);
+        loadTimer = metrics.timer("utms_store_load_seconds",
+                "Time to read the snapshot and replay the logs", "store", name);
+        compactTimer = metrics.timer("utms_store_compact_seconds",
+                "Time to write a new snapshot", "store", name);
+        appendedRecords = metrics.counter("utms_store_appended_entities_total",
+                "Entities appended to the log", "store", name);
+        appendedBytes = metrics.counter("utms_store_appended_bytes_total",
+                "Bytes appended to the log", "store", name);
+        metrics.gauge("utms_store_entities", "Entities in the store", () -> current.size(), "store", name);
+        metrics.gauge("utms_store_file_bytes", "Size of the data files", () -> this.snapshotFile.toFile().length(),
+                      "store", name, "file", "snapshot");
+        metrics.gauge("utms_store_file_bytes", "Size of the data files", () -> logLength,
+                      "store", name, "file", "log");
+    }
+
+    /**
+     * Load the snapshot and replay every intact record of the logs it does not cover,
+     * cutting off a torn record left at the tail by a crash. Does nothing once loaded.
+     */
+    void load() {
+        if (loaded) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!loaded) {
+                // Records appended before loading must be on disk to be replayed
+                awaitPending();
+                reload(true);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return boolean indicating the list has been loaded
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Reload the list if another process has written to the files since they were
+     * last read. A torn tail is left alone since it may still be a record another
+     * process is in the middle of writing. While this store has records queued the
+     * file lengths are in flux, so no check is made; the same goes while a
+     * snapshot is being written. A list not loaded yet is left for its first use
+     * to load.
+     * @return boolean indicating the list was reloaded
+     */
+    boolean refresh() {
+        if (!loaded || compacting || pending.get() > 0 || !isStale()) {
+            return false;
+        }
+
+        lock.lock();
+        try {
+            // Nothing can be queued while the lock is held, so this check is exact
+            if (compacting || pending.get() > 0 || !isStale()) {
+                return false;
+            }
+            reload(false);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Check whether another process has written to the files since this store last
+     * read or wrote them, without loading the list. Waits for the records this
+     * store has queued, since the file lengths are in flux until they are written.
+     * @return boolean indicating the files hold changes the store has not seen
+     */
+    boolean changedElsewhere() {
+        lock.lock();
+        try {
+            if (!loaded && !tailFound) {
+                findTail();
+            }
+            awaitPending();
+            return !compacting && isStale();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return A value that changes whenever any process writes a snapshot or log
+     *         record, read from the files alone
+     */
+    long fileStamp() {
+        TreeMap<Long, Path> logs = findLogs();
+        long lastEpoch = logs.isEmpty() ? 0 : logs.lastKey();
+        long stamp = snapshotFile.toFile().lastModified();
+        stamp = 31 * stamp + lastEpoch;
+        return 31 * stamp + logFile(lastEpoch).toFile().length();
+    }
+
+    /**
+     * What became of entities handed to {@link #add} or {@link #addAll}
+     */
+    enum Saved {
+        /** Logged and added to the loaded list */
+        LISTED,
+        /** Only logged, since the list is not loaded yet; the load replays them */
+        LOGGED,
+        /** Not saved: encoding failed, or the log write did unless the durability is ASYNC */
+        FAILED
+    }
+
+    /**
+     * Add an entity to the list and append it to the log
+     * @param item Entity to persist
+     * @return Whether the entity was listed, only logged or not saved
+     */
+    Saved add(T item) {
+        byte[] record;
+        try {
+            record = encodeRecord(item);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error encoding " + name + ": " + e.getMessage());
+            return Saved.FAILED;
+        }
+        return persist(List.of(item), 1, record);
+    }
+
+    /**
+     * Log the new state of an entity the list holds, after it was changed in
+     * place. The record names the entity's position, so the load puts the
+     * entity back there instead of appending it. Positions only hold while
+     * compaction keeps every entity, so a store compacted with a reduce must not
+     * be updated.
+     * @param position Position of the entity in the list
+     * @param item The changed entity
+     * @return Whether the change was logged to a loaded list, only logged or not
+     *         saved, as for {@link #add}
+     */
+    Saved update(int position, T item) {
+        byte[] record;
+        try {
+            record = frame(RecordFormat.encodeUpdate(codec, position, item));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error encoding " + name + ": " + e.getMessage());
+            return Saved.FAILED;
+        }
+        // Publishes a new version of the list holding the same entities
+        return persist(List.of(), 1, record);
+    }
+
+    /**
+     * Add a batch of entities and append all of their records to the log with a
+     * single write. Records are encoded in parallel before the lock is taken.
+     * @param batch Entities to persist
+     * @return Whether the entities were listed, only logged or not saved, as for {@link #add}
+     */
+    Saved addAll(List<? extends T> batch) {
+        ByteArrayOutputStream records = new ByteArrayOutputStream(batch.size() * 256);
+        try {
+            List<byte[]> encoded = batch.parallelStream().map(this::encodeRecord).toList();
+            for (byte[] record : encoded) {
+                records.write(record);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error encoding " + name + ": " + e.getMessage());
+            return Saved.FAILED;
+        }
+        return persist(batch, batch.size(), records.toByteArray());
+    }
+
+    /**
+     * @param items Entities to add to the loaded list
+     * @param entities Number of entities the records hold
+     * @param records The framed records
+     */
+    private Saved persist(List<? extends T> items, int entities, byte[] records) {
+        long started = appendTimer.start();
+        appendedRecords.add(entities);
+        appendedBytes.add(records.length);
+        CompletableFuture<Void> written;
+        Snapshot<T> before = null;
+        Snapshot<T> appended = null;
+        lock.lock();
+        try {
+            if (!loaded && !tailFound) {
+                findTail();
+            }
+            FileChannel channel = openLog();
+            pending.incrementAndGet();
+            if (loaded) {
+                before = current;
+                append(items);
+                appended = current;
+            }
+            written = writer.submit(channel, records, durability != Durability.FLUSH, failure -> {
+                // Update the length before releasing pending so refresh never sees a gap
+                if (failure == null) {
+                    logLength += records.length;
+                } else {
+                    discardFailedWrite(channel);
+                }
+                pending.decrementAndGet();
+            });
+        } catch (IOException e) {
+            System.err.println("Error opening " + logFile(epoch) + ": " + e.getMessage());
+            return Saved.FAILED;
+        } finally {
+            lock.unlock();
+        }
+
+        if (durability != Durability.ASYNC) {
+            try {
+                written.join();
+            } catch (CompletionException e) {
+                System.err.println("Error appending " + name + " to " + logFile(epoch) + ": "
+                        + e.getCause().getMessage());
+                rollBack(before, appended);
+                appendTimer.stop(started);
+                return Saved.FAILED;
+            }
+        }
+        appendTimer.stop(started);
+        return appended != null ? Saved.LISTED : Saved.LOGGED;
+    }
+
+    /**
+     * Cut off whatever part of a failed group of records reached the log, so the
+     * next records follow the intact ones, and mark the list for reloading since
+     * it holds entities that were never logged. Runs on the writer thread, which
+     * is the only one changing the log while records are pending.
+     */
+    private void discardFailedWrite(FileChannel channel) {
+        diverged = true;
+        try {
+            if (channel.size() > logLength) {
+                channel.truncate(logLength);
+            }
+        } catch (IOException e) {
+            System.err.println("Error repairing " + logFile(epoch) + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Take entities whose records failed back out of the list. Only possible while
+     * nothing was appended after them; otherwise the list stays marked and the next
+     * refresh reloads it from the files.
+     */
+    private void rollBack(Snapshot<T> before, Snapshot<T> appended) {
+        if (appended == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (current == appended) {
+                current = new Snapshot<>(before.elements(), before.size(), appended.getVersion() + 1);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write the current list as a new snapshot and delete the logs it covers.
+     * Appends switch to a new log epoch first, under the lock; the snapshot is then
+     * written to a temporary file and atomically renamed over the old one while
+     * writers carry on. Loads the list first if needed.
+     * @return boolean indicating the snapshot was written
+     */
+    boolean compact() {
+        return compact(null);
+    }
+
+    /**
+     * Compact the store into a snapshot holding only some of the entities, e.g.
+     * dropping those another store's snapshot already holds. The list then holds
+     * the kept entities followed by any added since the switch.
+     * @param reduce Called once appends have switched to the new epoch, with the
+     *               list as it stood then; returns the entities the snapshot keeps,
+     *               in order. It may take its time, e.g. to compact other stores
+     *               first. Null keeps them all.
+     * @return boolean indicating the snapshot was written
+     */
+    boolean compact(UnaryOperator<List<T>> reduce) {
+        load();
+        compactLock.lock();
+        long started = compactTimer.start();
+        boolean written = false;
+        try {
+            long nextEpoch;
+            Snapshot<T> snapshot;
+            lock.lock();
+            try {
+                awaitPending();
+                if (isStale()) {
+                    // Take in what other processes logged, or deleting their logs would lose it
+                    reload(false);
+                }
+                nextEpoch = epoch + 1;
+                closeLog();
+                epoch = nextEpoch;
+                logLength = 0;
+                snapshot = current;
+                compacting = true;
+            } finally {
+                lock.unlock();
+            }
+
+            List<T> kept = reduce == null ? snapshot : reduce.apply(snapshot);
+            // Until the rename the old snapshot and every log since it are still in place
+            AtomicFiles.replace(snapshotFile, out -> RecordFormat.writeSnapshot(out, codec, nextEpoch, kept));
+            deleteLogsBefore(nextEpoch);
+            if (kept != snapshot) {
+                rebase(snapshot, kept);
+            }
+            written = true;
+        } catch (IOException e) {
+            System.err.println("Error compacting " + name + " into " + snapshotFile + ": " + e.getMessage());
+        } finally {
+            lock.lock();
+            try {
+                snapshotStamp = snapshotFile.toFile().lastModified();
+                compacting = false;
+            } finally {
+                lock.unlock();
+            }
+            compactTimer.stop(started);
+            compactLock.unlock();
+        }
+        return written;
+    }
+
+    /**
+     * Replace the entities of a compacted snapshot with those it kept, keeping
+     * the ones added since. Left alone if the list was reloaded meanwhile.
+     */
+    private void rebase(Snapshot<T> compacted, List<T> kept) {
+        lock.lock();
+        try {
+            Snapshot<T> now = current;
+            int covered = compacted.size();
+            if (now.size() < covered || (covered > 0 && now.get(covered - 1) != compacted.get(covered - 1))) {
+                return;
+            }
+            Object[] elements = new Object[kept.size() + now.size() - covered + 8];
+            int size = 0;
+            for (T item : kept) {
+                elements[size++] = item;
+            }
+            for (int i = covered; i < now.size(); i++) {
+                elements[size++] = now.get(i);
+            }
+            current = new Snapshot<>(elements, size, now.getVersion() + 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close the current log file after all queued records are written
+     */
+    void close() {
+        lock.lock();
+        try {
+            awaitPending();
+            closeLog();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The current immutable view of the list, loading it on first use
+     */
+    Snapshot<T> snapshot() {
+        load();
+        return current;
+    }
+
+    /**
+     * @return Human readable entity name
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return Bytes in the current log, i.e. logged since the last snapshot
+     *         unless records are still queued in another epoch
+     */
+    long getLogBytes() {
+        return logLength;
+    }
+
+    /**
+     * @return Number of entities in the list, loading it on first use
+     */
+    int size() {
+        return snapshot().size();
+    }
+
+    /**
+     * Read the snapshot and the logs of its epoch and later. Must hold the lock.
+     * @param repair Whether to cut off a torn tail and delete logs the snapshot covers
+     */
+    private void reload(boolean repair) {
+        long started = loadTimer.start();
+        closeLog();
+        snapshotStamp = snapshotFile.toFile().lastModified();
+        List<T> items = new ArrayList<>();
+        long snapshotEpoch = readSnapshot(items);
+
+        long lastEpoch = snapshotEpoch;
+        long lastLength = 0;
+        for (var entry : findLogs().tailMap(snapshotEpoch, true).entrySet()) {
+            lastEpoch = entry.getKey();
+            lastLength = replayLog(entry.getValue(), items);
+        }
+        epoch = lastEpoch;
+        logLength = lastLength;
+        if (repair) {
+            truncateTornTail(logFile(lastEpoch), lastLength);
+            deleteLogsBefore(snapshotEpoch);
+            AtomicFiles.discardTemporary(snapshotFile);
+        }
+        current = new Snapshot<>(items.toArray(), items.size(), current.getVersion() + 1);
+        diverged = false;
+        loaded = true;
+        tailFound = true;
+        loadTimer.stop(started);
+    }
+
+    /**
+     * Find the log appends go to without loading the list: the latest log, or the
+     * snapshot's epoch if compaction left none. A torn record at its tail is cut
+     * off so new records follow the intact ones. Must hold the lock.
+     */
+    private void findTail() {
+        TreeMap<Long, Path> logs = findLogs();
+        long snapshotEpoch = readSnapshotEpoch();
+        epoch = logs.isEmpty() ? snapshotEpoch : Math.max(logs.lastKey(), snapshotEpoch);
+        logLength = replayLog(logFile(epoch), null);
+        truncateTornTail(logFile(epoch), logLength);
+        snapshotStamp = snapshotFile.toFile().lastModified();
+        tailFound = true;
+    }
+
+    private boolean isStale() {
+        return diverged
+                || snapshotFile.toFile().lastModified() != snapshotStamp
+                || logFile(epoch).toFile().length() != logLength;
+    }
+
+    /**
+     * Append to the shared backing array and publish a snapshot covering the new
+     * elements. Older snapshots never look past their own size, so writing into the
+     * free tail of the array they share is invisible to them. Must hold the lock.
+     */
+    private void append(List<? extends T> added) {
+        Snapshot<T> base = current;
+        Object[] elements = base.elements();
+        int size = base.size();
+        if (size + added.size() > elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(size + added.size(), elements.length * 2 + 8));
+        }
+        for (T item : added) {
+            elements[size++] = item;
+        }
+        current = new Snapshot<>(elements, size, base.getVersion() + 1);
+    }
+
+    private void awaitPending() {
+        while (pending.get() > 0) {
+            writer.flush();
+        }
+    }
+
+    private FileChannel openLog() throws IOException {
+        if (log == null) {
+            log = FileChannel.open(logFile(epoch), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return log;
+    }
+
+    private void closeLog() {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            System.err.println("Error closing " + logFile(epoch) + ": " + e.getMessage());
+        }
+        log = null;
+    }
+
+    private Path logFile(long logEpoch) {
+        return directory.resolve(logEpoch == 0 ? logPrefix + ".log" : logPrefix + "." + logEpoch + ".log");
+    }
+
+    /**
+     * @return Every log file of this store, keyed by epoch
+     */
+    private TreeMap<Long, Path> findLogs() {
+        TreeMap<Long, Path> logs = new TreeMap<>();
+        String[] names = directory.toFile().list();
+        if (names == null) {
+            return logs;
+        }
+        for (String fileName : names) {
+            if (fileName.equals(logPrefix + ".log")) {
+                logs.put(0L, directory.resolve(fileName));
+            } else if (fileName.startsWith(logPrefix + ".") && fileName.endsWith(".log")) {
+                String number = fileName.substring(logPrefix.length() + 1, fileName.length() - 4);
+                try {
+                    logs.put(Long.parseLong(number), directory.resolve(fileName));
+                } catch (NumberFormatException e) {
+                    // Not one of our logs
+                }
+            }
+        }
+        return logs;
+    }
+
+    private void deleteLogsBefore(long logEpoch) {
+        for (Path file : findLogs().headMap(logEpoch, false).values()) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("Error deleting " + file + ": " + e.getMessage());
+            }
+        }
+        AtomicFiles.syncDirectory(directory);
+    }
+
+    /**
+     * Read the snapshot file into the given list, in either format. Serialized
+     * snapshots written before log epochs existed hold just the list and count
+     * as epoch 0.
+     * @return The epoch of the first log not covered by the snapshot
+     */
+    @SuppressWarnings("unchecked")
+    private long readSnapshot(List<T> items) {
+        File file = snapshotFile.toFile();
+        if (!file.exists()) {
+            return 0;
+        }
+
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024)) {
+            if (RecordFormat.isSnapshot(in)) {
+                return RecordFormat.readSnapshot(new DataInputStream(in), codec, items);
+            }
+            ObjectInputStream ois = new ObjectInputStream(in);
+            Object first = ois.readObject();
+            long snapshotEpoch = 0;
+            if (first instanceof Long) {
+                snapshotEpoch = (Long) first;
+                first = ois.readObject();
+            }
+            items.addAll((List<T>) first);
+            return snapshotEpoch;
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Error loading " + name + " from " + snapshotFile + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Read the epoch a snapshot was taken at. Only the header is read, except
+     * for snapshots written before log epochs existed, which are read whole.
+     * @return The epoch of the first log not covered by the snapshot
+     */
+    private long readSnapshotEpoch() {
+        File file = snapshotFile.toFile();
+        if (!file.exists()) {
+            return 0;
+        }
+
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            if (RecordFormat.isSnapshot(in)) {
+                return RecordFormat.readSnapshotEpoch(new DataInputStream(in));
+            }
+            ObjectInputStream ois = new ObjectInputStream(in);
+            Object first = ois.readObject();
+            return first instanceof Long ? (Long) first : 0;
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Error reading " + snapshotFile + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Replay log records into the given list
+     * @param logFile The log to replay
+     * @param items List receiving the replayed entities, or null to only check
+     *              the records' checksums
+     * @return Length in bytes of the intact prefix of the log
+     */
+    private long replayLog(Path logFile, List<T> items) {
+        File file = logFile.toFile();
+        if (!file.exists()) {
+            return 0;
+        }
+
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int checksum = in.readInt();
+                if (length < 0 || length > file.length()) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (crc(payload, length) != checksum) {
+                    break;
+                }
+                if (items != null && RecordFormat.isUpdate(payload, 0, length)) {
+                    replayUpdate(payload, length, items);
+                } else if (items != null) {
+                    items.add(RecordFormat.decode(codec, payload, 0, length));
+                }
+                validLength += 8 + length;
+            }
+        } catch (EOFException e) {
+            // Torn record at the tail of the log, everything before it is intact
+        } catch (IOException e) {
+            System.err.println("Error replaying " + name + " from " + logFile + ": " + e.getMessage());
+        }
+        return validLength;
+    }
+
+    private void replayUpdate(byte[] payload, int length, List<T> items) throws IOException {
+        BinaryReader reader = new BinaryReader(payload, 0, length);
+        int position = RecordFormat.readUpdatePosition(reader);
+        T item = codec.read(reader);
+        if (position < items.size()) {
+            items.set(position, item);
+        } else {
+            System.err.println("Skipping update of " + name + " " + position + ": only " + items.size() + " are stored");
+        }
+    }
+
+    private void truncateTornTail(Path logFile, long validLength) {
+        File file = logFile.toFile();
+        if (!file.exists() || file.length() == validLength) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(validLength);
+        } catch (IOException e) {
+            System.err.println("Error repairing " + logFile + ": " + e.getMessage());
+        }
+    }
+
+    private byte[] encodeRecord(T item) {
+        return frame(RecordFormat.encode(codec, item));
+    }
+
+    private static byte[] frame(BinaryWriter payload) {
+        int length = payload.size();
+        byte[] record = new byte[8 + length];
+        ByteBuffer.wrap(record)
+                .putInt(length)
+                .putInt(crc(payload.buffer(), length))
+                .put(payload.buffer(), 0, length);
+        return record;
+    }
+
+    private static int crc(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,179 @@
+package com.vu.utms.data;
+
+import com.vu.utms.metrics.Counter;
+import com.vu.utms.metrics.Histogram;
+import com.vu.utms.metrics.Metrics;
+import com.vu.utms.metrics.MetricsRegistry;
+import com.vu.utms.metrics.Timer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * GroupCommitWriter is the background persistence stage shared by all entity stores.
+ *
+ * Callers queue log records and get a future back. The writer thread takes everything
+ * that has queued up since its last round, writes the records for each file with one
+ * gathering write, syncs each touched file at most once, and then completes all of
+ * the futures together. Under burst load many mutations therefore share a single
+ * write and fsync (group commit).
+ */
+class GroupCommitWriter {
+    private final BlockingQueue<Append> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private final Timer commitTimer;
+    private final Histogram groupSizes;
+    private final Counter syncs;
+
+    /**
+     * A queued record for one log file
+     */
+    private static final class Append {
+        final FileChannel channel;
+        final byte[] bytes;
+        final boolean sync;
+        final Consumer<IOException> onDone;
+        final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        Append(FileChannel channel, byte[] bytes, boolean sync, Consumer<IOException> onDone) {
+            this.channel = channel;
+            this.bytes = bytes;
+            this.sync = sync;
+            this.onDone = onDone;
+        }
+    }
+
+    /**
+     * Constructor starting the writer thread
+     * @param name Name of the writer thread
+     */
+    GroupCommitWriter(String name) {
+        MetricsRegistry metrics = Metrics.registry();
+        commitTimer = metrics.timer("utms_log_commit_seconds",
+                "Time to write and sync one group of log records", "writer", name);
+        groupSizes = metrics.histogram("utms_log_group_records",
+                "Log records written together in one group commit", "writer", name);
+        syncs = metrics.counter("utms_log_syncs_total", "Log files synced to disk", "writer", name);
+        metrics.gauge("utms_log_queued_records", "Log records waiting for the writer", queue::size,
+                      "writer", name);
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue a record to be appended to a log file
+     * @param channel Channel of the log file, opened for appending
+     * @param bytes The record
+     * @param sync Whether the file must be synced to disk before the future completes
+     * @param onDone Callback run on the writer thread once the record is written, with
+     *               null, or failed, with the error; records written together fail together
+     * @return Future completed once the record is written (and synced if requested)
+     */
+    CompletableFuture<Void> submit(FileChannel channel, byte[] bytes, boolean sync, Consumer<IOException> onDone) {
+        Append append = new Append(channel, bytes, sync, onDone);
+        queue.add(append);
+        return append.written;
+    }
+
+    /**
+     * Wait until everything queued before this call has been written and synced
+     */
+    void flush() {
+        CompletableFuture<Void> barrier = submit(null, null, true, null);
+        try {
+            barrier.join();
+        } catch (RuntimeException e) {
+            // Failures are reported to the callers that queued the records
+        }
+    }
+
+    /**
+     * Write everything queued so far and stop the writer thread
+     */
+    void close() {
+        flush();
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Append> group = new ArrayList<>();
+        while (true) {
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(group);
+            long started = commitTimer.start();
+            commit(group);
+            commitTimer.stop(started);
+            groupSizes.record(group.size());
+            group.clear();
+        }
+    }
+
+    private void commit(List<Append> group) {
+        Map<FileChannel, List<Append>> byFile = new LinkedHashMap<>();
+        boolean syncAll = false;
+        for (Append append : group) {
+            if (append.channel == null) {
+                syncAll = true; // flush barrier
+            } else {
+                byFile.computeIfAbsent(append.channel, c -> new ArrayList<>()).add(append);
+            }
+        }
+
+        for (Map.Entry<FileChannel, List<Append>> entry : byFile.entrySet()) {
+            FileChannel channel = entry.getKey();
+            List<Append> appends = entry.getValue();
+            IOException failure = null;
+            try {
+                ByteBuffer[] buffers = new ByteBuffer[appends.size()];
+                long remaining = 0;
+                boolean sync = syncAll;
+                for (int i = 0; i < buffers.length; i++) {
+                    buffers[i] = ByteBuffer.wrap(appends.get(i).bytes);
+                    remaining += appends.get(i).bytes.length;
+                    sync |= appends.get(i).sync;
+                }
+                while (remaining > 0) {
+                    remaining -= channel.write(buffers);
+                }
+                if (sync) {
+                    channel.force(false);
+                    syncs.increment();
+                }
+            } catch (IOException e) {
+                failure = e;
+                System.err.println("Error writing log records: " + e.getMessage());
+            }
+            for (Append append : appends) {
+                if (append.onDone != null) {
+                    append.onDone.accept(failure);
+                }
+                if (failure == null) {
+                    append.written.complete(null);
+                } else {
+                    append.written.completeExceptionally(failure);
+                }
+            }
+        }
+
+        for (Append append : group) {
+            if (append.channel == null) {
+                append.written.complete(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.vu.utms.data;
+
+import com.vu.utms.models.TransportRequest;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * HistoryPage is one page of a transport history query. Pass the page's cursor
+ * back with the same query to fetch the page that follows it.
+ */
+public class HistoryPage {
+    private final List<TransportRequest> requests;
+    private final String nextCursor;
+
+    HistoryPage(List<TransportRequest> requests, String nextCursor) {
+        this.requests = Collections.unmodifiableList(requests);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<TransportRequest> getRequests() { return requests; }
+
+    /**
+     * @return Cursor for the next page, or null if this is the last page
+     */
+    public String getNextCursor() { return nextCursor; }
+
+    public boolean hasMore() { return nextCursor != null; }
+}
@@ -0,0 +1,108 @@
+package com.vu.utms.data;
+
+import com.vu.utms.models.BookingCalendar;
+import com.vu.utms.models.TransportRequest;
+
+/**
+ * HistoryQuery selects transport requests for a paged history listing.
+ * Queries are immutable; each method returns a narrowed copy, e.g.
+ * {@code HistoryQuery.all().forUser("u42").between("2025-03-01 00:00", "2025-04-01 00:00").limit(20)}.
+ */
+public final class HistoryQuery {
+    /** Page size used when none is given */
+    public static final int DEFAULT_LIMIT = 20;
+
+    private static final HistoryQuery ALL =
+            new HistoryQuery(null, Long.MIN_VALUE, Long.MAX_VALUE, null, null, DEFAULT_LIMIT, false);
+
+    final String userId;
+    final long fromMinute;
+    final long toMinute;
+    final String destination;
+    final TransportRequest.Status status;
+    final int limit;
+    final boolean newestFirst;
+
+    private HistoryQuery(String userId, long fromMinute, long toMinute, String destination,
+                         TransportRequest.Status status, int limit, boolean newestFirst) {
+        this.userId = userId;
+        this.fromMinute = fromMinute;
+        this.toMinute = toMinute;
+        this.destination = destination;
+        this.status = status;
+        this.limit = limit;
+        this.newestFirst = newestFirst;
+    }
+
+    /**
+     * @return A query over every request, oldest first
+     */
+    public static HistoryQuery all() {
+        return ALL;
+    }
+
+    /**
+     * @param userId System user ID of the requester
+     * @return A copy of this query limited to one user's requests
+     */
+    public HistoryQuery forUser(String userId) {
+        return new HistoryQuery(userId, fromMinute, toMinute, destination, status, limit, newestFirst);
+    }
+
+    /**
+     * Limit the query to a time range. Requests whose time was not given as
+     * "yyyy-MM-dd HH:mm" sort before all others and are only listed when there
+     * is no lower bound.
+     * @param from Start of the range as "yyyy-MM-dd HH:mm", or null for no lower bound
+     * @param to End of the range as "yyyy-MM-dd HH:mm", exclusive, or null for no upper bound
+     * @return A copy of this query limited to the range
+     * @throws IllegalArgumentException if a bound is not a valid time
+     */
+    public HistoryQuery between(String from, String to) {
+        return new HistoryQuery(userId, from == null ? Long.MIN_VALUE : parse(from),
+                                to == null ? Long.MAX_VALUE : parse(to),
+                                destination, status, limit, newestFirst);
+    }
+
+    /**
+     * @param destination The destination, matched exactly
+     * @return A copy of this query limited to one destination
+     */
+    public HistoryQuery toDestination(String destination) {
+        return new HistoryQuery(userId, fromMinute, toMinute, destination, status, limit, newestFirst);
+    }
+
+    /**
+     * @param status The status to match
+     * @return A copy of this query limited to requests in one status
+     */
+    public HistoryQuery withStatus(TransportRequest.Status status) {
+        return new HistoryQuery(userId, fromMinute, toMinute, destination, status, limit, newestFirst);
+    }
+
+    /**
+     * @param limit Maximum number of requests per page
+     * @return A copy of this query with the given page size
+     */
+    public HistoryQuery limit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        return new HistoryQuery(userId, fromMinute, toMinute, destination, status, limit, newestFirst);
+    }
+
+    /**
+     * @return A copy of this query that lists the most recent requests first
+     */
+    public HistoryQuery newestFirst() {
+        return new HistoryQuery(userId, fromMinute, toMinute, destination, status, limit, true);
+    }
+
+    private static long parse(String dateTime) {
+        long minute = BookingCalendar.parseMinute(dateTime);
+        if (minute < 0) {
+            throw new IllegalArgumentException("Invalid date and time: " + dateTime);
+        }
+        return minute;
+    }
+}
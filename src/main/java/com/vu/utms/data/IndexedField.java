@@ -0,0 +1,55 @@
+package com.vu.utms.data;
+
+import com.vu.utms.models.*;
+import java.util.function.Function;
+
+/**
+ * IndexedField names an attribute the data layer keeps a secondary index on,
+ * for use in an {@link EntityQuery}. Each field belongs to the entity list it
+ * indexes: the bus and van fields are fields of the vehicle list and have no
+ * value for vehicles of the other type.
+ *
+ * @param <T> Type of the entities in the indexed list
+ */
+public final class IndexedField<T> {
+    public static final IndexedField<Student> STUDENT_COURSE =
+            new IndexedField<>("course", Student::getCourse);
+    public static final IndexedField<Student> STUDENT_YEAR =
+            new IndexedField<>("year", Student::getYear);
+    public static final IndexedField<Lecturer> LECTURER_DEPARTMENT =
+            new IndexedField<>("department", Lecturer::getDepartment);
+    public static final IndexedField<TransportOfficer> OFFICER_DEPARTMENT =
+            new IndexedField<>("department", TransportOfficer::getDepartment);
+    public static final IndexedField<Vehicle> BUS_ROUTE =
+            new IndexedField<>("routeNumber", vehicle -> vehicle instanceof Bus ? ((Bus) vehicle).getRouteNumber() : null);
+    public static final IndexedField<Vehicle> BUS_ACCESSIBLE =
+            new IndexedField<>("accessible", vehicle -> vehicle instanceof Bus ? ((Bus) vehicle).isAccessible() : null);
+    public static final IndexedField<Vehicle> BUS_WIFI =
+            new IndexedField<>("wifi", vehicle -> vehicle instanceof Bus ? ((Bus) vehicle).hasWifi() : null);
+    public static final IndexedField<Vehicle> VAN_PURPOSE =
+            new IndexedField<>("purposeType", vehicle -> vehicle instanceof Van ? ((Van) vehicle).getPurposeType() : null);
+
+    private final String name;
+    private final Function<T, ?> getter;
+
+    private IndexedField(String name, Function<T, ?> getter) {
+        this.name = name;
+        this.getter = getter;
+    }
+
+    public String getName() { return name; }
+
+    /**
+     * Read the field from an entity
+     * @param entity The entity
+     * @return The value, boxed, or null if the entity has none
+     */
+    Object valueOf(T entity) {
+        return getter.apply(entity);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
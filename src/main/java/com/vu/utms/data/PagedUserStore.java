@@ -0,0 +1,234 @@
+package com.vu.utms.data;
+
+import com.vu.utms.models.ModelCodecs;
+import com.vu.utms.models.User;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * PagedUserStore keeps every user in an on-disk record file, keyed by user ID and by
+ * role specific ID through a memory-mapped {@link BPlusTree}. A lookup walks the tree
+ * pages for the key and decodes just the one record it points at, so nothing has to
+ * be held on the heap. Records hold the user's transport history, so the owner
+ * stores a user again whenever the history changes.
+ *
+ * Record file layout: a sequence of [length][encoded user] entries, encoded with
+ * {@link ModelCodecs#USER}; records serialized by earlier versions still decode.
+ * Updating a user appends a new record and repoints the key; the old record
+ * becomes garbage until the owner rebuilds the store, e.g. once
+ * {@link #isMostlyGarbage} says so.
+ *
+ * Lookups run concurrently; writers encode their record before taking the
+ * store's monitor for the append, and a rebuild also holds off lookups. Only
+ * one process can have the store open, see {@link BPlusTree}.
+ */
+class PagedUserStore implements AutoCloseable {
+    // Role specific IDs are keyed apart from user IDs so the two never overwrite each other
+    private static final String ROLE_KEY = "role:";
+
+    private final BPlusTree index;
+    private final FileChannel records;
+    // Lookups hold the read lock; a rebuild holds the write lock as well as the monitor
+    private final ReentrantReadWriteLock rebuilding = new ReentrantReadWriteLock();
+    // Size of the record file when it was last rebuilt, or opened
+    private volatile long rebuiltSize;
+
+    /**
+     * Open (or create) the store
+     * @param indexFile Path of the B+tree index file
+     * @param recordFile Path of the record file
+     * @throws BPlusTree.InUseException if another process has the store open
+     * @throws IOException if either file cannot be opened
+     */
+    PagedUserStore(String indexFile, String recordFile) throws IOException {
+        this.index = new BPlusTree(indexFile);
+        try {
+            this.records = FileChannel.open(Paths.get(recordFile), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            index.close();
+            throw e;
+        }
+        rebuiltSize = records.size();
+    }
+
+    /**
+     * Whether the index was not closed cleanly and must be rebuilt
+     * @return boolean indicating a rebuild is required
+     */
+    boolean needsRebuild() {
+        return index.needsRebuild();
+    }
+
+    /**
+     * @return The stamp saved with {@link #setStamp}, 0 for a new store
+     */
+    long getStamp() {
+        return index.getStamp();
+    }
+
+    /**
+     * Save a value telling which state of the primary data the store matches,
+     * read back by {@link #getStamp} after reopening
+     * @param stamp The value
+     */
+    void setStamp(long stamp) {
+        index.setStamp(stamp);
+    }
+
+    /**
+     * Discard the index and records and re-insert the given users
+     * @param users Every user that should be reachable through the store
+     */
+    synchronized void rebuild(List<? extends User> users) throws IOException {
+        rebuilding.writeLock().lock();
+        try {
+            index.clear();
+            records.truncate(0);
+            for (User user : users) {
+                put(user);
+            }
+            rebuiltSize = records.size();
+        } finally {
+            rebuilding.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Whether records replaced by newer ones of the same users take up most of
+     * the record file, so a rebuild would more than halve it
+     * @return boolean indicating a rebuild is worthwhile
+     */
+    boolean isMostlyGarbage() throws IOException {
+        return records.size() > 2 * Math.max(rebuiltSize, 64 * 1024);
+    }
+
+    /**
+     * Store a user, replacing any previous record with the same user ID
+     * @param user User to store
+     */
+    void put(User user) throws IOException {
+        byte[] payload = encode(user);
+        append(user, payload);
+    }
+
+    /**
+     * Store a batch of users with a single write to the record file
+     * @param users Users to store
+     */
+    void putAll(List<? extends User> users) throws IOException {
+        List<byte[]> payloads = new ArrayList<>(users.size());
+        int total = 0;
+        for (User user : users) {
+            byte[] payload = encode(user);
+            payloads.add(payload);
+            total += 4 + payload.length;
+        }
+
+        synchronized (this) {
+            long offset = records.size();
+            ByteBuffer batch = ByteBuffer.allocate(total);
+            for (byte[] payload : payloads) {
+                batch.putInt(payload.length).put(payload);
+            }
+            batch.flip();
+            while (batch.hasRemaining()) {
+                records.write(batch, offset + batch.position());
+            }
+            for (int i = 0; i < users.size(); i++) {
+                putKeys(users.get(i), offset);
+                offset += 4 + payloads.get(i).length;
+            }
+        }
+    }
+
+    private synchronized void append(User user, byte[] payload) throws IOException {
+        long offset = records.size();
+        ByteBuffer record = ByteBuffer.allocate(4 + payload.length);
+        record.putInt(payload.length).put(payload).flip();
+        while (record.hasRemaining()) {
+            records.write(record, offset + record.position());
+        }
+        putKeys(user, offset);
+    }
+
+    private void putKeys(User user, long offset) throws IOException {
+        index.put(user.getUserId(), offset);
+        String roleId = UserDirectory.roleId(user);
+        if (roleId != null) {
+            index.put(ROLE_KEY + roleId, offset);
+        }
+    }
+
+    /**
+     * Find a user by user ID, decoding only its record
+     * @param userId The user ID to look up
+     * @return The user, or null if no user has this ID
+     */
+    User get(String userId) throws IOException {
+        rebuilding.readLock().lock();
+        try {
+            return read(index.get(userId));
+        } finally {
+            rebuilding.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find a user by user ID or, failing that, by student ID, staff ID or officer ID
+     * @param id Any of the user's IDs
+     * @return The user, or null if no user has this ID
+     */
+    User find(String id) throws IOException {
+        rebuilding.readLock().lock();
+        try {
+            long offset = index.get(id);
+            return read(offset >= 0 ? offset : index.get(ROLE_KEY + id));
+        } finally {
+            rebuilding.readLock().unlock();
+        }
+    }
+
+    private User read(long offset) throws IOException {
+        if (offset < 0) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readFully(header, offset);
+        ByteBuffer payload = ByteBuffer.allocate(header.getInt(0));
+        readFully(payload, offset + 4);
+        return RecordFormat.decode(ModelCodecs.USER, payload.array(), 0, payload.capacity());
+    }
+
+    /**
+     * @return Number of keys in the store, a user ID and a role specific ID per user
+     */
+    int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        records.force(false);
+        records.close();
+        index.close();
+    }
+
+    private void readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            if (records.read(target, position + target.position()) < 0) {
+                throw new EOFException("Truncated user record at " + position);
+            }
+        }
+    }
+
+    private static byte[] encode(User user) {
+        return RecordFormat.encode(ModelCodecs.USER, user).toByteArray();
+    }
+}
@@ -0,0 +1,225 @@
+package com.vu.utms.data;
+
+import com.vu.utms.codec.BinaryReader;
+import com.vu.utms.codec.BinaryWriter;
+import com.vu.utms.codec.Codec;
+import java.io.*;
+import java.util.Collection;
+
+/**
+ * RecordFormat encodes entities for the data files with their {@link Codec} and
+ * decodes them again, along with entities in the Java serialization format files
+ * were written in before the codecs existed. The two are told apart by the first
+ * bytes: a serialization stream starts with 0xACED and an encoded entity with
+ * its type tag. A log record that starts with {@link #UPDATE_MARKER} instead
+ * replaces an entity already in the list: the marker is followed by the varint
+ * position of the entity and its new encoding.
+ *
+ * Snapshot layout: the magic "UTMS", a format version, the epoch of the first log
+ * the snapshot does not cover, the entity count and then each entity as
+ * [varint length][encoded entity]. From version 2 the entities share a symbol
+ * dictionary, so each distinct course, department, status and so on is written
+ * once per snapshot; version 1 snapshots wrote every symbol as text. Older
+ * snapshots are serialization streams holding an optional Long epoch and an
+ * ArrayList.
+ */
+final class RecordFormat {
+    /** First four bytes of a snapshot written with codecs: "UTMS" */
+    static final int SNAPSHOT_MAGIC = 0x55544D53;
+    static final int SNAPSHOT_VERSION = 2;
+    // First version whose entities share a symbol dictionary
+    private static final int SYMBOLS_VERSION = 2;
+    /** First byte of an update record; type tags start at 1 */
+    static final int UPDATE_MARKER = 0;
+
+    // One buffer per thread, reused across records
+    private static final ThreadLocal<BinaryWriter> BUFFERS = ThreadLocal.withInitial(() -> new BinaryWriter(512));
+
+    private RecordFormat() {
+    }
+
+    /**
+     * Encode an entity into this thread's buffer
+     * @param codec The entity's codec
+     * @param item The entity
+     * @return The buffer, valid until the thread's next encode
+     * @throws IllegalArgumentException if the codec cannot write the entity
+     */
+    static <T> BinaryWriter encode(Codec<T> codec, T item) {
+        BinaryWriter buffer = BUFFERS.get();
+        buffer.reset();
+        codec.write(buffer, item);
+        return buffer;
+    }
+
+    /**
+     * Encode the new state of an entity at a position in its list into this
+     * thread's buffer, as an update record
+     * @param codec The entity's codec
+     * @param position Position of the entity in the list
+     * @param item The entity
+     * @return The buffer, valid until the thread's next encode
+     * @throws IllegalArgumentException if the codec cannot write the entity
+     */
+    static <T> BinaryWriter encodeUpdate(Codec<T> codec, int position, T item) {
+        BinaryWriter buffer = BUFFERS.get();
+        buffer.reset();
+        buffer.writeByte(UPDATE_MARKER);
+        buffer.writeVarInt(position);
+        codec.write(buffer, item);
+        return buffer;
+    }
+
+    /**
+     * @return boolean indicating the record holds an update rather than a new entity
+     */
+    static boolean isUpdate(byte[] bytes, int offset, int length) {
+        return length > 0 && bytes[offset] == UPDATE_MARKER;
+    }
+
+    /**
+     * Read the header of an update record
+     * @param in Reader at the start of the record; left at the encoded entity
+     * @return Position of the entity the record replaces
+     * @throws IOException if the header is truncated
+     */
+    static int readUpdatePosition(BinaryReader in) throws IOException {
+        in.readByte();
+        return in.readVarInt();
+    }
+
+    /**
+     * Decode an entity in either format
+     * @param codec The entity's codec
+     * @param bytes Buffer holding the entity
+     * @param offset Index of its first byte
+     * @param length Its length in bytes
+     * @return The entity
+     * @throws IOException if the bytes are not a valid entity
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T decode(Codec<T> codec, byte[] bytes, int offset, int length) throws IOException {
+        if (length >= 2 && bytes[offset] == (byte) 0xAC && bytes[offset + 1] == (byte) 0xED) {
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+                return (T) ois.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unknown record type", e);
+            }
+        }
+        return codec.read(new BinaryReader(bytes, offset, length));
+    }
+
+    /**
+     * Write a snapshot
+     * @param out Stream to write to
+     * @param codec Codec of the entities
+     * @param epoch Epoch of the first log the snapshot does not cover
+     * @param items The entities
+     * @throws IOException if the stream fails
+     */
+    static <T> void writeSnapshot(OutputStream out, Codec<T> codec, long epoch, Collection<T> items)
+            throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(SNAPSHOT_MAGIC);
+        data.writeByte(SNAPSHOT_VERSION);
+        data.writeLong(epoch);
+        data.writeInt(items.size());
+        BinaryWriter encoded = new BinaryWriter(512);
+        encoded.startSymbolDictionary();
+        for (T item : items) {
+            encoded.reset();
+            codec.write(encoded, item);
+            writeVarInt(data, encoded.size());
+            encoded.writeTo(data);
+        }
+        data.flush();
+    }
+
+    /**
+     * Check whether a snapshot stream was written with codecs, leaving it where it was
+     * @param in Stream positioned at the start of a snapshot; must support mark
+     * @return boolean indicating if the snapshot starts with {@link #SNAPSHOT_MAGIC}
+     */
+    static boolean isSnapshot(InputStream in) throws IOException {
+        in.mark(4);
+        try {
+            return new DataInputStream(in).readInt() == SNAPSHOT_MAGIC;
+        } catch (EOFException e) {
+            return false;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Read the header of a snapshot written with codecs
+     * @param in Stream positioned at the start of the snapshot
+     * @return The epoch of the first log the snapshot does not cover
+     * @throws IOException if the header is truncated or from a newer format version
+     */
+    static long readSnapshotEpoch(DataInputStream in) throws IOException {
+        readSnapshotVersion(in);
+        return in.readLong();
+    }
+
+    /**
+     * Read a snapshot written with codecs
+     * @param in Stream positioned at the start of the snapshot
+     * @param codec Codec of the entities
+     * @param items List receiving the entities
+     * @return The epoch of the first log the snapshot does not cover
+     * @throws IOException if the snapshot is truncated or corrupt
+     */
+    static <T> long readSnapshot(DataInputStream in, Codec<T> codec, Collection<T> items) throws IOException {
+        int version = readSnapshotVersion(in);
+        long epoch = in.readLong();
+        int count = in.readInt();
+        byte[] buffer = new byte[512];
+        BinaryReader reader = new BinaryReader(buffer, 0, 0);
+        if (version >= SYMBOLS_VERSION) {
+            reader.startSymbolDictionary();
+        }
+        for (int i = 0; i < count; i++) {
+            int length = readVarInt(in);
+            if (length < 0) {
+                throw new StreamCorruptedException("Bad entity length " + length);
+            }
+            if (length > buffer.length) {
+                buffer = new byte[Math.max(length, buffer.length * 2)];
+            }
+            in.readFully(buffer, 0, length);
+            reader.reset(buffer, 0, length);
+            items.add(codec.read(reader));
+        }
+        return epoch;
+    }
+
+    private static int readSnapshotVersion(DataInputStream in) throws IOException {
+        in.readInt();
+        int version = in.readUnsignedByte();
+        if (version > SNAPSHOT_VERSION) {
+            throw new StreamCorruptedException("Snapshot format " + version + " is newer than this version reads");
+        }
+        return version;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+}
@@ -0,0 +1,196 @@
+package com.vu.utms.data;
+
+import com.vu.utms.models.TransportHistory;
+import com.vu.utms.models.TransportRequest;
+import com.vu.utms.models.User;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Time-ordered index over the transport requests of every user.
+ *
+ * Requests are kept in skip lists ordered by requested time, each mapping to the
+ * history that owns the request: one list for every combination of requester,
+ * destination and status a query can filter on, including none. A page is read
+ * by seeking to the query's time range (or the cursor) in the list matching
+ * exactly its filters and walking forward, so its cost depends on the page size
+ * rather than on the total history, however rare the status. Status changes move
+ * a request from the lists of its old status to those of its new one.
+ */
+final class RequestIndex {
+
+    /**
+     * Filters a list holds the requests of; null matches any value
+     */
+    private record Filter(String requesterId, String destination, TransportRequest.Status status) {
+    }
+
+    /**
+     * Sort key of an indexed request
+     */
+    private static final class Key implements Comparable<Key> {
+        final long minute;
+        final String requesterId;
+        final int sequence;
+
+        Key(long minute, String requesterId, int sequence) {
+            this.minute = minute;
+            this.requesterId = requesterId;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byTime = Long.compare(minute, other.minute);
+            if (byTime != 0) {
+                return byTime;
+            }
+            int byRequester = requesterId.compareTo(other.requesterId);
+            return byRequester != 0 ? byRequester : Integer.compare(sequence, other.sequence);
+        }
+
+        /**
+         * The smallest key at a minute, used as a range bound
+         */
+        static Key lowest(long minute) {
+            return new Key(minute, "", Integer.MIN_VALUE);
+        }
+
+        String encode() {
+            return minute + ":" + sequence + ":" + requesterId;
+        }
+
+        static Key decode(String cursor) {
+            String[] parts = cursor.split(":", 3);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            try {
+                return new Key(Long.parseLong(parts[0]), parts[2], Integer.parseInt(parts[1]));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+    }
+
+    private final ConcurrentSkipListMap<Key, TransportHistory> byTime = new ConcurrentSkipListMap<>();
+    private final Map<Filter, ConcurrentSkipListMap<Key, TransportHistory>> lists = new ConcurrentHashMap<>();
+
+    RequestIndex() {
+        lists.put(new Filter(null, null, null), byTime);
+    }
+
+    /**
+     * Index every structured request of a user
+     * @param user The user
+     */
+    void addAll(User user) {
+        TransportHistory history = user.getTransportRequests();
+        int size = history.size();
+        for (int i = 0; i < size; i++) {
+            add(history, history.get(i));
+        }
+    }
+
+    /**
+     * Index one request; indexing it again has no effect
+     * @param history The history that holds the request
+     * @param request The request
+     */
+    void add(TransportHistory history, TransportRequest request) {
+        Key key = keyOf(request);
+        for (Filter filter : filtersOf(request, null)) {
+            lists.computeIfAbsent(filter, f -> new ConcurrentSkipListMap<>()).put(key, history);
+        }
+        for (Filter filter : filtersOf(request, request.status())) {
+            lists.computeIfAbsent(filter, f -> new ConcurrentSkipListMap<>()).put(key, history);
+        }
+    }
+
+    /**
+     * Move a request to the lists of its new status. Call in the order the
+     * changes were made, e.g. while holding the history's monitor.
+     * @param history The history that holds the request
+     * @param previous Status the request had
+     * @param request The request with its new status
+     */
+    void statusChanged(TransportHistory history, TransportRequest.Status previous, TransportRequest request) {
+        if (previous == request.status()) {
+            return;
+        }
+        Key key = keyOf(request);
+        for (Filter filter : filtersOf(request, previous)) {
+            Map<Key, TransportHistory> list = lists.get(filter);
+            if (list != null) {
+                list.remove(key);
+            }
+        }
+        for (Filter filter : filtersOf(request, request.status())) {
+            lists.computeIfAbsent(filter, f -> new ConcurrentSkipListMap<>()).put(key, history);
+        }
+    }
+
+    private static Key keyOf(TransportRequest request) {
+        return new Key(request.epochMinute(), request.requesterId(), request.sequence());
+    }
+
+    /**
+     * @return The four lists a request belongs to for one status, or for any status if null
+     */
+    private static List<Filter> filtersOf(TransportRequest request, TransportRequest.Status status) {
+        return List.of(new Filter(null, null, status),
+                       new Filter(request.requesterId(), null, status),
+                       new Filter(null, request.destination(), status),
+                       new Filter(request.requesterId(), request.destination(), status));
+    }
+
+    /**
+     * @return Number of indexed requests
+     */
+    int size() {
+        return byTime.size();
+    }
+
+    /**
+     * Read one page of requests
+     * @param query What to list
+     * @param cursor Cursor from the previous page, or null for the first page
+     * @return The page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    HistoryPage query(HistoryQuery query, String cursor) {
+        NavigableMap<Key, TransportHistory> source = lists.get(new Filter(query.userId, query.destination, query.status));
+        if (source == null) {
+            return new HistoryPage(new ArrayList<>(), null);
+        }
+
+        NavigableMap<Key, TransportHistory> range =
+                source.subMap(Key.lowest(query.fromMinute), true, Key.lowest(query.toMinute), false);
+        if (query.newestFirst) {
+            range = range.descendingMap();
+        }
+        if (cursor != null) {
+            range = range.tailMap(Key.decode(cursor), false);
+        }
+
+        List<TransportRequest> requests = new ArrayList<>(query.limit);
+        Key last = null;
+        Iterator<Map.Entry<Key, TransportHistory>> entries = range.entrySet().iterator();
+        while (requests.size() < query.limit && entries.hasNext()) {
+            Map.Entry<Key, TransportHistory> entry = entries.next();
+            last = entry.getKey();
+            TransportRequest request = entry.getValue().get(last.sequence - 1);
+            // A status change moves the request between lists in two steps
+            if (query.status != null && query.status != request.status()) {
+                continue;
+            }
+            requests.add(request);
+        }
+        return new HistoryPage(requests, entries.hasNext() ? last.encode() : null);
+    }
+}
@@ -0,0 +1,306 @@
+package com.vu.utms.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * SecondaryIndex maps the values of some fields of an entity list to posting
+ * lists: the ascending positions in the list of the entities holding each value.
+ *
+ * Entity lists only grow, so an entity's position never changes and appending
+ * it to its posting lists keeps them sorted. The index follows the list's
+ * snapshots rather than its writers: a query first indexes whatever was added
+ * since the snapshot it last saw, or starts over if the list was reloaded from
+ * disk. A query then intersects the posting lists of its values, shortest first,
+ * galloping through much longer ones, and reads only the entities left.
+ *
+ * Changes to indexed fields go through {@link #update}, which moves the entity
+ * from the posting lists of its old values to those of its new ones. Each
+ * candidate is still checked again before it is returned, so an entity changed
+ * through a setter directly is never listed under its old value.
+ *
+ * @param <T> Type of the entities in the list
+ */
+final class SecondaryIndex<T> {
+    // How many times longer than the other a posting list must be to be galloped through
+    private static final int GALLOP_RATIO = 8;
+
+    /**
+     * Growable array of ascending positions
+     */
+    private static final class Postings {
+        int[] positions = new int[4];
+        int size;
+
+        void add(int position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+
+        /**
+         * Add a position anywhere in the list, keeping it ascending
+         */
+        void insert(int position) {
+            int at = Arrays.binarySearch(positions, 0, size, position);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            System.arraycopy(positions, at, positions, at + 1, size - at);
+            positions[at] = position;
+            size++;
+        }
+
+        void remove(int position) {
+            int at = Arrays.binarySearch(positions, 0, size, position);
+            if (at >= 0) {
+                System.arraycopy(positions, at + 1, positions, at, size - at - 1);
+                size--;
+            }
+        }
+    }
+
+    private final List<IndexedField<T>> fields;
+    // Postings by value, one map per field; guarded by lock
+    private final List<Map<Object, Postings>> postings = new ArrayList<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // The snapshot the postings cover; only replaced under the write lock
+    private volatile Snapshot<T> indexed = new Snapshot<>(new Object[0], 0, -1);
+
+    /**
+     * Constructor for creating an index over some fields
+     * @param fields The fields to index
+     */
+    SecondaryIndex(List<IndexedField<T>> fields) {
+        this.fields = List.copyOf(fields);
+        for (int i = 0; i < fields.size(); i++) {
+            postings.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Find the entities matching a query
+     * @param snapshot The current snapshot of the list
+     * @param query The field values to match
+     * @return Matching entities, in list order
+     */
+    List<T> find(Snapshot<T> snapshot, EntityQuery<T> query) {
+        catchUp(snapshot);
+        lock.readLock().lock();
+        try {
+            Snapshot<T> items = indexed;
+            List<Postings> lists = new ArrayList<>();
+            for (int i = 0; i < query.fields.size(); i++) {
+                int field = fields.indexOf(query.fields.get(i));
+                if (field < 0) {
+                    continue;
+                }
+                Postings list = postings.get(field).get(query.values.get(i));
+                if (list == null) {
+                    return new ArrayList<>();
+                }
+                lists.add(list);
+            }
+            List<T> result = new ArrayList<>();
+            if (lists.isEmpty()) {
+                // Only fields this index does not cover
+                for (T item : items) {
+                    if (query.matches(item)) {
+                        result.add(item);
+                    }
+                }
+                return result;
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+            int[] candidates = Arrays.copyOf(lists.get(0).positions, lists.get(0).size);
+            int count = candidates.length;
+            for (int i = 1; i < lists.size() && count > 0; i++) {
+                count = retainAll(candidates, count, lists.get(i).positions, lists.get(i).size);
+            }
+            for (int i = 0; i < count; i++) {
+                T item = items.get(candidates[i]);
+                if (query.matches(item)) {
+                    result.add(item);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Change an entity of the list and move it to the posting lists of its new
+     * values. The change is applied under the write lock, so no query sees the
+     * entity half moved.
+     * @param snapshot The current snapshot of the list
+     * @param entity The entity, as the list holds it
+     * @param change Applies the change
+     * @return Position of the entity in the list, or -1 if the list does not
+     *         hold it and it was left unchanged
+     */
+    int update(Snapshot<T> snapshot, T entity, Consumer<? super T> change) {
+        catchUp(snapshot);
+        lock.writeLock().lock();
+        try {
+            int position = positionOf(entity);
+            if (position < 0) {
+                return -1;
+            }
+            Object[] before = valuesOf(entity);
+            change.accept(entity);
+            for (int f = 0; f < fields.size(); f++) {
+                Object value = fields.get(f).valueOf(entity);
+                if (Objects.equals(before[f], value)) {
+                    continue;
+                }
+                Map<Object, Postings> byValue = postings.get(f);
+                Postings old = before[f] == null ? null : byValue.get(before[f]);
+                if (old != null) {
+                    old.remove(position);
+                    if (old.size == 0) {
+                        byValue.remove(before[f]);
+                    }
+                }
+                if (value != null) {
+                    byValue.computeIfAbsent(value, key -> new Postings()).insert(position);
+                }
+            }
+            return position;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Object[] valuesOf(T entity) {
+        Object[] values = new Object[fields.size()];
+        for (int f = 0; f < values.length; f++) {
+            values[f] = fields.get(f).valueOf(entity);
+        }
+        return values;
+    }
+
+    /**
+     * Find an entity in the indexed snapshot, first among the positions holding
+     * its current values and, if it was changed directly since it was indexed,
+     * by scanning the list. Call under the write lock.
+     * @return Its position, or -1 if the list does not hold it
+     */
+    private int positionOf(T entity) {
+        Snapshot<T> items = indexed;
+        Postings shortest = null;
+        for (int f = 0; f < fields.size(); f++) {
+            Object value = fields.get(f).valueOf(entity);
+            Postings list = value == null ? null : postings.get(f).get(value);
+            if (list != null && (shortest == null || list.size < shortest.size)) {
+                shortest = list;
+            }
+        }
+        for (int i = 0; shortest != null && i < shortest.size; i++) {
+            if (items.get(shortest.positions[i]) == entity) {
+                return shortest.positions[i];
+            }
+        }
+        for (int position = 0; position < items.size(); position++) {
+            if (items.get(position) == entity) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Index the entities a snapshot holds that the postings do not cover yet.
+     * Snapshots older than the one indexed are ignored.
+     */
+    private void catchUp(Snapshot<T> snapshot) {
+        if (snapshot.getVersion() <= indexed.getVersion()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Snapshot<T> current = indexed;
+            if (snapshot.getVersion() <= current.getVersion()) {
+                return;
+            }
+            int from = current.size();
+            // A reload replaces every entity, so the last one indexed tells an
+            // append from a reload
+            boolean appended = from <= snapshot.size()
+                    && (from == 0 || snapshot.get(from - 1) == current.get(from - 1));
+            if (!appended) {
+                postings.forEach(Map::clear);
+                from = 0;
+            }
+            for (int position = from; position < snapshot.size(); position++) {
+                T item = snapshot.get(position);
+                for (int f = 0; f < fields.size(); f++) {
+                    Object value = fields.get(f).valueOf(item);
+                    if (value != null) {
+                        postings.get(f).computeIfAbsent(value, key -> new Postings()).add(position);
+                    }
+                }
+            }
+            indexed = snapshot;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Keep the positions of a that are also in b. Both are ascending and a is
+     * the shorter. Lists of similar length are merged; a much longer b is
+     * searched by galloping ahead from the last match, which costs
+     * O(|a| log(|b| / |a|)) rather than O(|a| + |b|).
+     * @return Number of positions kept at the start of a
+     */
+    private static int retainAll(int[] a, int aSize, int[] b, int bSize) {
+        int count = 0;
+        if (bSize / GALLOP_RATIO < aSize) {
+            for (int i = 0, j = 0; i < aSize && j < bSize; ) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    a[count++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+            return count;
+        }
+        int from = 0;
+        for (int i = 0; i < aSize && from < bSize; i++) {
+            int position = a[i];
+            int low = from;
+            int high = from;
+            int step = 1;
+            while (high < bSize && b[high] < position) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            int found = Arrays.binarySearch(b, low, Math.min(high + 1, bSize), position);
+            if (found >= 0) {
+                a[count++] = position;
+                from = found + 1;
+            } else {
+                from = -found - 1;
+            }
+        }
+        return count;
+    }
+}
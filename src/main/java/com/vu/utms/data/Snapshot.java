@@ -0,0 +1,56 @@
+package com.vu.utms.data;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Snapshot is an immutable, versioned view of an entity list at one point in time.
+ *
+ * Entity lists only ever grow, so a snapshot is simply a shared backing array plus
+ * the number of elements it covers. Publishing a new version after an append costs
+ * one small object instead of a copy of the list, and readers holding an older
+ * snapshot keep seeing exactly the elements that existed when they obtained it.
+ *
+ * @param <T> Type of the entities in the list
+ */
+public final class Snapshot<T> extends AbstractList<T> implements RandomAccess {
+    private final Object[] elements;
+    private final int size;
+    private final long version;
+
+    Snapshot(Object[] elements, int size, long version) {
+        this.elements = elements;
+        this.size = size;
+        this.version = version;
+    }
+
+    /**
+     * Get the version of this snapshot. Versions increase with every change
+     * to the underlying list, so equal versions mean equal contents.
+     * @return The snapshot version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (T) elements[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The backing array, valid up to {@link #size()}
+     */
+    Object[] elements() {
+        return elements;
+    }
+}
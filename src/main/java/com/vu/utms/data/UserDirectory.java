@@ -0,0 +1,75 @@
+package com.vu.utms.data;
+
+import com.vu.utms.models.*;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * UserDirectory is an in-memory hash index over every registered user.
+ * Each user is reachable by its system user ID and by its role specific ID
+ * (student ID, staff ID or officer ID), so a lookup takes constant time
+ * regardless of how many users are registered.
+ *
+ * When two users share an ID the one indexed first keeps it, which matches the
+ * students-then-lecturers order the menus used to search in. Indexing a user again
+ * (for example after its list was reloaded) replaces the previous instance.
+ *
+ * The directory is safe for concurrent readers and writers.
+ */
+public class UserDirectory {
+    private final Map<String, User> usersById = new ConcurrentHashMap<>();
+
+    /**
+     * Add a user to the directory under all of its IDs
+     * @param user The user to index
+     */
+    public void index(User user) {
+        putId(user.getUserId(), user);
+        putId(roleId(user), user);
+    }
+
+    /**
+     * Find a user by user ID, student ID, staff ID or officer ID
+     * @param id Any of the user's IDs
+     * @return The matching user, or null if none is registered under this ID
+     */
+    public User findUser(String id) {
+        if (id == null) {
+            return null;
+        }
+        return usersById.get(id);
+    }
+
+    /**
+     * @return Number of distinct IDs in the directory
+     */
+    public int size() {
+        return usersById.size();
+    }
+
+    private void putId(String id, User user) {
+        if (id != null) {
+            usersById.merge(id, user, (existing, added) ->
+                    Objects.equals(existing.getUserId(), added.getUserId()) ? added : existing);
+        }
+    }
+
+    /**
+     * Get the role specific ID of a user
+     * @param user The user
+     * @return The student, staff or officer ID, or null for other user types
+     */
+    static String roleId(User user) {
+        if (user instanceof Student) {
+            return ((Student) user).getStudentId();
+        }
+        if (user instanceof Lecturer) {
+            return ((Lecturer) user).getStaffId();
+        }
+        if (user instanceof TransportOfficer) {
+            return ((TransportOfficer) user).getOfficerId();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,35 @@
+package com.vu.utms.dispatch;
+
+import com.vu.utms.models.Vehicle;
+
+/**
+ * Assignment records a request matched to a vehicle and the booking made for it.
+ */
+public class Assignment {
+    private final DispatchRequest request;
+    private final Vehicle vehicle;
+    private final String bookingId;
+    private final double distanceMeters;
+
+    Assignment(DispatchRequest request, Vehicle vehicle, String bookingId, double distanceMeters) {
+        this.request = request;
+        this.vehicle = vehicle;
+        this.bookingId = bookingId;
+        this.distanceMeters = distanceMeters;
+    }
+
+    public DispatchRequest getRequest() { return request; }
+    public Vehicle getVehicle() { return vehicle; }
+    public String getBookingId() { return bookingId; }
+
+    /**
+     * @return Distance from the vehicle to the pickup in meters, or NaN if either position is unknown
+     */
+    public double getDistanceMeters() { return distanceMeters; }
+
+    @Override
+    public String toString() {
+        return String.format("%s -> %s %s (booking %s)", request.getRequestId(),
+                             vehicle.getVehicleType(), vehicle.getVehicleId(), bookingId);
+    }
+}
@@ -0,0 +1,598 @@
+package com.vu.utms.dispatch;
+
+import com.vu.utms.models.BookingCalendar;
+import com.vu.utms.models.Bus;
+import com.vu.utms.models.Van;
+import com.vu.utms.models.Vehicle;
+import com.vu.utms.models.VehicleStatus;
+import com.vu.utms.tracking.SpatialIndex;
+import com.vu.utms.tracking.VehicleFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * DispatchEngine assigns vehicles to transport requests in batches, putting
+ * requests going the same way at about the same time on shared trips.
+ *
+ * A request's purpose, e.g. its destination, is the purpose of its trip. It joins
+ * a trip for the same purpose departing within {@link #DEPARTURE_WINDOW_MINUTES}
+ * of its time on a vehicle with places left for its passengers, standing places
+ * on buses included, or else books a free vehicle for a new trip that later
+ * requests may join.
+ *
+ * Each dispatch round scores every open request against the fleet in parallel and
+ * keeps its cheapest few vehicles, then walks all of those candidate pairs from
+ * cheapest to dearest. The first pair whose request is still open puts it on a
+ * trip opened earlier in the dispatch for its purpose, on a trip of the pair's
+ * vehicle or on a new trip if the vehicle is still free. Requests that lost all of
+ * their candidates to cheaper pairs, or had none but may join a trip opened in the
+ * round, are scored again in the next round.
+ *
+ * The cost of a new trip is the distance from the vehicle to the pickup plus a
+ * charge for every seat left empty, so small groups go to vans before buses;
+ * joining a trip costs the distance alone, so requests share trips first.
+ *
+ * Given a {@link SpatialIndex} over the fleet, a request with a pickup point is
+ * scored against the vehicles nearest it first. A vehicle costs at least its
+ * distance to the pickup, so once those fill the request's candidates, only the
+ * vehicles within the dearest candidate's cost of the pickup can beat them and
+ * are looked up by radius. The whole fleet is scanned only when the nearest
+ * vehicles cannot fill the candidates, or one without a position might win.
+ */
+public class DispatchEngine {
+    private static final int CANDIDATES_PER_REQUEST = 8;
+    private static final int MAX_ROUNDS = 4;
+    // Vehicles taken from the spatial index to score a request with a pickup point
+    private static final int NEARBY_VEHICLES = 4 * CANDIDATES_PER_REQUEST;
+    // Fraction a radius search around a pickup point is widened by to cover rounding
+    private static final double RADIUS_SLACK = 0.01;
+    /** How far apart, in minutes, requests may want to depart and still share a trip */
+    public static final int DEPARTURE_WINDOW_MINUTES = 15;
+    // Cost, in meters of driving, of leaving one seat empty
+    private static final double SPARE_SEAT_METERS = 50;
+    // Cost of sending a vehicle whose position is unknown to a known pickup
+    private static final double NO_FIX_METERS = 50_000;
+    private static final double METERS_PER_DEGREE = 111_195;
+    private static final long[] NO_BOOKINGS = new long[0];
+    private static final String[] NO_PURPOSES = new String[0];
+    private static final int[] NO_PASSENGERS = new int[0];
+
+    private final Supplier<? extends Collection<? extends Vehicle>> fleet;
+    // Where the fleet's vehicles are, or null to score every request against the whole fleet
+    private final SpatialIndex nearby;
+    private final Queue<DispatchRequest> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The outcome of one dispatch
+     */
+    public static class Result {
+        private final List<Assignment> assignments = new ArrayList<>();
+        private final List<DispatchRequest> unassigned = new ArrayList<>();
+        private final List<DispatchRequest> deferred = new ArrayList<>();
+        private int rounds;
+        private long elapsedMillis;
+
+        public List<Assignment> getAssignments() { return Collections.unmodifiableList(assignments); }
+
+        /**
+         * @return Requests no vehicle could take, or whose time could not be read
+         */
+        public List<DispatchRequest> getUnassigned() { return Collections.unmodifiableList(unassigned); }
+
+        /**
+         * @return Requests that still had vehicles to try when the dispatch stopped,
+         *         worth dispatching again
+         */
+        public List<DispatchRequest> getDeferred() { return Collections.unmodifiableList(deferred); }
+        public int getRounds() { return rounds; }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        /**
+         * Add the outcome of another dispatch to this one
+         */
+        void merge(Result other) {
+            assignments.addAll(other.assignments);
+            unassigned.addAll(other.unassigned);
+            deferred.addAll(other.deferred);
+            rounds += other.rounds;
+            elapsedMillis += other.elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Assigned %d of %d requests in %d rounds, %d ms",
+                                 assignments.size(), assignments.size() + unassigned.size() + deferred.size(),
+                                 rounds, elapsedMillis);
+        }
+    }
+
+    /**
+     * The dispatchable fleet captured once per dispatch as parallel primitive
+     * arrays, with each vehicle's bookings in the dispatch period copied out so
+     * that scoring can check availability and trips without taking calendar locks
+     */
+    private static final class FleetView {
+        final Vehicle[] vehicles;
+        final int[] seats;
+        final boolean[] accessible;
+        final boolean[] located;
+        final double[] latitudes;
+        final double[] longitudes;
+        // Slot of each vehicle, by identity
+        final Map<Vehicle, Integer> slots = new IdentityHashMap<>();
+        // Number of vehicles with no position
+        int unlocated;
+        final long[][] busyStarts;
+        final long[][] busyEnds;
+        final String[][] busyPurposes;
+        final int[][] busyPassengers;
+        final long from;
+        final long to;
+
+        FleetView(List<Vehicle> fleet, long from, long to) {
+            int size = fleet.size();
+            this.vehicles = fleet.toArray(new Vehicle[0]);
+            this.seats = new int[size];
+            this.accessible = new boolean[size];
+            this.located = new boolean[size];
+            this.latitudes = new double[size];
+            this.longitudes = new double[size];
+            this.busyStarts = new long[size][];
+            this.busyEnds = new long[size][];
+            this.busyPurposes = new String[size][];
+            this.busyPassengers = new int[size][];
+            this.from = from;
+            this.to = to;
+            for (int s = 0; s < size; s++) {
+                Vehicle vehicle = vehicles[s];
+                seats[s] = seatsOf(vehicle);
+                accessible[s] = isAccessible(vehicle);
+                synchronized (vehicle) {
+                    located[s] = vehicle.hasPositionFix();
+                    latitudes[s] = vehicle.getLatitude();
+                    longitudes[s] = vehicle.getLongitude();
+                }
+                slots.put(vehicle, s);
+                if (!located[s]) {
+                    unlocated++;
+                }
+                refresh(s);
+            }
+        }
+
+        /**
+         * Copy a vehicle's bookings in the dispatch period out of its calendar
+         */
+        void refresh(int s) {
+            List<BookingCalendar.Booking> bookings = vehicles[s].getCalendar().getBookings(from, to);
+            if (bookings.isEmpty()) {
+                busyStarts[s] = NO_BOOKINGS;
+                busyEnds[s] = NO_BOOKINGS;
+                busyPurposes[s] = NO_PURPOSES;
+                busyPassengers[s] = NO_PASSENGERS;
+                return;
+            }
+            long[] starts = new long[bookings.size()];
+            long[] ends = new long[bookings.size()];
+            String[] purposes = new String[bookings.size()];
+            int[] passengers = new int[bookings.size()];
+            for (int i = 0; i < starts.length; i++) {
+                BookingCalendar.Booking booking = bookings.get(i);
+                starts[i] = booking.getStartMinute();
+                ends[i] = booking.getEndMinute();
+                purposes[i] = booking.getPurpose();
+                passengers[i] = booking.getPassengers();
+            }
+            busyStarts[s] = starts;
+            busyEnds[s] = ends;
+            busyPurposes[s] = purposes;
+            busyPassengers[s] = passengers;
+        }
+
+        /**
+         * Bookings are disjoint and sorted, so only the last one starting before
+         * the interval ends can overlap it
+         */
+        boolean isFree(int s, long start, long end) {
+            long[] starts = busyStarts[s];
+            if (starts.length == 0) {
+                return true;
+            }
+            int at = Arrays.binarySearch(starts, end);
+            int before = at >= 0 ? at - 1 : -at - 2;
+            return before < 0 || busyEnds[s][before] <= start;
+        }
+
+        /**
+         * Check whether a vehicle has a trip for a purpose departing within the
+         * window of a time, with places left for more passengers
+         */
+        boolean canJoin(int s, long start, String purpose, int passengers) {
+            long[] starts = busyStarts[s];
+            if (purpose == null || starts.length == 0) {
+                return false;
+            }
+            int at = Arrays.binarySearch(starts, start - DEPARTURE_WINDOW_MINUTES);
+            for (int i = at >= 0 ? at : -at - 1; i < starts.length && starts[i] <= start + DEPARTURE_WINDOW_MINUTES; i++) {
+                int aboard = busyPassengers[s][i];
+                if (aboard > 0 && aboard + passengers <= seats[s] && purpose.equals(busyPurposes[s][i])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The cheapest candidates found so far for one request, cheapest first
+     */
+    private static final class Picks {
+        final int[] slots = new int[CANDIDATES_PER_REQUEST];
+        final double[] costs = new double[CANDIDATES_PER_REQUEST];
+        int size;
+
+        boolean isFull() {
+            return size == slots.length;
+        }
+
+        double worst() {
+            return costs[size - 1];
+        }
+
+        void add(int slot, double cost) {
+            int at = isFull() ? size - 1 : size++;
+            while (at > 0 && costs[at - 1] > cost) {
+                slots[at] = slots[at - 1];
+                costs[at] = costs[at - 1];
+                at--;
+            }
+            slots[at] = slot;
+            costs[at] = cost;
+        }
+    }
+
+    /**
+     * Constructor for creating an engine over a fleet
+     * @param fleet Supplies the current vehicles at the start of each dispatch,
+     *              e.g. {@code DataManager.getInstance()::getVehicles}
+     */
+    public DispatchEngine(Supplier<? extends Collection<? extends Vehicle>> fleet) {
+        this(fleet, null);
+    }
+
+    /**
+     * Constructor for creating an engine that looks up the vehicles near each
+     * pickup point in a spatial index
+     * @param fleet Supplies the current vehicles at the start of each dispatch
+     * @param nearby Index over the vehicles the fleet supplies, kept up to date
+     *               by the time the fleet is supplied, e.g.
+     *               {@code DataManager.getInstance().getSpatialIndex()}
+     */
+    public DispatchEngine(Supplier<? extends Collection<? extends Vehicle>> fleet, SpatialIndex nearby) {
+        this.fleet = fleet;
+        this.nearby = nearby;
+    }
+
+    /**
+     * Queue a request for the next dispatch
+     * @param request The request
+     */
+    public void submit(DispatchRequest request) {
+        pending.add(request);
+    }
+
+    /**
+     * @return Number of requests waiting for the next dispatch
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Dispatch every queued request. Requests that cannot be served, or were
+     * still unmatched when the dispatch stopped, are returned in the result and
+     * are not queued again.
+     * @return The dispatch result
+     */
+    public Result dispatchPending() {
+        List<DispatchRequest> batch = new ArrayList<>();
+        DispatchRequest request;
+        while ((request = pending.poll()) != null) {
+            batch.add(request);
+        }
+        return dispatch(batch);
+    }
+
+    /**
+     * Assign vehicles to a batch of requests, putting each assigned request on a
+     * trip of its vehicle
+     * @param requests The requests
+     * @return The dispatch result
+     */
+    public Result dispatch(List<DispatchRequest> requests) {
+        long started = System.currentTimeMillis();
+        Result result = new Result();
+
+        int n = requests.size();
+        long[] starts = new long[n];
+        long[] ends = new long[n];
+        boolean[] closed = new boolean[n];
+        boolean[] booked = new boolean[n];
+        long from = Long.MAX_VALUE;
+        long to = Long.MIN_VALUE;
+        int open = 0;
+        for (int i = 0; i < n; i++) {
+            starts[i] = BookingCalendar.parseMinute(requests.get(i).getDateTime());
+            ends[i] = starts[i] + requests.get(i).getDurationMinutes();
+            // Requests with an unparseable time or empty trip can never be booked
+            closed[i] = starts[i] < 0 || ends[i] <= starts[i];
+            if (!closed[i]) {
+                open++;
+                from = Math.min(from, starts[i]);
+                to = Math.max(to, ends[i]);
+            }
+        }
+
+        if (open > 0) {
+            List<Vehicle> candidates = new ArrayList<>();
+            for (Vehicle vehicle : fleet.get()) {
+                if (carriesPassengers(vehicle) && vehicle.getStatus() == VehicleStatus.AVAILABLE) {
+                    candidates.add(vehicle);
+                }
+            }
+            // Trips departing up to a window early may still be joined
+            FleetView view = new FleetView(candidates, from - DEPARTURE_WINDOW_MINUTES, to);
+            boolean[] touched = new boolean[view.vehicles.length];
+            // Vehicles booked for new trips in this dispatch, by purpose
+            Map<String, List<Integer>> trips = new HashMap<>();
+
+            while (open > 0 && result.rounds < MAX_ROUNDS) {
+                result.rounds++;
+                int[] todo = IntStream.range(0, n).filter(i -> !closed[i]).toArray();
+                // Score every open request against the fleet in parallel; each
+                // request writes only its own row of the candidate table
+                Picks[] picks = new Picks[todo.length];
+                IntStream.range(0, todo.length).parallel().forEach(t -> {
+                    int r = todo[t];
+                    picks[t] = score(requests.get(r), starts[r], ends[r], view, nearby);
+                });
+
+                int edges = 0;
+                for (int t = 0; t < todo.length; t++) {
+                    edges += picks[t].size;
+                }
+                // Sort candidate pairs by cost as packed (float cost, pair index) keys;
+                // costs are never negative, so their float bits sort like the values
+                int[] edgeRequest = new int[edges];
+                int[] edgeSlot = new int[edges];
+                long[] order = new long[edges];
+                int e = 0;
+                for (int t = 0; t < todo.length; t++) {
+                    for (int c = 0; c < picks[t].size; c++) {
+                        edgeRequest[e] = todo[t];
+                        edgeSlot[e] = picks[t].slots[c];
+                        order[e] = ((long) Float.floatToIntBits((float) picks[t].costs[c]) << 32) | e;
+                        e++;
+                    }
+                }
+                Arrays.parallelSort(order);
+
+                // Commit cheapest first; the calendar has the final say on conflicts and places
+                int assigned = result.assignments.size();
+                Set<String> opened = new HashSet<>();
+                for (long key : order) {
+                    int index = (int) key;
+                    int r = edgeRequest[index];
+                    if (closed[r]) {
+                        continue;
+                    }
+                    DispatchRequest request = requests.get(r);
+                    String purpose = request.getPurpose();
+                    int s = edgeSlot[index];
+                    String bookingId = null;
+                    for (int t : trips.getOrDefault(purpose, Collections.emptyList())) {
+                        if (!request.isAccessibleRequired() || view.accessible[t]) {
+                            bookingId = view.vehicles[t].joinTrip(starts[r], DEPARTURE_WINDOW_MINUTES, purpose,
+                                                                  request.getPassengers());
+                            if (bookingId != null) {
+                                s = t;
+                                break;
+                            }
+                        }
+                    }
+                    Vehicle vehicle = view.vehicles[s];
+                    if (bookingId == null) {
+                        bookingId = vehicle.joinTrip(starts[r], DEPARTURE_WINDOW_MINUTES, purpose,
+                                                     request.getPassengers());
+                    }
+                    if (bookingId == null) {
+                        bookingId = vehicle.book(starts[r], ends[r], purpose, request.getPassengers());
+                        if (bookingId != null && purpose != null) {
+                            trips.computeIfAbsent(purpose, p -> new ArrayList<>()).add(s);
+                            opened.add(purpose);
+                        }
+                    }
+                    if (bookingId != null) {
+                        closed[r] = true;
+                        booked[r] = true;
+                        touched[s] = true;
+                        open--;
+                        double distance = request.hasPickup() && view.located[s]
+                                ? SpatialIndex.distanceMeters(request.getPickupLatitude(), request.getPickupLongitude(),
+                                                              view.latitudes[s], view.longitudes[s])
+                                : Double.NaN;
+                        result.assignments.add(new Assignment(request, vehicle, bookingId, distance));
+                    }
+                }
+                // A request with no candidate now will not find one later in this
+                // dispatch, since rounds only ever add bookings, unless it can join
+                // a trip opened in this round
+                for (int t = 0; t < todo.length; t++) {
+                    int r = todo[t];
+                    if (picks[t].size == 0 && !opened.contains(requests.get(r).getPurpose())) {
+                        closed[r] = true;
+                        open--;
+                    }
+                }
+                if (result.assignments.size() == assigned) {
+                    break;
+                }
+                for (int s = 0; s < touched.length; s++) {
+                    if (touched[s]) {
+                        view.refresh(s);
+                        touched[s] = false;
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (!booked[i]) {
+                (closed[i] ? result.unassigned : result.deferred).add(requests.get(i));
+            }
+        }
+        result.elapsedMillis = System.currentTimeMillis() - started;
+        return result;
+    }
+
+    /**
+     * Passenger places in a vehicle; buses carry standing passengers as well
+     * @param vehicle The vehicle
+     * @return Number of passengers the vehicle can carry
+     */
+    public static int seatsOf(Vehicle vehicle) {
+        return vehicle.getPassengerPlaces();
+    }
+
+    /**
+     * @param vehicle The vehicle
+     * @return boolean indicating if the vehicle may be sent to pick up passengers
+     */
+    public static boolean carriesPassengers(Vehicle vehicle) {
+        return !(vehicle instanceof Van && "Cargo".equalsIgnoreCase(((Van) vehicle).getPurposeType()));
+    }
+
+    private static boolean isAccessible(Vehicle vehicle) {
+        if (vehicle instanceof Bus) {
+            return ((Bus) vehicle).isAccessible();
+        }
+        return vehicle instanceof Van && "Special Needs".equalsIgnoreCase(((Van) vehicle).getPurposeType());
+    }
+
+    /**
+     * Find the cheapest vehicles for one request, among those with a trip it can
+     * join or free for a new one
+     * @param nearby Index to take the vehicles near the pickup point from, or null
+     * @return The candidates, cheapest first
+     */
+    private static Picks score(DispatchRequest request, long start, long end, FleetView view, SpatialIndex nearby) {
+        if (nearby != null && request.hasPickup()) {
+            double latitude = request.getPickupLatitude();
+            double longitude = request.getPickupLongitude();
+            VehicleFilter filter = VehicleFilter.any().available().withCapacity(request.getPassengers());
+            List<Vehicle> near = nearby.nearest(latitude, longitude, NEARBY_VEHICLES, filter);
+            Picks picks = score(request, start, end, view, near);
+            // Any vehicle left out is no nearer than the farthest one returned, or
+            // if fewer came back, is one the index holds no position for
+            double reach = Double.POSITIVE_INFINITY;
+            if (near.size() == NEARBY_VEHICLES) {
+                Vehicle farthest = near.get(near.size() - 1);
+                synchronized (farthest) {
+                    reach = SpatialIndex.distanceMeters(latitude, longitude,
+                                                        farthest.getLatitude(), farthest.getLongitude());
+                }
+            }
+            double bound = view.unlocated > 0 ? Math.min(reach, NO_FIX_METERS) : reach;
+            if (picks.isFull() ? picks.worst() <= bound : bound == Double.POSITIVE_INFINITY) {
+                return picks;
+            }
+            if (picks.isFull() && (view.unlocated == 0 || picks.worst() <= NO_FIX_METERS)) {
+                // A vehicle costs at least its distance, so any cheaper one lies
+                // within the dearest pick's cost of the pickup; equirectangular and
+                // great-circle distances differ by far less than the slack allowed
+                double radius = picks.worst() * (1 + RADIUS_SLACK);
+                return score(request, start, end, view, nearby.withinRadius(latitude, longitude, radius, filter));
+            }
+        }
+        return score(request, start, end, view, null, view.vehicles.length);
+    }
+
+    /**
+     * Score a request against some of the fleet's vehicles
+     * @param vehicles The vehicles to score; those outside the fleet are skipped
+     * @return The candidates, cheapest first
+     */
+    private static Picks score(DispatchRequest request, long start, long end, FleetView view, List<Vehicle> vehicles) {
+        int[] slots = new int[vehicles.size()];
+        int count = 0;
+        for (Vehicle vehicle : vehicles) {
+            Integer slot = view.slots.get(vehicle);
+            if (slot != null) {
+                slots[count++] = slot;
+            }
+        }
+        return score(request, start, end, view, slots, count);
+    }
+
+    /**
+     * Score a request against some slots of the fleet
+     * @param slots The slots to score, or null for the first count slots
+     * @param count Number of slots to score
+     * @return The candidates, cheapest first
+     */
+    private static Picks score(DispatchRequest request, long start, long end, FleetView view, int[] slots, int count) {
+        Picks picks = new Picks();
+        int passengers = request.getPassengers();
+        String purpose = request.getPurpose();
+        boolean needsAccess = request.isAccessibleRequired();
+        boolean pickup = request.hasPickup();
+        double latitude = request.getPickupLatitude();
+        double longitude = request.getPickupLongitude();
+        double cos = pickup ? Math.cos(Math.toRadians(latitude)) : 1;
+        int[] seats = view.seats;
+        for (int i = 0; i < count; i++) {
+            int s = slots == null ? i : slots[i];
+            if (seats[s] < passengers || (needsAccess && !view.accessible[s])) {
+                continue;
+            }
+            double cost = 0;
+            if (pickup) {
+                if (view.located[s]) {
+                    // Equirectangular distance is accurate enough at city scale for ranking
+                    double dy = view.latitudes[s] - latitude;
+                    double dx = (view.longitudes[s] - longitude) * cos;
+                    cost += Math.sqrt(dx * dx + dy * dy) * METERS_PER_DEGREE;
+                } else {
+                    cost += NO_FIX_METERS;
+                }
+            }
+            if (picks.isFull() && cost >= picks.worst()) {
+                continue;
+            }
+            if (view.canJoin(s, start, purpose, passengers)) {
+                picks.add(s, cost);
+                continue;
+            }
+            cost += (seats[s] - passengers) * SPARE_SEAT_METERS;
+            if (picks.isFull() && cost >= picks.worst()) {
+                continue;
+            }
+            if (view.isFree(s, start, end)) {
+                picks.add(s, cost);
+            }
+        }
+        return picks;
+    }
+}
@@ -0,0 +1,75 @@
+package com.vu.utms.dispatch;
+
+/**
+ * DispatchRequest is a transport request waiting to be assigned a vehicle.
+ * Pickup coordinates are optional; requests without them are matched on
+ * capacity and availability alone.
+ */
+public class DispatchRequest {
+    private final String requestId;
+    private final String userId;
+    private final int passengers;
+    private final double pickupLatitude;
+    private final double pickupLongitude;
+    private final String dateTime;
+    private final int durationMinutes;
+    private final String purpose;
+    private final boolean accessibleRequired;
+
+    /**
+     * Constructor for creating a request with a pickup point
+     * @param requestId Unique identifier for the request
+     * @param userId ID of the user who made the request
+     * @param passengers Number of seats needed
+     * @param pickupLatitude Pickup latitude, or Double.NaN if unknown
+     * @param pickupLongitude Pickup longitude, or Double.NaN if unknown
+     * @param dateTime Start of the trip as "yyyy-MM-dd HH:mm"
+     * @param durationMinutes How long the vehicle is needed
+     * @param purpose Purpose recorded on the booking, e.g. the destination
+     * @param accessibleRequired Whether a wheelchair accessible vehicle is needed
+     */
+    public DispatchRequest(String requestId, String userId, int passengers,
+                           double pickupLatitude, double pickupLongitude,
+                           String dateTime, int durationMinutes, String purpose,
+                           boolean accessibleRequired) {
+        this.requestId = requestId;
+        this.userId = userId;
+        this.passengers = passengers;
+        this.pickupLatitude = pickupLatitude;
+        this.pickupLongitude = pickupLongitude;
+        this.dateTime = dateTime;
+        this.durationMinutes = durationMinutes;
+        this.purpose = purpose;
+        this.accessibleRequired = accessibleRequired;
+    }
+
+    /**
+     * Constructor for creating a request without a pickup point
+     */
+    public DispatchRequest(String requestId, String userId, int passengers,
+                           String dateTime, int durationMinutes, String purpose) {
+        this(requestId, userId, passengers, Double.NaN, Double.NaN, dateTime, durationMinutes, purpose, false);
+    }
+
+    public String getRequestId() { return requestId; }
+    public String getUserId() { return userId; }
+    public int getPassengers() { return passengers; }
+    public double getPickupLatitude() { return pickupLatitude; }
+    public double getPickupLongitude() { return pickupLongitude; }
+    public String getDateTime() { return dateTime; }
+    public int getDurationMinutes() { return durationMinutes; }
+    public String getPurpose() { return purpose; }
+    public boolean isAccessibleRequired() { return accessibleRequired; }
+
+    /**
+     * @return boolean indicating if the request has pickup coordinates
+     */
+    public boolean hasPickup() {
+        return !Double.isNaN(pickupLatitude) && !Double.isNaN(pickupLongitude);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%s, %d passengers, %s)", requestId, userId, passengers, dateTime);
+    }
+}
@@ -0,0 +1,171 @@
+package com.vu.utms.dispatch;
+
+import com.vu.utms.models.TransportRequest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * RequestDispatcher feeds requests from a {@link RequestScheduler} to a
+ * {@link DispatchEngine} in small batches and reports each outcome.
+ *
+ * A batch is dispatched as runs of consecutive requests of the same class, in
+ * the order the scheduler released them, so a cheaper pairing for a standard
+ * request never takes a vehicle from a priority request released before it.
+ * Each request is one passenger on a trip of {@link #TRIP_MINUTES} minutes with
+ * its destination as the trip's purpose, so requests for the same destination at
+ * about the same time share a vehicle while it has places left.
+ *
+ * Requests no vehicle can take are rejected. Requests the engine still had
+ * vehicles to try for when it stopped stay pending and are queued again; the
+ * background thread waits {@link #RETRY_MILLIS} before the next batch when a
+ * batch assigned nothing, so they are not retried in a busy loop.
+ */
+public class RequestDispatcher implements AutoCloseable {
+    /** How long each dispatched trip books its vehicle */
+    public static final int TRIP_MINUTES = 60;
+    /** How long the background thread waits after a batch that assigned nothing */
+    public static final long RETRY_MILLIS = 1000;
+    private static final int DEFAULT_BATCH_SIZE = 64;
+
+    private final RequestScheduler scheduler;
+    private final DispatchEngine engine;
+    private final BiPredicate<String, TransportRequest.Status> statusUpdate;
+    private final int batchSize;
+    private Thread worker;
+
+    /**
+     * Constructor for creating a dispatcher
+     * @param scheduler Where requests wait
+     * @param engine Assigns vehicles to each run of requests
+     * @param statusUpdate Records the outcome of each request, e.g.
+     *                     {@code DataManager.getInstance()::updateRequestStatus}
+     */
+    public RequestDispatcher(RequestScheduler scheduler, DispatchEngine engine,
+                             BiPredicate<String, TransportRequest.Status> statusUpdate) {
+        this(scheduler, engine, statusUpdate, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructor for creating a dispatcher with a batch size
+     * @param batchSize Most requests taken from the scheduler at once
+     */
+    public RequestDispatcher(RequestScheduler scheduler, DispatchEngine engine,
+                             BiPredicate<String, TransportRequest.Status> statusUpdate, int batchSize) {
+        this.scheduler = scheduler;
+        this.engine = engine;
+        this.statusUpdate = statusUpdate;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Dispatch the next batch of queued requests without waiting for more
+     * @return The combined result, empty if nothing was queued
+     */
+    public DispatchEngine.Result dispatchNext() {
+        List<TransportRequest> batch = new ArrayList<>(batchSize);
+        scheduler.drainTo(batch, batchSize);
+        return dispatch(batch);
+    }
+
+    /**
+     * Dispatch queued requests until the scheduler is empty or a batch assigns
+     * nothing, leaving the requests queued again for a later dispatch
+     * @return Number of requests assigned a vehicle
+     */
+    public int dispatchAll() {
+        int assigned = 0;
+        while (scheduler.size() > 0) {
+            int batch = dispatchNext().getAssignments().size();
+            if (batch == 0) {
+                break;
+            }
+            assigned += batch;
+        }
+        return assigned;
+    }
+
+    /**
+     * Dispatch in a background thread as requests arrive, until closed
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        worker = new Thread(this::run, "utms-dispatcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stop the background thread after the batch it is dispatching
+     */
+    @Override
+    public synchronized void close() {
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+    }
+
+    private void run() {
+        List<TransportRequest> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                TransportRequest first = scheduler.take();
+                if (first == null) {
+                    return;
+                }
+                batch.add(first);
+                scheduler.drainTo(batch, batchSize - 1);
+                DispatchEngine.Result result = dispatch(batch);
+                if (result.getAssignments().isEmpty() && !result.getDeferred().isEmpty()) {
+                    Thread.sleep(RETRY_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Error dispatching requests: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private DispatchEngine.Result dispatch(List<TransportRequest> batch) {
+        DispatchEngine.Result combined = new DispatchEngine.Result();
+        int from = 0;
+        while (from < batch.size()) {
+            TransportRequest.Priority priority = batch.get(from).priority();
+            List<DispatchRequest> run = new ArrayList<>();
+            Map<String, TransportRequest> byId = new HashMap<>();
+            int to = from;
+            while (to < batch.size() && batch.get(to).priority() == priority) {
+                TransportRequest request = batch.get(to++);
+                run.add(new DispatchRequest(request.requestId(), request.requesterId(), 1,
+                                            request.dateTime(), TRIP_MINUTES, request.destination()));
+                byId.put(request.requestId(), request);
+            }
+            DispatchEngine.Result result = engine.dispatch(run);
+            for (Assignment assignment : result.getAssignments()) {
+                statusUpdate.test(assignment.getRequest().getRequestId(), TransportRequest.Status.ASSIGNED);
+            }
+            for (DispatchRequest unassigned : result.getUnassigned()) {
+                statusUpdate.test(unassigned.getRequestId(), TransportRequest.Status.REJECTED);
+            }
+            for (DispatchRequest deferred : result.getDeferred()) {
+                scheduler.submit(byId.get(deferred.getRequestId()));
+            }
+            combined.merge(result);
+            from = to;
+        }
+        return combined;
+    }
+}
@@ -0,0 +1,403 @@
+package com.vu.utms.dispatch;
+
+import com.vu.utms.metrics.Metrics;
+import com.vu.utms.metrics.MetricsRegistry;
+import com.vu.utms.metrics.Timer;
+import com.vu.utms.models.TransportRequest;
+import com.vu.utms.models.TransportRequest.Priority;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RequestScheduler orders transport requests waiting for dispatch by priority class.
+ *
+ * Every {@link Priority} has its own FIFO queue and a wait target. Requests are
+ * normally taken from the most urgent non-empty class. Once the oldest request of
+ * a less urgent class has waited half its target it is aged, and every
+ * {@code bypassLimit + 1}-th take serves the most urgent aged class instead, so
+ * no class starves. A flood of standard requests therefore holds back priority
+ * and administrative ones by at most one take in {@code bypassLimit + 1}.
+ *
+ * Submitting and taking are O(number of classes) under a single short lock.
+ * How long each class waits, and how often it misses its target, is counted
+ * per class and read with {@link #getMetrics(Priority)}; the counts are also
+ * exported to the metrics registry as utms_scheduler_*.
+ */
+public class RequestScheduler implements AutoCloseable {
+    private static final Priority[] CLASSES = Priority.values();
+    private static final int DEFAULT_BYPASS_LIMIT = 3;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final List<ArrayDeque<Entry>> queues = new ArrayList<>();
+    private final long[] targetNanos = new long[CLASSES.length];
+    private final ClassStats[] stats = new ClassStats[CLASSES.length];
+    private final int bypassLimit;
+    private int size;
+    // Takes in a row that passed over an aged request of a less urgent class
+    private int bypassed;
+    private boolean closed;
+
+    private static final class Entry {
+        final TransportRequest request;
+        final long enqueuedNanos;
+
+        Entry(TransportRequest request, long enqueuedNanos) {
+            this.request = request;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    /**
+     * Wait counters of one class, updated outside the lock. They are kept whether
+     * or not metrics are enabled, since they drive the wait targets.
+     */
+    private static final class ClassStats {
+        final Timer waits = new Timer();
+        final LongAdder submitted = new LongAdder();
+        final LongAdder missed = new LongAdder();
+
+        void record(long waitNanos, long targetNanos) {
+            waits.record(waitNanos);
+            if (waitNanos > targetNanos) {
+                missed.increment();
+            }
+        }
+    }
+
+    /**
+     * Wait statistics of one priority class
+     */
+    public static class ClassMetrics {
+        private final Priority priority;
+        private final long targetMillis;
+        private final int queued;
+        private final long oldestWaitMillis;
+        private final long submitted;
+        private final long served;
+        private final long sloMisses;
+        private final double meanWaitMillis;
+        private final long maxWaitMillis;
+        private final Timer waits;
+
+        ClassMetrics(Priority priority, long targetNanos, int queued, long oldestWaitNanos, ClassStats stats) {
+            this.priority = priority;
+            this.targetMillis = TimeUnit.NANOSECONDS.toMillis(targetNanos);
+            this.queued = queued;
+            this.oldestWaitMillis = TimeUnit.NANOSECONDS.toMillis(oldestWaitNanos);
+            this.served = stats.waits.getCount();
+            this.submitted = stats.submitted.sum();
+            this.sloMisses = stats.missed.sum();
+            this.meanWaitMillis = stats.waits.getMean() / 1e6;
+            this.maxWaitMillis = TimeUnit.NANOSECONDS.toMillis(stats.waits.getMax());
+            this.waits = stats.waits;
+        }
+
+        public Priority getPriority() { return priority; }
+        public long getTargetMillis() { return targetMillis; }
+        public int getQueued() { return queued; }
+        public long getOldestWaitMillis() { return oldestWaitMillis; }
+        public long getSubmitted() { return submitted; }
+        public long getServed() { return served; }
+        public long getSloMisses() { return sloMisses; }
+        public double getMeanWaitMillis() { return meanWaitMillis; }
+        public long getMaxWaitMillis() { return maxWaitMillis; }
+
+        /**
+         * @return Fraction of served requests that waited within the target
+         */
+        public double getSloAttainment() {
+            return served == 0 ? 1 : 1 - (double) sloMisses / served;
+        }
+
+        /**
+         * Estimate a wait percentile, to within about 3%
+         * @param percentile The percentile, e.g. 99
+         * @return The estimated wait in milliseconds
+         */
+        public double getWaitPercentileMillis(double percentile) {
+            return waits.getValueAtPercentile(percentile) / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-23s queued %d (oldest %d ms), served %d, mean %.1f ms, " +
+                                 "p99 %.1f ms, max %d ms, within %d ms target %.1f%%",
+                                 priority.getLabel(), queued, oldestWaitMillis, served, meanWaitMillis,
+                                 getWaitPercentileMillis(99), maxWaitMillis, targetMillis,
+                                 getSloAttainment() * 100);
+        }
+    }
+
+    /**
+     * Constructor for creating a scheduler with the default wait targets:
+     * 30 seconds for administrative, 1 minute for priority and 10 minutes for
+     * standard requests
+     */
+    public RequestScheduler() {
+        this(DEFAULT_BYPASS_LIMIT);
+    }
+
+    /**
+     * Constructor for creating a scheduler with the default wait targets
+     * @param bypassLimit How many takes in a row may pass over an aged request
+     *                    before it is served; 0 serves aged requests first
+     */
+    public RequestScheduler(int bypassLimit) {
+        if (bypassLimit < 0) {
+            throw new IllegalArgumentException("Bypass limit must not be negative: " + bypassLimit);
+        }
+        this.bypassLimit = bypassLimit;
+        MetricsRegistry metrics = Metrics.registry();
+        for (int c = 0; c < CLASSES.length; c++) {
+            ArrayDeque<Entry> queue = new ArrayDeque<>();
+            ClassStats classStats = new ClassStats();
+            queues.add(queue);
+            stats[c] = classStats;
+            String priority = CLASSES[c].name();
+            metrics.register("utms_scheduler_wait_seconds", "Time requests waited for dispatch",
+                             classStats.waits, "priority", priority);
+            metrics.counter("utms_scheduler_submitted_total", "Requests queued for dispatch",
+                            classStats.submitted::sum, "priority", priority);
+            metrics.counter("utms_scheduler_target_misses_total", "Requests that waited longer than their target",
+                            classStats.missed::sum, "priority", priority);
+            // Read without the lock; a slightly stale depth is fine for a gauge
+            metrics.gauge("utms_scheduler_queued", "Requests waiting for dispatch", queue::size,
+                          "priority", priority);
+        }
+        targetNanos[Priority.STANDARD.ordinal()] = TimeUnit.MINUTES.toNanos(10);
+        targetNanos[Priority.PRIORITY.ordinal()] = TimeUnit.MINUTES.toNanos(1);
+        targetNanos[Priority.ADMINISTRATIVE.ordinal()] = TimeUnit.SECONDS.toNanos(30);
+    }
+
+    /**
+     * Set the longest a class should wait for dispatch. Requests are aged at half
+     * the target.
+     * @param priority The class
+     * @param targetMillis The wait target in milliseconds
+     */
+    public void setTarget(Priority priority, long targetMillis) {
+        if (targetMillis <= 0) {
+            throw new IllegalArgumentException("Target must be positive: " + targetMillis);
+        }
+        lock.lock();
+        try {
+            targetNanos[priority.ordinal()] = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queue a request behind the others of its class
+     * @param request The request
+     * @return boolean indicating if the request was queued, false once the scheduler is closed
+     */
+    public boolean submit(TransportRequest request) {
+        int c = request.priority().ordinal();
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            queues.get(c).addLast(new Entry(request, System.nanoTime()));
+            size++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        stats[c].submitted.increment();
+        return true;
+    }
+
+    /**
+     * Take the next request, waiting until one is submitted
+     * @return The request, or null once the scheduler is closed and empty
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public TransportRequest take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0 && !closed) {
+                notEmpty.await();
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the next request, waiting up to a timeout for one to be submitted
+     * @param timeout How long to wait
+     * @param unit Unit of the timeout
+     * @return The request, or null if none was submitted in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public TransportRequest poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0 && !closed && remaining > 0) {
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the next request without waiting
+     * @return The request, or null if none is queued
+     */
+    public TransportRequest poll() {
+        lock.lock();
+        try {
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take up to a number of requests without waiting, in the order they would be taken one by one
+     * @param out Receives the requests
+     * @param max Most requests to take
+     * @return Number of requests taken
+     */
+    public int drainTo(Collection<? super TransportRequest> out, int max) {
+        int taken = 0;
+        lock.lock();
+        try {
+            TransportRequest request;
+            while (taken < max && (request = next()) != null) {
+                out.add(request);
+                taken++;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return taken;
+    }
+
+    /**
+     * Remove a queued request, e.g. because it was cancelled. Linear in the size of its class.
+     * @param requestId The request ID
+     * @return boolean indicating if the request was queued
+     */
+    public boolean remove(String requestId) {
+        lock.lock();
+        try {
+            for (ArrayDeque<Entry> queue : queues) {
+                if (queue.removeIf(entry -> entry.request.requestId().equals(requestId))) {
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of queued requests
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read the wait statistics of a class
+     * @param priority The class
+     * @return The statistics
+     */
+    public ClassMetrics getMetrics(Priority priority) {
+        int c = priority.ordinal();
+        int queued;
+        long oldest;
+        long target;
+        lock.lock();
+        try {
+            Entry head = queues.get(c).peekFirst();
+            queued = queues.get(c).size();
+            oldest = head == null ? 0 : System.nanoTime() - head.enqueuedNanos;
+            target = targetNanos[c];
+        } finally {
+            lock.unlock();
+        }
+        return new ClassMetrics(priority, target, queued, oldest, stats[c]);
+    }
+
+    /**
+     * @return The wait statistics of every class, most urgent first
+     */
+    public List<ClassMetrics> getMetrics() {
+        List<ClassMetrics> metrics = new ArrayList<>();
+        for (int c = CLASSES.length - 1; c >= 0; c--) {
+            metrics.add(getMetrics(CLASSES[c]));
+        }
+        return metrics;
+    }
+
+    /**
+     * Stop accepting requests and wake every waiting taker. Queued requests can
+     * still be taken.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the next request by class and age; the lock must be held
+     */
+    private TransportRequest next() {
+        if (size == 0) {
+            return null;
+        }
+        int top = CLASSES.length - 1;
+        while (queues.get(top).isEmpty()) {
+            top--;
+        }
+        long now = System.nanoTime();
+        int aged = -1;
+        for (int c = top - 1; c >= 0 && aged < 0; c--) {
+            Entry head = queues.get(c).peekFirst();
+            if (head != null && now - head.enqueuedNanos >= targetNanos[c] / 2) {
+                aged = c;
+            }
+        }
+        int chosen = top;
+        if (aged < 0) {
+            bypassed = 0;
+        } else if (bypassed >= bypassLimit) {
+            bypassed = 0;
+            chosen = aged;
+        } else {
+            bypassed++;
+        }
+        Entry entry = queues.get(chosen).pollFirst();
+        size--;
+        stats[chosen].record(now - entry.enqueuedNanos, targetNanos[chosen]);
+        return entry.request;
+    }
+}
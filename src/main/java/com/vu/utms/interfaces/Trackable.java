@@ -1,5 +1,7 @@
 package com.vu.utms.interfaces;
 
+import com.vu.utms.models.VehicleStatus;
+
 /**
  * The Trackable interface defines the contract for objects that can be tracked
  * in the University Transport Management System.
@@ -21,14 +23,21 @@ public interface Trackable {
     String getCurrentLocation();
     
     /**
-     * Updates the current status of the trackable object
-     * @param status The current operational status (e.g., "In Service", "Out of Service")
+     * Moves the trackable object to a new operational status
+     * @param status The new status
+     * @return boolean indicating if the current status allows the transition
      */
-    void updateStatus(String status);
+    boolean updateStatus(VehicleStatus status);
     
     /**
      * Gets the current operational status
-     * @return String representing the current status
+     * @return The current status
+     */
+    VehicleStatus getStatus();
+    
+    /**
+     * Gets the current operational status for display
+     * @return String representing the current status, e.g. "Out of Service"
      */
     String getCurrentStatus();
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.vu.utms.interfaces;
+
+import com.vu.utms.models.BookingCalendar;
+import com.vu.utms.models.VehicleStatus;
+
+/**
+ * The TrackingListener interface defines the callbacks fired when a Trackable
+ * object reports a new position, changes status or is booked, so that indexes,
+ * dashboards and the data layer can follow the fleet incrementally instead of
+ * rescanning it.
+ */
+public interface TrackingListener {
+    /**
+     * Called after the tracked object has moved
+     * @param source The object that moved
+     * @param latitude The new latitude coordinate
+     * @param longitude The new longitude coordinate
+     */
+    void locationChanged(Trackable source, double latitude, double longitude);
+    
+    /**
+     * Called after the tracked object has changed status. Changes made on
+     * different threads may be reported out of order, so listeners that keep
+     * state should read the object's current status.
+     * @param source The object whose status changed
+     * @param previous The status it left
+     * @param status The new status
+     */
+    void statusChanged(Trackable source, VehicleStatus previous, VehicleStatus status);
+    
+    /**
+     * Called after the tracked object has been booked
+     * @param source The object booked
+     * @param booking The new booking
+     */
+    default void bookingAdded(Trackable source, BookingCalendar.Booking booking) {
+    }
+    
+    /**
+     * Called after passengers have joined a trip the tracked object is booked for
+     * @param source The object making the trip
+     * @param booking The trip with its new passenger count
+     */
+    default void bookingJoined(Trackable source, BookingCalendar.Booking booking) {
+    }
+    
+    /**
+     * Called after a booking of the tracked object has been cancelled
+     * @param source The object whose booking was cancelled
+     * @param booking The cancelled booking
+     */
+    default void bookingCancelled(Trackable source, BookingCalendar.Booking booking) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.vu.utms.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter is a monotonically increasing count, e.g. of requests handled.
+ * Increments from many threads go to separate cells of a LongAdder, so they
+ * never contend.
+ */
+public class Counter {
+    /** Shared counter handed out while metrics are disabled; ignores every call */
+    static final Counter NOOP = new Counter() {
+        @Override
+        public void increment() {
+        }
+
+        @Override
+        public void add(long amount) {
+        }
+    };
+
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * @param amount Amount to add, not negative
+     */
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    /**
+     * @return The current count
+     */
+    public long get() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,25 @@
+package com.vu.utms.metrics;
+
+/**
+ * Metrics holds the registry shared by the whole process.
+ *
+ * Metrics are on by default. Start the JVM with -Dutms.metrics=false to turn them
+ * off, after which every instrument is a shared no-op that the JIT inlines away,
+ * so instrumented code runs at practically the speed of uninstrumented code.
+ */
+public final class Metrics {
+    /** Whether the process records metrics, set with -Dutms.metrics */
+    public static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("utms.metrics"));
+
+    private static final MetricsRegistry REGISTRY = new MetricsRegistry(ENABLED);
+
+    private Metrics() {
+    }
+
+    /**
+     * @return The registry shared by the process
+     */
+    public static MetricsRegistry registry() {
+        return REGISTRY;
+    }
+}
@@ -0,0 +1,254 @@
+package com.vu.utms.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * MetricsRegistry names the counters, gauges, timers and histograms of the system
+ * and writes them in the Prometheus text exposition format.
+ *
+ * Metrics are grouped into families by name; the members of a family differ by
+ * their labels, given as alternating names and values, e.g.
+ * {@code registry.timer("utms_store_append_seconds", "...", "store", "students")}.
+ * Asking for a counter, timer or histogram that already exists returns it, so
+ * instrumented classes simply look theirs up when they are created.
+ *
+ * A disabled registry records nothing: it hands out shared instruments whose
+ * methods are empty, ignores gauges and writes an empty dump.
+ */
+public class MetricsRegistry {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final boolean enabled;
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    private enum Type {
+        COUNTER("counter"), GAUGE("gauge"), SUMMARY("summary");
+
+        final String exposition;
+
+        Type(String exposition) {
+            this.exposition = exposition;
+        }
+    }
+
+    /**
+     * The metrics sharing one name, keyed by their rendered labels
+     */
+    private static final class Family {
+        final String name;
+        final String help;
+        final Type type;
+        final Map<String, Object> members = new ConcurrentSkipListMap<>();
+
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Constructor for creating a registry
+     * @param enabled Whether metrics are recorded at all
+     */
+    public MetricsRegistry(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return boolean indicating if metrics are recorded
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get or create a counter
+     * @param name Metric name, conventionally ending in _total
+     * @param help One line description
+     * @param labels Alternating label names and values
+     * @return The counter
+     */
+    public Counter counter(String name, String help, String... labels) {
+        if (!enabled) {
+            return Counter.NOOP;
+        }
+        return (Counter) family(name, help, Type.COUNTER).members.computeIfAbsent(labels(labels), l -> new Counter());
+    }
+
+    /**
+     * Export a count kept elsewhere as a counter, replacing any earlier one with the same labels
+     * @param name Metric name, conventionally ending in _total
+     * @param help One line description
+     * @param value Reads the count when the metrics are written
+     * @param labels Alternating label names and values
+     */
+    public void counter(String name, String help, DoubleSupplier value, String... labels) {
+        if (enabled) {
+            family(name, help, Type.COUNTER).members.put(labels(labels), value);
+        }
+    }
+
+    /**
+     * Export a value read when the metrics are written, replacing any earlier one with the same labels
+     * @param name Metric name
+     * @param help One line description
+     * @param value Reads the current value
+     * @param labels Alternating label names and values
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        if (enabled) {
+            family(name, help, Type.GAUGE).members.put(labels(labels), value);
+        }
+    }
+
+    /**
+     * Get or create a timer, exported in seconds
+     * @param name Metric name, conventionally ending in _seconds
+     * @param help One line description
+     * @param labels Alternating label names and values
+     * @return The timer
+     */
+    public Timer timer(String name, String help, String... labels) {
+        if (!enabled) {
+            return Timer.NOOP;
+        }
+        return (Timer) family(name, help, Type.SUMMARY).members.computeIfAbsent(labels(labels), l -> new Timer());
+    }
+
+    /**
+     * Get or create a histogram of plain values
+     * @param name Metric name, conventionally ending in the unit
+     * @param help One line description
+     * @param labels Alternating label names and values
+     * @return The histogram
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        if (!enabled) {
+            return Histogram.NOOP;
+        }
+        return (Histogram) family(name, help, Type.SUMMARY).members.computeIfAbsent(labels(labels), l -> new Histogram());
+    }
+
+    /**
+     * Export a histogram or timer owned elsewhere, replacing any earlier one with the same labels
+     * @param name Metric name
+     * @param help One line description
+     * @param histogram The histogram; a Timer is exported in seconds
+     * @param labels Alternating label names and values
+     */
+    public void register(String name, String help, Histogram histogram, String... labels) {
+        if (enabled) {
+            family(name, help, Type.SUMMARY).members.put(labels(labels), histogram);
+        }
+    }
+
+    /**
+     * @return Every metric in the Prometheus text exposition format
+     */
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            writePrometheus(sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder never throws
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Write every metric in the Prometheus text exposition format. Histograms are
+     * written as summaries with 0.5, 0.9, 0.99 and 0.999 quantiles, plus a
+     * separate _max gauge.
+     * @param out Where to write
+     * @throws IOException if writing fails
+     */
+    public void writePrometheus(Appendable out) throws IOException {
+        for (Family family : families.values()) {
+            header(out, family.name, family.help, family.type);
+            for (Map.Entry<String, Object> member : family.members.entrySet()) {
+                String labels = member.getKey();
+                Object metric = member.getValue();
+                if (metric instanceof Counter) {
+                    sample(out, family.name, labels, ((Counter) metric).get());
+                } else if (metric instanceof DoubleSupplier) {
+                    sample(out, family.name, labels, ((DoubleSupplier) metric).getAsDouble());
+                } else {
+                    Histogram histogram = (Histogram) metric;
+                    double scale = histogram instanceof Timer ? 1e-9 : 1;
+                    for (double quantile : QUANTILES) {
+                        String withQuantile = (labels.isEmpty() ? "" : labels + ",") + "quantile=\"" + quantile + "\"";
+                        sample(out, family.name, withQuantile, histogram.getValueAtPercentile(quantile * 100) * scale);
+                    }
+                    sample(out, family.name + "_sum", labels, histogram.getSum() * scale);
+                    sample(out, family.name + "_count", labels, histogram.getCount());
+                }
+            }
+            if (family.type == Type.SUMMARY) {
+                header(out, family.name + "_max", "Largest value of " + family.name, Type.GAUGE);
+                for (Map.Entry<String, Object> member : family.members.entrySet()) {
+                    Histogram histogram = (Histogram) member.getValue();
+                    sample(out, family.name + "_max", member.getKey(),
+                           histogram.getMax() * (histogram instanceof Timer ? 1e-9 : 1));
+                }
+            }
+        }
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, n -> new Family(name, help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already a " + family.type.exposition);
+        }
+        return family;
+    }
+
+    private static String labels(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name and value pairs");
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+                if (ch == '\\' || ch == '"') {
+                    sb.append('\\').append(ch);
+                } else if (ch == '\n') {
+                    sb.append("\\n");
+                } else {
+                    sb.append(ch);
+                }
+            }
+            sb.append('"');
+        }
+        return sb.toString();
+    }
+
+    private static void header(Appendable out, String name, String help, Type type) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type.exposition).append('\n');
+    }
+
+    private static void sample(Appendable out, String name, String labels, double value) throws IOException {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append(Long.toString((long) value));
+        } else {
+            out.append(Double.toString(value));
+        }
+        out.append('\n');
+    }
+}
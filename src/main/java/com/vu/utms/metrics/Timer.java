@@ -0,0 +1,46 @@
+package com.vu.utms.metrics;
+
+/**
+ * Timer is a histogram of durations in nanoseconds, exported in seconds.
+ *
+ * <pre>
+ * long start = timer.start();
+ * ... timed work ...
+ * timer.stop(start);
+ * </pre>
+ *
+ * While metrics are disabled the registry hands out a timer whose start and stop
+ * do nothing, so the clock is never read.
+ */
+public class Timer extends Histogram {
+    /** Shared timer handed out while metrics are disabled; ignores every call */
+    static final Timer NOOP = new Timer() {
+        @Override
+        public long start() {
+            return 0;
+        }
+
+        @Override
+        public void stop(long start) {
+        }
+
+        @Override
+        public void record(long value) {
+        }
+    };
+
+    /**
+     * @return The start time to pass to {@link #stop}
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the time elapsed since a start time
+     * @param start Value returned by {@link #start}
+     */
+    public void stop(long start) {
+        record(System.nanoTime() - start);
+    }
+}
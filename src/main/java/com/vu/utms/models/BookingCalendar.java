@@ -0,0 +1,395 @@
+package com.vu.utms.models;
+
+import com.vu.utms.codec.BinaryReader;
+import com.vu.utms.codec.BinaryWriter;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * BookingCalendar holds the bookings of one vehicle.
+ *
+ * Bookings are half-open intervals of epoch minutes that never overlap, kept in a
+ * TreeMap by start minute. Because they are disjoint, the only booking that can
+ * clash with a new interval is the one starting latest before the interval ends,
+ * so conflict checks, booking and cancelling are all O(log n).
+ *
+ * A booking may be a trip carrying passengers, which later passengers going the
+ * same way at about the same time can join while the vehicle has places left.
+ * Bookings with no passengers, e.g. made through {@link Vehicle#book(String, int, String)}, hold
+ * the vehicle for their purpose alone and are never joined.
+ */
+public class BookingCalendar implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int CODEC_VERSION = 2;
+    // Between the vehicle ID and the booking number in booking IDs
+    private static final String BOOKING_SEPARATOR = "-B";
+
+    /** Format accepted for booking times, e.g. "2025-03-14 08:30" */
+    public static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final TreeMap<Long, Booking> byStart = new TreeMap<>();
+    private final HashMap<String, Booking> byId = new HashMap<>();
+    private long nextSequence = 1;
+
+    /**
+     * A single booking of a vehicle
+     */
+    public static class Booking implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String bookingId;
+        private final long startMinute;
+        private final long endMinute;
+        private final String purpose;
+        private final int passengers;
+
+        Booking(String bookingId, long startMinute, long endMinute, String purpose, int passengers) {
+            this.bookingId = bookingId;
+            this.startMinute = startMinute;
+            this.endMinute = endMinute;
+            this.purpose = purpose;
+            this.passengers = passengers;
+        }
+
+        public String getBookingId() { return bookingId; }
+        public long getStartMinute() { return startMinute; }
+        public long getEndMinute() { return endMinute; }
+        public String getPurpose() { return purpose; }
+
+        /**
+         * @return Number of passengers on the trip, or 0 if the booking is not a trip
+         */
+        public int getPassengers() { return passengers; }
+
+        /**
+         * @param more Passengers joining the trip
+         * @return A copy of the booking carrying them as well
+         */
+        Booking withMorePassengers(int more) {
+            return new Booking(bookingId, startMinute, endMinute, purpose, passengers + more);
+        }
+
+        @Override
+        public String toString() {
+            if (passengers > 0) {
+                return String.format("%s: %s to %s (%s, %d passengers)", bookingId, formatMinute(startMinute),
+                                     formatMinute(endMinute), purpose, passengers);
+            }
+            return String.format("%s: %s to %s (%s)", bookingId, formatMinute(startMinute),
+                                 formatMinute(endMinute), purpose);
+        }
+    }
+
+    /**
+     * Convert a "yyyy-MM-dd HH:mm" time to minutes since the epoch
+     * @param dateTime The time to convert
+     * @return Minutes since 1970-01-01 00:00, or -1 if the text is not a valid time
+     */
+    public static long parseMinute(String dateTime) {
+        if (dateTime == null) {
+            return -1;
+        }
+        try {
+            return LocalDateTime.parse(dateTime.trim(), DATE_TIME_FORMAT).toEpochSecond(ZoneOffset.UTC) / 60;
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Convert minutes since the epoch back to "yyyy-MM-dd HH:mm"
+     * @param minute Minutes since 1970-01-01 00:00
+     * @return The formatted time
+     */
+    public static String formatMinute(long minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC).format(DATE_TIME_FORMAT);
+    }
+
+    /**
+     * Check whether an interval is free of bookings
+     * @param startMinute First minute of the interval
+     * @param endMinute Minute the interval ends, exclusive
+     * @return boolean indicating if no booking overlaps the interval
+     */
+    public synchronized boolean isFree(long startMinute, long endMinute) {
+        return conflict(startMinute, endMinute) == null;
+    }
+
+    /**
+     * Book an interval if it is free. Bookings made here are not seen by the
+     * vehicle's listeners, so they are not saved; book through
+     * {@link Vehicle#book(long, long, String)} instead.
+     * @param prefix Prefix for the booking ID, normally the vehicle ID
+     * @param startMinute First minute of the booking
+     * @param endMinute Minute the booking ends, exclusive
+     * @param purpose The purpose of the booking
+     * @return The booking ID, or null if the interval is empty or already taken
+     */
+    public String book(String prefix, long startMinute, long endMinute, String purpose) {
+        Booking booking = add(prefix, startMinute, endMinute, purpose, 0);
+        return booking == null ? null : booking.bookingId;
+    }
+
+    /**
+     * Cancel a booking. Like {@link #book}, this is not seen by the vehicle's listeners.
+     * @param bookingId The ID returned when the booking was made
+     * @return boolean indicating if the booking existed
+     */
+    public boolean cancel(String bookingId) {
+        return remove(bookingId) != null;
+    }
+
+    /**
+     * Book an interval if it is free
+     * @param passengers Passengers on the trip, or 0 if the booking is not a trip
+     * @return The booking, or null if the interval is empty or already taken
+     */
+    synchronized Booking add(String prefix, long startMinute, long endMinute, String purpose, int passengers) {
+        if (endMinute <= startMinute || conflict(startMinute, endMinute) != null) {
+            return null;
+        }
+        Booking booking = new Booking(prefix + BOOKING_SEPARATOR + nextSequence++, startMinute, endMinute,
+                                      purpose, passengers);
+        put(booking);
+        return booking;
+    }
+
+    /**
+     * Cancel a booking
+     * @return The cancelled booking, or null if there was none with that ID
+     */
+    synchronized Booking remove(String bookingId) {
+        Booking booking = byId.remove(bookingId);
+        if (booking != null) {
+            byStart.remove(booking.startMinute);
+        }
+        return booking;
+    }
+
+    /**
+     * Add passengers to the trip for a purpose departing nearest a given time,
+     * among those within a window of it that have places left for them
+     * @param startMinute When the passengers want to depart
+     * @param windowMinutes How far from that the trip may depart, either way
+     * @param purpose Purpose of the trip, e.g. its destination
+     * @param passengers Passengers joining
+     * @param places Most passengers the vehicle carries
+     * @return The trip with its new passenger count, or null if none could take them
+     */
+    synchronized Booking join(long startMinute, long windowMinutes, String purpose, int passengers, int places) {
+        if (purpose == null || passengers <= 0) {
+            return null;
+        }
+        Booking best = null;
+        for (Booking booking : byStart.subMap(startMinute - windowMinutes, true,
+                                              startMinute + windowMinutes, true).values()) {
+            if (booking.passengers > 0 && booking.passengers + passengers <= places
+                    && purpose.equals(booking.purpose)
+                    && (best == null || Math.abs(booking.startMinute - startMinute)
+                                        < Math.abs(best.startMinute - startMinute))) {
+                best = booking;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        Booking joined = best.withMorePassengers(passengers);
+        put(joined);
+        return joined;
+    }
+
+    /**
+     * Put back a booking read from the data layer's log. A booking numbered
+     * below the next booking number was already made here, and is either still
+     * held or was cancelled since, so replaying a log more than once changes
+     * nothing.
+     * @param booking The booking
+     * @return boolean indicating if the booking was added
+     */
+    synchronized boolean replayBooked(Booking booking) {
+        long sequence = sequenceOf(booking.bookingId);
+        if (sequence < nextSequence || byId.containsKey(booking.bookingId)) {
+            return false;
+        }
+        nextSequence = sequence + 1;
+        if (booking.endMinute <= booking.startMinute || conflict(booking.startMinute, booking.endMinute) != null) {
+            System.err.println("Skipping booking " + booking + ": the time is already booked");
+            return false;
+        }
+        put(booking);
+        return true;
+    }
+
+    /**
+     * Apply passengers joining a trip, read from the data layer's log. Passenger
+     * counts only grow, so a count below the one held is already applied.
+     * @param booking The trip with its passenger count after they joined
+     * @return boolean indicating if the trip is held and now carries more passengers
+     */
+    synchronized boolean replayJoined(Booking booking) {
+        Booking held = byId.get(booking.bookingId);
+        if (held == null || held.passengers >= booking.passengers) {
+            return false;
+        }
+        put(held.withMorePassengers(booking.passengers - held.passengers));
+        return true;
+    }
+
+    /**
+     * Apply a cancellation read from the data layer's log, making sure its
+     * booking number is not given out again
+     * @param bookingId The cancelled booking's ID
+     * @return boolean indicating if the booking was held and is now removed
+     */
+    synchronized boolean replayCancelled(String bookingId) {
+        nextSequence = Math.max(nextSequence, sequenceOf(bookingId) + 1);
+        return remove(bookingId) != null;
+    }
+
+    /**
+     * @return The number a booking ID ends with, or -1 if it is not in the form book gives out
+     */
+    private static long sequenceOf(String bookingId) {
+        int at = bookingId.lastIndexOf(BOOKING_SEPARATOR);
+        if (at < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(bookingId.substring(at + BOOKING_SEPARATOR.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Get the bookings that overlap an interval
+     * @param startMinute First minute of the interval
+     * @param endMinute Minute the interval ends, exclusive
+     * @return The overlapping bookings in time order
+     */
+    public synchronized List<Booking> getBookings(long startMinute, long endMinute) {
+        List<Booking> result = new ArrayList<>();
+        Long from = byStart.floorKey(startMinute);
+        for (Booking booking : byStart.tailMap(from == null ? startMinute : from, true).values()) {
+            if (booking.startMinute >= endMinute) {
+                break;
+            }
+            if (booking.endMinute > startMinute) {
+                result.add(booking);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param minute The time to look from, in epoch minutes
+     * @return The first booking still running or starting at or after the time, or null
+     */
+    public synchronized Booking nextBooking(long minute) {
+        Map.Entry<Long, Booking> current = byStart.floorEntry(minute);
+        if (current != null && current.getValue().endMinute > minute) {
+            return current.getValue();
+        }
+        Map.Entry<Long, Booking> next = byStart.ceilingEntry(minute);
+        return next == null ? null : next.getValue();
+    }
+
+    /**
+     * @return Number of bookings in the calendar
+     */
+    public synchronized int size() {
+        return byStart.size();
+    }
+
+    /**
+     * Add a booking, or replace the one with its ID and start
+     */
+    private void put(Booking booking) {
+        byStart.put(booking.startMinute, booking);
+        byId.put(booking.bookingId, booking);
+    }
+
+    private Booking conflict(long startMinute, long endMinute) {
+        Map.Entry<Long, Booking> before = byStart.lowerEntry(endMinute);
+        if (before != null && before.getValue().endMinute > startMinute) {
+            return before.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Write the calendar for {@link ModelCodecs}: the next booking number, then
+     * each booking in time order with its start as the change from the one before
+     * and its length instead of its end, then, from version 2, the passenger
+     * count of each booking in the same order
+     * @param out The buffer to write to
+     */
+    synchronized void write(BinaryWriter out) {
+        int block = out.startBlock(CODEC_VERSION);
+        out.writeVarLong(nextSequence);
+        out.writeVarInt(byStart.size());
+        long previous = 0;
+        for (Booking booking : byStart.values()) {
+            out.writeString(booking.bookingId);
+            out.writeSignedVarLong(booking.startMinute - previous);
+            out.writeVarLong(booking.endMinute - booking.startMinute);
+            out.writeString(booking.purpose);
+            previous = booking.startMinute;
+        }
+        for (Booking booking : byStart.values()) {
+            out.writeVarInt(booking.passengers);
+        }
+        out.endBlock(block);
+    }
+
+    /**
+     * Read a calendar written by {@link #write}
+     * @param in The buffer to read from
+     * @return The calendar
+     * @throws IOException if the bytes are truncated or corrupt
+     */
+    static BookingCalendar read(BinaryReader in) throws IOException {
+        int version = in.openBlock();
+        BookingCalendar calendar = new BookingCalendar();
+        calendar.nextSequence = in.readVarLong();
+        int count = in.readVarInt();
+        long start = 0;
+        for (int i = 0; i < count; i++) {
+            String bookingId = in.readString();
+            start += in.readSignedVarLong();
+            long length = in.readVarLong();
+            if (length <= 0 || calendar.byStart.containsKey(start)) {
+                throw new StreamCorruptedException("Bad booking " + bookingId);
+            }
+            Booking booking = new Booking(bookingId, start, start + length, in.readString(), 0);
+            calendar.put(booking);
+        }
+        if (version >= 2) {
+            for (Booking booking : new ArrayList<>(calendar.byStart.values())) {
+                int passengers = in.readVarInt();
+                if (passengers > 0) {
+                    calendar.put(booking.withMorePassengers(passengers));
+                }
+            }
+        }
+        in.closeBlock();
+        return calendar;
+    }
+
+    /**
+     * Hold the calendar still while it is written, e.g. by a background checkpoint
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
+}
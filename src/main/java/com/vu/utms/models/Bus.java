@@ -1,5 +1,10 @@
 package com.vu.utms.models;
 
+import com.vu.utms.codec.SymbolTable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
 /**
@@ -10,10 +15,18 @@ import java.io.Serializable;
 public class Bus extends Vehicle implements Serializable {
     private static final long serialVersionUID = 1L;
     // Bus-specific attributes
-    private String routeNumber;
+    // SymbolTable code, shared by every bus on the route
+    private int routeNumber;
     private boolean isAccessible; // For wheelchair accessibility
     private boolean hasWifi;
     private int standingCapacity;
+    // Serialized form, as it was when the route number was a String, so older files still load
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("routeNumber", String.class),
+        new ObjectStreamField("isAccessible", boolean.class),
+        new ObjectStreamField("hasWifi", boolean.class),
+        new ObjectStreamField("standingCapacity", int.class)
+    };
     
     /**
      * Constructor for creating a new bus
@@ -30,15 +43,18 @@ public class Bus extends Vehicle implements Serializable {
                int capacity, String routeNumber, boolean isAccessible,
                boolean hasWifi, int standingCapacity) {
         super(vehicleId, registrationNumber, model, capacity);
-        this.routeNumber = routeNumber;
+        this.routeNumber = SymbolTable.intern(routeNumber);
         this.isAccessible = isAccessible;
         this.hasWifi = hasWifi;
         this.standingCapacity = standingCapacity;
     }
     
     // Getter and Setter methods for bus-specific attributes
-    public String getRouteNumber() { return routeNumber; }
-    public void setRouteNumber(String routeNumber) { this.routeNumber = routeNumber; }
+    public String getRouteNumber() { return SymbolTable.name(routeNumber); }
+    public void setRouteNumber(String routeNumber) { this.routeNumber = SymbolTable.intern(routeNumber); }
+    
+    int getRouteNumberSymbol() { return routeNumber; }
+    void setRouteNumberSymbol(int routeNumber) { this.routeNumber = routeNumber; }
     
     public boolean isAccessible() { return isAccessible; }
     public void setAccessible(boolean accessible) { isAccessible = accessible; }
@@ -51,6 +67,13 @@ public class Bus extends Vehicle implements Serializable {
         this.standingCapacity = standingCapacity; 
     }
     
+    /**
+     * Buses carry standing passengers as well as seated ones
+     * @return Seats plus standing places
+     */
+    @Override
+    public int getPassengerPlaces() { return capacity + standingCapacity; }
+    
     /**
      * Implementation of abstract method from Vehicle class
      * Calculates bus-specific fuel efficiency
@@ -92,35 +115,29 @@ public class Bus extends Vehicle implements Serializable {
      */
     @Override
     public boolean isAvailable(String dateTime) {
-        // Bus-specific availability check
-        return "Available".equals(getCurrentStatus());
+        return isAvailableAt(dateTime);
     }
     
     /**
      * Implementation of Schedulable interface method
-     * @param dateTime The date and time to schedule
-     * @param duration The duration of the scheduled period
+     * @param dateTime The date and time to schedule, as "yyyy-MM-dd HH:mm"
+     * @param duration The duration of the scheduled period in minutes
      * @param purpose The purpose of the scheduling
      * @return boolean indicating if scheduling was successful
      */
     @Override
     public boolean schedule(String dateTime, int duration, String purpose) {
-        if (isAvailable(dateTime)) {
-            updateStatus("Scheduled");
-            return true;
-        }
-        return false;
+        return book(dateTime, duration, purpose) != null;
     }
     
     /**
      * Implementation of Schedulable interface method
-     * @param scheduleId The unique identifier of the schedule to cancel
+     * @param scheduleId The booking ID returned by book
      * @return boolean indicating if cancellation was successful
      */
     @Override
     public boolean cancelSchedule(String scheduleId) {
-        updateStatus("Available");
-        return true;
+        return cancelBooking(scheduleId);
     }
     
     /**
@@ -132,8 +149,11 @@ public class Bus extends Vehicle implements Serializable {
         return String.format("Bus Schedule Information\n" +
                            "Bus ID: %s\n" +
                            "Route Number: %s\n" +
-                           "Status: %s",
-                           getVehicleId(), routeNumber, getCurrentStatus());
+                           "Status: %s\n" +
+                           "Bookings: %d\n" +
+                           "Next Booking: %s",
+                           getVehicleId(), getRouteNumber(), getCurrentStatus(),
+                           getCalendar().size(), describeNextBooking());
     }
     
     /**
@@ -147,9 +167,29 @@ public class Bus extends Vehicle implements Serializable {
                            "Total Capacity: %d (Seated: %d, Standing: %d)\n" +
                            "Accessibility: %s\n" +
                            "WiFi: %s",
-                           routeNumber, getVehicleId(),
+                           getRouteNumber(), getVehicleId(),
                            (capacity + standingCapacity), capacity, standingCapacity,
                            isAccessible ? "Wheelchair Accessible" : "Not Accessible",
                            hasWifi ? "Available" : "Not Available");
     }
-}
\ No newline at end of file
+    
+    /**
+     * Read the serialized form, turning the route number into a symbol
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        routeNumber = SymbolTable.intern((String) fields.get("routeNumber", null));
+        isAccessible = fields.get("isAccessible", false);
+        hasWifi = fields.get("hasWifi", false);
+        standingCapacity = fields.get("standingCapacity", 0);
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("routeNumber", SymbolTable.name(routeNumber));
+        fields.put("isAccessible", isAccessible);
+        fields.put("hasWifi", hasWifi);
+        fields.put("standingCapacity", standingCapacity);
+        out.writeFields();
+    }
+}
@@ -1,7 +1,11 @@
 package com.vu.utms.models;
 
+import com.vu.utms.codec.SymbolTable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -11,12 +15,22 @@ import java.util.List;
  */
 public class Lecturer extends User implements Serializable {
     private static final long serialVersionUID = 1L;
+    // Formatted-text history of lecturers saved before TransportHistory; null afterwards
     private List<String> transportHistory;
     // Additional lecturer-specific attributes
     private String staffId;
-    private String department;
-    private String designation;
+    // SymbolTable codes, shared by every lecturer with the same value
+    private int department;
+    private int designation;
     private boolean isPermanent;
+    // Serialized form, as it was when these were Strings, so older files still load
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("transportHistory", List.class),
+        new ObjectStreamField("staffId", String.class),
+        new ObjectStreamField("department", String.class),
+        new ObjectStreamField("designation", String.class),
+        new ObjectStreamField("isPermanent", boolean.class)
+    };
     
     /**
      * Constructor for creating a new lecturer user
@@ -35,21 +49,26 @@ public class Lecturer extends User implements Serializable {
                    String designation, boolean isPermanent) {
         super(userId, name, email, phoneNumber, password);
         this.staffId = staffId;
-        this.department = department;
-        this.designation = designation;
+        this.department = SymbolTable.intern(department);
+        this.designation = SymbolTable.intern(designation);
         this.isPermanent = isPermanent;
-        this.transportHistory = new ArrayList<>();
     }
     
     // Getter and Setter methods for lecturer-specific attributes
     public String getStaffId() { return staffId; }
     public void setStaffId(String staffId) { this.staffId = staffId; }
     
-    public String getDepartment() { return department; }
-    public void setDepartment(String department) { this.department = department; }
+    public String getDepartment() { return SymbolTable.name(department); }
+    public void setDepartment(String department) { this.department = SymbolTable.intern(department); }
     
-    public String getDesignation() { return designation; }
-    public void setDesignation(String designation) { this.designation = designation; }
+    public String getDesignation() { return SymbolTable.name(designation); }
+    public void setDesignation(String designation) { this.designation = SymbolTable.intern(designation); }
+    
+    int getDepartmentSymbol() { return department; }
+    void setDepartmentSymbol(int department) { this.department = department; }
+    
+    int getDesignationSymbol() { return designation; }
+    void setDesignationSymbol(int designation) { this.designation = designation; }
     
     public boolean isPermanent() { return isPermanent; }
     public void setPermanent(boolean permanent) { isPermanent = permanent; }
@@ -63,14 +82,7 @@ public class Lecturer extends User implements Serializable {
      */
     @Override
     public String requestTransport(String destination, String dateTime) {
-        String request = String.format("Lecturer Transport Request - Staff: %s, ID: %s\n" +
-                           "Department: %s, Designation: %s\n" +
-                           "Destination: %s, DateTime: %s\n" +
-                           "Status: Priority Request - Processing",
-                           getName(), getStaffId(), department, designation,
-                           destination, dateTime);
-        transportHistory.add(request);
-        return request;
+        return describe(getTransportRequests().add(destination, dateTime, TransportRequest.Priority.PRIORITY));
     }
     
     /**
@@ -80,11 +92,30 @@ public class Lecturer extends User implements Serializable {
      */
     @Override
     public String viewTransportHistory() {
-        if (transportHistory.isEmpty()) {
+        TransportHistory history = getTransportRequests();
+        if (history.isEmpty()) {
             return String.format("No transport history available for Lecturer %s (%s)", getName(), getStaffId());
         }
         return String.format("Transport History for Lecturer %s (%s):\n%s",
-                           getName(), getStaffId(), String.join("\n", transportHistory));
+                           getName(), getStaffId(), history.render(this::describe));
+    }
+    
+    @Override
+    protected void migrateLegacyHistory(TransportHistory history) {
+        if (transportHistory != null) {
+            history.addLegacy(transportHistory);
+            transportHistory = null;
+        }
+    }
+    
+    private String describe(TransportRequest request) {
+        return String.format("Lecturer Transport Request - Staff: %s, ID: %s\n" +
+                           "Department: %s, Designation: %s\n" +
+                           "Destination: %s, DateTime: %s\n" +
+                           "Status: %s - %s",
+                           getName(), getStaffId(), getDepartment(), getDesignation(),
+                           request.destination(), request.dateTime(),
+                           request.priority().getLabel(), request.status().getLabel());
     }
     
     /**
@@ -101,4 +132,27 @@ public class Lecturer extends User implements Serializable {
                            "Status: Under Review",
                            getName(), getStaffId(), purpose, numberOfPassengers);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Read the serialized form, turning the department and designation into symbols
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        transportHistory = (List<String>) fields.get("transportHistory", null);
+        staffId = (String) fields.get("staffId", null);
+        department = SymbolTable.intern((String) fields.get("department", null));
+        designation = SymbolTable.intern((String) fields.get("designation", null));
+        isPermanent = fields.get("isPermanent", false);
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("transportHistory", transportHistory);
+        fields.put("staffId", staffId);
+        fields.put("department", SymbolTable.name(department));
+        fields.put("designation", SymbolTable.name(designation));
+        fields.put("isPermanent", isPermanent);
+        out.writeFields();
+    }
+}
@@ -0,0 +1,397 @@
+package com.vu.utms.models;
+
+import com.vu.utms.codec.BinaryReader;
+import com.vu.utms.codec.BinaryWriter;
+import com.vu.utms.codec.Codec;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+/**
+ * ModelCodecs holds the binary codecs the data layer saves models with.
+ *
+ * Java serialization writes class descriptors and field names with every
+ * record and fills fields in reflectively; these codecs write just the field
+ * values, in a fixed order, as varints, length-prefixed UTF-8 strings and
+ * 8-byte doubles (see {@link BinaryWriter}). Categorical fields held as
+ * {@link com.vu.utms.codec.SymbolTable} codes, and the vehicle status by its
+ * label rather than its ordinal, are written as symbols: text in a standalone
+ * record, a back reference into the file's dictionary in a snapshot.
+ *
+ * An object starts with a type tag byte naming its class, followed by one
+ * versioned block per class in its hierarchy: a Student is written as the
+ * STUDENT tag, the User block and the Student block. Tags start at 1, so an
+ * encoded object is never mistaken for a Java serialization stream, which
+ * starts with 0xAC.
+ *
+ * Schema evolution rules:
+ * - A field is added by appending it to the end of its class's block and bumping
+ *   that block's version; readers only read it from blocks of that version on,
+ *   and readers that predate it skip it using the block length.
+ * - Fields are never removed or reordered; a retired field is still written,
+ *   e.g. as null, until the class gets a new tag.
+ * - Tags and enum ordinals are never reused or renumbered; enums only grow at the end.
+ */
+public final class ModelCodecs {
+    // Type tags
+    private static final int STUDENT_TAG = 1;
+    private static final int LECTURER_TAG = 2;
+    private static final int TRANSPORT_OFFICER_TAG = 3;
+    private static final int BUS_TAG = 4;
+    private static final int VAN_TAG = 5;
+    private static final int TRANSPORT_REQUEST_TAG = 6;
+    private static final int VEHICLE_EVENT_TAG = 7;
+
+    // Current block versions
+    private static final int USER_VERSION = 1;
+    private static final int STUDENT_VERSION = 1;
+    private static final int LECTURER_VERSION = 1;
+    private static final int TRANSPORT_OFFICER_VERSION = 1;
+    private static final int VEHICLE_VERSION = 1;
+    private static final int BUS_VERSION = 1;
+    private static final int VAN_VERSION = 1;
+    private static final int TRANSPORT_REQUEST_VERSION = 1;
+    private static final int VEHICLE_EVENT_VERSION = 3;
+
+    private static final TransportRequest.Status[] STATUSES = TransportRequest.Status.values();
+    private static final TransportRequest.Priority[] PRIORITIES = TransportRequest.Priority.values();
+    private static final VehicleEvent.Kind[] EVENT_KINDS = VehicleEvent.Kind.values();
+
+    /** Any user: student, lecturer or transport officer */
+    public static final Codec<User> USER = new ModelCodec<>(User.class);
+    public static final Codec<Student> STUDENT = new ModelCodec<>(Student.class);
+    public static final Codec<Lecturer> LECTURER = new ModelCodec<>(Lecturer.class);
+    public static final Codec<TransportOfficer> TRANSPORT_OFFICER = new ModelCodec<>(TransportOfficer.class);
+    /** Any vehicle: bus or van */
+    public static final Codec<Vehicle> VEHICLE = new ModelCodec<>(Vehicle.class);
+    public static final Codec<TransportRequest> TRANSPORT_REQUEST = new ModelCodec<>(TransportRequest.class);
+    public static final Codec<VehicleEvent> VEHICLE_EVENT = new ModelCodec<>(VehicleEvent.class);
+
+    private ModelCodecs() {
+    }
+
+    /**
+     * Codec for one model type and its subclasses, checking the type of what it reads
+     */
+    private static final class ModelCodec<T> implements Codec<T> {
+        private final Class<T> type;
+
+        ModelCodec(Class<T> type) {
+            this.type = type;
+        }
+
+        @Override
+        public void write(BinaryWriter out, T value) {
+            writeModel(out, value);
+        }
+
+        @Override
+        public T read(BinaryReader in) throws IOException {
+            Object value = readModel(in);
+            if (!type.isInstance(value)) {
+                throw new StreamCorruptedException("Read a " + value.getClass().getSimpleName()
+                        + " where a " + type.getSimpleName() + " was expected");
+            }
+            return type.cast(value);
+        }
+    }
+
+    private static void writeModel(BinaryWriter out, Object value) {
+        Class<?> type = value.getClass();
+        if (type == Student.class) {
+            writeStudent(out, (Student) value);
+        } else if (type == Lecturer.class) {
+            writeLecturer(out, (Lecturer) value);
+        } else if (type == TransportOfficer.class) {
+            writeTransportOfficer(out, (TransportOfficer) value);
+        } else if (type == Bus.class) {
+            writeBus(out, (Bus) value);
+        } else if (type == Van.class) {
+            writeVan(out, (Van) value);
+        } else if (type == TransportRequest.class) {
+            writeTransportRequest(out, (TransportRequest) value);
+        } else if (type == VehicleEvent.class) {
+            writeVehicleEvent(out, (VehicleEvent) value);
+        } else {
+            throw new IllegalArgumentException("No codec for " + type.getName());
+        }
+    }
+
+    private static Object readModel(BinaryReader in) throws IOException {
+        int tag = in.readByte();
+        switch (tag) {
+            case STUDENT_TAG:
+                return readStudent(in);
+            case LECTURER_TAG:
+                return readLecturer(in);
+            case TRANSPORT_OFFICER_TAG:
+                return readTransportOfficer(in);
+            case BUS_TAG:
+                return readBus(in);
+            case VAN_TAG:
+                return readVan(in);
+            case TRANSPORT_REQUEST_TAG:
+                return readTransportRequest(in);
+            case VEHICLE_EVENT_TAG:
+                return readVehicleEvent(in);
+            default:
+                throw new StreamCorruptedException("Unknown type tag " + tag);
+        }
+    }
+
+    private static void writeUser(BinaryWriter out, User user) {
+        int block = out.startBlock(USER_VERSION);
+        out.writeString(user.getUserId());
+        out.writeString(user.getName());
+        out.writeString(user.getEmail());
+        out.writeString(user.getPhoneNumber());
+        out.writeString(user.getPassword());
+        // Carries over any formatted-text history, which is not written separately
+        TransportHistory history = user.getTransportRequests();
+        boolean hasHistory = !history.isEmpty();
+        out.writeBoolean(hasHistory);
+        if (hasHistory) {
+            history.write(out, user.getUserId());
+        }
+        out.endBlock(block);
+    }
+
+    private static void readUser(BinaryReader in, User user) throws IOException {
+        in.openBlock();
+        user.setUserId(in.readString());
+        user.setName(in.readString());
+        user.setEmail(in.readString());
+        user.setPhoneNumber(in.readString());
+        user.setPassword(in.readString());
+        if (in.readBoolean()) {
+            user.restoreTransportRequests(TransportHistory.read(in, user.getUserId()));
+        }
+        in.closeBlock();
+    }
+
+    private static void writeStudent(BinaryWriter out, Student student) {
+        out.writeByte(STUDENT_TAG);
+        writeUser(out, student);
+        int block = out.startBlock(STUDENT_VERSION);
+        out.writeString(student.getStudentId());
+        out.writeSymbol(student.getCourseSymbol());
+        out.writeVarInt(student.getYear());
+        out.endBlock(block);
+    }
+
+    private static Student readStudent(BinaryReader in) throws IOException {
+        Student student = new Student(null, null, null, null, null, null, null, 0);
+        readUser(in, student);
+        in.openBlock();
+        student.setStudentId(in.readString());
+        student.setCourseSymbol(in.readSymbol());
+        student.setYear(in.readVarInt());
+        in.closeBlock();
+        return student;
+    }
+
+    private static void writeLecturer(BinaryWriter out, Lecturer lecturer) {
+        out.writeByte(LECTURER_TAG);
+        writeUser(out, lecturer);
+        int block = out.startBlock(LECTURER_VERSION);
+        out.writeString(lecturer.getStaffId());
+        out.writeSymbol(lecturer.getDepartmentSymbol());
+        out.writeSymbol(lecturer.getDesignationSymbol());
+        out.writeBoolean(lecturer.isPermanent());
+        out.endBlock(block);
+    }
+
+    private static Lecturer readLecturer(BinaryReader in) throws IOException {
+        Lecturer lecturer = new Lecturer(null, null, null, null, null, null, null, null, false);
+        readUser(in, lecturer);
+        in.openBlock();
+        lecturer.setStaffId(in.readString());
+        lecturer.setDepartmentSymbol(in.readSymbol());
+        lecturer.setDesignationSymbol(in.readSymbol());
+        lecturer.setPermanent(in.readBoolean());
+        in.closeBlock();
+        return lecturer;
+    }
+
+    private static void writeTransportOfficer(BinaryWriter out, TransportOfficer officer) {
+        out.writeByte(TRANSPORT_OFFICER_TAG);
+        writeUser(out, officer);
+        int block = out.startBlock(TRANSPORT_OFFICER_VERSION);
+        out.writeString(officer.getOfficerId());
+        out.writeSymbol(officer.getRoleSymbol());
+        out.writeSymbol(officer.getDepartmentSymbol());
+        out.writeVarInt(officer.getYearsOfExperience());
+        out.endBlock(block);
+    }
+
+    private static TransportOfficer readTransportOfficer(BinaryReader in) throws IOException {
+        TransportOfficer officer = new TransportOfficer(null, null, null, null, null, null, null, null, 0);
+        readUser(in, officer);
+        in.openBlock();
+        officer.setOfficerId(in.readString());
+        officer.setRoleSymbol(in.readSymbol());
+        officer.setDepartmentSymbol(in.readSymbol());
+        officer.setYearsOfExperience(in.readVarInt());
+        in.closeBlock();
+        return officer;
+    }
+
+    private static void writeVehicle(BinaryWriter out, Vehicle vehicle) {
+        int block = out.startBlock(VEHICLE_VERSION);
+        // Hold the vehicle still so a fix or booking is never written half made
+        synchronized (vehicle) {
+            out.writeString(vehicle.vehicleId);
+            out.writeString(vehicle.registrationNumber);
+            out.writeString(vehicle.model);
+            out.writeVarInt(vehicle.capacity);
+            out.writeSymbol(vehicle.status.symbol());
+            out.writeString(vehicle.currentLocation);
+            out.writeString(vehicle.lastServiceDate);
+            long timestamp = vehicle.getLocationTimestamp();
+            out.writeVarLong(timestamp);
+            if (timestamp != 0) {
+                out.writeDouble(vehicle.getLatitude());
+                out.writeDouble(vehicle.getLongitude());
+            }
+            vehicle.getCalendar().write(out);
+        }
+        out.endBlock(block);
+    }
+
+    private static void readVehicle(BinaryReader in, Vehicle vehicle) throws IOException {
+        in.openBlock();
+        vehicle.vehicleId = in.readString();
+        vehicle.registrationNumber = in.readString();
+        vehicle.model = in.readString();
+        vehicle.capacity = in.readVarInt();
+        vehicle.status = VehicleStatus.restore(in.readSymbol());
+        vehicle.currentLocation = in.readString();
+        vehicle.lastServiceDate = in.readString();
+        long timestamp = in.readVarLong();
+        if (timestamp != 0) {
+            vehicle.restorePosition(in.readDouble(), in.readDouble(), timestamp);
+        }
+        vehicle.restoreCalendar(BookingCalendar.read(in));
+        in.closeBlock();
+    }
+
+    private static void writeBus(BinaryWriter out, Bus bus) {
+        out.writeByte(BUS_TAG);
+        writeVehicle(out, bus);
+        int block = out.startBlock(BUS_VERSION);
+        out.writeSymbol(bus.getRouteNumberSymbol());
+        out.writeBoolean(bus.isAccessible());
+        out.writeBoolean(bus.hasWifi());
+        out.writeVarInt(bus.getStandingCapacity());
+        out.endBlock(block);
+    }
+
+    private static Bus readBus(BinaryReader in) throws IOException {
+        Bus bus = new Bus(null, null, null, 0, null, false, false, 0);
+        readVehicle(in, bus);
+        in.openBlock();
+        bus.setRouteNumberSymbol(in.readSymbol());
+        bus.setAccessible(in.readBoolean());
+        bus.setHasWifi(in.readBoolean());
+        bus.setStandingCapacity(in.readVarInt());
+        in.closeBlock();
+        return bus;
+    }
+
+    private static void writeVan(BinaryWriter out, Van van) {
+        out.writeByte(VAN_TAG);
+        writeVehicle(out, van);
+        int block = out.startBlock(VAN_VERSION);
+        out.writeBoolean(van.hasCargoSpace());
+        out.writeDouble(van.getCargoCapacity());
+        out.writeSymbol(van.getPurposeTypeSymbol());
+        out.writeBoolean(van.hasFirstAidKit());
+        out.endBlock(block);
+    }
+
+    private static Van readVan(BinaryReader in) throws IOException {
+        Van van = new Van(null, null, null, 0, false, 0, null, false);
+        readVehicle(in, van);
+        in.openBlock();
+        van.setHasCargoSpace(in.readBoolean());
+        van.setCargoCapacity(in.readDouble());
+        van.setPurposeTypeSymbol(in.readSymbol());
+        van.setHasFirstAidKit(in.readBoolean());
+        in.closeBlock();
+        return van;
+    }
+
+    private static void writeTransportRequest(BinaryWriter out, TransportRequest request) {
+        out.writeByte(TRANSPORT_REQUEST_TAG);
+        int block = out.startBlock(TRANSPORT_REQUEST_VERSION);
+        out.writeString(request.requestId());
+        out.writeString(request.requesterId());
+        out.writeString(request.destination());
+        out.writeSignedVarLong(request.epochMinute());
+        out.writeString(request.dateTime());
+        out.writeByte(request.status().ordinal());
+        out.writeByte(request.priority().ordinal());
+        out.endBlock(block);
+    }
+
+    private static TransportRequest readTransportRequest(BinaryReader in) throws IOException {
+        in.openBlock();
+        String requestId = in.readString();
+        String requesterId = in.readString();
+        String destination = in.readString();
+        long epochMinute = in.readSignedVarLong();
+        String dateTime = in.readString();
+        int status = in.readByte();
+        int priority = in.readByte();
+        in.closeBlock();
+        if (status < 0 || status >= STATUSES.length || priority < 0 || priority >= PRIORITIES.length) {
+            throw new StreamCorruptedException("Bad status or priority of " + requestId);
+        }
+        return new TransportRequest(requestId, requesterId, destination, epochMinute, dateTime,
+                                    STATUSES[status], PRIORITIES[priority]);
+    }
+
+    private static void writeVehicleEvent(BinaryWriter out, VehicleEvent event) {
+        out.writeByte(VEHICLE_EVENT_TAG);
+        int block = out.startBlock(VEHICLE_EVENT_VERSION);
+        out.writeString(event.vehicleId());
+        out.writeByte(event.kind().ordinal());
+        out.writeString(event.bookingId());
+        out.writeSignedVarLong(event.startMinute());
+        out.writeVarLong(event.endMinute() - event.startMinute());
+        out.writeString(event.purpose());
+        // Version 2
+        out.writeVarInt(event.passengers());
+        // Version 3
+        out.writeVarLong(event.timestampMillis());
+        if (event.timestampMillis() != 0) {
+            out.writeDouble(event.latitude());
+            out.writeDouble(event.longitude());
+        }
+        out.endBlock(block);
+    }
+
+    private static VehicleEvent readVehicleEvent(BinaryReader in) throws IOException {
+        int version = in.openBlock();
+        String vehicleId = in.readString();
+        int kind = in.readByte();
+        String bookingId = in.readString();
+        long start = in.readSignedVarLong();
+        long length = in.readVarLong();
+        String purpose = in.readString();
+        int passengers = version >= 2 ? in.readVarInt() : 0;
+        long timestamp = version >= 3 ? in.readVarLong() : 0;
+        double latitude = 0;
+        double longitude = 0;
+        if (timestamp != 0) {
+            latitude = in.readDouble();
+            longitude = in.readDouble();
+        }
+        in.closeBlock();
+        if (kind < 0 || kind >= EVENT_KINDS.length
+                || (EVENT_KINDS[kind] == VehicleEvent.Kind.MOVED ? timestamp <= 0 : length <= 0)) {
+            throw new StreamCorruptedException("Bad event for vehicle " + vehicleId);
+        }
+        return new VehicleEvent(vehicleId, EVENT_KINDS[kind], bookingId, start, start + length, purpose,
+                                passengers, latitude, longitude, timestamp);
+    }
+}
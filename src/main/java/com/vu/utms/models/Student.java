@@ -1,16 +1,29 @@
 package com.vu.utms.models;
 
+import com.vu.utms.codec.SymbolTable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.List;
 
 public class Student extends User implements Serializable {
     private static final long serialVersionUID = 1L;
+    // Formatted-text history of students saved before TransportHistory; null afterwards
     private List<String> transportHistory;
     // Additional student-specific attributes
     private String studentId;
-    private String course;
+    // SymbolTable code, shared by every student on the course
+    private int course;
     private int year;
+    // Serialized form, as it was when the course was a String, so older files still load
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("transportHistory", List.class),
+        new ObjectStreamField("studentId", String.class),
+        new ObjectStreamField("course", String.class),
+        new ObjectStreamField("year", int.class)
+    };
     
     /**
      * Constructor for creating a new student user
@@ -27,17 +40,19 @@ public class Student extends User implements Serializable {
                   String password, String studentId, String course, int year) {
         super(userId, name, email, phoneNumber, password);
         this.studentId = studentId;
-        this.course = course;
+        this.course = SymbolTable.intern(course);
         this.year = year;
-        this.transportHistory = new ArrayList<>();
     }
     
     // Getter and Setter methods for student-specific attributes
     public String getStudentId() { return studentId; }
     public void setStudentId(String studentId) { this.studentId = studentId; }
     
-    public String getCourse() { return course; }
-    public void setCourse(String course) { this.course = course; }
+    public String getCourse() { return SymbolTable.name(course); }
+    public void setCourse(String course) { this.course = SymbolTable.intern(course); }
+    
+    int getCourseSymbol() { return course; }
+    void setCourseSymbol(int course) { this.course = course; }
     
     public int getYear() { return year; }
     public void setYear(int year) { this.year = year; }
@@ -51,9 +66,7 @@ public class Student extends User implements Serializable {
      */
     @Override
     public String requestTransport(String destination, String dateTime) {
-        String request = String.format("Transport request to %s at %s", destination, dateTime);
-        transportHistory.add(request);
-        return request;
+        return describe(getTransportRequests().add(destination, dateTime, TransportRequest.Priority.STANDARD));
     }
     
     /**
@@ -63,10 +76,27 @@ public class Student extends User implements Serializable {
      */
     @Override
     public String viewTransportHistory() {
-        if (transportHistory.isEmpty()) {
+        TransportHistory history = getTransportRequests();
+        if (history.isEmpty()) {
             return "No transport history available";
         }
-        return String.join("\n", transportHistory);
+        return history.render(this::describe);
+    }
+    
+    @Override
+    protected void migrateLegacyHistory(TransportHistory history) {
+        if (transportHistory != null) {
+            history.addLegacy(transportHistory);
+            transportHistory = null;
+        }
+    }
+    
+    private String describe(TransportRequest request) {
+        String text = String.format("Transport request to %s at %s", request.destination(), request.dateTime());
+        if (request.status() != TransportRequest.Status.PENDING) {
+            text += " (" + request.status().getLabel() + ")";
+        }
+        return text;
     }
     
     /**
@@ -79,4 +109,25 @@ public class Student extends User implements Serializable {
                            "Available for student use with valid student ID: %s",
                            route, studentId);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Read the serialized form, turning the course into a symbol
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        transportHistory = (List<String>) fields.get("transportHistory", null);
+        studentId = (String) fields.get("studentId", null);
+        course = SymbolTable.intern((String) fields.get("course", null));
+        year = fields.get("year", 0);
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("transportHistory", transportHistory);
+        fields.put("studentId", studentId);
+        fields.put("course", SymbolTable.name(course));
+        fields.put("year", year);
+        out.writeFields();
+    }
+}
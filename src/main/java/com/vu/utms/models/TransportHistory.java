@@ -0,0 +1,332 @@
+package com.vu.utms.models;
+
+import com.vu.utms.codec.BinaryReader;
+import com.vu.utms.codec.BinaryWriter;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * TransportHistory stores the transport requests of one user column by column.
+ *
+ * Each request costs a long, an int and two bytes: the requested time in epoch
+ * minutes, an index into a per-user dictionary of destinations, and the status
+ * and priority ordinals. Request IDs are derived from the requester and position,
+ * and {@link TransportRequest} objects and display text are only built when a
+ * request is read. Entries written as formatted text before this class existed
+ * are kept as they are and listed before the structured ones.
+ */
+public class TransportHistory implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final TransportRequest.Status[] STATUSES = TransportRequest.Status.values();
+    private static final TransportRequest.Priority[] PRIORITIES = TransportRequest.Priority.values();
+    static final String ID_SEPARATOR = "-R";
+    private static final int CODEC_VERSION = 1;
+
+    private final String requesterId;
+    private long[] times = new long[4];
+    private int[] destinations = new int[4];
+    private byte[] statuses = new byte[4];
+    private byte[] priorities = new byte[4];
+    // Requested times that were not in "yyyy-MM-dd HH:mm" form; null until one is seen
+    private String[] rawTimes;
+    private int size;
+    private final ArrayList<String> destinationNames = new ArrayList<>();
+    private ArrayList<String> legacyEntries;
+    private transient Map<String, Integer> destinationIds;
+
+    /**
+     * Constructor for creating an empty history
+     * @param requesterId User ID of the user the history belongs to
+     */
+    public TransportHistory(String requesterId) {
+        this.requesterId = requesterId;
+    }
+
+    /**
+     * Record a new pending request
+     * @param destination The destination location
+     * @param dateTime The requested date and time, ideally "yyyy-MM-dd HH:mm"
+     * @param priority How urgently the request should be served
+     * @return The recorded request
+     */
+    public synchronized TransportRequest add(String destination, String dateTime,
+                                             TransportRequest.Priority priority) {
+        if (size == times.length) {
+            int capacity = size * 2;
+            times = Arrays.copyOf(times, capacity);
+            destinations = Arrays.copyOf(destinations, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+            priorities = Arrays.copyOf(priorities, capacity);
+            if (rawTimes != null) {
+                rawTimes = Arrays.copyOf(rawTimes, capacity);
+            }
+        }
+        long minute = BookingCalendar.parseMinute(dateTime);
+        times[size] = minute;
+        if (minute < 0) {
+            if (rawTimes == null) {
+                rawTimes = new String[times.length];
+            }
+            rawTimes[size] = dateTime;
+        }
+        destinations[size] = destinationId(destination);
+        statuses[size] = (byte) TransportRequest.Status.PENDING.ordinal();
+        priorities[size] = (byte) priority.ordinal();
+        return get(size++);
+    }
+
+    /**
+     * Keep entries from a formatted-text history
+     * @param entries The formatted entries, oldest first
+     */
+    public synchronized void addLegacy(List<String> entries) {
+        if (entries == null || entries.isEmpty()) {
+            return;
+        }
+        if (legacyEntries == null) {
+            legacyEntries = new ArrayList<>();
+        }
+        legacyEntries.addAll(entries);
+    }
+
+    /**
+     * @return Number of structured requests
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return boolean indicating if there are no requests and no legacy entries
+     */
+    public synchronized boolean isEmpty() {
+        return size == 0 && (legacyEntries == null || legacyEntries.isEmpty());
+    }
+
+    /**
+     * Get a request by position
+     * @param index Position of the request, oldest first
+     * @return The request
+     */
+    public synchronized TransportRequest get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Request " + index + " of " + size);
+        }
+        long minute = times[index];
+        String dateTime = minute >= 0 ? BookingCalendar.formatMinute(minute) : rawTimes[index];
+        return new TransportRequest(requesterId + ID_SEPARATOR + (index + 1), requesterId,
+                                    destinationNames.get(destinations[index]), minute, dateTime,
+                                    STATUSES[statuses[index]], PRIORITIES[priorities[index]]);
+    }
+
+    /**
+     * Find a request by ID
+     * @param requestId The request ID
+     * @return The request, or null if it is not in this history
+     */
+    public synchronized TransportRequest find(String requestId) {
+        int index = indexOf(requestId);
+        return index < 0 ? null : get(index);
+    }
+
+    /**
+     * Move a request to a new status
+     * @param requestId The request ID
+     * @param status The new status
+     * @return boolean indicating if the request was found
+     */
+    public synchronized boolean updateStatus(String requestId, TransportRequest.Status status) {
+        int index = indexOf(requestId);
+        if (index < 0) {
+            return false;
+        }
+        statuses[index] = (byte) status.ordinal();
+        return true;
+    }
+
+    /**
+     * @return Every structured request, oldest first
+     */
+    public synchronized List<TransportRequest> toList() {
+        List<TransportRequest> requests = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            requests.add(get(i));
+        }
+        return requests;
+    }
+
+    /**
+     * @return Entries recorded as formatted text before structured requests existed
+     */
+    public synchronized List<String> getLegacyEntries() {
+        return legacyEntries == null ? Collections.emptyList() : new ArrayList<>(legacyEntries);
+    }
+
+    /**
+     * Render the history as text, legacy entries first, one request at a time
+     * @param format Renders a single request
+     * @return The rendered entries separated by newlines
+     */
+    public synchronized String render(Function<TransportRequest, String> format) {
+        StringBuilder sb = new StringBuilder();
+        if (legacyEntries != null) {
+            for (String entry : legacyEntries) {
+                if (sb.length() > 0) {
+                    sb.append('\n');
+                }
+                sb.append(entry);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(format.apply(get(i)));
+        }
+        return sb.toString();
+    }
+
+    private int indexOf(String requestId) {
+        String prefix = requesterId + ID_SEPARATOR;
+        if (requestId == null || !requestId.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            int index = Integer.parseInt(requestId.substring(prefix.length())) - 1;
+            return index >= 0 && index < size ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private int destinationId(String destination) {
+        if (destinationIds == null) {
+            destinationIds = new HashMap<>();
+            for (int i = 0; i < destinationNames.size(); i++) {
+                destinationIds.put(destinationNames.get(i), i);
+            }
+        }
+        Integer id = destinationIds.get(destination);
+        if (id == null) {
+            id = destinationNames.size();
+            destinationNames.add(destination);
+            destinationIds.put(destination, id);
+        }
+        return id;
+    }
+
+    /**
+     * Write the history for {@link ModelCodecs}: the destinations once, then each
+     * request as the change in requested time from the one before, a destination
+     * index and its status and priority packed into one byte
+     * @param out The buffer to write to
+     * @param ownerId User ID of the owner; the requester ID is only written if it differs
+     */
+    synchronized void write(BinaryWriter out, String ownerId) {
+        int block = out.startBlock(CODEC_VERSION);
+        out.writeString(Objects.equals(requesterId, ownerId) ? null : requesterId);
+        out.writeVarInt(destinationNames.size());
+        for (String destination : destinationNames) {
+            out.writeString(destination);
+        }
+        out.writeVarInt(size);
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            out.writeSignedVarLong(times[i] - previous);
+            previous = times[i];
+            if (times[i] < 0) {
+                out.writeString(rawTimes[i]);
+            }
+            out.writeVarInt(destinations[i]);
+            out.writeByte(statuses[i] << 4 | priorities[i]);
+        }
+        List<String> legacy = legacyEntries == null ? Collections.emptyList() : legacyEntries;
+        out.writeVarInt(legacy.size());
+        for (String entry : legacy) {
+            out.writeString(entry);
+        }
+        out.endBlock(block);
+    }
+
+    /**
+     * Read a history written by {@link #write}
+     * @param in The buffer to read from
+     * @param ownerId User ID of the owner
+     * @return The history
+     * @throws IOException if the bytes are truncated or corrupt
+     */
+    static TransportHistory read(BinaryReader in, String ownerId) throws IOException {
+        in.openBlock();
+        String requesterId = in.readString();
+        TransportHistory history = new TransportHistory(requesterId == null ? ownerId : requesterId);
+        int destinationCount = in.readVarInt();
+        for (int i = 0; i < destinationCount; i++) {
+            history.destinationNames.add(in.readString());
+        }
+        int size = in.readVarInt();
+        // Every request takes at least three bytes
+        if (size < 0 || size > in.remaining() / 3) {
+            throw new StreamCorruptedException("Bad transport history size " + size);
+        }
+        int capacity = Math.max(size, 4);
+        history.times = new long[capacity];
+        history.destinations = new int[capacity];
+        history.statuses = new byte[capacity];
+        history.priorities = new byte[capacity];
+        long time = 0;
+        for (int i = 0; i < size; i++) {
+            time += in.readSignedVarLong();
+            history.times[i] = time;
+            if (time < 0) {
+                if (history.rawTimes == null) {
+                    history.rawTimes = new String[capacity];
+                }
+                history.rawTimes[i] = in.readString();
+            }
+            int destination = in.readVarInt();
+            int packed = in.readByte() & 0xFF;
+            if (destination < 0 || destination >= destinationCount
+                    || packed >> 4 >= STATUSES.length || (packed & 0xF) >= PRIORITIES.length) {
+                throw new StreamCorruptedException("Bad transport request " + (i + 1) + " of " + requesterId);
+            }
+            history.destinations[i] = destination;
+            history.statuses[i] = (byte) (packed >> 4);
+            history.priorities[i] = (byte) (packed & 0xF);
+        }
+        history.size = size;
+        int legacyCount = in.readVarInt();
+        if (legacyCount > 0) {
+            history.legacyEntries = new ArrayList<>();
+            for (int i = 0; i < legacyCount; i++) {
+                history.legacyEntries.add(in.readString());
+            }
+        }
+        in.closeBlock();
+        return history;
+    }
+
+    /**
+     * Drop the unused tail of the columns before writing them out
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        int capacity = Math.max(size, 1);
+        times = Arrays.copyOf(times, capacity);
+        destinations = Arrays.copyOf(destinations, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        if (rawTimes != null) {
+            rawTimes = Arrays.copyOf(rawTimes, capacity);
+        }
+        out.defaultWriteObject();
+    }
+}
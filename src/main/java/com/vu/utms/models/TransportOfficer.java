@@ -1,17 +1,31 @@
 package com.vu.utms.models;
 
+import com.vu.utms.codec.SymbolTable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.List;
 
 public class TransportOfficer extends User implements Serializable {
     private static final long serialVersionUID = 1L;
+    // Formatted-text history of officers saved before TransportHistory; null afterwards
     private List<String> assignmentHistory;
     // Additional transport officer-specific attributes
     private String officerId;
-    private String role;
-    private String department;
+    // SymbolTable codes, shared by every officer with the same value
+    private int role;
+    private int department;
     private int yearsOfExperience;
+    // Serialized form, as it was when these were Strings, so older files still load
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("assignmentHistory", List.class),
+        new ObjectStreamField("officerId", String.class),
+        new ObjectStreamField("role", String.class),
+        new ObjectStreamField("department", String.class),
+        new ObjectStreamField("yearsOfExperience", int.class)
+    };
     
     /**
      * Constructor for creating a new transport officer
@@ -30,21 +44,26 @@ public class TransportOfficer extends User implements Serializable {
                            String department, int yearsOfExperience) {
         super(userId, name, email, phoneNumber, password);
         this.officerId = officerId;
-        this.role = role;
-        this.department = department;
+        this.role = SymbolTable.intern(role);
+        this.department = SymbolTable.intern(department);
         this.yearsOfExperience = yearsOfExperience;
-        this.assignmentHistory = new ArrayList<>();
     }
     
     // Getter and Setter methods for transport officer-specific attributes
     public String getOfficerId() { return officerId; }
     public void setOfficerId(String officerId) { this.officerId = officerId; }
     
-    public String getRole() { return role; }
-    public void setRole(String role) { this.role = role; }
+    public String getRole() { return SymbolTable.name(role); }
+    public void setRole(String role) { this.role = SymbolTable.intern(role); }
     
-    public String getDepartment() { return department; }
-    public void setDepartment(String department) { this.department = department; }
+    public String getDepartment() { return SymbolTable.name(department); }
+    public void setDepartment(String department) { this.department = SymbolTable.intern(department); }
+    
+    int getRoleSymbol() { return role; }
+    void setRoleSymbol(int role) { this.role = role; }
+    
+    int getDepartmentSymbol() { return department; }
+    void setDepartmentSymbol(int department) { this.department = department; }
     
     public int getYearsOfExperience() { return yearsOfExperience; }
     public void setYearsOfExperience(int yearsOfExperience) { this.yearsOfExperience = yearsOfExperience; }
@@ -58,14 +77,8 @@ public class TransportOfficer extends User implements Serializable {
      */
     @Override
     public String requestTransport(String destination, String dateTime) {
-        String request = String.format("Administrative Transport Request - Officer: %s, ID: %s\n" +
-                           "Role: %s, Department: %s\n" +
-                           "Destination: %s, DateTime: %s\n" +
-                           "Status: Administrative Priority",
-                           getName(), getOfficerId(), role, department,
-                           destination, dateTime);
-        assignmentHistory.add(request);
-        return request;
+        return describe(getTransportRequests().add(destination, dateTime,
+                                                   TransportRequest.Priority.ADMINISTRATIVE));
     }
     
     /**
@@ -74,14 +87,36 @@ public class TransportOfficer extends User implements Serializable {
      */
     @Override
     public String viewTransportHistory() {
-        if (assignmentHistory.isEmpty()) {
+        TransportHistory history = getTransportRequests();
+        if (history.isEmpty()) {
             return "No transport management history available";
         }
         return String.format("Transport Management History for Officer %s (%s)\n" +
                            "Role: %s, Department: %s\n" +
                            "History:\n%s",
-                           getName(), getOfficerId(), role, department,
-                           String.join("\n", assignmentHistory));
+                           getName(), getOfficerId(), getRole(), getDepartment(),
+                           history.render(this::describe));
+    }
+    
+    @Override
+    protected void migrateLegacyHistory(TransportHistory history) {
+        if (assignmentHistory != null) {
+            history.addLegacy(assignmentHistory);
+            assignmentHistory = null;
+        }
+    }
+    
+    private String describe(TransportRequest request) {
+        String status = request.priority().getLabel();
+        if (request.status() != TransportRequest.Status.PENDING) {
+            status += " - " + request.status().getLabel();
+        }
+        return String.format("Administrative Transport Request - Officer: %s, ID: %s\n" +
+                           "Role: %s, Department: %s\n" +
+                           "Destination: %s, DateTime: %s\n" +
+                           "Status: %s",
+                           getName(), getOfficerId(), getRole(), getDepartment(),
+                           request.destination(), request.dateTime(), status);
     }
     
     /**
@@ -125,4 +160,27 @@ public class TransportOfficer extends User implements Serializable {
                            approvalStatus, requestId, approvalStatus,
                            getName(), getOfficerId());
     }
-}
\ No newline at end of file
+    
+    /**
+     * Read the serialized form, turning the role and department into symbols
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        assignmentHistory = (List<String>) fields.get("assignmentHistory", null);
+        officerId = (String) fields.get("officerId", null);
+        role = SymbolTable.intern((String) fields.get("role", null));
+        department = SymbolTable.intern((String) fields.get("department", null));
+        yearsOfExperience = fields.get("yearsOfExperience", 0);
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("assignmentHistory", assignmentHistory);
+        fields.put("officerId", officerId);
+        fields.put("role", SymbolTable.name(role));
+        fields.put("department", SymbolTable.name(department));
+        fields.put("yearsOfExperience", yearsOfExperience);
+        out.writeFields();
+    }
+}
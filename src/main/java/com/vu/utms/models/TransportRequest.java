@@ -0,0 +1,87 @@
+package com.vu.utms.models;
+
+import java.io.Serializable;
+
+/**
+ * TransportRequest is one request for transport made by a user.
+ * Requests are stored column by column in a {@link TransportHistory}; instances
+ * of this record are created on demand when a request is read back, and are
+ * what the data layer logs when a request is made or changes status.
+ *
+ * @param requestId Unique identifier of the request
+ * @param requesterId User ID of the user who made the request
+ * @param destination The destination location
+ * @param epochMinute Requested time in minutes since the epoch, or -1 if the
+ *                    requested time was not in "yyyy-MM-dd HH:mm" form
+ * @param dateTime Requested time as entered
+ * @param status Where the request is in its lifecycle
+ * @param priority How urgently the request should be served
+ */
+public record TransportRequest(String requestId, String requesterId, String destination,
+                               long epochMinute, String dateTime, Status status, Priority priority)
+        implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @return Position of the request in its requester's history, counting from 1,
+     *         or -1 if the ID is not in the form TransportHistory assigns
+     */
+    public int sequence() {
+        int at = requestId.lastIndexOf(TransportHistory.ID_SEPARATOR);
+        if (at < 0) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(requestId.substring(at + TransportHistory.ID_SEPARATOR.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Get the requester encoded in a request ID
+     * @param requestId The request ID
+     * @return User ID of the requester, or null if the ID is not in the form
+     *         TransportHistory assigns
+     */
+    public static String requesterOf(String requestId) {
+        int at = requestId == null ? -1 : requestId.lastIndexOf(TransportHistory.ID_SEPARATOR);
+        return at <= 0 ? null : requestId.substring(0, at);
+    }
+
+    /**
+     * Lifecycle of a transport request
+     */
+    public enum Status {
+        PENDING("Processing"),
+        ASSIGNED("Vehicle Assigned"),
+        COMPLETED("Completed"),
+        CANCELLED("Cancelled"),
+        REJECTED("Rejected");
+
+        private final String label;
+
+        Status(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() { return label; }
+    }
+
+    /**
+     * Service classes, from least to most urgent
+     */
+    public enum Priority {
+        STANDARD("Standard Request"),
+        PRIORITY("Priority Request"),
+        ADMINISTRATIVE("Administrative Priority");
+
+        private final String label;
+
+        Priority(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() { return label; }
+    }
+}
@@ -16,6 +16,8 @@ public abstract class User implements Serializable {
     private String email;
     private String phoneNumber;
     private String password;
+    // Structured transport requests; null for users saved before they were recorded
+    private TransportHistory transportRequests;
     
     /**
      * Constructor for creating a new user
@@ -49,6 +51,35 @@ public abstract class User implements Serializable {
     protected String getPassword() { return password; }
     protected void setPassword(String password) { this.password = password; }
     
+    /**
+     * Get the user's transport requests, creating the store on first use and
+     * carrying over any history recorded as formatted text
+     * @return The user's transport requests
+     */
+    public synchronized TransportHistory getTransportRequests() {
+        if (transportRequests == null) {
+            transportRequests = new TransportHistory(userId);
+        }
+        migrateLegacyHistory(transportRequests);
+        return transportRequests;
+    }
+    
+    /**
+     * Put back transport requests read by {@link ModelCodecs}
+     * @param history The requests, or null if the user has none
+     */
+    synchronized void restoreTransportRequests(TransportHistory history) {
+        this.transportRequests = history;
+    }
+    
+    /**
+     * Move history entries kept as formatted text into the structured history.
+     * Called with the user's monitor held; does nothing by default.
+     * @param history The structured history to add the entries to
+     */
+    protected void migrateLegacyHistory(TransportHistory history) {
+    }
+    
     /**
      * Abstract method for requesting transport
      * This demonstrates polymorphism as each user type will implement it differently
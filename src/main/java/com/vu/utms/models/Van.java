@@ -1,5 +1,10 @@
 package com.vu.utms.models;
 
+import com.vu.utms.codec.SymbolTable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
 public class Van extends Vehicle implements Serializable {
@@ -7,8 +12,16 @@ public class Van extends Vehicle implements Serializable {
     // Van-specific attributes
     private boolean hasCargoSpace;
     private double cargoCapacity; // in cubic meters
-    private String purposeType; // e.g., "Staff Transport", "Cargo", "Special Needs"
+    // SymbolTable code of e.g. "Staff Transport", "Cargo", "Special Needs"
+    private int purposeType;
     private boolean hasFirstAidKit;
+    // Serialized form, as it was when the purpose type was a String, so older files still load
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("hasCargoSpace", boolean.class),
+        new ObjectStreamField("cargoCapacity", double.class),
+        new ObjectStreamField("purposeType", String.class),
+        new ObjectStreamField("hasFirstAidKit", boolean.class)
+    };
     
     /**
      * Constructor for creating a new van
@@ -27,7 +40,7 @@ public class Van extends Vehicle implements Serializable {
         super(vehicleId, registrationNumber, model, capacity);
         this.hasCargoSpace = hasCargoSpace;
         this.cargoCapacity = cargoCapacity;
-        this.purposeType = purposeType;
+        this.purposeType = SymbolTable.intern(purposeType);
         this.hasFirstAidKit = hasFirstAidKit;
         // this.purpose = "General Purpose";
     }
@@ -43,8 +56,11 @@ public class Van extends Vehicle implements Serializable {
         this.cargoCapacity = cargoCapacity; 
     }
     
-    public String getPurposeType() { return purposeType; }
-    public void setPurposeType(String purposeType) { this.purposeType = purposeType; }
+    public String getPurposeType() { return SymbolTable.name(purposeType); }
+    public void setPurposeType(String purposeType) { this.purposeType = SymbolTable.intern(purposeType); }
+    
+    int getPurposeTypeSymbol() { return purposeType; }
+    void setPurposeTypeSymbol(int purposeType) { this.purposeType = purposeType; }
     
     public boolean hasFirstAidKit() { return hasFirstAidKit; }
     public void setHasFirstAidKit(boolean hasFirstAidKit) { 
@@ -92,35 +108,29 @@ public class Van extends Vehicle implements Serializable {
      */
     @Override
     public boolean isAvailable(String dateTime) {
-        // Van-specific availability check
-        return "Available".equals(getCurrentStatus());
+        return isAvailableAt(dateTime);
     }
     
     /**
      * Implementation of Schedulable interface method
-     * @param dateTime The date and time to schedule
-     * @param duration The duration of the scheduled period
+     * @param dateTime The date and time to schedule, as "yyyy-MM-dd HH:mm"
+     * @param duration The duration of the scheduled period in minutes
      * @param purpose The purpose of the scheduling
      * @return boolean indicating if scheduling was successful
      */
     @Override
     public boolean schedule(String dateTime, int duration, String purpose) {
-        if (isAvailable(dateTime)) {
-            updateStatus("Scheduled");
-            return true;
-        }
-        return false;
+        return book(dateTime, duration, purpose) != null;
     }
     
     /**
      * Implementation of Schedulable interface method
-     * @param scheduleId The unique identifier of the schedule to cancel
+     * @param scheduleId The booking ID returned by book
      * @return boolean indicating if cancellation was successful
      */
     @Override
     public boolean cancelSchedule(String scheduleId) {
-        updateStatus("Available");
-        return true;
+        return cancelBooking(scheduleId);
     }
     
     /**
@@ -132,8 +142,11 @@ public class Van extends Vehicle implements Serializable {
         return String.format("Van Schedule Information\n" +
                            "Van ID: %s\n" +
                            "Purpose Type: %s\n" +
-                           "Status: %s",
-                           getVehicleId(), purposeType, getCurrentStatus());
+                           "Status: %s\n" +
+                           "Bookings: %d\n" +
+                           "Next Booking: %s",
+                           getVehicleId(), getPurposeType(), getCurrentStatus(),
+                           getCalendar().size(), describeNextBooking());
     }
     
     /**
@@ -152,8 +165,28 @@ public class Van extends Vehicle implements Serializable {
     public void displayCargoInformation() {
         System.out.println("Van Cargo Information:");
         System.out.println("Cargo Capacity: " + cargoCapacity + " kg");
-        System.out.println("Purpose: " + purposeType);
+        System.out.println("Purpose: " + getPurposeType());
         System.out.println("Current Location: " + getCurrentLocation());
         System.out.println("Status: " + getCurrentStatus());
     }
+    
+    /**
+     * Read the serialized form, turning the purpose type into a symbol
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        hasCargoSpace = fields.get("hasCargoSpace", false);
+        cargoCapacity = fields.get("cargoCapacity", 0.0);
+        purposeType = SymbolTable.intern((String) fields.get("purposeType", null));
+        hasFirstAidKit = fields.get("hasFirstAidKit", false);
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("hasCargoSpace", hasCargoSpace);
+        fields.put("cargoCapacity", cargoCapacity);
+        fields.put("purposeType", SymbolTable.name(purposeType));
+        fields.put("hasFirstAidKit", hasFirstAidKit);
+        out.writeFields();
     }
+}
@@ -1,8 +1,13 @@
 package com.vu.utms.models;
 
 import com.vu.utms.interfaces.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public abstract class Vehicle implements Serviceable, Trackable, Schedulable, Serializable {
@@ -13,9 +18,36 @@ public abstract class Vehicle implements Serviceable, Trackable, Schedulable, Se
     protected String registrationNumber;
     protected String model;
     protected int capacity;
-    protected String currentLocation;
-    protected String status;
+    // Volatile so tracking updates from one thread are visible to readers on others
+    protected volatile String currentLocation;
+    // Changed only through updateStatus, while holding the vehicle's monitor
+    protected volatile VehicleStatus status;
     protected String lastServiceDate;
+    // Last GPS fix, kept as primitives and guarded by the vehicle's monitor;
+    // a timestamp of 0 means no fix yet and currentLocation names the position
+    private double latitude;
+    private double longitude;
+    private long locationTimestamp;
+    // Future bookings; null for vehicles saved before bookings existed
+    private BookingCalendar calendar;
+    // Observers of position, status and booking changes; not persisted with the vehicle
+    private transient volatile TrackingListener[] listeners;
+    // Serialized form, as it was when the status was a String, so older files still load
+    // and the status text stays readable by older versions
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("scheduleHistory", List.class),
+        new ObjectStreamField("vehicleId", String.class),
+        new ObjectStreamField("registrationNumber", String.class),
+        new ObjectStreamField("model", String.class),
+        new ObjectStreamField("capacity", int.class),
+        new ObjectStreamField("currentLocation", String.class),
+        new ObjectStreamField("status", String.class),
+        new ObjectStreamField("lastServiceDate", String.class),
+        new ObjectStreamField("latitude", double.class),
+        new ObjectStreamField("longitude", double.class),
+        new ObjectStreamField("locationTimestamp", long.class),
+        new ObjectStreamField("calendar", BookingCalendar.class)
+    };
     
     /**
      * Constructor for creating a new vehicle
@@ -29,7 +61,7 @@ public abstract class Vehicle implements Serviceable, Trackable, Schedulable, Se
         this.registrationNumber = registrationNumber;
         this.model = model;
         this.capacity = capacity;
-        this.status = "Available";
+        this.status = VehicleStatus.AVAILABLE;
         this.currentLocation = "Campus Depot";
         this.scheduleHistory = new ArrayList<>();;
     }
@@ -50,27 +82,322 @@ public abstract class Vehicle implements Serviceable, Trackable, Schedulable, Se
     public int getCapacity() { return capacity; }
     public void setCapacity(int capacity) { this.capacity = capacity; }
     
+    /**
+     * @return Most passengers the vehicle carries on one trip
+     */
+    public int getPassengerPlaces() { return capacity; }
+    
     // Implementation of Trackable interface methods
     @Override
     public void updateLocation(double latitude, double longitude) {
-        this.currentLocation = String.format("%.6f, %.6f", latitude, longitude);
+        updateLocation(latitude, longitude, System.currentTimeMillis());
+    }
+    
+    /**
+     * Record a GPS fix taken at a given time. Fixes older than the current one
+     * are ignored, so reports arriving out of order never move a vehicle back.
+     * Nothing is allocated; the text form is only built by getCurrentLocation.
+     * @param latitude The latitude coordinate
+     * @param longitude The longitude coordinate
+     * @param timestampMillis When the fix was taken, in epoch milliseconds
+     * @return boolean indicating if the fix was applied
+     */
+    public boolean updateLocation(double latitude, double longitude, long timestampMillis) {
+        synchronized (this) {
+            if (timestampMillis < locationTimestamp) {
+                return false;
+            }
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.locationTimestamp = Math.max(timestampMillis, 1);
+        }
+        TrackingListener[] current = listeners;
+        if (current != null) {
+            for (TrackingListener listener : current) {
+                listener.locationChanged(this, latitude, longitude);
+            }
+        }
+        return true;
     }
     
     @Override
-    public String getCurrentLocation() {
-        return currentLocation;
+    public synchronized String getCurrentLocation() {
+        if (locationTimestamp == 0) {
+            return currentLocation;
+        }
+        return String.format("%.6f, %.6f", latitude, longitude);
+    }
+    
+    /**
+     * @return boolean indicating if a GPS fix has been recorded
+     */
+    public synchronized boolean hasPositionFix() { return locationTimestamp != 0; }
+    
+    public synchronized double getLatitude() { return latitude; }
+    
+    public synchronized double getLongitude() { return longitude; }
+    
+    /**
+     * @return Time of the last GPS fix in epoch milliseconds, or 0 if none
+     */
+    public synchronized long getLocationTimestamp() { return locationTimestamp; }
+    
+    /**
+     * Put back a GPS fix read by {@link ModelCodecs}, without notifying listeners
+     * @param latitude The latitude coordinate
+     * @param longitude The longitude coordinate
+     * @param timestampMillis When the fix was taken, or 0 if there is none
+     */
+    synchronized void restorePosition(double latitude, double longitude, long timestampMillis) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.locationTimestamp = timestampMillis;
     }
     
+    /**
+     * Apply a GPS fix read from the data layer's log, without notifying
+     * listeners. Like updateLocation, a fix no newer than the current one is
+     * ignored, so replaying a log more than once changes nothing.
+     * @param latitude The latitude coordinate
+     * @param longitude The longitude coordinate
+     * @param timestampMillis When the fix was taken, in epoch milliseconds
+     * @return boolean indicating if the fix was applied
+     */
+    synchronized boolean replayPosition(double latitude, double longitude, long timestampMillis) {
+        if (timestampMillis <= locationTimestamp) {
+            return false;
+        }
+        restorePosition(latitude, longitude, timestampMillis);
+        return true;
+    }
+    
+    /**
+     * Register a listener for position, status and booking changes. A listener
+     * already registered is not added again.
+     * @param listener The listener to notify
+     */
+    public synchronized void addTrackingListener(TrackingListener listener) {
+        TrackingListener[] current = listeners;
+        if (current != null && Arrays.asList(current).contains(listener)) {
+            return;
+        }
+        if (current == null) {
+            listeners = new TrackingListener[] { listener };
+        } else {
+            TrackingListener[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = listener;
+            listeners = grown;
+        }
+    }
+    
+    /**
+     * Remove a previously registered listener
+     * @param listener The listener to remove
+     */
+    public synchronized void removeTrackingListener(TrackingListener listener) {
+        TrackingListener[] current = listeners;
+        if (current == null) {
+            return;
+        }
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                TrackingListener[] shrunk = new TrackingListener[current.length - 1];
+                System.arraycopy(current, 0, shrunk, 0, i);
+                System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+                listeners = shrunk.length == 0 ? null : shrunk;
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Move the vehicle to a new status, if its current status allows it, and
+     * tell listeners about the change
+     * @param status The new status
+     * @return boolean indicating if the vehicle is now in that status
+     */
     @Override
-    public void updateStatus(String status) {
-        this.status = status;
+    public boolean updateStatus(VehicleStatus status) {
+        VehicleStatus previous;
+        synchronized (this) {
+            previous = this.status;
+            if (previous == status) {
+                return true;
+            }
+            if (!previous.canBecome(status)) {
+                return false;
+            }
+            this.status = status;
+        }
+        TrackingListener[] current = listeners;
+        if (current != null) {
+            for (TrackingListener listener : current) {
+                listener.statusChanged(this, previous, status);
+            }
+        }
+        return true;
     }
     
     @Override
-    public String getCurrentStatus() {
+    public VehicleStatus getStatus() {
         return status;
     }
     
+    @Override
+    public String getCurrentStatus() {
+        return status.getLabel();
+    }
+    
+    /**
+     * Get the vehicle's booking calendar, creating it for vehicles loaded from
+     * files written before bookings were recorded
+     * @return The booking calendar
+     */
+    public synchronized BookingCalendar getCalendar() {
+        if (calendar == null) {
+            calendar = new BookingCalendar();
+        }
+        return calendar;
+    }
+    
+    /**
+     * Put back a booking calendar read by {@link ModelCodecs}
+     * @param calendar The calendar
+     */
+    synchronized void restoreCalendar(BookingCalendar calendar) {
+        this.calendar = calendar;
+    }
+    
+    /**
+     * Book the vehicle for a time slot
+     * @param dateTime Start of the booking as "yyyy-MM-dd HH:mm"
+     * @param duration Length of the booking in minutes
+     * @param purpose The purpose of the booking
+     * @return The booking ID, or null if the time is invalid or the slot is taken
+     */
+    public String book(String dateTime, int duration, String purpose) {
+        long start = BookingCalendar.parseMinute(dateTime);
+        if (start < 0 || duration <= 0) {
+            return null;
+        }
+        return book(start, start + duration, purpose);
+    }
+    
+    /**
+     * Book the vehicle for an interval if it is free, and tell listeners about the booking
+     * @param startMinute First minute of the booking, in epoch minutes
+     * @param endMinute Minute the booking ends, exclusive
+     * @param purpose The purpose of the booking
+     * @return The booking ID, or null if the interval is empty or already taken
+     */
+    public String book(long startMinute, long endMinute, String purpose) {
+        return book(startMinute, endMinute, purpose, 0);
+    }
+    
+    /**
+     * Book the vehicle for a trip that later passengers going the same way may join
+     * @param startMinute When the trip departs, in epoch minutes
+     * @param endMinute Minute the trip ends, exclusive
+     * @param purpose The purpose of the trip, e.g. its destination
+     * @param passengers Passengers on the trip, or 0 to hold the vehicle for the purpose alone
+     * @return The booking ID, or null if the interval is empty or already taken or
+     *         the vehicle cannot carry that many passengers
+     */
+    public String book(long startMinute, long endMinute, String purpose, int passengers) {
+        if (passengers > getPassengerPlaces()) {
+            return null;
+        }
+        BookingCalendar.Booking booking = getCalendar().add(vehicleId, startMinute, endMinute, purpose, passengers);
+        if (booking == null) {
+            return null;
+        }
+        TrackingListener[] current = listeners;
+        if (current != null) {
+            for (TrackingListener listener : current) {
+                listener.bookingAdded(this, booking);
+            }
+        }
+        return booking.getBookingId();
+    }
+    
+    /**
+     * Put passengers on a trip the vehicle is booked for, and tell listeners about them
+     * @param startMinute When the passengers want to depart, in epoch minutes
+     * @param windowMinutes How far from that the trip may depart, either way
+     * @param purpose The purpose of the trip, e.g. its destination
+     * @param passengers Passengers joining
+     * @return ID of the trip joined, the one departing nearest the time with places
+     *         left, or null if there is none
+     */
+    public String joinTrip(long startMinute, int windowMinutes, String purpose, int passengers) {
+        BookingCalendar.Booking booking = getCalendar().join(startMinute, windowMinutes, purpose, passengers,
+                                                             getPassengerPlaces());
+        if (booking == null) {
+            return null;
+        }
+        TrackingListener[] current = listeners;
+        if (current != null) {
+            for (TrackingListener listener : current) {
+                listener.bookingJoined(this, booking);
+            }
+        }
+        return booking.getBookingId();
+    }
+    
+    /**
+     * Check whether the vehicle has no bookings in an interval
+     * @param startMinute First minute of the interval, in epoch minutes
+     * @param endMinute Minute the interval ends, exclusive
+     * @return boolean indicating if the vehicle is free for the whole interval
+     */
+    public boolean isFree(long startMinute, long endMinute) {
+        return getCalendar().isFree(startMinute, endMinute);
+    }
+    
+    /**
+     * Shared availability check for Schedulable implementations. A parseable
+     * time is checked against the calendar; otherwise the current status decides,
+     * as it did before bookings were recorded.
+     * @param dateTime The date and time to check availability
+     * @return boolean indicating if the vehicle is available
+     */
+    protected boolean isAvailableAt(String dateTime) {
+        long minute = BookingCalendar.parseMinute(dateTime);
+        if (minute < 0) {
+            return status == VehicleStatus.AVAILABLE;
+        }
+        return isFree(minute, minute + 1);
+    }
+    
+    /**
+     * Shared cancellation for Schedulable implementations
+     * @param bookingId The ID returned by book
+     * @return boolean indicating if cancellation was successful
+     */
+    protected boolean cancelBooking(String bookingId) {
+        BookingCalendar.Booking cancelled = getCalendar().remove(bookingId);
+        if (cancelled != null) {
+            TrackingListener[] current = listeners;
+            if (current != null) {
+                for (TrackingListener listener : current) {
+                    listener.bookingCancelled(this, cancelled);
+                }
+            }
+            return true;
+        }
+        // Vehicles scheduled before bookings existed only carry the status
+        return status == VehicleStatus.SCHEDULED && updateStatus(VehicleStatus.AVAILABLE);
+    }
+    
+    /**
+     * @return Description of the next booking from now, or "None"
+     */
+    protected String describeNextBooking() {
+        long now = System.currentTimeMillis() / 60_000;
+        BookingCalendar.Booking next = getCalendar().nextBooking(now);
+        return next == null ? "None" : next.toString();
+    }
+    
     // Implementation of Serviceable interface methods
     @Override
     public String getLastServiceDate() {
@@ -80,7 +407,7 @@ public abstract class Vehicle implements Serviceable, Trackable, Schedulable, Se
     @Override
     public void recordService(String serviceType, String serviceDate) {
         this.lastServiceDate = serviceDate;
-        this.status = "Serviced";
+        updateStatus(VehicleStatus.SERVICED);
     }
     
     /**
@@ -96,6 +423,47 @@ public abstract class Vehicle implements Serviceable, Trackable, Schedulable, Se
      */
     public abstract String getVehicleType();
     
+    /**
+     * Read the serialized form, turning the status text into a state
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        scheduleHistory = (List<String>) fields.get("scheduleHistory", null);
+        vehicleId = (String) fields.get("vehicleId", null);
+        registrationNumber = (String) fields.get("registrationNumber", null);
+        model = (String) fields.get("model", null);
+        capacity = fields.get("capacity", 0);
+        currentLocation = (String) fields.get("currentLocation", null);
+        status = VehicleStatus.restore((String) fields.get("status", null));
+        lastServiceDate = (String) fields.get("lastServiceDate", null);
+        latitude = fields.get("latitude", 0.0);
+        longitude = fields.get("longitude", 0.0);
+        locationTimestamp = fields.get("locationTimestamp", 0L);
+        calendar = (BookingCalendar) fields.get("calendar", null);
+    }
+    
+    /**
+     * Hold the position still while the vehicle is written, so a fix is never
+     * saved half updated
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("scheduleHistory", scheduleHistory);
+        fields.put("vehicleId", vehicleId);
+        fields.put("registrationNumber", registrationNumber);
+        fields.put("model", model);
+        fields.put("capacity", capacity);
+        fields.put("currentLocation", currentLocation);
+        fields.put("status", status.getLabel());
+        fields.put("lastServiceDate", lastServiceDate);
+        fields.put("latitude", latitude);
+        fields.put("longitude", longitude);
+        fields.put("locationTimestamp", locationTimestamp);
+        fields.put("calendar", calendar);
+        out.writeFields();
+    }
+    
     /**
      * Common method for all vehicles to display vehicle information
      * @return String containing vehicle details
@@ -109,6 +477,6 @@ public abstract class Vehicle implements Serviceable, Trackable, Schedulable, Se
                            "Status: %s\n" +
                            "Current Location: %s",
                            vehicleId, getVehicleType(), registrationNumber,
-                           model, capacity, status, currentLocation);
+                           model, capacity, getCurrentStatus(), getCurrentLocation());
     }
 }
\ No newline at end of file
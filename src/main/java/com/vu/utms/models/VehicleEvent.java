@@ -0,0 +1,107 @@
+package com.vu.utms.models;
+
+import java.io.Serializable;
+
+/**
+ * VehicleEvent is one change to a vehicle made after it was saved, as the data
+ * layer logs it: a booking made or cancelled, passengers joining a trip, or a
+ * reported position. Events are replayed onto the saved vehicles at load, so
+ * bookings and positions survive a restart and are seen by other processes.
+ *
+ * @param vehicleId ID of the vehicle changed
+ * @param kind What changed
+ * @param bookingId ID of the booking made or cancelled, or null for a position
+ * @param startMinute First minute of the booking, in epoch minutes
+ * @param endMinute Minute the booking ends, exclusive
+ * @param purpose The purpose of the booking
+ * @param passengers Passengers on the trip once the event happened, or 0 if the
+ *                   booking is not a trip
+ * @param latitude The reported latitude, for a position
+ * @param longitude The reported longitude, for a position
+ * @param timestampMillis When the position was taken, in epoch milliseconds, or 0
+ *                        if the event is not a position
+ */
+public record VehicleEvent(String vehicleId, Kind kind, String bookingId,
+                           long startMinute, long endMinute, String purpose, int passengers,
+                           double latitude, double longitude, long timestampMillis)
+        implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Kinds of change
+     */
+    public enum Kind {
+        BOOKED,
+        CANCELLED,
+        JOINED,
+        MOVED
+    }
+
+    /**
+     * @param vehicleId ID of the vehicle booked
+     * @param booking The new booking
+     * @return The event recording the booking
+     */
+    public static VehicleEvent booked(String vehicleId, BookingCalendar.Booking booking) {
+        return of(vehicleId, Kind.BOOKED, booking);
+    }
+
+    /**
+     * @param vehicleId ID of the vehicle whose booking was cancelled
+     * @param booking The cancelled booking
+     * @return The event recording the cancellation
+     */
+    public static VehicleEvent cancelled(String vehicleId, BookingCalendar.Booking booking) {
+        return of(vehicleId, Kind.CANCELLED, booking);
+    }
+
+    /**
+     * @param vehicleId ID of the vehicle making the trip
+     * @param booking The trip with its new passenger count
+     * @return The event recording the passengers joining
+     */
+    public static VehicleEvent joined(String vehicleId, BookingCalendar.Booking booking) {
+        return of(vehicleId, Kind.JOINED, booking);
+    }
+
+    /**
+     * @param vehicleId ID of the vehicle reported
+     * @param latitude The latitude coordinate
+     * @param longitude The longitude coordinate
+     * @param timestampMillis When the position was taken, in epoch milliseconds
+     * @return The event recording the position
+     */
+    public static VehicleEvent moved(String vehicleId, double latitude, double longitude, long timestampMillis) {
+        return new VehicleEvent(vehicleId, Kind.MOVED, null, 0, 0, null, 0, latitude, longitude, timestampMillis);
+    }
+
+    private static VehicleEvent of(String vehicleId, Kind kind, BookingCalendar.Booking booking) {
+        return new VehicleEvent(vehicleId, kind, booking.getBookingId(), booking.getStartMinute(),
+                                booking.getEndMinute(), booking.getPurpose(), booking.getPassengers(), 0, 0, 0);
+    }
+
+    /**
+     * Apply the event to the vehicle it was logged for, without notifying its
+     * listeners. Applying an event the vehicle already reflects changes nothing,
+     * so a log may be replayed onto vehicles saved after some of its events.
+     * @param vehicle The vehicle
+     * @return boolean indicating if the vehicle changed
+     */
+    public boolean applyTo(Vehicle vehicle) {
+        BookingCalendar calendar = vehicle.getCalendar();
+        switch (kind) {
+            case BOOKED:
+                return calendar.replayBooked(toBooking());
+            case JOINED:
+                return calendar.replayJoined(toBooking());
+            case MOVED:
+                return vehicle.replayPosition(latitude, longitude, timestampMillis);
+            default:
+                return calendar.replayCancelled(bookingId);
+        }
+    }
+
+    private BookingCalendar.Booking toBooking() {
+        return new BookingCalendar.Booking(bookingId, startMinute, endMinute, purpose, passengers);
+    }
+}
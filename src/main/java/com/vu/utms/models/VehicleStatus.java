@@ -0,0 +1,92 @@
+package com.vu.utms.models;
+
+import com.vu.utms.codec.SymbolTable;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Operational states of a vehicle and the transitions allowed between them.
+ *
+ * A vehicle starts out AVAILABLE. It can be SCHEDULED for a trip and released
+ * again, be SERVICED from any state, and be taken OUT_OF_SERVICE; a vehicle out
+ * of service only comes back by being serviced.
+ */
+public enum VehicleStatus {
+    AVAILABLE("Available"),
+    SCHEDULED("Scheduled"),
+    SERVICED("Serviced"),
+    OUT_OF_SERVICE("Out of Service");
+
+    static {
+        AVAILABLE.next = EnumSet.of(SCHEDULED, SERVICED, OUT_OF_SERVICE);
+        SCHEDULED.next = EnumSet.of(AVAILABLE, SERVICED, OUT_OF_SERVICE);
+        SERVICED.next = EnumSet.of(AVAILABLE, SCHEDULED, OUT_OF_SERVICE);
+        OUT_OF_SERVICE.next = EnumSet.of(SERVICED);
+    }
+
+    private final String label;
+    // SymbolTable code of the label, which is how codecs write the status
+    private final int symbol;
+    private Set<VehicleStatus> next;
+
+    VehicleStatus(String label) {
+        this.label = label;
+        this.symbol = SymbolTable.intern(label);
+    }
+
+    public String getLabel() { return label; }
+
+    int symbol() { return symbol; }
+
+    /**
+     * Check whether a vehicle in this state may move to another
+     * @param status The state to move to
+     * @return boolean indicating if the transition is allowed
+     */
+    public boolean canBecome(VehicleStatus status) {
+        return next.contains(status);
+    }
+
+    /**
+     * Find a status by its label or constant name, ignoring case
+     * @param text E.g. "Out of Service" or "OUT_OF_SERVICE"
+     * @return The status, or null if there is none by that name
+     */
+    public static VehicleStatus fromLabel(String text) {
+        if (text == null) {
+            return null;
+        }
+        for (VehicleStatus status : values()) {
+            if (status.label.equalsIgnoreCase(text) || status.name().equalsIgnoreCase(text)) {
+                return status;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Turn a status read from a file back into a state. Files written while the
+     * status was free text may hold one this version does not know; such a
+     * vehicle was never "Available", so it is kept out of service.
+     * @param text The stored status
+     * @return The status
+     */
+    static VehicleStatus restore(String text) {
+        VehicleStatus status = fromLabel(text);
+        return status != null ? status : OUT_OF_SERVICE;
+    }
+
+    /**
+     * Turn a status read by a codec back into a state
+     * @param symbol SymbolTable code of the stored status
+     * @return The status
+     */
+    static VehicleStatus restore(int symbol) {
+        for (VehicleStatus status : values()) {
+            if (status.symbol == symbol) {
+                return status;
+            }
+        }
+        return restore(SymbolTable.name(symbol));
+    }
+}
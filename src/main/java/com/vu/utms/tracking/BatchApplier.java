@@ -0,0 +1,55 @@
+package com.vu.utms.tracking;
+
+import com.vu.utms.models.Vehicle;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * BatchApplier applies position batches to a fleet for a receiver and hands
+ * the vehicles each batch moved to a save callback, once per vehicle however
+ * many of its reports the batch held. The callback then saves one position per
+ * vehicle per batch rather than one per report.
+ */
+final class BatchApplier {
+    private final FleetTracker tracker;
+    private final Consumer<? super List<Vehicle>> save;
+    // Reused between batches; only touched by the receiver's thread
+    private final BitSet moved = new BitSet();
+    private final List<Vehicle> movedVehicles = new ArrayList<>();
+
+    /**
+     * Constructor for creating an applier
+     * @param tracker The fleet the reports are applied to
+     * @param save Called after each batch with the vehicles it moved; the list is
+     *             reused, so it must not be kept. Null saves nothing.
+     */
+    BatchApplier(FleetTracker tracker, Consumer<? super List<Vehicle>> save) {
+        this.tracker = tracker;
+        this.save = save;
+    }
+
+    /**
+     * Apply a batch, save the vehicles it moved and clear it
+     * @param batch The reports
+     * @return Number of reports applied
+     */
+    int apply(PositionBatch batch) {
+        int applied = tracker.apply(batch, save == null ? null : moved);
+        batch.clear();
+        if (moved.isEmpty()) {
+            return applied;
+        }
+        for (int slot = moved.nextSetBit(0); slot >= 0; slot = moved.nextSetBit(slot + 1)) {
+            movedVehicles.add(tracker.vehicleAt(slot));
+        }
+        try {
+            save.accept(movedVehicles);
+        } finally {
+            movedVehicles.clear();
+            moved.clear();
+        }
+        return applied;
+    }
+}
@@ -0,0 +1,246 @@
+package com.vu.utms.tracking;
+
+import com.vu.utms.interfaces.Trackable;
+import com.vu.utms.interfaces.TrackingListener;
+import com.vu.utms.models.Vehicle;
+import com.vu.utms.models.VehicleStatus;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * FleetTracker holds the live state of the fleet for telemetry ingest.
+ *
+ * Every registered vehicle gets a small integer slot. Position reports address
+ * vehicles by slot, so applying a batch is an array lookup plus a primitive update
+ * per report with no hashing, parsing or allocation.
+ *
+ * The tracker also follows status changes and keeps one bitset of slots per
+ * {@link VehicleStatus}, so counting or listing the vehicles in a state works on
+ * 64 vehicles per word instead of asking each vehicle for its status.
+ *
+ * A vehicle keeps its slot for the life of the tracker. When the fleet is loaded
+ * again from the data files, {@link #sync} moves each reloaded vehicle into the
+ * slot of the one it replaces.
+ */
+public final class FleetTracker implements TrackingListener {
+    private static final VehicleStatus[] STATES = VehicleStatus.values();
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<String, Integer> slotsById = new ConcurrentHashMap<>();
+    // Vehicles by slot, with room to grow; slots from count on are unused. Grown
+    // by doubling under the monitor and published before count, so a reader that
+    // reads count first finds every slot below it filled.
+    private volatile Vehicle[] vehicles = new Vehicle[INITIAL_CAPACITY];
+    private volatile int count;
+    // Slots of the vehicles in each status, by ordinal; guarded by the tracker's monitor
+    private final BitSet[] slotsByStatus = new BitSet[STATES.length];
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder outOfOrder = new LongAdder();
+    private final LongAdder unknown = new LongAdder();
+
+    /**
+     * Constructor for creating a tracker over an initial set of vehicles
+     * @param fleet Vehicles to register
+     */
+    public FleetTracker(Collection<? extends Vehicle> fleet) {
+        for (int i = 0; i < STATES.length; i++) {
+            slotsByStatus[i] = new BitSet();
+        }
+        sync(fleet);
+    }
+
+    /**
+     * Bring the tracker in step with the fleet: register the vehicles it does
+     * not hold and put each vehicle that has the ID of a registered one, e.g.
+     * because the fleet was reloaded, in that one's slot. Vehicles missing from
+     * the fleet keep their slots.
+     * @param fleet The current vehicles
+     */
+    public synchronized void sync(Collection<? extends Vehicle> fleet) {
+        int size = count;
+        for (Vehicle vehicle : fleet) {
+            Integer slot = slotsById.get(vehicle.getVehicleId());
+            if (slot == null) {
+                size = place(vehicle, size);
+            } else if (vehicles[slot] != vehicle) {
+                vehicles[slot].removeTrackingListener(this);
+                vehicles[slot] = vehicle;
+                vehicle.addTrackingListener(this);
+                // Index the status the replacement has now, as place does for new vehicles
+                indexStatus(slot, vehicle.getStatus());
+            }
+        }
+        // Publish the whole batch at once
+        count = size;
+    }
+
+    /**
+     * Register a vehicle, or return the slot of the one registered with its ID
+     * @param vehicle The vehicle to track
+     * @return The slot position reports use to address the vehicle
+     */
+    public int register(Vehicle vehicle) {
+        return track(vehicle);
+    }
+
+    private synchronized int track(Vehicle vehicle) {
+        Integer existing = slotsById.get(vehicle.getVehicleId());
+        if (existing != null) {
+            return existing;
+        }
+        int slot = count;
+        count = place(vehicle, slot);
+        return slot;
+    }
+
+    /**
+     * Put a new vehicle in a slot, doubling the array if it is full. Readers do
+     * not see it until count is raised past the slot. Call under the monitor.
+     * @return The next free slot
+     */
+    private int place(Vehicle vehicle, int slot) {
+        if (slot == vehicles.length) {
+            vehicles = Arrays.copyOf(vehicles, slot * 2);
+        }
+        vehicles[slot] = vehicle;
+        slotsById.put(vehicle.getVehicleId(), slot);
+        // Listen before reading the status; a change in between is reported
+        // once the monitor is released
+        vehicle.addTrackingListener(this);
+        slotsByStatus[vehicle.getStatus().ordinal()].set(slot);
+        return slot + 1;
+    }
+
+    @Override
+    public void locationChanged(Trackable source, double latitude, double longitude) {
+        // Positions are read from the vehicles themselves
+    }
+
+    @Override
+    public synchronized void statusChanged(Trackable source, VehicleStatus previous, VehicleStatus status) {
+        Integer slot = slotsById.get(((Vehicle) source).getVehicleId());
+        if (slot == null || slot >= vehicles.length || vehicles[slot] != source) {
+            return;
+        }
+        // Reports can arrive out of order, so index the status the vehicle has now
+        indexStatus(slot, source.getStatus());
+    }
+
+    private void indexStatus(int slot, VehicleStatus status) {
+        for (VehicleStatus state : STATES) {
+            slotsByStatus[state.ordinal()].set(slot, state == status);
+        }
+    }
+
+    /**
+     * Count the vehicles in a status
+     * @param status The status
+     * @return Number of registered vehicles in it
+     */
+    public synchronized int count(VehicleStatus status) {
+        return slotsByStatus[status.ordinal()].cardinality();
+    }
+
+    /**
+     * Get the slots of the vehicles in any of some statuses
+     * @param statuses The statuses
+     * @return A new bitset with the slot of each such vehicle set
+     */
+    public synchronized BitSet slotsIn(VehicleStatus... statuses) {
+        BitSet slots = new BitSet(count);
+        for (VehicleStatus status : statuses) {
+            slots.or(slotsByStatus[status.ordinal()]);
+        }
+        return slots;
+    }
+
+    /**
+     * List the vehicles in a status
+     * @param status The status
+     * @return The vehicles, in slot order
+     */
+    public List<Vehicle> vehiclesIn(VehicleStatus status) {
+        BitSet slots = slotsIn(status);
+        Vehicle[] current = vehicles;
+        List<Vehicle> result = new ArrayList<>(slots.cardinality());
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            result.add(current[slot]);
+        }
+        return result;
+    }
+
+    /**
+     * Get the slot of a vehicle
+     * @param vehicleId The vehicle ID
+     * @return The slot, or -1 if the vehicle is not registered
+     */
+    public int slotOf(String vehicleId) {
+        Integer slot = slotsById.get(vehicleId);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Get the vehicle in a slot
+     * @param slot The slot
+     * @return The vehicle, or null if the slot is not in use
+     */
+    public Vehicle vehicleAt(int slot) {
+        int size = count;
+        return slot >= 0 && slot < size ? vehicles[slot] : null;
+    }
+
+    /**
+     * @return Number of registered vehicles
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Apply every report of a batch to the fleet
+     * @param batch The reports
+     * @return Number of reports applied
+     */
+    public int apply(PositionBatch batch) {
+        return apply(batch, null);
+    }
+
+    /**
+     * Apply every report of a batch to the fleet and mark the vehicles it moved
+     * @param batch The reports
+     * @param moved Gets the slot of each vehicle a report was applied to set, or null
+     * @return Number of reports applied
+     */
+    public int apply(PositionBatch batch, BitSet moved) {
+        int size = count;
+        Vehicle[] current = vehicles;
+        int appliedCount = 0;
+        int unknownCount = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            int slot = batch.slot(i);
+            if (slot < 0 || slot >= size) {
+                unknownCount++;
+            } else if (current[slot].updateLocation(batch.latitude(i), batch.longitude(i), batch.timestamp(i))) {
+                appliedCount++;
+                if (moved != null) {
+                    moved.set(slot);
+                }
+            }
+        }
+        applied.add(appliedCount);
+        unknown.add(unknownCount);
+        outOfOrder.add(batch.size() - appliedCount - unknownCount);
+        return appliedCount;
+    }
+
+    public long getAppliedCount() { return applied.sum(); }
+    public long getOutOfOrderCount() { return outOfOrder.sum(); }
+    public long getUnknownCount() { return unknown.sum(); }
+}
@@ -0,0 +1,54 @@
+package com.vu.utms.tracking;
+
+/**
+ * PositionBatch is a reusable buffer of GPS position reports stored as parallel
+ * primitive arrays. Receivers fill one batch, hand it to {@link FleetTracker#apply}
+ * and clear it again, so steady-state ingest allocates nothing.
+ */
+public class PositionBatch {
+    private final int[] slots;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final long[] timestamps;
+    private int size;
+
+    /**
+     * Constructor for creating an empty batch
+     * @param capacity Maximum number of reports the batch can hold
+     */
+    public PositionBatch(int capacity) {
+        slots = new int[capacity];
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        timestamps = new long[capacity];
+    }
+
+    /**
+     * Add a report to the batch
+     * @param slot Fleet slot of the vehicle, see {@link FleetTracker#slotOf}
+     * @param latitude The latitude coordinate
+     * @param longitude The longitude coordinate
+     * @param timestampMillis When the fix was taken, in epoch milliseconds
+     * @return boolean indicating if the report fit into the batch
+     */
+    public boolean add(int slot, double latitude, double longitude, long timestampMillis) {
+        if (size == slots.length) {
+            return false;
+        }
+        slots[size] = slot;
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        timestamps[size] = timestampMillis;
+        size++;
+        return true;
+    }
+
+    public int size() { return size; }
+    public boolean isFull() { return size == slots.length; }
+    public void clear() { size = 0; }
+
+    public int slot(int index) { return slots[index]; }
+    public double latitude(int index) { return latitudes[index]; }
+    public double longitude(int index) { return longitudes[index]; }
+    public long timestamp(int index) { return timestamps[index]; }
+}
@@ -0,0 +1,423 @@
+package com.vu.utms.tracking;
+
+import com.vu.utms.interfaces.Trackable;
+import com.vu.utms.interfaces.TrackingListener;
+import com.vu.utms.models.Vehicle;
+import com.vu.utms.models.VehicleStatus;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * SpatialIndex answers "which vehicles are near this point" without scanning the
+ * fleet. Vehicles are bucketed into a uniform latitude/longitude grid and the index
+ * follows them through {@link TrackingListener} callbacks, so position and status
+ * changes are applied incrementally as they happen.
+ *
+ * Only vehicles with a GPS fix are placed in the grid. Queries take a read lock
+ * and may run concurrently; updates take the write lock for a few array writes.
+ */
+public class SpatialIndex implements TrackingListener {
+    /** Default grid cell size, roughly 1.1 km at the equator */
+    public static final double DEFAULT_CELL_DEGREES = 0.01;
+
+    private static final double EARTH_RADIUS_METERS = 6_371_000;
+    private static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS_METERS / 180;
+
+    private final double cellDegrees;
+    private final Map<Long, Cell> cells = new HashMap<>();
+    private final Map<Vehicle, Entry> entries = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Bounds of every cell ever occupied, so ring searches know when to stop
+    private int minRow = Integer.MAX_VALUE, maxRow = Integer.MIN_VALUE;
+    private int minCol = Integer.MAX_VALUE, maxCol = Integer.MIN_VALUE;
+
+    /**
+     * A vehicle's indexed state
+     */
+    private static final class Entry {
+        final Vehicle vehicle;
+        final String type;
+        double latitude;
+        double longitude;
+        boolean available;
+        Cell cell;
+        int position;
+
+        Entry(Vehicle vehicle) {
+            this.vehicle = vehicle;
+            this.type = vehicle.getVehicleType();
+        }
+    }
+
+    /**
+     * The vehicles inside one grid cell, kept in an unordered array
+     */
+    private static final class Cell {
+        final long key;
+        Entry[] entries = new Entry[4];
+        int size;
+
+        Cell(long key) {
+            this.key = key;
+        }
+
+        void add(Entry entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entry.cell = this;
+            entry.position = size;
+            entries[size++] = entry;
+        }
+
+        void remove(Entry entry) {
+            Entry last = entries[--size];
+            entries[entry.position] = last;
+            last.position = entry.position;
+            entries[size] = null;
+            entry.cell = null;
+        }
+    }
+
+    /**
+     * A query hit and its distance from the query point
+     */
+    private static final class Candidate {
+        final Vehicle vehicle;
+        final double distance;
+
+        Candidate(Vehicle vehicle, double distance) {
+            this.vehicle = vehicle;
+            this.distance = distance;
+        }
+    }
+
+    private static final Comparator<Candidate> BY_DISTANCE = Comparator.comparingDouble(c -> c.distance);
+
+    /**
+     * Constructor for creating an index with the default cell size
+     */
+    public SpatialIndex() {
+        this(DEFAULT_CELL_DEGREES);
+    }
+
+    /**
+     * Constructor for creating an index with a given cell size
+     * @param cellDegrees Width and height of a grid cell in degrees
+     */
+    public SpatialIndex(double cellDegrees) {
+        if (!(cellDegrees > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.cellDegrees = cellDegrees;
+    }
+
+    /**
+     * Add vehicles to the index and start following their updates
+     * @param vehicles The vehicles to index
+     */
+    public void addAll(Collection<? extends Vehicle> vehicles) {
+        for (Vehicle vehicle : vehicles) {
+            add(vehicle);
+        }
+    }
+
+    /**
+     * Add a vehicle to the index and start following its updates
+     * @param vehicle The vehicle to index
+     */
+    public void add(Vehicle vehicle) {
+        lock.writeLock().lock();
+        try {
+            if (entries.containsKey(vehicle)) {
+                return;
+            }
+            Entry entry = new Entry(vehicle);
+            entry.available = vehicle.getStatus() == VehicleStatus.AVAILABLE;
+            entries.put(vehicle, entry);
+            place(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // Registered outside the index lock; callbacks take it themselves
+        vehicle.addTrackingListener(this);
+    }
+
+    /**
+     * Remove a vehicle from the index and stop following its updates
+     * @param vehicle The vehicle to remove
+     */
+    public void remove(Vehicle vehicle) {
+        vehicle.removeTrackingListener(this);
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.remove(vehicle);
+            if (entry != null && entry.cell != null) {
+                leave(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of vehicles in the index, with or without a GPS fix
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void locationChanged(Trackable source, double latitude, double longitude) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(source);
+            if (entry != null) {
+                // Callbacks can arrive out of order, so re-read the vehicle's
+                // latest fix instead of trusting the reported coordinates
+                place(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void statusChanged(Trackable source, VehicleStatus previous, VehicleStatus status) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(source);
+            if (entry != null) {
+                entry.available = entry.vehicle.getStatus() == VehicleStatus.AVAILABLE;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the vehicles within a distance of a point
+     * @param latitude Latitude of the point
+     * @param longitude Longitude of the point
+     * @param radiusMeters Search radius in meters
+     * @param filter Which vehicles to consider
+     * @return Matching vehicles, nearest first
+     */
+    public List<Vehicle> withinRadius(double latitude, double longitude, double radiusMeters, VehicleFilter filter) {
+        List<Candidate> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int row = row(latitude);
+            int col = col(longitude);
+            int rowSpan = (int) Math.ceil(radiusMeters / METERS_PER_DEGREE / cellDegrees);
+            double cos = Math.cos(Math.toRadians(Math.min(90, Math.abs(latitude) + rowSpan * cellDegrees)));
+            double colSpanCells = radiusMeters / (METERS_PER_DEGREE * Math.max(cos, 1e-9)) / cellDegrees;
+            long window = (2L * rowSpan + 1) * (2L * (long) Math.min(colSpanCells, Integer.MAX_VALUE / 4) + 1);
+            if (window > cells.size()) {
+                for (Cell cell : cells.values()) {
+                    collect(cell, latitude, longitude, radiusMeters, filter, hits);
+                }
+            } else {
+                int colSpan = (int) Math.ceil(colSpanCells);
+                for (int r = row - rowSpan; r <= row + rowSpan; r++) {
+                    for (int c = col - colSpan; c <= col + colSpan; c++) {
+                        Cell cell = cells.get(key(r, c));
+                        if (cell != null) {
+                            collect(cell, latitude, longitude, radiusMeters, filter, hits);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.sort(BY_DISTANCE);
+        List<Vehicle> result = new ArrayList<>(hits.size());
+        for (Candidate hit : hits) {
+            result.add(hit.vehicle);
+        }
+        return result;
+    }
+
+    /**
+     * Find the vehicles closest to a point
+     * @param latitude Latitude of the point
+     * @param longitude Longitude of the point
+     * @param k Maximum number of vehicles to return
+     * @param filter Which vehicles to consider
+     * @return Up to k matching vehicles, nearest first
+     */
+    public List<Vehicle> nearest(double latitude, double longitude, int k, VehicleFilter filter) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        // Max-heap of the best k so far; the head is the current k-th distance
+        PriorityQueue<Candidate> best = new PriorityQueue<>(k + 1, BY_DISTANCE.reversed());
+        lock.readLock().lock();
+        try {
+            if (cells.isEmpty()) {
+                return new ArrayList<>();
+            }
+            int row = row(latitude);
+            int col = col(longitude);
+            int lastRing = Math.max(Math.max(row - minRow, maxRow - row), Math.max(col - minCol, maxCol - col));
+            for (int ring = 0; ring <= lastRing; ring++) {
+                if (8L * ring > cells.size()) {
+                    // The ring has more cells than the grid holds; finish by walking
+                    // the occupied cells that lie outside the rings already searched
+                    for (Map.Entry<Long, Cell> cell : cells.entrySet()) {
+                        long key = cell.getKey();
+                        int r = (int) (key >> 32);
+                        int c = (int) key;
+                        if (Math.max(Math.abs(r - row), Math.abs(c - col)) >= ring) {
+                            offer(cell.getValue(), latitude, longitude, k, filter, best);
+                        }
+                    }
+                    break;
+                }
+                for (int r = row - ring; r <= row + ring; r++) {
+                    boolean edge = r == row - ring || r == row + ring;
+                    for (int c = col - ring; c <= col + ring; c += edge || ring == 0 ? 1 : 2 * ring) {
+                        Cell cell = cells.get(key(r, c));
+                        if (cell != null) {
+                            offer(cell, latitude, longitude, k, filter, best);
+                        }
+                    }
+                }
+                if (best.size() == k && best.peek().distance <= ringDistance(latitude, ring)) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Candidate> sorted = new ArrayList<>(best);
+        sorted.sort(BY_DISTANCE);
+        List<Vehicle> result = new ArrayList<>(sorted.size());
+        for (Candidate candidate : sorted) {
+            result.add(candidate.vehicle);
+        }
+        return result;
+    }
+
+    /**
+     * Great-circle distance between two points
+     * @return Distance in meters
+     */
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Lower bound on the distance to anything outside the rings searched so far
+     */
+    private double ringDistance(double latitude, int ring) {
+        double cos = Math.cos(Math.toRadians(Math.min(90, Math.abs(latitude) + (ring + 1) * cellDegrees)));
+        return ring * cellDegrees * METERS_PER_DEGREE * Math.min(1, cos);
+    }
+
+    private void collect(Cell cell, double latitude, double longitude, double radiusMeters,
+                         VehicleFilter filter, List<Candidate> hits) {
+        for (int i = 0; i < cell.size; i++) {
+            Entry entry = cell.entries[i];
+            if (filter.matches(entry.available, entry.type, entry.vehicle.getPassengerPlaces())) {
+                double distance = distanceMeters(latitude, longitude, entry.latitude, entry.longitude);
+                if (distance <= radiusMeters) {
+                    hits.add(new Candidate(entry.vehicle, distance));
+                }
+            }
+        }
+    }
+
+    private void offer(Cell cell, double latitude, double longitude, int k,
+                       VehicleFilter filter, PriorityQueue<Candidate> best) {
+        for (int i = 0; i < cell.size; i++) {
+            Entry entry = cell.entries[i];
+            if (filter.matches(entry.available, entry.type, entry.vehicle.getPassengerPlaces())) {
+                double distance = distanceMeters(latitude, longitude, entry.latitude, entry.longitude);
+                if (best.size() < k) {
+                    best.add(new Candidate(entry.vehicle, distance));
+                } else if (distance < best.peek().distance) {
+                    best.poll();
+                    best.add(new Candidate(entry.vehicle, distance));
+                }
+            }
+        }
+    }
+
+    /**
+     * Move an entry to the cell of its vehicle's latest fix. Caller holds the write lock.
+     */
+    private void place(Entry entry) {
+        Vehicle vehicle = entry.vehicle;
+        double latitude;
+        double longitude;
+        synchronized (vehicle) {
+            if (!vehicle.hasPositionFix()) {
+                return;
+            }
+            latitude = vehicle.getLatitude();
+            longitude = vehicle.getLongitude();
+        }
+        entry.latitude = latitude;
+        entry.longitude = longitude;
+        int r = row(latitude);
+        int c = col(longitude);
+        long key = key(r, c);
+        Cell target = cells.get(key);
+        if (target != null && target == entry.cell) {
+            return;
+        }
+        if (entry.cell != null) {
+            leave(entry);
+        }
+        if (target == null) {
+            target = new Cell(key);
+            cells.put(key, target);
+            minRow = Math.min(minRow, r);
+            maxRow = Math.max(maxRow, r);
+            minCol = Math.min(minCol, c);
+            maxCol = Math.max(maxCol, c);
+        }
+        target.add(entry);
+    }
+
+    /**
+     * Take an entry out of its cell, dropping the cell once it is empty
+     */
+    private void leave(Entry entry) {
+        Cell cell = entry.cell;
+        cell.remove(entry);
+        if (cell.size == 0) {
+            cells.remove(cell.key);
+        }
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor(latitude / cellDegrees);
+    }
+
+    private int col(double longitude) {
+        return (int) Math.floor(longitude / cellDegrees);
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+}
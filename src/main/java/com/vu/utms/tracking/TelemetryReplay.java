@@ -0,0 +1,94 @@
+package com.vu.utms.tracking;
+
+import com.vu.utms.models.Vehicle;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * TelemetryReplay feeds recorded GPS reports from a CSV file into a fleet, for
+ * replaying a day of traffic or loading a tracker export.
+ *
+ * Lines have the form {@code vehicleId,latitude,longitude,epochMillis}. Blank lines
+ * and lines starting with '#' are skipped. After each batch the vehicles it
+ * moved are handed to a save callback, so the replayed positions are kept.
+ */
+public class TelemetryReplay {
+    private final FleetTracker tracker;
+    private final BatchApplier applier;
+    private final PositionBatch batch;
+    private long lines;
+    private long rejected;
+
+    /**
+     * Constructor for creating a replay into a fleet
+     * @param tracker The fleet the reports are applied to
+     * @param batchSize Number of reports applied to the fleet at a time
+     * @param save Called after each batch with the vehicles it moved, e.g. to
+     *             save their positions; the list must not be kept. May be null.
+     */
+    public TelemetryReplay(FleetTracker tracker, int batchSize, Consumer<? super List<Vehicle>> save) {
+        this.tracker = tracker;
+        this.applier = new BatchApplier(tracker, save);
+        this.batch = new PositionBatch(batchSize);
+    }
+
+    /**
+     * Replay every report in a file
+     * @param file The CSV file
+     * @return Number of reports applied to the fleet
+     * @throws IOException if the file cannot be read
+     */
+    public long replay(Path file) throws IOException {
+        long applied = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                if (!parse(line)) {
+                    rejected++;
+                    continue;
+                }
+                if (batch.isFull()) {
+                    applied += flush();
+                }
+            }
+        }
+        return applied + flush();
+    }
+
+    private boolean parse(String line) {
+        int first = line.indexOf(',');
+        int second = first < 0 ? -1 : line.indexOf(',', first + 1);
+        int third = second < 0 ? -1 : line.indexOf(',', second + 1);
+        if (third < 0) {
+            return false;
+        }
+        int slot = tracker.slotOf(line.substring(0, first).trim());
+        if (slot < 0) {
+            return false;
+        }
+        try {
+            double latitude = Double.parseDouble(line.substring(first + 1, second));
+            double longitude = Double.parseDouble(line.substring(second + 1, third));
+            long timestamp = Long.parseLong(line.substring(third + 1).trim());
+            return batch.add(slot, latitude, longitude, timestamp);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private int flush() {
+        return applier.apply(batch);
+    }
+
+    public long getLineCount() { return lines; }
+    public long getRejectedCount() { return rejected; }
+}
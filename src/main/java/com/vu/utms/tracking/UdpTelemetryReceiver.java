@@ -0,0 +1,120 @@
+package com.vu.utms.tracking;
+
+import com.vu.utms.models.Vehicle;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * UdpTelemetryReceiver reads GPS position reports from vehicle trackers over UDP.
+ *
+ * Each datagram carries one or more fixed-size big-endian records of
+ * {@code [int slot][double latitude][double longitude][long epochMillis]}.
+ * The receive buffer and position batch are allocated once and reused, so the
+ * receive loop does not allocate per packet. After each datagram the vehicles
+ * it moved are handed to a save callback, so accepted fixes are kept.
+ */
+public class UdpTelemetryReceiver implements AutoCloseable {
+    /** Size of one encoded position report in bytes */
+    public static final int RECORD_SIZE = Integer.BYTES + 2 * Double.BYTES + Long.BYTES;
+
+    private static final int MAX_DATAGRAM = 65_507;
+
+    private final DatagramChannel channel;
+    private final BatchApplier applier;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+    private final PositionBatch batch;
+    private volatile boolean running = true;
+    // Thread inside run(), which close() waits for
+    private volatile Thread receiving;
+    private long malformed;
+
+    /**
+     * Constructor for binding a receiver to a UDP port
+     * @param port The port to listen on
+     * @param tracker The fleet the reports are applied to
+     * @param batchSize Number of reports applied to the fleet at a time
+     * @param save Called after each batch with the vehicles it moved, e.g. to
+     *             save their positions; the list must not be kept. May be null.
+     * @throws IOException if the port cannot be bound
+     */
+    public UdpTelemetryReceiver(int port, FleetTracker tracker, int batchSize,
+                                Consumer<? super List<Vehicle>> save) throws IOException {
+        this.applier = new BatchApplier(tracker, save);
+        this.batch = new PositionBatch(Math.max(batchSize, MAX_DATAGRAM / RECORD_SIZE));
+        this.channel = DatagramChannel.open();
+        // A large kernel buffer absorbs bursts while a batch is being applied
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+        channel.bind(new InetSocketAddress(port));
+    }
+
+    /**
+     * Receive and apply reports until {@link #close()} is called
+     * @throws IOException if receiving fails for a reason other than shutdown
+     */
+    public void run() throws IOException {
+        receiving = Thread.currentThread();
+        try {
+            while (running) {
+                buffer.clear();
+                SocketAddress sender = channel.receive(buffer);
+                if (sender == null) {
+                    continue;
+                }
+                buffer.flip();
+                if (buffer.remaining() % RECORD_SIZE != 0) {
+                    malformed++;
+                }
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    if (batch.isFull()) {
+                        flush();
+                    }
+                    batch.add(buffer.getInt(), buffer.getDouble(), buffer.getDouble(), buffer.getLong());
+                }
+                // Apply once per datagram so fixes are never held back waiting for more traffic
+                flush();
+            }
+        } catch (ClosedChannelException e) {
+            // Closed by close(); stop receiving
+        } finally {
+            receiving = null;
+        }
+    }
+
+    private void flush() {
+        if (batch.size() > 0) {
+            applier.apply(batch);
+        }
+    }
+
+    /**
+     * @return Number of datagrams whose length was not a whole number of records
+     */
+    public long getMalformedCount() {
+        return malformed;
+    }
+
+    /**
+     * Stop receiving, waiting until the datagram being applied, if any, is saved
+     * @throws IOException if the channel cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        channel.close();
+        Thread thread = receiving;
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
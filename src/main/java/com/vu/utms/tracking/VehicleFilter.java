@@ -0,0 +1,57 @@
+package com.vu.utms.tracking;
+
+/**
+ * VehicleFilter describes which vehicles a spatial query should return.
+ * Filters are immutable; each method returns a narrowed copy, e.g.
+ * {@code VehicleFilter.any().available().ofType("Bus").withCapacity(30)}.
+ */
+public final class VehicleFilter {
+    private static final VehicleFilter ANY = new VehicleFilter(false, null, 0);
+
+    private final boolean availableOnly;
+    private final String vehicleType;
+    private final int minimumCapacity;
+
+    private VehicleFilter(boolean availableOnly, String vehicleType, int minimumCapacity) {
+        this.availableOnly = availableOnly;
+        this.vehicleType = vehicleType;
+        this.minimumCapacity = minimumCapacity;
+    }
+
+    /**
+     * @return A filter that matches every vehicle
+     */
+    public static VehicleFilter any() {
+        return ANY;
+    }
+
+    /**
+     * @return A copy of this filter that only matches vehicles with status "Available"
+     */
+    public VehicleFilter available() {
+        return new VehicleFilter(true, vehicleType, minimumCapacity);
+    }
+
+    /**
+     * @param vehicleType "Bus" or "Van", as returned by getVehicleType
+     * @return A copy of this filter that only matches the given vehicle type
+     */
+    public VehicleFilter ofType(String vehicleType) {
+        return new VehicleFilter(availableOnly, vehicleType, minimumCapacity);
+    }
+
+    /**
+     * @param minimumCapacity Passengers the vehicle must be able to carry, counting
+     *                        standing places as dispatch does (see Vehicle#getPassengerPlaces)
+     * @return A copy of this filter that only matches vehicles with at least this many places
+     */
+    public VehicleFilter withCapacity(int minimumCapacity) {
+        return new VehicleFilter(availableOnly, vehicleType, minimumCapacity);
+    }
+
+    boolean matches(boolean available, String type, int passengerPlaces) {
+        return (!availableOnly || available)
+                && (vehicleType == null || vehicleType.equalsIgnoreCase(type))
+                && passengerPlaces >= minimumCapacity;
+    }
+}
@@ -0,0 +1,152 @@
+package com.vu.utms.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.vu.utms.models.Lecturer;
+import com.vu.utms.models.Student;
+import com.vu.utms.models.User;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round trips through the B+tree pages and the paged user store, and detection
+ * of index files that were not closed cleanly or lost pages at their tail.
+ */
+class BPlusTreeTest {
+    // Enough keys to split leaves and internal nodes into a three level tree
+    private static final int KEYS = 20_000;
+
+    @TempDir
+    Path dir;
+
+    private String indexFile() {
+        return dir.resolve("users.idx").toString();
+    }
+
+    private static void fill(BPlusTree tree, int keys) throws IOException {
+        // Shuffled by a stride so splits happen all over the tree, not just at its right edge
+        for (int i = 0; i < keys; i++) {
+            int key = (int) ((i * 7919L) % keys);
+            tree.put("key" + key, key * 10L);
+        }
+    }
+
+    @Test
+    void keysSurviveReopening() throws IOException {
+        try (BPlusTree tree = new BPlusTree(indexFile())) {
+            fill(tree, KEYS);
+            tree.put("key42", 7);
+            tree.setStamp(1234);
+        }
+
+        try (BPlusTree tree = new BPlusTree(indexFile())) {
+            assertFalse(tree.needsRebuild());
+            assertEquals(KEYS, tree.size());
+            assertEquals(1234, tree.getStamp());
+            assertEquals(7, tree.get("key42"));
+            for (int key = 0; key < KEYS; key++) {
+                if (key != 42) {
+                    assertEquals(key * 10L, tree.get("key" + key), "key" + key);
+                }
+            }
+            assertEquals(-1, tree.get("key" + KEYS));
+            assertEquals(-1, tree.get(""));
+        }
+    }
+
+    @Test
+    void fileLeftOpenByACrashNeedsRebuild() throws IOException {
+        Path copy = dir.resolve("crashed.idx");
+        try (BPlusTree tree = new BPlusTree(indexFile())) {
+            fill(tree, 1000);
+            // What a crash would leave: the pages as mapped, still marked dirty
+            Files.copy(dir.resolve("users.idx"), copy);
+        }
+
+        try (BPlusTree tree = new BPlusTree(copy.toString())) {
+            assertTrue(tree.needsRebuild());
+        }
+    }
+
+    @Test
+    void truncatedFileNeedsRebuildAndCanBeRefilled() throws IOException {
+        try (BPlusTree tree = new BPlusTree(indexFile())) {
+            fill(tree, KEYS);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(indexFile(), "rw")) {
+            file.setLength(3L * BPlusTree.PAGE_SIZE);
+        }
+
+        try (BPlusTree tree = new BPlusTree(indexFile())) {
+            assertTrue(tree.needsRebuild());
+            tree.clear();
+            fill(tree, 500);
+            assertEquals(500, tree.size());
+            assertEquals(4990, tree.get("key499"));
+        }
+        try (BPlusTree tree = new BPlusTree(indexFile())) {
+            assertFalse(tree.needsRebuild());
+            assertEquals(500, tree.size());
+            assertEquals(0, tree.get("key0"));
+        }
+    }
+
+    @Test
+    void fileShorterThanAPageStartsEmpty() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(indexFile(), "rw")) {
+            file.setLength(100);
+        }
+
+        try (BPlusTree tree = new BPlusTree(indexFile())) {
+            assertFalse(tree.needsRebuild());
+            assertEquals(0, tree.size());
+            assertEquals(-1, tree.get("key0"));
+        }
+    }
+
+    @Test
+    void pagedUsersSurviveReopeningAndRebuild() throws IOException {
+        String records = dir.resolve("users.rec").toString();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            users.add(new Student("u" + i, "Student " + i, "s" + i + "@example.com", "0700" + i,
+                                  "secret", "S" + i, "Law", 2));
+        }
+        users.add(new Lecturer("l1", "Lecturer", "l@example.com", "0711", "secret",
+                               "STAFF1", "Physics", "Professor", true));
+        try (PagedUserStore store = new PagedUserStore(indexFile(), records)) {
+            store.putAll(users);
+            Student moved = new Student("u7", "Student 7", "s7@example.com", "0700", "secret", "S7", "Medicine", 3);
+            store.put(moved);
+            users.set(7, moved);
+        }
+
+        try (PagedUserStore store = new PagedUserStore(indexFile(), records)) {
+            assertFalse(store.needsRebuild());
+            assertEquals(2 * users.size(), store.size());
+            assertEquals("Medicine", ((Student) store.get("u7")).getCourse());
+            assertEquals("u12", store.find("S12").getUserId());
+            assertEquals("Professor", ((Lecturer) store.find("STAFF1")).getDesignation());
+            assertNull(store.find("S999"));
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(indexFile(), "rw")) {
+            file.setLength(2L * BPlusTree.PAGE_SIZE);
+        }
+        try (PagedUserStore store = new PagedUserStore(indexFile(), records)) {
+            assertTrue(store.needsRebuild());
+            store.rebuild(users);
+            assertEquals("Medicine", ((Student) store.find("S7")).getCourse());
+            assertEquals("l1", store.find("STAFF1").getUserId());
+        }
+    }
+}
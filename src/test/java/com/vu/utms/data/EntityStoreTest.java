@@ -0,0 +1,159 @@
+package com.vu.utms.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.vu.utms.models.ModelCodecs;
+import com.vu.utms.models.Student;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round trips through the CRC-framed student log and snapshot, and recovery
+ * from a log whose last record was torn by a crash.
+ */
+class EntityStoreTest {
+    @TempDir
+    Path dir;
+
+    private GroupCommitWriter writer;
+    private final List<EntityStore<Student>> opened = new ArrayList<>();
+
+    @BeforeEach
+    void startWriter() {
+        writer = new GroupCommitWriter("test-log-writer");
+    }
+
+    @AfterEach
+    void closeStores() {
+        opened.forEach(EntityStore::close);
+        writer.close();
+    }
+
+    private EntityStore<Student> open() {
+        EntityStore<Student> store = new EntityStore<>("students", ModelCodecs.STUDENT,
+                dir.resolve("students.dat").toString(), dir.resolve("students.log").toString(),
+                writer, Durability.FLUSH);
+        opened.add(store);
+        return store;
+    }
+
+    private static Student student(int i) {
+        return new Student("u" + i, "Student " + i, "s" + i + "@example.com", "0700" + i,
+                           "secret", "S" + i, "Computer Science", 1 + i % 4);
+    }
+
+    private static List<String> userIds(List<Student> students) {
+        List<String> ids = new ArrayList<>();
+        for (Student student : students) {
+            ids.add(student.getUserId());
+        }
+        return ids;
+    }
+
+    private long logLength() {
+        return dir.resolve("students.log").toFile().length();
+    }
+
+    @Test
+    void loggedEntitiesAndUpdatesSurviveReopening() {
+        EntityStore<Student> store = open();
+        assertEquals(EntityStore.Saved.LOGGED, store.add(student(0)));
+        assertEquals(EntityStore.Saved.LOGGED, store.addAll(List.of(student(1), student(2))));
+        Student changed = student(1);
+        changed.setYear(4);
+        changed.setCourse("Statistics");
+        assertEquals(EntityStore.Saved.LOGGED, store.update(1, changed));
+        store.close();
+
+        Snapshot<Student> loaded = open().snapshot();
+        assertEquals(List.of("u0", "u1", "u2"), userIds(loaded));
+        assertEquals(4, loaded.get(1).getYear());
+        assertEquals("Statistics", loaded.get(1).getCourse());
+        assertEquals("S2", loaded.get(2).getStudentId());
+    }
+
+    @Test
+    void compactedListAndLaterRecordsSurviveReopening() {
+        EntityStore<Student> store = open();
+        for (int i = 0; i < 5; i++) {
+            store.add(student(i));
+        }
+        assertEquals(5, store.size());
+        assertTrue(store.compact());
+        assertEquals(EntityStore.Saved.LISTED, store.add(student(5)));
+        store.close();
+
+        Snapshot<Student> loaded = open().snapshot();
+        assertEquals(List.of("u0", "u1", "u2", "u3", "u4", "u5"), userIds(loaded));
+        assertEquals("Computer Science", loaded.get(3).getCourse());
+    }
+
+    @Test
+    void tornTailIsCutOffAndAppendsFollowTheIntactRecords() throws IOException {
+        EntityStore<Student> store = open();
+        store.addAll(List.of(student(0), student(1), student(2)));
+        store.close();
+        long intact = logLength();
+        // A crash part way through the next record leaves its first bytes behind
+        try (RandomAccessFile log = new RandomAccessFile(dir.resolve("students.log").toFile(), "rw")) {
+            log.seek(intact);
+            log.writeInt(200);
+            log.writeInt(0x12345678);
+            log.write(new byte[37]);
+        }
+
+        EntityStore<Student> reopened = open();
+        assertEquals(List.of("u0", "u1", "u2"), userIds(reopened.snapshot()));
+        assertEquals(intact, logLength());
+        assertEquals(EntityStore.Saved.LISTED, reopened.add(student(3)));
+        reopened.close();
+
+        assertEquals(List.of("u0", "u1", "u2", "u3"), userIds(open().snapshot()));
+    }
+
+    @Test
+    void recordFailingItsChecksumEndsTheReplay() throws IOException {
+        EntityStore<Student> store = open();
+        store.add(student(0));
+        store.close();
+        long first = logLength();
+        store = open();
+        store.add(student(1));
+        store.close();
+        // Flip a byte in the second record's payload
+        try (RandomAccessFile log = new RandomAccessFile(dir.resolve("students.log").toFile(), "rw")) {
+            log.seek(first + 12);
+            int value = log.read();
+            log.seek(first + 12);
+            log.write(value ^ 0xFF);
+        }
+
+        assertEquals(List.of("u0"), userIds(open().snapshot()));
+        assertEquals(first, logLength());
+    }
+
+    @Test
+    void appendsBeforeLoadingRepairTheTailFirst() throws IOException {
+        EntityStore<Student> store = open();
+        store.add(student(0));
+        store.close();
+        long intact = logLength();
+        try (RandomAccessFile log = new RandomAccessFile(dir.resolve("students.log").toFile(), "rw")) {
+            log.setLength(intact + 5);
+        }
+
+        EntityStore<Student> appending = open();
+        assertEquals(EntityStore.Saved.LOGGED, appending.add(student(1)));
+        appending.close();
+
+        assertEquals(List.of("u0", "u1"), userIds(open().snapshot()));
+    }
+}
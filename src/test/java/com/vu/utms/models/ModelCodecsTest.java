@@ -0,0 +1,247 @@
+package com.vu.utms.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.vu.utms.codec.BinaryReader;
+import com.vu.utms.codec.BinaryWriter;
+import com.vu.utms.codec.Codec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trips through the versioned model codecs, reads of blocks written by
+ * older and newer codec versions, and reads of models saved with Java
+ * serialization in their serialPersistentFields form.
+ */
+class ModelCodecsTest {
+    // Type tags as ModelCodecs writes them
+    private static final int STUDENT_TAG = 1;
+    private static final int VEHICLE_EVENT_TAG = 7;
+
+    private static <T> byte[] encode(Codec<T> codec, T value) {
+        BinaryWriter out = new BinaryWriter();
+        codec.write(out, value);
+        return out.toByteArray();
+    }
+
+    private static <T> T roundTrip(Codec<T> codec, T value) throws IOException {
+        return codec.read(new BinaryReader(encode(codec, value)));
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    private static Student student() {
+        Student student = new Student("u1", "Amina", "amina@example.com", "0700", "secret",
+                                      "S100", "Computer Science", 2);
+        student.requestTransport("Main Campus", "2026-10-20 08:30");
+        return student;
+    }
+
+    private static Bus bus() {
+        Bus bus = new Bus("B1", "UAA 001", "Coaster", 30, "R7", true, false, 12);
+        bus.updateLocation(0.3476, 32.5825, 1_700_000_000_000L);
+        bus.book(BookingCalendar.parseMinute("2026-10-20 09:00"), BookingCalendar.parseMinute("2026-10-20 10:00"),
+                 "Library", 5);
+        return bus;
+    }
+
+    private static void assertSameBus(Bus expected, Bus actual) {
+        assertEquals(expected.getVehicleId(), actual.getVehicleId());
+        assertEquals(expected.getRegistrationNumber(), actual.getRegistrationNumber());
+        assertEquals(expected.getCapacity(), actual.getCapacity());
+        assertEquals(expected.getRouteNumber(), actual.getRouteNumber());
+        assertEquals(expected.isAccessible(), actual.isAccessible());
+        assertEquals(expected.getStandingCapacity(), actual.getStandingCapacity());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getLatitude(), actual.getLatitude());
+        assertEquals(expected.getLongitude(), actual.getLongitude());
+        assertEquals(expected.getLocationTimestamp(), actual.getLocationTimestamp());
+        assertEquals(expected.getCalendar().size(), actual.getCalendar().size());
+    }
+
+    @Test
+    void usersRoundTripThroughTheUserCodec() throws IOException {
+        Student student = (Student) roundTrip(ModelCodecs.USER, student());
+        assertEquals("u1", student.getUserId());
+        assertEquals("amina@example.com", student.getEmail());
+        assertEquals("S100", student.getStudentId());
+        assertEquals("Computer Science", student.getCourse());
+        assertEquals(2, student.getYear());
+        assertEquals(1, student.getTransportRequests().size());
+        assertEquals("Main Campus", student.getTransportRequests().get(0).destination());
+
+        Lecturer lecturer = (Lecturer) roundTrip(ModelCodecs.USER,
+                new Lecturer("l1", "Okello", "o@example.com", "0711", "secret", "STAFF1", "Physics", "Professor", true));
+        assertEquals("STAFF1", lecturer.getStaffId());
+        assertEquals("Physics", lecturer.getDepartment());
+        assertEquals("Professor", lecturer.getDesignation());
+        assertTrue(lecturer.isPermanent());
+
+        TransportOfficer officer = (TransportOfficer) roundTrip(ModelCodecs.USER,
+                new TransportOfficer("t1", "Nakato", "n@example.com", "0722", "secret", "OFF1", "Dispatcher", "Transport", 6));
+        assertEquals("OFF1", officer.getOfficerId());
+        assertEquals("Dispatcher", officer.getRole());
+        assertEquals(6, officer.getYearsOfExperience());
+    }
+
+    @Test
+    void vehiclesRoundTripThroughTheVehicleCodec() throws IOException {
+        Bus bus = bus();
+        bus.updateStatus(VehicleStatus.SCHEDULED);
+        assertSameBus(bus, (Bus) roundTrip(ModelCodecs.VEHICLE, bus));
+
+        Van van = (Van) roundTrip(ModelCodecs.VEHICLE,
+                new Van("V1", "UAB 002", "Hiace", 12, true, 1.5, "Special Needs", true));
+        assertEquals("Special Needs", van.getPurposeType());
+        assertEquals(1.5, van.getCargoCapacity());
+        assertTrue(van.hasFirstAidKit());
+        assertEquals(VehicleStatus.AVAILABLE, van.getStatus());
+    }
+
+    @Test
+    void snapshotRecordsShareTheirSymbols() throws IOException {
+        BinaryWriter out = new BinaryWriter();
+        out.startSymbolDictionary();
+        ModelCodecs.STUDENT.write(out, new Student("u2", "Brian", "b@example.com", "0701", "secret",
+                                                   "S101", "Computer Science", 3));
+        byte[] first = out.toByteArray();
+        out.reset();
+        ModelCodecs.STUDENT.write(out, new Student("u3", "Brian", "c@example.com", "0702", "secret",
+                                                   "S102", "Computer Science", 3));
+        byte[] second = out.toByteArray();
+        // The second record refers back to the course the first one spelt out
+        assertTrue(second.length < first.length - "Computer Science".length() + 2);
+
+        BinaryReader in = new BinaryReader(first);
+        in.startSymbolDictionary();
+        assertEquals("Computer Science", ModelCodecs.STUDENT.read(in).getCourse());
+        in.reset(second, 0, second.length);
+        Student read = ModelCodecs.STUDENT.read(in);
+        assertEquals("u3", read.getUserId());
+        assertEquals("Computer Science", read.getCourse());
+    }
+
+    @Test
+    void eventBlocksFromTheFirstVersionReadWithDefaults() throws IOException {
+        BinaryWriter out = new BinaryWriter();
+        out.writeByte(VEHICLE_EVENT_TAG);
+        int block = out.startBlock(1);
+        out.writeString("B1");
+        out.writeByte(VehicleEvent.Kind.BOOKED.ordinal());
+        out.writeString("B1-1");
+        out.writeSignedVarLong(1000);
+        out.writeVarLong(60);
+        out.writeString("Library");
+        out.endBlock(block);
+
+        VehicleEvent event = ModelCodecs.VEHICLE_EVENT.read(new BinaryReader(out.toByteArray()));
+        assertEquals(VehicleEvent.Kind.BOOKED, event.kind());
+        assertEquals(1060, event.endMinute());
+        assertEquals("Library", event.purpose());
+        assertEquals(0, event.passengers());
+        assertEquals(0, event.timestampMillis());
+    }
+
+    @Test
+    void currentEventsRoundTrip() throws IOException {
+        VehicleEvent moved = VehicleEvent.moved("B1", 0.35, 32.58, 1_700_000_000_000L);
+        assertEquals(moved, roundTrip(ModelCodecs.VEHICLE_EVENT, moved));
+    }
+
+    @Test
+    void fieldsAddedByNewerVersionsAreSkipped() throws IOException {
+        BinaryWriter out = new BinaryWriter();
+        out.writeByte(STUDENT_TAG);
+        int user = out.startBlock(1);
+        out.writeString("u9");
+        out.writeString("Future");
+        out.writeString("f@example.com");
+        out.writeString("0799");
+        out.writeString("secret");
+        out.writeBoolean(false);
+        // A field a later user block version appended
+        out.writeString("preferred name");
+        out.endBlock(user);
+        int student = out.startBlock(2);
+        out.writeString("S900");
+        out.writeString("Law");
+        out.writeVarInt(4);
+        out.writeVarInt(12345);
+        out.endBlock(student);
+        // The next record in the same buffer must still be found
+        ModelCodecs.STUDENT.write(out, student());
+
+        BinaryReader in = new BinaryReader(out.toByteArray());
+        Student future = ModelCodecs.STUDENT.read(in);
+        assertEquals("u9", future.getUserId());
+        assertEquals("S900", future.getStudentId());
+        assertEquals("Law", future.getCourse());
+        assertEquals(4, future.getYear());
+        assertEquals("u1", ModelCodecs.STUDENT.read(in).getUserId());
+        assertEquals(0, in.remaining());
+    }
+
+    @Test
+    void readsOfTheWrongTypeOrUnknownTagsFail() {
+        byte[] bus = encode(ModelCodecs.VEHICLE, bus());
+        assertThrows(StreamCorruptedException.class, () -> ModelCodecs.USER.read(new BinaryReader(bus)));
+        assertThrows(StreamCorruptedException.class, () -> ModelCodecs.USER.read(new BinaryReader(new byte[] { 99 })));
+        byte[] student = encode(ModelCodecs.STUDENT, student());
+        assertThrows(IOException.class,
+                () -> ModelCodecs.STUDENT.read(new BinaryReader(student, 0, student.length - 3)));
+    }
+
+    @Test
+    void serializedModelsStillReadAndReencode() throws Exception {
+        byte[] serialized = serialize(student());
+        assertEquals((byte) 0xAC, serialized[0]);
+        Student student = (Student) deserialize(serialized);
+        assertEquals("S100", student.getStudentId());
+        assertEquals("Computer Science", student.getCourse());
+        assertEquals(1, student.getTransportRequests().size());
+        assertEquals("Computer Science", ((Student) roundTrip(ModelCodecs.USER, student)).getCourse());
+
+        Lecturer lecturer = (Lecturer) deserialize(serialize(
+                new Lecturer("l1", "Okello", "o@example.com", "0711", "secret", "STAFF1", "Physics", "Professor", true)));
+        assertEquals("Physics", lecturer.getDepartment());
+        assertEquals("Professor", lecturer.getDesignation());
+
+        Bus bus = bus();
+        bus.updateStatus(VehicleStatus.OUT_OF_SERVICE);
+        Bus legacy = (Bus) deserialize(serialize(bus));
+        assertSameBus(bus, legacy);
+        assertSameBus(bus, (Bus) roundTrip(ModelCodecs.VEHICLE, legacy));
+    }
+
+    @Test
+    void symbolFieldsAreSerializedAsText() throws Exception {
+        // Files written before the symbol tables hold these fields as strings
+        // under their original names; the serialized form must keep them so
+        byte[] serialized = serialize(bus());
+        String text = new String(serialized, StandardCharsets.ISO_8859_1);
+        assertTrue(text.contains("routeNumber"));
+        assertTrue(text.contains("R7"));
+        assertInstanceOf(Bus.class, deserialize(serialized));
+    }
+}